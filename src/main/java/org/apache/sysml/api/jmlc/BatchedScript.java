@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.api.jmlc;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.sysml.api.DMLException;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.util.DataConverter;
+
+/**
+ * JMLC (Java Machine Learning Connector) API:
+ *
+ * Micro-batched execution of a prepared script for row-wise scoring, where
+ * each row of the input variable produces exactly one row of the output variable
+ * (e.g., predictions), and all other inputs (e.g., models) are bound with reuse.
+ * Concurrent requests are collected by a dispatcher thread until either the
+ * maximum number of rows or the maximum delay (measured from the first request
+ * of a batch) is reached. Each batch is stacked row-wise into a single input,
+ * executed once over a clone of the prepared script, and its output rows are
+ * split back to the futures of the individual requests. This amortizes the
+ * per-execution overhead (e.g., instruction dispatch) of tiny requests.
+ */
+public class BatchedScript
+{
+	//prepared script and batched input/output variables
+	private PreparedScript _pstmt = null;
+	private String _inVarname = null;
+	private String _outVarname = null;
+
+	//batching configuration
+	private int _maxBatchRows = -1;
+	private long _maxDelayNanos = -1;
+
+	//request queue, dispatcher thread, and workers for batch execution
+	private LinkedBlockingQueue<BatchRequest> _queue = null;
+	private Thread _dispatcher = null;
+	private ExecutorService _pool = null;
+	private boolean _closed = false; //guarded by this
+
+	/**
+	 * Meant to be invoked only from PreparedScript
+	 */
+	protected BatchedScript( PreparedScript pstmt, String inVarname, String outVarname, int maxBatchRows, long maxDelayMillis, int numThreads )
+	{
+		_pstmt = pstmt;
+		_inVarname = inVarname;
+		_outVarname = outVarname;
+		_maxBatchRows = Math.max(maxBatchRows, 1);
+		_maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(maxDelayMillis, 0));
+
+		_queue = new LinkedBlockingQueue<BatchRequest>();
+		_pool = Executors.newFixedThreadPool(Math.max(numThreads, 1));
+		_dispatcher = new Thread(new BatchDispatcher(), "JMLC-BatchDispatcher");
+		_dispatcher.setDaemon(true);
+		_dispatcher.start();
+	}
+
+	/**
+	 * Submits the given rows for batched scoring, and returns a future
+	 * of the corresponding output rows. The input is not modified.
+	 *
+	 * @param rows
+	 * @return
+	 * @throws DMLException
+	 */
+	public Future<MatrixBlock> submit( MatrixBlock rows )
+		throws DMLException
+	{
+		if( rows.getNumRows() == 0 )
+			throw new DMLException("Empty input for batched scoring.");
+
+		//check and enqueue atomically (no requests after the poison of close)
+		BatchRequest req = new BatchRequest(rows);
+		synchronized( this ) {
+			if( _closed )
+				throw new DMLException("Batched script already closed.");
+			_queue.add(req);
+		}
+		return req;
+	}
+
+	/**
+	 * Scores the given rows via batched execution, and blocks until
+	 * the corresponding output rows are available.
+	 *
+	 * @param rows
+	 * @return
+	 * @throws DMLException
+	 */
+	public double[][] score( double[][] rows )
+		throws DMLException
+	{
+		try {
+			Future<MatrixBlock> ret = submit(DataConverter.convertToMatrixBlock(rows));
+			return DataConverter.convertToDoubleMatrix(ret.get());
+		}
+		catch(DMLException ex) {
+			throw ex;
+		}
+		catch(Exception ex) {
+			throw new DMLException(ex);
+		}
+	}
+
+	/**
+	 * Stops accepting new requests, executes all pending requests,
+	 * and shuts down the dispatcher and worker threads. This call
+	 * blocks until all pending requests are completed.
+	 */
+	public void close()
+	{
+		synchronized( this ) {
+			if( _closed )
+				return;
+			_closed = true;
+			_queue.add(BatchRequest.POISON);
+		}
+		try {
+			_dispatcher.join();
+			_pool.shutdown();
+			_pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch(InterruptedException ex) {
+			_pool.shutdown();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stacks all requests of the given batch row-wise, executes the script
+	 * once, and splits the output rows back to the individual requests.
+	 *
+	 * @param batch
+	 */
+	private void executeBatch( ArrayList<BatchRequest> batch )
+	{
+		try
+		{
+			//stack inputs row-wise (w/o copy for single requests)
+			MatrixBlock in = null;
+			if( batch.size() == 1 ) {
+				in = batch.get(0)._in;
+			}
+			else {
+				int nrow = 0; long nnz = 0;
+				int ncol = batch.get(0)._in.getNumColumns();
+				for( BatchRequest req : batch ) {
+					if( req._in.getNumColumns() != ncol )
+						throw new DMLException("Incompatible number of columns in batched requests: "
+								+ req._in.getNumColumns() + " vs " + ncol + ".");
+					nrow += req._in.getNumRows();
+					nnz += req._in.getNonZeros();
+				}
+				in = new MatrixBlock(nrow, ncol, nnz);
+				if( in.isInSparseFormat() )
+					in.allocateSparseRowsBlock();
+				else
+					in.allocateDenseBlock();
+				int rl = 0;
+				for( BatchRequest req : batch ) {
+					int rlen = req._in.getNumRows();
+					in.copy(rl, rl+rlen-1, 0, ncol-1, req._in, false);
+					rl += rlen;
+				}
+				in.recomputeNonZeros();
+				in.examSparsity();
+			}
+
+			//execute script over independent clone
+			PreparedScript pstmt = _pstmt.clone();
+			pstmt.setMatrix(_inVarname, in, false);
+			MatrixBlock out = pstmt.executeScript().getMatrixBlock(_outVarname);
+			if( out.getNumRows() != in.getNumRows() )
+				throw new DMLException("Batched scoring requires one output row per input row: "
+						+ out.getNumRows() + " vs " + in.getNumRows() + ".");
+
+			//split output rows back to requests
+			if( batch.size() == 1 ) {
+				batch.get(0).complete(out, null);
+			}
+			else {
+				int rl = 0;
+				for( BatchRequest req : batch ) {
+					int rlen = req._in.getNumRows();
+					MatrixBlock tmp = out.sliceOperations(rl, rl+rlen-1, 0, out.getNumColumns()-1, new MatrixBlock());
+					req.complete(tmp, null);
+					rl += rlen;
+				}
+			}
+		}
+		catch(Exception ex) {
+			for( BatchRequest req : batch )
+				req.complete(null, ex);
+		}
+	}
+
+	/**
+	 * Dispatcher that collects requests into batches, bounded by the max
+	 * number of rows and max delay, and hands them over to the workers.
+	 */
+	private class BatchDispatcher implements Runnable
+	{
+		@Override
+		public void run()
+		{
+			boolean stop = false;
+			while( !stop )
+			{
+				try
+				{
+					//block until first request of next batch
+					BatchRequest first = _queue.take();
+					if( first == BatchRequest.POISON )
+						break;
+
+					//collect further requests until size or time limits
+					final ArrayList<BatchRequest> batch = new ArrayList<BatchRequest>();
+					batch.add(first);
+					int nrow = first._in.getNumRows();
+					long deadline = System.nanoTime() + _maxDelayNanos;
+					while( nrow < _maxBatchRows ) {
+						long remaining = deadline - System.nanoTime();
+						BatchRequest req = (remaining > 0) ?
+							_queue.poll(remaining, TimeUnit.NANOSECONDS) : _queue.poll();
+						if( req == null )
+							break;
+						if( req == BatchRequest.POISON ) {
+							stop = true;
+							break;
+						}
+						batch.add(req);
+						nrow += req._in.getNumRows();
+					}
+
+					//asynchronous batch execution
+					_pool.execute(new Runnable() {
+						@Override
+						public void run() {
+							executeBatch(batch);
+						}
+					});
+				}
+				catch(InterruptedException ex) {
+					stop = true;
+				}
+			}
+			
+			//reject remaining requests (on interrupt of the dispatcher)
+			for( BatchRequest req = _queue.poll(); req != null; req = _queue.poll() )
+				if( req != BatchRequest.POISON )
+					req.complete(null, new DMLException("Batched script already closed."));
+		}
+	}
+
+	/**
+	 * Future of an individual request, completed by the batch execution.
+	 */
+	private static class BatchRequest implements Future<MatrixBlock>
+	{
+		private static final BatchRequest POISON = new BatchRequest(null);
+
+		private final MatrixBlock _in;
+		private final CountDownLatch _done = new CountDownLatch(1);
+		private MatrixBlock _out = null;
+		private Exception _err = null;
+
+		public BatchRequest( MatrixBlock in ) {
+			_in = in;
+		}
+
+		public void complete( MatrixBlock out, Exception err ) {
+			_out = out;
+			_err = err;
+			_done.countDown();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return false; //not supported
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isDone() {
+			return _done.getCount() == 0;
+		}
+
+		@Override
+		public MatrixBlock get()
+			throws InterruptedException, ExecutionException
+		{
+			_done.await();
+			return getResult();
+		}
+
+		@Override
+		public MatrixBlock get(long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException
+		{
+			if( !_done.await(timeout, unit) )
+				throw new TimeoutException();
+			return getResult();
+		}
+
+		private MatrixBlock getResult()
+			throws ExecutionException
+		{
+			if( _err != null )
+				throw new ExecutionException(_err);
+			return _out;
+		}
+	}
+}
@@ -25,7 +25,12 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
 
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -47,8 +52,10 @@ import org.apache.sysml.runtime.controlprogram.Program;
 import org.apache.sysml.runtime.controlprogram.caching.CacheableData;
 import org.apache.sysml.runtime.io.MatrixReaderFactory;
 import org.apache.sysml.runtime.io.ReaderTextCell;
+import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
 import org.apache.sysml.runtime.matrix.data.InputInfo;
 import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.transform.TfUtils;
 import org.apache.sysml.runtime.util.DataConverter;
 
 /**
@@ -61,8 +68,21 @@ import org.apache.sysml.runtime.util.DataConverter;
 public class Connection 
 {
 	
+	//max number of cached compiled scripts per connection (LRU eviction)
+	public static final int MAX_SCRIPT_CACHE_SIZE = 32;
+	
 	private DMLConfig _conf = null;
 	
+	//cache of compiled scripts (script, args, inputs, outputs, input meta data)
+	private LinkedHashMap<String, PreparedScript> _scriptCache = 
+		new LinkedHashMap<String, PreparedScript>(MAX_SCRIPT_CACHE_SIZE, 0.75f, true) {
+			private static final long serialVersionUID = 3810284739124371863L;
+			@Override
+			protected boolean removeEldestEntry(Entry<String, PreparedScript> eldest) {
+				return size() > MAX_SCRIPT_CACHE_SIZE;
+			}
+		};
+	
 	/**
 	 * Connection constructor, starting point for any other JMLC API calls.
 	 * 
@@ -80,6 +100,7 @@ public class Connection
 		OptimizerUtils.PARALLEL_CP_WRITE_TEXTFORMATS = false;
 		OptimizerUtils.PARALLEL_CP_READ_BINARYFORMATS = false;
 		OptimizerUtils.PARALLEL_CP_WRITE_BINARYFORMATS = false;
+		OptimizerUtils.PARALLEL_CP_TRANSFORM = false;
 		CacheableData.disableCaching();
 		
 		//create default configuration
@@ -113,7 +134,40 @@ public class Connection
 	public PreparedScript prepareScript( String script, HashMap<String, String> args, String[] inputs, String[] outputs, boolean parsePyDML) 
 		throws DMLException 
 	{
-		//prepare arguments
+		return prepareScript(script, args, inputs, outputs, parsePyDML, null);
+	}
+	
+	/**
+	 * Prepares the given script, optionally specialized to the given dimensions of 
+	 * inputs (with -1 for unknown rows, columns, or non-zeros). If specialized, size-specific 
+	 * plans are compiled once, which avoids dynamic recompilation during execution, but the
+	 * bound inputs are required to match the given dimensions and, if known, non-zeros. 
+	 * 
+	 * Compiled scripts are cached per connection, i.e., preparing the same script with 
+	 * the same arguments, inputs, outputs, and input dimensions again returns a new 
+	 * prepared script (see {@link PreparedScript#clone()}) that shares the compiled 
+	 * program, without parsing and compilation. The cache holds up to 
+	 * {@link #MAX_SCRIPT_CACHE_SIZE} scripts with least-recently-used eviction.
+	 * 
+	 * @param script
+	 * @param args
+	 * @param inputs
+	 * @param outputs
+	 * @param parsePyDML
+	 * @param inputMeta dimensions of inputs, or null if unknown
+	 * @return
+	 * @throws DMLException
+	 */
+	public PreparedScript prepareScript( String script, HashMap<String, String> args, String[] inputs, String[] outputs, boolean parsePyDML, Map<String, MatrixCharacteristics> inputMeta) 
+		throws DMLException 
+	{
+		//probe cache of compiled scripts
+		String key = createScriptCacheKey(script, args, inputs, outputs, parsePyDML, inputMeta);
+		synchronized( _scriptCache ) {
+			PreparedScript pscript = _scriptCache.get(key);
+			if( pscript != null )
+				return pscript.clone();
+		}
 		
 		//simplified compilation chain
 		Program rtprog = null;
@@ -128,14 +182,17 @@ public class Connection
 			dmlt.liveVariableAnalysis(prog);			
 			dmlt.validateParseTree(prog);
 			
-			//hop construct/rewrite
+			//hop construct/rewrite, incl rewrite of persistent reads/writes
+			//(for specialization, before rewrites, in order to propagate 
+			//the input sizes through rewrites, ipa, and memory estimates)
 			dmlt.constructHops(prog);
-			dmlt.rewriteHopsDAG(prog);
-			
-			//rewrite persistent reads/writes
-			RewriteRemovePersistentReadWrite rewrite = new RewriteRemovePersistentReadWrite(inputs, outputs);
+			RewriteRemovePersistentReadWrite rewrite = new RewriteRemovePersistentReadWrite(inputs, outputs, inputMeta);
 			ProgramRewriter rewriter2 = new ProgramRewriter(rewrite);
-			rewriter2.rewriteProgramHopDAGs(prog);
+			if( inputMeta != null )
+				rewriter2.rewriteProgramHopDAGs(prog);
+			dmlt.rewriteHopsDAG(prog);
+			if( inputMeta == null )
+				rewriter2.rewriteProgramHopDAGs(prog);
 			
 			//lop construct and runtime prog generation
 			dmlt.constructLops(prog);
@@ -151,8 +208,78 @@ public class Connection
 			throw new DMLException(ex);
 		}
 			
-		//return newly create precompiled script 
-		return new PreparedScript(rtprog, inputs, outputs);
+		//put newly created precompiled script into cache (as a template
+		//that is never bound), and return an independent prepared script
+		PreparedScript pscript = new PreparedScript(rtprog, inputs, outputs, inputMeta);
+		synchronized( _scriptCache ) {
+			_scriptCache.put(key, pscript);
+		}
+		return pscript.clone();
+	}
+	
+	/**
+	 * Removes all compiled scripts from the cache of this connection.
+	 */
+	public void clearScriptCache()
+	{
+		synchronized( _scriptCache ) {
+			_scriptCache.clear();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param script
+	 * @param args
+	 * @param inputs
+	 * @param outputs
+	 * @param parsePyDML
+	 * @param inputMeta
+	 * @return
+	 */
+	private static String createScriptCacheKey( String script, HashMap<String, String> args, String[] inputs, String[] outputs, boolean parsePyDML, Map<String, MatrixCharacteristics> inputMeta )
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(parsePyDML);
+		sb.append('\u0001');
+		if( args != null )
+			sb.append(new TreeMap<String,String>(args));
+		sb.append('\u0001');
+		sb.append(Arrays.toString(inputs));
+		sb.append('\u0001');
+		sb.append(Arrays.toString(outputs));
+		sb.append('\u0001');
+		if( inputMeta != null ) {
+			for( Entry<String, MatrixCharacteristics> e : new TreeMap<String, MatrixCharacteristics>(inputMeta).entrySet() )
+				sb.append(e.getKey() + ":" + e.getValue().getRows() + "x" + e.getValue().getCols() 
+						+ "," + e.getValue().getNonZeros() + ";");
+		}
+		sb.append('\u0001');
+		sb.append(script);
+		return sb.toString();
+	}
+	
+	/**
+	 * Creates an in-memory transform encoder for the given transformation metadata
+	 * directory (as created by transform, incl. spec.json and column.names), which
+	 * allows to apply the transformation to raw records without file inputs.
+	 * 
+	 * @param tfMtdPath transformation metadata directory
+	 * @param delim delimiter of records and the original header
+	 * @param naStrings na strings, separated by DataExpression.DELIM_NA_STRING_SEP, or null
+	 * @return
+	 * @throws DMLException
+	 */
+	public TransformEncoder prepareTransformEncoder( String tfMtdPath, String delim, String naStrings ) 
+		throws DMLException
+	{
+		try {
+			TfUtils agents = TfUtils.readTfMetadata(tfMtdPath, delim, naStrings);
+			return new TransformEncoder(agents);
+		}
+		catch(Exception ex) {
+			throw new DMLException(ex);
+		}
 	}
 	
 	/**
@@ -160,6 +287,9 @@ public class Connection
 	 */
 	public void close()
 	{
+		//release compiled scripts
+		clearScriptCache();
+		
 		//reset parameters for embedded execution
 		AParserWrapper.IGNORE_UNSPECIFIED_ARGS = false;
 		DataExpression.IGNORE_READ_WRITE_METADATA = false;
@@ -168,6 +298,7 @@ public class Connection
 		OptimizerUtils.PARALLEL_CP_WRITE_TEXTFORMATS = true;
 		OptimizerUtils.PARALLEL_CP_READ_BINARYFORMATS = true;
 		OptimizerUtils.PARALLEL_CP_WRITE_BINARYFORMATS = true;		
+		OptimizerUtils.PARALLEL_CP_TRANSFORM = true;
 	}
 	
 	/**
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import org.apache.sysml.api.DMLException;
@@ -51,6 +52,11 @@ import org.apache.sysml.runtime.util.DataConverter;
  * JMLC (Java Machine Learning Connector) API:
  * 
  * NOTE: Currently fused API and implementation in order to reduce complexity. 
+ * 
+ * NOTE: A prepared script holds the bound input variables of a single invocation 
+ * and hence, must not be used by multiple threads concurrently. For concurrent 
+ * requests, use {@link #clone()} to obtain independent invocation handles, which 
+ * share the compiled runtime program and reused inputs but have isolated variables.
  */
 public class PreparedScript 
 {
@@ -58,6 +64,7 @@ public class PreparedScript
 	private HashSet<String> _inVarnames = null;
 	private HashSet<String> _outVarnames = null;
 	private HashMap<String,Data> _inVarReuse = null;
+	private HashMap<String,MatrixCharacteristics> _inVarMeta = null;
 	
 	//internal state (reused)
 	private Program _prog = null;
@@ -67,6 +74,14 @@ public class PreparedScript
 	 * Meant to be invoked only from Connection 
 	 */
 	protected PreparedScript( Program prog, String[] inputs, String[] outputs ) 
+	{
+		this(prog, inputs, outputs, null);
+	}
+	
+	/** 
+	 * Meant to be invoked only from Connection 
+	 */
+	protected PreparedScript( Program prog, String[] inputs, String[] outputs, Map<String, MatrixCharacteristics> inputMeta ) 
 	{
 		_prog = prog;
 		_vars = new LocalVariableMap();
@@ -79,6 +94,45 @@ public class PreparedScript
 		for( String var : outputs )
 			_outVarnames.add( var );
 		_inVarReuse = new HashMap<String, Data>();
+		if( inputMeta != null )
+			_inVarMeta = new HashMap<String, MatrixCharacteristics>(inputMeta);
+	}
+	
+	/**
+	 * Creates a new invocation handle of the given prepared script, which
+	 * shares the immutable state but has an isolated symbol table.
+	 * 
+	 * @param that
+	 */
+	private PreparedScript( PreparedScript that )
+	{
+		_prog = that._prog;
+		_vars = new LocalVariableMap();
+		
+		//shared input/output specification, copy of reused inputs
+		//(reused matrices are read-only and protected from cleanup)
+		_inVarnames = that._inVarnames;
+		_outVarnames = that._outVarnames;
+		_inVarMeta = that._inVarMeta;
+		synchronized( that._inVarReuse ) {
+			_inVarReuse = new HashMap<String, Data>(that._inVarReuse);
+		}
+	}
+	
+	/**
+	 * Returns a cheap copy of this prepared script for concurrent execution,
+	 * i.e., an independent invocation handle that shares the compiled runtime 
+	 * program (incl. recompilation via deep copies of hop dags) and all inputs
+	 * bound with reuse, but uses its own variables for all other inputs and 
+	 * the outputs. Hence, a single prepared script can serve multiple threads, 
+	 * each of them executing its own clone. 
+	 * 
+	 * @return
+	 */
+	@Override
+	public PreparedScript clone()
+	{
+		return new PreparedScript(this);
 	}
 	
 	/** Binds a scalar boolean to a registered input variable. */
@@ -138,6 +192,11 @@ public class PreparedScript
 			throw new DMLException("Unspecified input variable: "+varname);
 		
 		_vars.put(varname, scalar);
+		if( reuse ) {
+			synchronized( _inVarReuse ) {
+				_inVarReuse.put(varname, scalar);
+			}
+		}
 	}
 
 	/**
@@ -164,6 +223,102 @@ public class PreparedScript
 		setMatrix(varname, DataConverter.convertToMatrixBlock(matrix), reuse);
 	}
 	
+	/**
+	 * Binds a dense matrix, given as row-major array of length rows*cols, to a 
+	 * registered input variable. The array is wrapped without copy and hence, 
+	 * must not be modified until the script execution completed (or as long as 
+	 * the input is reused).
+	 * 
+	 * @param varname
+	 * @param data
+	 * @param rows
+	 * @param cols
+	 * @param reuse
+	 * @throws DMLException
+	 */
+	public void setMatrix(String varname, double[] data, int rows, int cols, boolean reuse)
+		throws DMLException
+	{
+		if( data.length != (long)rows*cols )
+			throw new DMLException("Invalid dense input "+varname+": array length "
+					+ data.length + " does not match dimensions ["+rows+"x"+cols+"].");
+		
+		setMatrix(varname, new MatrixBlock(rows, cols, data), reuse);
+	}
+	
+	/**
+	 * Binds a sparse matrix, given in CSR format (non-decreasing row pointers of 
+	 * length rows+1, as well as column indexes and values of length nnz, with 
+	 * strictly increasing column indexes in [0,cols) per row), to a registered 
+	 * input variable. The CSR arrays are validated and directly copied into the 
+	 * internal sparse representation (w/o explicit zeros), without intermediate 
+	 * dense arrays.
+	 * 
+	 * @param varname
+	 * @param rows
+	 * @param cols
+	 * @param rowPtr
+	 * @param colIdx
+	 * @param vals
+	 * @param reuse
+	 * @throws DMLException
+	 */
+	public void setMatrix(String varname, int rows, int cols, int[] rowPtr, int[] colIdx, double[] vals, boolean reuse)
+		throws DMLException
+	{
+		checkCSRInput(varname, rows, cols, rowPtr, colIdx, vals);
+		
+		setMatrix(varname, new MatrixBlock(rows, cols, rowPtr, colIdx, vals), reuse);
+	}
+	
+	/**
+	 * Checks the array lengths, monotonically increasing row pointers, and 
+	 * the bounds and ordering of column indexes of the given CSR input.
+	 * 
+	 * @param varname
+	 * @param rows
+	 * @param cols
+	 * @param rowPtr
+	 * @param colIdx
+	 * @param vals
+	 * @throws DMLException
+	 */
+	private static void checkCSRInput(String varname, int rows, int cols, int[] rowPtr, int[] colIdx, double[] vals)
+		throws DMLException
+	{
+		String prefix = "Invalid CSR input "+varname+" ["+rows+"x"+cols+"]: ";
+		
+		if( rows < 0 || cols < 0 )
+			throw new DMLException(prefix + "negative dimensions.");
+		if( rowPtr == null || colIdx == null || vals == null )
+			throw new DMLException(prefix + "missing row pointers, column indexes, or values.");
+		if( rowPtr.length != rows+1 )
+			throw new DMLException(prefix + "row pointer array length "
+					+ rowPtr.length + " does not match "+(rows+1)+".");
+		
+		//check row pointers (non-negative and non-decreasing)
+		if( rowPtr[0] < 0 )
+			throw new DMLException(prefix + "negative row pointer "+rowPtr[0]+" of row 0.");
+		for( int i=0; i<rows; i++ )
+			if( rowPtr[i+1] < rowPtr[i] )
+				throw new DMLException(prefix + "decreasing row pointers "
+					+ rowPtr[i]+" > "+rowPtr[i+1]+" of row "+i+".");
+		if( colIdx.length < rowPtr[rows] || vals.length < rowPtr[rows] )
+			throw new DMLException(prefix + "array lengths of column indexes ("+colIdx.length+") "
+					+ "or values ("+vals.length+") smaller than row pointer "+rowPtr[rows]+".");
+		
+		//check column indexes (within bounds and strictly increasing per row)
+		for( int i=0; i<rows; i++ )
+			for( int k=rowPtr[i]; k<rowPtr[i+1]; k++ ) {
+				if( colIdx[k] < 0 || colIdx[k] >= cols )
+					throw new DMLException(prefix + "column index "
+						+ colIdx[k]+" of row "+i+" out of bounds.");
+				if( k > rowPtr[i] && colIdx[k] <= colIdx[k-1] )
+					throw new DMLException(prefix + "column indexes "
+						+ colIdx[k-1]+", "+colIdx[k]+" of row "+i+" not strictly increasing.");
+			}
+	}
+	
 	/**
 	 * Binds a matrix object to a registered input variable. 
 	 * If reuse requested, then the input is guaranteed to be 
@@ -178,6 +333,19 @@ public class PreparedScript
 	{
 		if( !_inVarnames.contains(varname) )
 			throw new DMLException("Unspecified input variable: "+varname);
+		
+		//check dimensions and nnz of inputs for size-specialized scripts (plans might 
+		//rely on these sizes, e.g., for constant-folded nrow/ncol or empty-matrix rewrites)
+		MatrixCharacteristics mcIn = (_inVarMeta != null) ? _inVarMeta.get(varname) : null;
+		if( mcIn != null && ((mcIn.rowsKnown() && mcIn.getRows() != matrix.getNumRows())
+			|| (mcIn.colsKnown() && mcIn.getCols() != matrix.getNumColumns())) ) {
+			throw new DMLException("Input variable "+varname+" ["+matrix.getNumRows()+"x"+matrix.getNumColumns()+"] "
+					+ "does not match the dimensions of the prepared script ["+mcIn.getRows()+"x"+mcIn.getCols()+"].");
+		}
+		if( mcIn != null && mcIn.nnzKnown() && mcIn.getNonZeros() != matrix.getNonZeros() ) {
+			throw new DMLException("Input variable "+varname+" with "+matrix.getNonZeros()+" non-zeros "
+					+ "does not match the non-zeros of the prepared script ("+mcIn.getNonZeros()+").");
+		}
 				
 		DMLConfig conf = ConfigurationManager.getConfig();
 		String scratch_space = conf.getTextValue(DMLConfig.SCRATCH_SPACE);
@@ -194,7 +362,9 @@ public class PreparedScript
 		_vars.put(varname, mo);
 		if( reuse ) {
 			mo.enableCleanup(false); //prevent cleanup
-			_inVarReuse.put(varname, mo);
+			synchronized( _inVarReuse ) {
+				_inVarReuse.put(varname, mo);
+			}
 		}
 	}
 	
@@ -207,6 +377,32 @@ public class PreparedScript
 		_vars.removeAll();
 	}
 	
+	/**
+	 * Creates a micro-batched execution of this prepared script for row-wise 
+	 * scoring, where requests of multiple threads are stacked row-wise into the 
+	 * given input variable, and the rows of the given output variable are split
+	 * back to the individual requests. All other inputs (e.g., models) need to 
+	 * be bound with reuse before. 
+	 * 
+	 * @param inVarname registered input variable of stacked rows
+	 * @param outVarname registered output variable of row-aligned results
+	 * @param maxBatchRows maximum number of rows per batch
+	 * @param maxDelayMillis maximum delay of the first request of a batch
+	 * @param numThreads number of concurrently executed batches
+	 * @return
+	 * @throws DMLException
+	 */
+	public BatchedScript createBatchedScript(String inVarname, String outVarname, int maxBatchRows, long maxDelayMillis, int numThreads) 
+		throws DMLException
+	{
+		if( !_inVarnames.contains(inVarname) )
+			throw new DMLException("Unspecified input variable: "+inVarname);
+		if( !_outVarnames.contains(outVarname) )
+			throw new DMLException("Unspecified output variable: "+outVarname);
+		
+		return new BatchedScript(this, inVarname, outVarname, maxBatchRows, maxDelayMillis, numThreads);
+	}
+	
 	/**
 	 * Executes the prepared script over the bound inputs, creating the
 	 * result variables according to bound and registered outputs. 
@@ -81,6 +81,58 @@ public class ResultVariables
 		return ret;
 	}
 	
+	/**
+	 * Returns the output matrix of the given variable as a matrix block,
+	 * without conversion or copy. The returned block is shared with the
+	 * runtime and hence, must be treated as read-only.
+	 * 
+	 * @param varname
+	 * @return
+	 * @throws DMLException
+	 */
+	public MatrixBlock getMatrixBlock(String varname) 
+		throws DMLException
+	{
+		if( !_out.containsKey(varname) )
+			throw new DMLException("Non-existing output variable: "+varname);
+		
+		Data dat = _out.get(varname);
+		
+		//basic checks for data type	
+		if( !(dat instanceof MatrixObject) )
+			throw new DMLException("Expected matrix result '"+varname+"' not a matrix.");
+		
+		//obtain output matrix block
+		MatrixObject mo = (MatrixObject)dat;
+		MatrixBlock mb = mo.acquireRead();
+		mo.release();
+		
+		return mb;
+	}
+	
+	/**
+	 * Returns the output matrix of the given variable as a row-major array 
+	 * of length rows*cols. For dense outputs, this is the backing array of 
+	 * the output block (without copy), which must be treated as read-only; 
+	 * sparse outputs are converted into a new array.
+	 * 
+	 * @param varname
+	 * @return
+	 * @throws DMLException
+	 */
+	public double[] getMatrixDense(String varname) 
+		throws DMLException
+	{
+		MatrixBlock mb = getMatrixBlock(varname);
+		long len = (long)mb.getNumRows() * mb.getNumColumns();
+		
+		//return backing array if dense w/ exact size, otherwise convert
+		double[] data = mb.getDenseBlock();
+		if( !mb.isInSparseFormat() && data != null && data.length == len )
+			return data;
+		return DataConverter.convertToDoubleVector(mb);
+	}
+	
 	/**
 	 * 
 	 * 
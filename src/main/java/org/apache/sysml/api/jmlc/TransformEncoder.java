@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.api.jmlc;
+
+import org.apache.sysml.api.DMLException;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.transform.TfUtils;
+
+/**
+ * JMLC (Java Machine Learning Connector) API:
+ *
+ * In-memory transform encoder, which applies existing transformation metadata
+ * (e.g., created by a previous transform over the training data) to batches of
+ * raw string records, and returns the transformed records as a matrix block.
+ * The specification and metadata are read once on creation, and encoders are
+ * thread-safe, i.e., a single encoder can be shared across concurrent requests.
+ *
+ * NOTE: Similar to transform, records with missing values in omitted columns
+ * are dropped, i.e., the output might have fewer rows than the input.
+ */
+public class TransformEncoder
+{
+	//agents with loaded transformation metadata (read-only)
+	private TfUtils _agents = null;
+	private int _numCols = -1;
+	private int _numColsTf = -1;
+
+	/**
+	 * Meant to be invoked only from Connection
+	 */
+	protected TransformEncoder( TfUtils agents )
+	{
+		_agents = agents;
+		_numCols = (int) agents.getNumCols();
+		_numColsTf = agents.getNumFusedApplyColumns();
+	}
+
+	/**
+	 * Returns the number of columns of raw input records.
+	 *
+	 * @return
+	 */
+	public int getNumInputColumns() {
+		return _numCols;
+	}
+
+	/**
+	 * Returns the number of columns of transformed records.
+	 *
+	 * @return
+	 */
+	public int getNumOutputColumns() {
+		return _numColsTf;
+	}
+
+	/**
+	 * Transforms the given records, where each record is given as a delimited line,
+	 * according to the delimiter of the transformation metadata.
+	 *
+	 * @param lines
+	 * @return
+	 * @throws DMLException
+	 */
+	public MatrixBlock encode( String[] lines )
+		throws DMLException
+	{
+		String[][] records = new String[lines.length][];
+		for( int i=0; i<lines.length; i++ )
+			records[i] = _agents.getWords(lines[i]);
+
+		return encode(records);
+	}
+
+	/**
+	 * Transforms the given records, where each record is given as an array
+	 * of raw values (one per input column). The input is not modified.
+	 *
+	 * @param records
+	 * @return
+	 * @throws DMLException
+	 */
+	public MatrixBlock encode( String[][] records )
+		throws DMLException
+	{
+		//check input records and determine number of valid rows
+		int nrow = 0;
+		boolean[] omit = new boolean[records.length];
+		for( int i=0; i<records.length; i++ ) {
+			if( records[i].length != _numCols )
+				throw new DMLException("Invalid number of values in record "+i+": "
+						+ records[i].length + " (expected " + _numCols + ").");
+			omit[i] = _agents.omit(records[i]);
+			nrow += omit[i] ? 0 : 1;
+		}
+
+		//allocate output block (sparse if many dummycoded columns)
+		MatrixBlock ret = new MatrixBlock(nrow, _numColsTf, (long)nrow * _numCols);
+		if( nrow == 0 )
+			return ret;
+		if( ret.isInSparseFormat() )
+			ret.allocateSparseRowsBlock();
+		else
+			ret.allocateDenseBlock();
+
+		//fused apply of all valid records
+		try
+		{
+			for( int i=0, r=0; i<records.length; i++ )
+				if( !omit[i] )
+					_agents.apply(records[i], ret, r++, true, 0);
+		}
+		catch(Exception ex) {
+			throw new DMLException(ex);
+		}
+
+		ret.recomputeNonZeros();
+		ret.examSparsity();
+
+		return ret;
+	}
+}
@@ -68,6 +68,8 @@ public class DMLConfig
 	public static final String YARN_APPQUEUE    	= "dml.yarn.app.queue"; 
 	public static final String CP_PARALLEL_MATRIXMULT = "cp.parallel.matrixmult";
 	public static final String CP_PARALLEL_TEXTIO   = "cp.parallel.textio";
+	public static final String CODEGEN              = "codegen.enabled";
+	public static final String COST_PROFILE         = "costmodel.profile";
 
 	//internal config
 	public static final String DEFAULT_SHARED_DIR_PERMISSION = "777"; //for local fs and DFS
@@ -94,6 +96,8 @@ public class DMLConfig
 		_defaultVals.put(YARN_APPQUEUE,    	   "default" );
 		_defaultVals.put(CP_PARALLEL_MATRIXMULT, "true" );
 		_defaultVals.put(CP_PARALLEL_TEXTIO,     "true" );
+		_defaultVals.put(CODEGEN,                "false" );
+		_defaultVals.put(COST_PROFILE,           "" );
 	}
 	
 	public DMLConfig()
@@ -428,7 +432,7 @@ public class DMLConfig
 				LOCAL_TMP_DIR,SCRATCH_SPACE,OPTIMIZATION_LEVEL,
 				NUM_REDUCERS, DEFAULT_BLOCK_SIZE,
 				YARN_APPMASTER, YARN_APPMASTERMEM, YARN_MAPREDUCEMEM, 
-				CP_PARALLEL_MATRIXMULT, CP_PARALLEL_TEXTIO
+				CP_PARALLEL_MATRIXMULT, CP_PARALLEL_TEXTIO, CODEGEN, COST_PROFILE
 		}; 
 		
 		StringBuilder sb = new StringBuilder();
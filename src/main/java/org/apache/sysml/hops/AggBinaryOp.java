@@ -21,6 +21,7 @@ package org.apache.sysml.hops;
 
 import org.apache.sysml.api.DMLScript;
 import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.hops.cost.CostModelProfile;
 import org.apache.sysml.hops.rewrite.HopRewriteUtils;
 import org.apache.sysml.lops.Aggregate;
 import org.apache.sysml.lops.Binary;
@@ -49,6 +50,7 @@ import org.apache.sysml.parser.Expression.ValueType;
 import org.apache.sysml.runtime.controlprogram.ParForProgramBlock.PDataPartitionFormat;
 import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
 import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
+import org.apache.sysml.runtime.matrix.MatrixSketch;
 import org.apache.sysml.runtime.matrix.data.MatrixBlock;
 import org.apache.sysml.runtime.matrix.mapred.DistributedCacheInput;
 import org.apache.sysml.runtime.matrix.mapred.MMCJMRReducerWithAggregator;
@@ -343,6 +345,7 @@ public class AggBinaryOp extends Hop implements MultiThreadedHop
 		}
 		*/
 		//currently always estimated as dense in order to account for dense intermediate without unnecessary overestimation 
+		//(sketch-based sparsity estimates are only used for costing, e.g., of matrix multiplication chains)
 		double ret = OptimizerUtils.estimateSizeExactSparsity(dim1, dim2, sparsity);
 		
 		return ret;
@@ -1809,8 +1812,9 @@ public class AggBinaryOp extends Hop implements MultiThreadedHop
 		double footprint1 = getMapmmMemEstimate(m1_rows, m1_cols, m1_rpb, m1_cpb, m1_nnz, m2_rows, m2_cols, m2_rpb, m2_cpb, m2_nnz, 1, false);
 		double footprint2 = getMapmmMemEstimate(m1_rows, m1_cols, m1_rpb, m1_cpb, m1_nnz, m2_rows, m2_cols, m2_rpb, m2_cpb, m2_nnz, 2, false);		
 		
-		if (   (footprint1 < memBudgetExec && m1Size+m1SizeP < memBudgetLocal && m1_rows>=0 && m1_cols>=0)
-			|| (footprint2 < memBudgetExec && m2Size+m2SizeP < memBudgetLocal && m2_rows>=0 && m2_cols>=0) ) 
+		if (  ((footprint1 < memBudgetExec && m1Size+m1SizeP < memBudgetLocal && m1_rows>=0 && m1_cols>=0)
+			|| (footprint2 < memBudgetExec && m2Size+m2SizeP < memBudgetLocal && m2_rows>=0 && m2_cols>=0))
+			&& isBroadcastPreferredByCosts(Math.min(m1SizeP, m2SizeP), m1Size, m2Size) ) 
 		{
 			//apply map mult if one side fits in remote task memory 
 			//(if so pick smaller input for distributed cache)
@@ -1851,6 +1855,28 @@ public class AggBinaryOp extends Hop implements MultiThreadedHop
 			return MMultMethod.RMM;
 	}
 
+	/**
+	 * Compares the transfer time of broadcasting the smaller input to the
+	 * transfer time of shuffling both inputs w/ the default parallelism. 
+	 * Without calibrated profile, the broadcast decision remains memory-based.
+	 * 
+	 * @param bcSize
+	 * @param m1Size
+	 * @param m2Size
+	 * @return
+	 */
+	private static boolean isBroadcastPreferredByCosts( double bcSize, double m1Size, double m2Size )
+	{
+		CostModelProfile profile = CostModelProfile.getProfile();
+		if( !profile.isCalibrated() )
+			return true;
+		
+		int par = SparkExecutionContext.getDefaultParallelism();
+		double timeBroadcast = profile.getSparkTransferTime(bcSize, 1);
+		double timeShuffle = profile.getSparkTransferTime(m1Size + m2Size, par);
+		return (timeBroadcast <= timeShuffle);
+	}
+	
 	/**
 	 * 
 	 * @param m1_rows
@@ -1944,6 +1970,14 @@ public class AggBinaryOp extends Hop implements MultiThreadedHop
 		{
 			setDim1(input1.getDim1());
 			setDim2(input2.getDim2());
+			
+			//propagate structural sketches if available for both inputs (for costing only,
+			//memory estimates and worst-case nnz remain independent of the sketches)
+			MatrixSketch s1 = input1.getSketch();
+			MatrixSketch s2 = input2.getSketch();
+			_sketch = ( s1 != null && s2 != null 
+				&& s1.getRows() == input1.getDim1() && s2.getCols() == input2.getDim2() ) ?
+				MatrixSketch.createMatMultSketch(s1, s2) : null;
 		}
 	}
 	
@@ -44,6 +44,7 @@ import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
 import org.apache.sysml.runtime.controlprogram.parfor.ProgramConverter;
 import org.apache.sysml.runtime.controlprogram.parfor.util.IDSequence;
 import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
+import org.apache.sysml.runtime.matrix.MatrixSketch;
 import org.apache.sysml.runtime.matrix.data.MatrixBlock;
 import org.apache.sysml.runtime.util.UtilFunctions;
 
@@ -84,6 +85,7 @@ public abstract class Hop
 	protected long _rows_in_block = -1;
 	protected long _cols_in_block = -1;
 	protected long _nnz = -1;
+	protected MatrixSketch _sketch = null; //optional structural sketch
 
 	protected ArrayList<Hop> _parent = new ArrayList<Hop>();
 	protected ArrayList<Hop> _input = new ArrayList<Hop>();
@@ -112,6 +114,10 @@ public abstract class Hop
 	// (the default storage level for caching is not yet exposed here)
 	protected boolean _requiresCheckpoint = false;
 	
+	// indicates if the checkpointed output needs to be partitioned by the block 
+	// partitioner (e.g., for read-only variables w/ join consumers in loops)
+	protected boolean _requiresPartitionedCheckpoint = false;
+	
 	// indicates if the output of this hops needs to contain materialized empty blocks 
 	// if those exists; otherwise only blocks w/ non-zero values are materialized
 	protected boolean _outputEmptyBlocks = true;
@@ -274,6 +280,16 @@ public abstract class Hop
 		return _requiresCheckpoint;
 	}
 	
+	public void setRequiresPartitionedCheckpoint(boolean flag)
+	{
+		_requiresPartitionedCheckpoint = flag;
+	}
+	
+	public boolean requiresPartitionedCheckpoint()
+	{
+		return _requiresPartitionedCheckpoint;
+	}
+	
 	
 	/**
 	 * 
@@ -387,7 +403,8 @@ public abstract class Hop
 				Lop input = getLops();			
 				Lop chkpoint = new Checkpoint(input, getDataType(), getValueType(), 
 						serializedStorage ? Checkpoint.getSerializeStorageLevelString() :
-								            Checkpoint.getDefaultStorageLevelString() );
+								            Checkpoint.getDefaultStorageLevelString(),
+						_requiresPartitionedCheckpoint );
 				
 				setOutputDimensions( chkpoint );
 				setLineNumbers( chkpoint );
@@ -840,6 +857,14 @@ public abstract class Hop
 	public long getNnz(){
 		return _nnz;
 	}
+	
+	public void setSketch(MatrixSketch sketch){
+		_sketch = sketch;
+	}
+	
+	public MatrixSketch getSketch(){
+		return _sketch;
+	}
 
 	public abstract Lop constructLops() 
 		throws HopsException, LopsException;
@@ -1820,6 +1845,7 @@ public abstract class Hop
 		_rows_in_block = that._rows_in_block;
 		_cols_in_block = that._cols_in_block;
 		_nnz = that._nnz;
+		_sketch = that._sketch;
 
 		//no copy of lops (regenerated)
 		_parent = new ArrayList<Hop>();
@@ -1834,6 +1860,7 @@ public abstract class Hop
 		_requiresRecompile = that._requiresRecompile;
 		_requiresReblock = that._requiresReblock;
 		_requiresCheckpoint = that._requiresCheckpoint;
+		_requiresPartitionedCheckpoint = that._requiresPartitionedCheckpoint;
 		_outputEmptyBlocks = that._outputEmptyBlocks;
 		
 		_beginLine = that._beginLine;
@@ -40,6 +40,7 @@ import org.apache.sysml.runtime.controlprogram.parfor.stat.InfrastructureAnalyze
 import org.apache.sysml.runtime.instructions.cp.Data;
 import org.apache.sysml.runtime.instructions.cp.ScalarObject;
 import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
+import org.apache.sysml.runtime.matrix.MatrixSketch;
 import org.apache.sysml.runtime.matrix.data.MatrixBlock;
 import org.apache.sysml.runtime.matrix.data.OutputInfo;
 import org.apache.sysml.runtime.matrix.data.SparseRow;
@@ -84,6 +85,24 @@ public class OptimizerUtils
 	public static boolean ALLOW_DYN_RECOMPILATION = true;
 	public static boolean ALLOW_PARALLEL_DYN_RECOMPILATION = ALLOW_DYN_RECOMPILATION && true;
 	
+	/**
+	 * Enables the reuse of recompiled instructions per statement block if all 
+	 * dag inputs have the same characteristics (sizes, sparsity class, scalar 
+	 * values) as in a previous recompilation (see RecompilePlanCache).
+	 */
+	public static boolean ALLOW_RECOMPILE_PLAN_CACHE = ALLOW_DYN_RECOMPILATION && true;
+	
+	/**
+	 * Enables/disables the small-data fast path, which skips dynamic re-compilation
+	 * in single-node execution if all matrix operators of a hop dag are smaller than the
+	 * given threshold, where unknown sizes are bounded by the actual input dimensions.
+	 * Since all operations are CP operations anyway, recompilation
+	 * would not change the plan in any meaningful way, but would dominate the latency 
+	 * of tiny inputs (e.g., JMLC scoring of a few rows).
+	 */
+	public static boolean ALLOW_SMALL_DATA_FAST_PATH = true;
+	public static long SMALL_DATA_THRESHOLD = 1024*1024; //1MB (per input and operator)
+	
 	/**
 	 * Enables/disables to put operations with data-dependent output
 	 * size into individual statement blocks / program blocks.
@@ -125,6 +144,37 @@ public class OptimizerUtils
 	 */
 	public static boolean ALLOW_AUTO_VECTORIZATION = true;
 	
+	/**
+	 * Enables the partial unrolling of for loops with small bodies, which are
+	 * not vectorizable (see RewriteForLoopVectorization). Disabled by default
+	 * because the additional statement blocks change the compiled plans (e.g., 
+	 * the number of compiled MR jobs).
+	 */
+	public static boolean ALLOW_LOOP_UNROLLING = false;
+	
+	/**
+	 * Enables the hoisting of loop-invariant operations out of for/while/parfor 
+	 * loops into a preceding statement block (see RewriteHoistLoopInvariantOperations).
+	 * Disabled by default because the additional statement blocks before and after 
+	 * the loop change the compiled plans (e.g., the number of compiled MR jobs).
+	 */
+	public static boolean ALLOW_LOOP_INVARIANT_CODE_MOTION = false;
+	
+	/**
+	 * Enables update in-place of left indexing operations on matrix variables 
+	 * of for/while loops, if the compiler can prove that these variables are
+	 * not aliased (see RewriteMarkLoopVariablesUpdateInPlace).
+	 */
+	public static boolean ALLOW_LOOP_UPDATE_IN_PLACE = true;
+	
+	/**
+	 * Enables lineage tracing of CP instruction outputs and the reuse of cached
+	 * results of expensive instructions with identical lineage, within and across 
+	 * script executions of the same JVM (see LineageCache). Disabled by default 
+	 * because cached intermediates are kept alive beyond their variables.
+	 */
+	public static boolean ALLOW_LINEAGE_REUSE = false;
+	
 	/**
 	 * Enables simple expression evaluation for datagen parameters 'rows', 'cols'. Simple
 	 * expressions are defined as binary operations on literals and nrow/ncol. This applies
@@ -174,6 +224,23 @@ public class OptimizerUtils
 	 */
 	public static boolean ALLOW_SPLIT_HOP_DAGS = true;
 	
+	/**
+	 * Enables operator fusion of cell-wise operation chains (with optional sum
+	 * or row sums aggregation) via runtime code generation (requires a java 
+	 * compiler in the driver JVM).
+	 */
+	public static boolean ALLOW_OPERATOR_FUSION = false;
+	
+	/**
+	 * Enables sparsity estimates of matrix products based on structural sketches
+	 * (nnz per row/column) of in-memory sparse inputs, which are obtained during 
+	 * dynamic recompilation and propagated along matrix multiplication chains.
+	 * These estimates are only used for costing (e.g., of matrix multiplication
+	 * chains), while memory estimates remain based on worst-case nnz because a
+	 * sketch estimate might underestimate the output size.
+	 */
+	public static boolean ALLOW_SPARSITY_SKETCHES = ALLOW_DYN_RECOMPILATION && true;
+	
 	
 	/**
 	 * Enables parallel read/write of all text formats (textcell, csv, mm)
@@ -202,6 +269,13 @@ public class OptimizerUtils
 	 */
 	public static boolean PARALLEL_CP_MATRIX_MULTIPLY = true;
 	
+	/**
+	 * Enables multi-threaded transform (build and apply) in CP over splits 
+	 * of the csv input, with binary block output.
+	 * 
+	 */
+	public static boolean PARALLEL_CP_TRANSFORM = true;
+	
 	/**
 	 * Enables the use of CombineSequenceFileInputFormat with splitsize = 2x hdfs blocksize, 
 	 * if sort buffer size large enough and parallelism not hurt. This solves to issues: 
@@ -302,6 +376,8 @@ public class OptimizerUtils
 				ALLOW_COMMON_SUBEXPRESSION_ELIMINATION = false;
 				ALLOW_ALGEBRAIC_SIMPLIFICATION = false;
 				ALLOW_AUTO_VECTORIZATION = false;
+				ALLOW_LOOP_UNROLLING = false;
+				ALLOW_LOOP_INVARIANT_CODE_MOTION = false;
 				ALLOW_INTER_PROCEDURAL_ANALYSIS = false;
 				ALLOW_BRANCH_REMOVAL = false;
 				ALLOW_SUM_PRODUCT_REWRITES = false;
@@ -313,6 +389,8 @@ public class OptimizerUtils
 				ALLOW_COMMON_SUBEXPRESSION_ELIMINATION = false;
 				ALLOW_ALGEBRAIC_SIMPLIFICATION = false;
 				ALLOW_AUTO_VECTORIZATION = false;
+				ALLOW_LOOP_UNROLLING = false;
+				ALLOW_LOOP_INVARIANT_CODE_MOTION = false;
 				ALLOW_INTER_PROCEDURAL_ANALYSIS = false;
 				ALLOW_BRANCH_REMOVAL = false;
 				ALLOW_SUM_PRODUCT_REWRITES = false;
@@ -336,6 +414,7 @@ public class OptimizerUtils
 				ALLOW_CONSTANT_FOLDING = false;
 				ALLOW_COMMON_SUBEXPRESSION_ELIMINATION = false;
 				ALLOW_ALGEBRAIC_SIMPLIFICATION = false;
+				ALLOW_LOOP_INVARIANT_CODE_MOTION = false;
 				ALLOW_INTER_PROCEDURAL_ANALYSIS = false;
 				ALLOW_BRANCH_REMOVAL = false;
 				ALLOW_DYN_RECOMPILATION = false;
@@ -354,6 +433,7 @@ public class OptimizerUtils
 			PARALLEL_CP_WRITE_TEXTFORMATS = false;
 			PARALLEL_CP_READ_BINARYFORMATS = false;
 			PARALLEL_CP_WRITE_BINARYFORMATS = false;
+			PARALLEL_CP_TRANSFORM = false;
 		}
 		else if(   InfrastructureAnalyzer.isJavaVersionLessThanJDK8() 
 			    && InfrastructureAnalyzer.getLocalParallelism() > 1   )
@@ -363,12 +443,16 @@ public class OptimizerUtils
 			
 			//disable parallel text read
 			PARALLEL_CP_READ_TEXTFORMATS = false;
+			PARALLEL_CP_TRANSFORM = false;
 		}
 
 		//handle parallel matrix mult / rand configuration
 		if (!ConfigurationManager.getConfig().getBooleanValue(DMLConfig.CP_PARALLEL_MATRIXMULT)) {
 			PARALLEL_CP_MATRIX_MULTIPLY = false;
 		}	
+		
+		//handle operator fusion configuration
+		ALLOW_OPERATOR_FUSION = ConfigurationManager.getConfig().getBooleanValue(DMLConfig.CODEGEN);
 	}
 	
 	/**
@@ -627,6 +711,23 @@ public class OptimizerUtils
 		return (int) Math.round(dop);
 	}
 	
+	/**
+	 * Returns the degree of parallelism used for multi-threaded transform
+	 * in CP. If PARALLEL_CP_TRANSFORM is disabled, this method returns 1.
+	 * 
+	 * @return
+	 */
+	public static int getParallelTransformParallelism()
+	{
+		if( !PARALLEL_CP_TRANSFORM )
+			return 1; // sequential execution
+		
+		//compute degree of parallelism for parallel transform
+		double dop = InfrastructureAnalyzer.getLocalParallelism()
+				     * PARALLEL_CP_READ_PARALLELISM_MULTIPLIER;
+		return (int) Math.round(dop);
+	}
+	
 	////////////////////////
 	// Memory Estimates   //
 	////////////////////////
@@ -942,6 +1043,21 @@ public class OptimizerUtils
 			return (1 - Math.pow(1-sp1*sp2, k) );
 	}
 	
+	/**
+	 * Estimates the result sparsity for Matrix Multiplication A %*% B based on 
+	 * the structural sketches of A and B, which accounts for skew in the non-zero
+	 * distribution (see MatrixSketch).
+	 * 
+	 * @param s1 -- sketch of A
+	 * @param s2 -- sketch of B
+	 * @return
+	 */
+	public static double getMatMultSparsity(MatrixSketch s1, MatrixSketch s2) 
+	{
+		long nnz = MatrixSketch.estimateMatMultNnz(s1, s2);
+		return getSparsity(s1.getRows(), s2.getCols(), nnz);
+	}
+	
 	/**
 	 * 
 	 * @param rlen1
@@ -32,6 +32,7 @@ import org.apache.sysml.lops.LopProperties.ExecType;
 import org.apache.sysml.parser.Expression.DataType;
 import org.apache.sysml.parser.Expression.ValueType;
 import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
+import org.apache.sysml.runtime.matrix.MatrixSketch;
 
 /**
  *  Reorg (cell) operation: aij
@@ -506,6 +507,7 @@ public class ReorgOp extends Hop
 				setDim1(input1.getDim2());
 				setDim2(input1.getDim1());
 				setNnz(input1.getNnz());
+				setSketch(MatrixSketch.createTransposeSketch(input1.getSketch()));
 				break;
 			}
 			case REV:
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.hops.codegen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.sysml.hops.AggUnaryOp;
+import org.apache.sysml.hops.BinaryOp;
+import org.apache.sysml.hops.Hop;
+import org.apache.sysml.hops.HopsException;
+import org.apache.sysml.hops.LiteralOp;
+import org.apache.sysml.hops.UnaryOp;
+import org.apache.sysml.hops.Hop.OpOp1;
+import org.apache.sysml.hops.Hop.OpOp2;
+import org.apache.sysml.hops.rewrite.HopRewriteUtils;
+import org.apache.sysml.runtime.DMLRuntimeException;
+import org.apache.sysml.runtime.codegen.CodegenUtils;
+import org.apache.sysml.runtime.codegen.SpoofCellwise.CellType;
+import org.apache.sysml.runtime.controlprogram.parfor.util.IDSequence;
+
+/**
+ * Source code generator for fused cell-wise operators. Given a region of
+ * element-wise operations (and the main, side, and scalar inputs of this region),
+ * it generates a subclass of SpoofCellwise, whose scalar function evaluates
+ * the entire operation chain per cell without materialized intermediates.
+ * Classes are compiled in-memory and reused for identical generated sources
+ * (bounded LRU cache, incl. failed compilations).
+ *
+ */
+public class SpoofCompiler
+{
+	private static final Log LOG = LogFactory.getLog(SpoofCompiler.class.getName());
+
+	public static final String PACKAGE = "codegen";
+	private static final String CLASS_PLACEHOLDER = "%CLASS%";
+
+	//max number of cached generated sources
+	public static final int MAX_SOURCE_CACHE_SIZE = 1024;
+	
+	//class name sequence and cache of generated sources to compiled classes
+	//(null values indicate failed compilations, which are not retried)
+	private static final IDSequence _classID = new IDSequence();
+	private static final LinkedHashMap<String, Class<?>> _srcCache = 
+		new LinkedHashMap<String, Class<?>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 4489725736281504326L;
+			@Override
+			protected boolean removeEldestEntry(Entry<String, Class<?>> eldest) {
+				return size() > MAX_SOURCE_CACHE_SIZE;
+			}
+		};
+
+	/**
+	 * Indicates if the given binary operation is supported by the
+	 * cell-wise code generator.
+	 *
+	 * @param op
+	 * @return
+	 */
+	public static boolean isSupported( OpOp2 op ) {
+		switch( op ) {
+			case PLUS: case MINUS: case MULT: case DIV: case POW:
+			case MIN: case MAX: case LESS: case LESSEQUAL: case GREATER:
+			case GREATEREQUAL: case EQUAL: case NOTEQUAL:
+			case MINUS1_MULT: case MINUS_NZ: case LOG: case LOG_NZ:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Indicates if the given unary operation is supported by the
+	 * cell-wise code generator.
+	 *
+	 * @param op
+	 * @return
+	 */
+	public static boolean isSupported( OpOp1 op ) {
+		switch( op ) {
+			case ABS: case SIN: case COS: case TAN: case ASIN: case ACOS: case ATAN:
+			case SIGN: case SQRT: case LOG: case EXP: case ROUND: case CEIL: case FLOOR:
+			case SPROP: case SIGMOID: case SELP: case LOG_NZ:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Generates and compiles a fused cell-wise operator for the region rooted
+	 * at the given hop, where the region is bounded by the given main, side,
+	 * and scalar inputs as well as literals. For row and full aggregation, the
+	 * root is expected to be the sum aggregate. If the compilation fails (e.g., 
+	 * due to an incomplete classpath), we return null and the caller keeps the 
+	 * unfused operators.
+	 *
+	 * @param root
+	 * @param main
+	 * @param sides
+	 * @param scalars
+	 * @param type
+	 * @param sparseSafe
+	 * @return compiled class, or null if compilation failed
+	 * @throws HopsException
+	 */
+	public static Class<?> generateCellwise( Hop root, Hop main, ArrayList<Hop> sides, ArrayList<Hop> scalars, CellType type, boolean sparseSafe )
+		throws HopsException
+	{
+		//generate body of genexec (w/o aggregate root)
+		Hop cellRoot = (type != CellType.NO_AGG) ? root.getInput().get(0) : root;
+		StringBuilder body = new StringBuilder();
+		HashMap<Long, String> memo = new HashMap<Long, String>();
+		String out = rGenerate(cellRoot, main, sides, scalars, body, memo);
+
+		//generate class with placeholder name
+		StringBuilder sb = new StringBuilder();
+		sb.append("package "+PACKAGE+";\n\n");
+		sb.append("import org.apache.commons.math3.util.FastMath;\n");
+		sb.append("import org.apache.sysml.runtime.codegen.SpoofCellwise;\n\n");
+		sb.append("public final class "+CLASS_PLACEHOLDER+" extends SpoofCellwise {\n");
+		sb.append("  private static final long serialVersionUID = 1L;\n");
+		sb.append("  public "+CLASS_PLACEHOLDER+"() {\n");
+		sb.append("    super(CellType."+type.name()+", "+sparseSafe+");\n");
+		sb.append("  }\n");
+		sb.append("  protected double genexec(double a, SideInput[] b, double[] scalars, int rix, int cix) {\n");
+		sb.append(body);
+		sb.append("    return "+out+";\n");
+		sb.append("  }\n");
+		sb.append("}\n");
+		String src = sb.toString();
+
+		//probe cache of generated sources, otherwise compile
+		synchronized( _srcCache ) {
+			if( _srcCache.containsKey(src) )
+				return _srcCache.get(src);
+			
+			String cname = "TMP"+_classID.getNextID();
+			String csrc = src.replace(CLASS_PLACEHOLDER, cname);
+			if( LOG.isDebugEnabled() )
+				LOG.debug("Generated fused operator "+cname+":\n"+csrc);
+
+			Class<?> ret = null;
+			try {
+				ret = CodegenUtils.compileClass(PACKAGE+"."+cname, csrc);
+			}
+			catch(DMLRuntimeException ex) {
+				LOG.warn("Failed to compile fused operator "+cname+", fallback to unfused operators.", ex);
+			}
+			_srcCache.put(src, ret);
+			return ret;
+		}
+	}
+
+	/**
+	 * Clears the cache of generated sources.
+	 */
+	public static void clearSourceCache() {
+		synchronized( _srcCache ) {
+			_srcCache.clear();
+		}
+	}
+
+	/**
+	 *
+	 * @param hop
+	 * @param main
+	 * @param sides
+	 * @param scalars
+	 * @param sb
+	 * @param memo
+	 * @return
+	 * @throws HopsException
+	 */
+	private static String rGenerate( Hop hop, Hop main, ArrayList<Hop> sides, ArrayList<Hop> scalars, StringBuilder sb, HashMap<Long, String> memo )
+		throws HopsException
+	{
+		//leaf nodes (inputs and literals)
+		if( hop == main )
+			return "a";
+		if( sides.contains(hop) )
+			return "getValue(b["+sides.indexOf(hop)+"], rix, cix)";
+		if( scalars.contains(hop) )
+			return "scalars["+scalars.indexOf(hop)+"]";
+		if( hop instanceof LiteralOp )
+			return getLiteral((LiteralOp)hop);
+
+		//reuse of already generated intermediates
+		if( memo.containsKey(hop.getHopID()) )
+			return memo.get(hop.getHopID());
+
+		String expr = null;
+		if( hop instanceof UnaryOp ) {
+			String in = rGenerate(hop.getInput().get(0), main, sides, scalars, sb, memo);
+			expr = getUnaryExpression(((UnaryOp)hop).getOp(), in);
+		}
+		else if( hop instanceof BinaryOp ) {
+			String in1 = rGenerate(hop.getInput().get(0), main, sides, scalars, sb, memo);
+			String in2 = rGenerate(hop.getInput().get(1), main, sides, scalars, sb, memo);
+			expr = getBinaryExpression(((BinaryOp)hop).getOp(), in1, in2);
+		}
+		else if( hop instanceof AggUnaryOp ) {
+			throw new HopsException("Invalid nested aggregate in fused cell-wise operator: "+hop.getHopID());
+		}
+
+		if( expr == null )
+			throw new HopsException("Unsupported operation in fused cell-wise operator: "+hop.getOpString());
+
+		String var = "TMP"+memo.size();
+		sb.append("    double "+var+" = "+expr+";\n");
+		memo.put(hop.getHopID(), var);
+		return var;
+	}
+
+	private static String getLiteral( LiteralOp lit ) {
+		double val = HopRewriteUtils.getDoubleValueSafe(lit);
+		if( Double.isNaN(val) )
+			return "Double.NaN";
+		else if( Double.isInfinite(val) )
+			return (val > 0) ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+		else
+			return "("+Double.toString(val)+")";
+	}
+
+	private static String getUnaryExpression( OpOp1 op, String in ) {
+		switch( op ) {
+			case ABS:     return "Math.abs("+in+")";
+			case SIN:     return "FastMath.sin("+in+")";
+			case COS:     return "FastMath.cos("+in+")";
+			case TAN:     return "FastMath.tan("+in+")";
+			case ASIN:    return "FastMath.asin("+in+")";
+			case ACOS:    return "FastMath.acos("+in+")";
+			case ATAN:    return "Math.atan("+in+")";
+			case SIGN:    return "FastMath.signum("+in+")";
+			case SQRT:    return "Math.sqrt("+in+")";
+			case LOG:     return "FastMath.log("+in+")";
+			case EXP:     return "FastMath.exp("+in+")";
+			case ROUND:   return "(double)Math.round("+in+")";
+			case CEIL:    return "FastMath.ceil("+in+")";
+			case FLOOR:   return "FastMath.floor("+in+")";
+			case SPROP:   return in+" * (1 - "+in+")";
+			case SIGMOID: return "1 / (1 + FastMath.exp(-"+in+"))";
+			case SELP:    return "("+in+" > 0) ? "+in+" : 0";
+			case LOG_NZ:  return "("+in+" == 0) ? 0 : FastMath.log("+in+")";
+			default:      return null;
+		}
+	}
+
+	private static String getBinaryExpression( OpOp2 op, String in1, String in2 ) {
+		switch( op ) {
+			case PLUS:         return in1+" + "+in2;
+			case MINUS:        return in1+" - "+in2;
+			case MULT:         return in1+" * "+in2;
+			case DIV:          return in1+" / "+in2;
+			case POW:          return "Math.pow("+in1+", "+in2+")";
+			case MIN:          return "("+in1+" <= "+in2+") ? "+in1+" : "+in2;
+			case MAX:          return "("+in1+" >= "+in2+") ? "+in1+" : "+in2;
+			case LESS:         return "("+in1+" < "+in2+") ? 1 : 0";
+			case LESSEQUAL:    return "("+in1+" <= "+in2+") ? 1 : 0";
+			case GREATER:      return "("+in1+" > "+in2+") ? 1 : 0";
+			case GREATEREQUAL: return "("+in1+" >= "+in2+") ? 1 : 0";
+			case EQUAL:        return "("+in1+" == "+in2+") ? 1 : 0";
+			case NOTEQUAL:     return "("+in1+" != "+in2+") ? 1 : 0";
+			case MINUS1_MULT:  return "1 - "+in1+" * "+in2;
+			case MINUS_NZ:     return "("+in1+" != 0) ? "+in1+" - "+in2+" : 0";
+			case LOG:          return "FastMath.log("+in1+") / FastMath.log("+in2+")";
+			case LOG_NZ:       return "("+in1+" == 0) ? 0 : FastMath.log("+in1+") / FastMath.log("+in2+")";
+			default:           return null;
+		}
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.hops.codegen;
+
+import java.util.ArrayList;
+
+import org.apache.sysml.hops.Hop;
+import org.apache.sysml.hops.HopsException;
+import org.apache.sysml.hops.MemoTable;
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.hops.Hop.MultiThreadedHop;
+import org.apache.sysml.lops.Lop;
+import org.apache.sysml.lops.LopsException;
+import org.apache.sysml.lops.SpoofFused;
+import org.apache.sysml.lops.LopProperties.ExecType;
+import org.apache.sysml.parser.Expression.DataType;
+import org.apache.sysml.parser.Expression.ValueType;
+import org.apache.sysml.runtime.codegen.CodegenUtils;
+import org.apache.sysml.runtime.codegen.SpoofCellwise.CellType;
+import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
+
+/**
+ * Fused operator of a chain of element-wise operations (and an optional sum
+ * or row sums aggregation), which is executed by a generated operator class
+ * (see SpoofCompiler). The first input is the main input, which determines
+ * the output size, followed by side inputs (matrices of equal size or vectors),
+ * and scalar inputs.
+ */
+public class SpoofFusedOp extends Hop implements MultiThreadedHop
+{
+	private Class<?> _class = null;
+	private byte[] _classBytes = null;
+	private CellType _type = null;
+	private boolean _sparseSafe = false;
+	private int _numThreads = -1;
+
+	private SpoofFusedOp() {
+		//default constructor for clone
+	}
+
+	public SpoofFusedOp( String name, DataType dt, ValueType vt, Class<?> cla, CellType type, boolean sparseSafe, ArrayList<Hop> inputs )
+	{
+		super(name, dt, vt);
+		_class = cla;
+		_classBytes = CodegenUtils.getClassBytes(cla.getName());
+		_type = type;
+		_sparseSafe = sparseSafe;
+
+		for( Hop in : inputs ) {
+			getInput().add(in);
+			in.getParent().add(this);
+		}
+	}
+
+	public Class<?> getGeneratedClass() {
+		return _class;
+	}
+
+	public CellType getCellType() {
+		return _type;
+	}
+
+	@Override
+	public void setMaxNumThreads( int k ) {
+		_numThreads = k;
+	}
+
+	@Override
+	public int getMaxNumThreads() {
+		return _numThreads;
+	}
+
+	@Override
+	public boolean allowsAllExecTypes() {
+		return false; //no MR
+	}
+
+	@Override
+	protected double computeOutputMemEstimate( long dim1, long dim2, long nnz )
+	{
+		//sparse output only for sparse-safe operations w/o aggregation
+		double sparsity = (_type==CellType.NO_AGG && _sparseSafe && nnz >= 0) ?
+				OptimizerUtils.getSparsity(dim1, dim2, nnz) : 1.0;
+		return OptimizerUtils.estimateSizeExactSparsity(dim1, dim2, sparsity);
+	}
+
+	@Override
+	protected double computeIntermediateMemEstimate( long dim1, long dim2, long nnz ) {
+		return 0; //no intermediates
+	}
+
+	@Override
+	protected long[] inferOutputCharacteristics( MemoTable memo )
+	{
+		long[] ret = null;
+		MatrixCharacteristics mc = memo.getAllInputStats(getInput().get(0));
+		if( mc.dimsKnown() ) {
+			long lnnz = (_type==CellType.NO_AGG && _sparseSafe) ? mc.getNonZeros() : -1;
+			ret = new long[]{mc.getRows(), (_type==CellType.NO_AGG) ? mc.getCols() : 1, lnnz};
+		}
+		return ret;
+	}
+
+	@Override
+	public Lop constructLops()
+		throws HopsException, LopsException
+	{
+		//return already created lops
+		if( getLops() != null )
+			return getLops();
+
+		ExecType et = optFindExecType();
+
+		ArrayList<Lop> inputs = new ArrayList<Lop>();
+		for( Hop c : getInput() )
+			inputs.add(c.constructLops());
+
+		//ensure availability of the generated class for instruction parsing
+		CodegenUtils.registerClass(_class, _classBytes);
+		
+		int k = OptimizerUtils.getConstrainedNumThreads(_numThreads);
+		SpoofFused lop = new SpoofFused(inputs, getDataType(), getValueType(), _class, k, et);
+		setOutputDimensions(lop);
+		setLineNumbers(lop);
+		setLops(lop);
+
+		return lop;
+	}
+
+	@Override
+	protected ExecType optFindExecType()
+		throws HopsException
+	{
+		checkAndSetForcedPlatform();
+
+		ExecType REMOTE = OptimizerUtils.isSparkExecutionMode() ? ExecType.SPARK : ExecType.MR;
+
+		if( _etypeForced != null ) {
+			_etype = _etypeForced;
+		}
+		else {
+			if( OptimizerUtils.isMemoryBasedOptLevel() )
+				_etype = findExecTypeByMemEstimate();
+			else
+				_etype = ExecType.CP;
+
+			//check for valid CP dimensions and matrix size
+			checkAndSetInvalidCPDimsAndSize();
+		}
+
+		//fused operators are not supported in MR, and spark
+		//requires side inputs that fit into the broadcast budget
+		//(both ensured by the planner for the sizes at fusion time)
+		if( _etype == ExecType.MR || (_etype == ExecType.SPARK && !isSideInputBroadcastable()) )
+			_etype = ExecType.CP;
+
+		//mark for recompile (forever)
+		if( OptimizerUtils.ALLOW_DYN_RECOMPILATION && !dimsKnown(true) && _etype==REMOTE )
+			setRequiresRecompile();
+
+		return _etype;
+	}
+
+	/**
+	 * Indicates if all side inputs fit into the broadcast memory budget.
+	 *
+	 * @return
+	 */
+	public boolean isSideInputBroadcastable()
+	{
+		double size = 0;
+		for( int i=1; i<getInput().size(); i++ ) {
+			Hop in = getInput().get(i);
+			if( in.getDataType() == DataType.MATRIX ) {
+				if( !in.dimsKnown() )
+					return false;
+				size += OptimizerUtils.estimateSize(in.getDim1(), in.getDim2());
+			}
+		}
+		return OptimizerUtils.checkSparkBroadcastMemoryBudget(size);
+	}
+
+	@Override
+	public String getOpString() {
+		return "spoof(" + _type.name().toLowerCase() + "," + _class.getSimpleName() + ")";
+	}
+
+	@Override
+	public void refreshSizeInformation()
+	{
+		if( getDataType() == DataType.MATRIX ) {
+			Hop in = getInput().get(0);
+			setDim1(in.getDim1());
+			setDim2((_type==CellType.NO_AGG) ? in.getDim2() : 1);
+		}
+	}
+
+	@Override
+	public Object clone() throws CloneNotSupportedException
+	{
+		SpoofFusedOp ret = new SpoofFusedOp();
+
+		//copy generic attributes
+		ret.clone(this, false);
+
+		//copy specific attributes
+		ret._class = _class;
+		ret._classBytes = _classBytes;
+		ret._type = _type;
+		ret._sparseSafe = _sparseSafe;
+		ret._numThreads = _numThreads;
+
+		return ret;
+	}
+
+	@Override
+	public boolean compare( Hop that )
+	{
+		if( !(that instanceof SpoofFusedOp) )
+			return false;
+
+		SpoofFusedOp that2 = (SpoofFusedOp)that;
+		boolean ret = ( _class == that2._class
+				&& _numThreads == that2._numThreads
+				&& getInput().size() == that2.getInput().size() );
+
+		for( int i=0; i<getInput().size() && ret; i++ )
+			ret &= (getInput().get(i) == that2.getInput().get(i));
+
+		return ret;
+	}
+}
@@ -27,6 +27,8 @@ import org.apache.sysml.conf.DMLConfig;
 import org.apache.sysml.lops.DataGen;
 import org.apache.sysml.lops.Lop;
 import org.apache.sysml.lops.MapMult;
+import org.apache.sysml.lops.MapMultChain;
+import org.apache.sysml.lops.PMMJ;
 import org.apache.sysml.lops.LopProperties.ExecType;
 import org.apache.sysml.lops.MMTSJ.MMTSJType;
 import org.apache.sysml.lops.compile.JobType;
@@ -71,8 +73,7 @@ import org.apache.sysml.yarn.ropt.YarnClusterAnalyzer;
 public class CostEstimatorStaticRuntime extends CostEstimator
 {
 	
-	//time-conversion
-	private static final long DEFAULT_FLOPS = 2L * 1024 * 1024 * 1024; //2GFLOPS
+	//time-conversion (see CostModelProfile for flops and local IO throughput)
 	//private static final long UNKNOWN_TIME = -1;
 	
 	//floating point operations
@@ -88,13 +89,9 @@ public class CostEstimatorStaticRuntime extends CostEstimator
 	private static final double DEFAULT_MR_TASK_LATENCY_REMOTE = 1.5;
 	
 	//IO READ throughput
-	private static final double DEFAULT_MBS_FSREAD_BINARYBLOCK_DENSE = 200;
-	private static final double DEFAULT_MBS_FSREAD_BINARYBLOCK_SPARSE = 100;
 	private static final double DEFAULT_MBS_HDFSREAD_BINARYBLOCK_DENSE = 150;
 	private static final double DEFAULT_MBS_HDFSREAD_BINARYBLOCK_SPARSE = 75;
 	//IO WRITE throughput
-	private static final double DEFAULT_MBS_FSWRITE_BINARYBLOCK_DENSE = 150;
-	private static final double DEFAULT_MBS_FSWRITE_BINARYBLOCK_SPARSE = 75;
 	private static final double DEFAULT_MBS_HDFSWRITE_BINARYBLOCK_DENSE = 120;
 	private static final double DEFAULT_MBS_HDFSWRITE_BINARYBLOCK_SPARSE = 60;
 	private static final double DEFAULT_MBS_HDFSWRITE_TEXT_DENSE = 40;
@@ -767,10 +764,7 @@ public class CostEstimatorStaticRuntime extends CostEstimator
 		boolean sparse = MatrixBlock.evalSparseFormatOnDisk(dm, dn, (long)(ds*dm*dn));
 		
 		double ret = ((double)MatrixBlock.estimateSizeOnDisk((long)dm, (long)dn, (long)(ds*dm*dn))) / (1024*1024);  		
-		if( sparse )
-			ret /= DEFAULT_MBS_FSREAD_BINARYBLOCK_SPARSE;
-		else //dense
-			ret /= DEFAULT_MBS_FSREAD_BINARYBLOCK_DENSE;
+		ret /= CostModelProfile.getProfile().getFSReadThroughput(sparse);
 		
 		return ret;
 	}
@@ -788,10 +782,7 @@ public class CostEstimatorStaticRuntime extends CostEstimator
 		
 		double ret = ((double)MatrixBlock.estimateSizeOnDisk((long)dm, (long)dn, (long)(ds*dm*dn))) / (1024*1024);  		
 		
-		if( sparse )
-			ret /= DEFAULT_MBS_FSWRITE_BINARYBLOCK_SPARSE;
-		else //dense
-			ret /= DEFAULT_MBS_FSWRITE_BINARYBLOCK_DENSE;
+		ret /= CostModelProfile.getProfile().getFSWriteThroughput(sparse);
 		
 		return ret;
 	}
@@ -844,7 +835,7 @@ public class CostEstimatorStaticRuntime extends CostEstimator
 	private double getInstTimeEstimate( String opcode, boolean inMR, long d1m, long d1n, double d1s, long d2m, long d2n, double d2s, long d3m, long d3n, double d3s, String[] args ) throws DMLRuntimeException, DMLUnsupportedOperationException
 	{
 		double nflops = getNFLOP(opcode, inMR, d1m, d1n, d1s, d2m, d2n, d2s, d3m, d3n, d3s, args);
-		double time = nflops / DEFAULT_FLOPS;
+		double time = nflops / getFlops(opcode, d1m, d1n, d1s);
 		
 		if( LOG.isDebugEnabled() )
 			LOG.debug("Cost["+opcode+"] = "+time+"s, "+nflops+" flops ("+d1m+","+d1n+","+d1s+","+d2m+","+d2n+","+d2s+","+d3m+","+d3n+","+d3s+").");
@@ -852,6 +843,39 @@ public class CostEstimatorStaticRuntime extends CostEstimator
 		return time;
 	}
 	
+	/**
+	 * Returns the (calibrated) flop throughput w.r.t. the type of operation and the 
+	 * format of the first input. Matrix multiplications use the calibrated matrix 
+	 * multiplication throughput, while all other (mostly memory-bandwidth-bound 
+	 * cell-wise, aggregate, and reorg) operations use the calibrated scan throughput.
+	 * 
+	 * @param opcode
+	 * @param d1m
+	 * @param d1n
+	 * @param d1s
+	 * @return
+	 */
+	private static double getFlops( String opcode, long d1m, long d1n, double d1s )
+	{
+		boolean sparse = MatrixBlock.evalSparseFormatInMemory(d1m, d1n, (long)(d1s*d1m*d1n));
+		CostModelProfile profile = CostModelProfile.getProfile();
+		return isMatrixMultOpcode(opcode) ? 
+			profile.getFlops(sparse) : profile.getScanFlops(sparse);
+	}
+	
+	/**
+	 * 
+	 * @param opcode
+	 * @return
+	 */
+	private static boolean isMatrixMultOpcode( String opcode )
+	{
+		return opcode.equals("ba+*") || opcode.equals("tsmm") || opcode.equals("mmchain")
+			|| opcode.equals(PMMJ.OPCODE) || opcode.equals("cpmm") || opcode.equals("rmm") 
+			|| opcode.equals(MapMult.OPCODE) || opcode.equals(MapMultChain.OPCODE)
+			|| opcode.equals("mapmultchain");
+	}
+	
 	/**
 	 * 
 	 * @param optype
@@ -1174,7 +1198,7 @@ public class CostEstimatorStaticRuntime extends CostEstimator
 				case Partition:
 					return d1m * d1n * d1s + //partitioning costs
 						   (inMR ? 0 : //include write cost if in CP  	
-							getHDFSWriteTime(d1m, d1n, d1s)* DEFAULT_FLOPS);
+							getHDFSWriteTime(d1m, d1n, d1s) * getFlops(optype, d1m, d1n, d1s));
 					
 				case INVALID:
 					return 0;
@@ -0,0 +1,481 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.hops.cost;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.conf.ConfigurationManager;
+import org.apache.sysml.conf.DMLConfig;
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.parser.DMLTranslator;
+import org.apache.sysml.runtime.DMLRuntimeException;
+import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
+import org.apache.sysml.runtime.controlprogram.parfor.stat.Timing;
+import org.apache.sysml.runtime.io.IOUtilFunctions;
+import org.apache.sysml.runtime.matrix.data.LibMatrixMult;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.matrix.data.MatrixIndexes;
+import org.apache.sysml.runtime.util.LocalFileUtils;
+
+/**
+ * Hardware profile of the cost model, consisting of the local compute throughput 
+ * (dense/sparse matrix multiplication, in-memory scans), local I/O bandwidth, and 
+ * Spark overheads (job latency, shuffle bandwidth). By default, the profile uses the 
+ * constants of the static cost model. A calibrated profile is created once per 
+ * installation by measuring these kernels on the actual machine (see main), persisted 
+ * as a properties file, and loaded on first access if configured via 'costmodel.profile'.
+ * 
+ * Note that cost-based refinements of plan choices beyond the static cost model are only 
+ * applied for calibrated profiles, i.e., the default plans remain unchanged.
+ */
+public class CostModelProfile 
+{
+	private static final Log LOG = LogFactory.getLog(CostModelProfile.class.getName());
+	
+	//default values (consistent with static cost model)
+	public static final double DEFAULT_FLOPS                 = 2L * 1024 * 1024 * 1024; //2GFLOPS
+	public static final double DEFAULT_MBS_SCAN              = 2048; 
+	public static final double DEFAULT_MBS_FSREAD_DENSE      = 200;
+	public static final double DEFAULT_MBS_FSREAD_SPARSE     = 100;
+	public static final double DEFAULT_MBS_FSWRITE_DENSE     = 150;
+	public static final double DEFAULT_MBS_FSWRITE_SPARSE    = 75;
+	public static final double DEFAULT_SP_JOB_LATENCY        = 2; //in s
+	public static final double DEFAULT_MBS_SP_SHUFFLE        = 100;
+	
+	//calibration parameters
+	private static final int CALIB_REPETITIONS = 3;
+	private static final int CALIB_MM_DIM      = 1000;
+	private static final double CALIB_SPARSITY = 0.01;
+	private static final int CALIB_IO_ROWS     = 10000;
+	private static final int CALIB_IO_COLS     = 1000;
+	
+	//profile property keys
+	private static final String KEY_DATE               = "date";
+	private static final String KEY_FLOPS_DENSE        = "flops.dense";
+	private static final String KEY_FLOPS_SPARSE       = "flops.sparse";
+	private static final String KEY_MBS_SCAN           = "mbs.scan";
+	private static final String KEY_MBS_FSREAD_DENSE   = "mbs.fsread.dense";
+	private static final String KEY_MBS_FSREAD_SPARSE  = "mbs.fsread.sparse";
+	private static final String KEY_MBS_FSWRITE_DENSE  = "mbs.fswrite.dense";
+	private static final String KEY_MBS_FSWRITE_SPARSE = "mbs.fswrite.sparse";
+	private static final String KEY_SP_JOB_LATENCY     = "sp.job.latency";
+	private static final String KEY_MBS_SP_SHUFFLE     = "mbs.sp.shuffle";
+	
+	private static CostModelProfile _profile = null;
+	
+	//measured (or default) characteristics
+	private boolean _calibrated = false;
+	private double _flopsDense = DEFAULT_FLOPS;
+	private double _flopsSparse = DEFAULT_FLOPS;
+	private double _mbsScan = DEFAULT_MBS_SCAN;
+	private double _mbsFSReadDense = DEFAULT_MBS_FSREAD_DENSE;
+	private double _mbsFSReadSparse = DEFAULT_MBS_FSREAD_SPARSE;
+	private double _mbsFSWriteDense = DEFAULT_MBS_FSWRITE_DENSE;
+	private double _mbsFSWriteSparse = DEFAULT_MBS_FSWRITE_SPARSE;
+	private double _spJobLatency = DEFAULT_SP_JOB_LATENCY;
+	private double _mbsSpShuffle = DEFAULT_MBS_SP_SHUFFLE;
+	
+	/**
+	 * Obtains the profile of the current installation, which is read on first
+	 * access from the configured profile file (if existing). 
+	 * 
+	 * @return
+	 */
+	public synchronized static CostModelProfile getProfile()
+	{
+		if( _profile == null ) 
+		{
+			_profile = new CostModelProfile();
+			
+			DMLConfig conf = ConfigurationManager.getConfig();
+			String fname = (conf != null) ? conf.getTextValue(DMLConfig.COST_PROFILE) : null;
+			if( fname != null && !fname.trim().isEmpty() ) {
+				try {
+					if( LocalFileUtils.isExisting(fname) )
+						_profile.readProfile(fname);
+					else
+						LOG.warn("Cost model profile '"+fname+"' does not exist, using defaults.");
+				}
+				catch(IOException ex) {
+					LOG.warn("Failed to read cost model profile '"+fname+"', using defaults.", ex);
+					_profile = new CostModelProfile();
+				}
+			}
+		}
+		
+		return _profile;
+	}
+	
+	/**
+	 * Indicates if this profile has been calibrated (measured or read from 
+	 * a profile file) or if it uses the default constants.
+	 * 
+	 * @return
+	 */
+	public boolean isCalibrated() {
+		return _calibrated;
+	}
+	
+	/**
+	 * Gets the single-threaded throughput of floating point operations 
+	 * as counted by the static cost model in FLOP/s.
+	 * 
+	 * @param sparse
+	 * @return
+	 */
+	public double getFlops( boolean sparse ) {
+		return sparse ? _flopsSparse : _flopsDense;
+	}
+	
+	/**
+	 * Gets the single-threaded throughput of floating point operations of 
+	 * memory-bandwidth-bound operations (e.g., cell-wise and aggregate operations) 
+	 * in FLOP/s, derived from the scan throughput with one flop per scanned cell.
+	 * Uncalibrated profiles use the default flops of the static cost model.
+	 * 
+	 * @param sparse
+	 * @return
+	 */
+	public double getScanFlops( boolean sparse ) {
+		if( !_calibrated )
+			return DEFAULT_FLOPS;
+		//bytes per cell: dense (value), sparse (value and column index)
+		return _mbsScan * 1024 * 1024 / (sparse ? 12 : 8);
+	}
+	
+	public double getScanThroughput() {
+		return _mbsScan;
+	}
+	
+	public double getFSReadThroughput( boolean sparse ) {
+		return sparse ? _mbsFSReadSparse : _mbsFSReadDense;
+	}
+	
+	public double getFSWriteThroughput( boolean sparse ) {
+		return sparse ? _mbsFSWriteSparse : _mbsFSWriteDense;
+	}
+	
+	public double getSparkJobLatency() {
+		return _spJobLatency;
+	}
+	
+	public double getSparkShuffleThroughput() {
+		return _mbsSpShuffle;
+	}
+	
+	/**
+	 * Estimates the time of scanning the given amount of in-memory data (in s). 
+	 * 
+	 * @param bytes
+	 * @return
+	 */
+	public double getScanTime( double bytes ) {
+		return bytes / (1024*1024) / _mbsScan;
+	}
+	
+	/**
+	 * Estimates the time of shuffling or broadcasting the given amount
+	 * of data with the given degree of parallelism (in s).
+	 * 
+	 * @param bytes
+	 * @param par
+	 * @return
+	 */
+	public double getSparkTransferTime( double bytes, int par ) {
+		return bytes / (1024*1024) / _mbsSpShuffle / Math.max(par, 1);
+	}
+	
+	/**
+	 * Calibrates the profile by measuring the local kernels on the actual machine, 
+	 * and the Spark overheads if running in Spark execution mode.
+	 * 
+	 * @throws DMLRuntimeException
+	 * @throws IOException
+	 */
+	public void calibrate() 
+		throws DMLRuntimeException, IOException
+	{
+		//dense and sparse matrix multiplication (single-threaded, 
+		//flop counts as in static cost model)
+		MatrixBlock A = MatrixBlock.randOperations(CALIB_MM_DIM, CALIB_MM_DIM, 1.0, 0, 1, "uniform", 7);
+		MatrixBlock S = MatrixBlock.randOperations(CALIB_MM_DIM, CALIB_MM_DIM, CALIB_SPARSITY, 0, 1, "uniform", 3);
+		double nflopDense = (double)CALIB_MM_DIM * CALIB_MM_DIM * CALIB_MM_DIM;
+		double nflopSparse = (double)S.getNonZeros() * CALIB_MM_DIM;
+		_flopsDense = nflopDense / measureMatMult(A, A);
+		_flopsSparse = nflopSparse / measureMatMult(S, A);
+		
+		//in-memory scan (full aggregate)
+		double mbA = (double)A.estimateSizeInMemory() / (1024*1024);
+		double time = Double.MAX_VALUE;
+		for( int i=0; i<CALIB_REPETITIONS; i++ ) {
+			Timing t = new Timing(true);
+			A.sum();
+			time = Math.min(time, t.stop()/1000);
+		}
+		_mbsScan = mbA / Math.max(time, 1e-6);
+		
+		//local read/write of binary blocks
+		MatrixBlock D = MatrixBlock.randOperations(CALIB_IO_ROWS, CALIB_IO_COLS, 1.0, 0, 1, "uniform", 7);
+		MatrixBlock SD = MatrixBlock.randOperations(CALIB_IO_ROWS, CALIB_IO_COLS, CALIB_SPARSITY, 0, 1, "uniform", 3);
+		double[] ioDense = measureLocalIO(D);
+		double[] ioSparse = measureLocalIO(SD);
+		_mbsFSReadDense = ioDense[0];
+		_mbsFSWriteDense = ioDense[1];
+		_mbsFSReadSparse = ioSparse[0];
+		_mbsFSWriteSparse = ioSparse[1];
+		
+		//spark job latency and shuffle bandwidth
+		if( OptimizerUtils.isSparkExecutionMode() )
+			calibrateSpark(D);
+		
+		_calibrated = true;
+		
+		LOG.info("Calibrated cost model profile: "+toString());
+	}
+	
+	/**
+	 * 
+	 * @param m1
+	 * @param m2
+	 * @return
+	 * @throws DMLRuntimeException
+	 */
+	private static double measureMatMult( MatrixBlock m1, MatrixBlock m2 ) 
+		throws DMLRuntimeException
+	{
+		double time = Double.MAX_VALUE;
+		for( int i=0; i<CALIB_REPETITIONS; i++ ) {
+			MatrixBlock ret = new MatrixBlock(m1.getNumRows(), m2.getNumColumns(), false);
+			Timing t = new Timing(true);
+			LibMatrixMult.matrixMult(m1, m2, ret);
+			time = Math.min(time, t.stop()/1000);
+		}
+		return Math.max(time, 1e-6);
+	}
+	
+	/**
+	 * Measures the local read and write bandwidth in MB/s. Note that reads are 
+	 * likely served from the OS buffer cache, which is also the common case for 
+	 * reads of recently evicted or written intermediates.
+	 * 
+	 * @param mb
+	 * @return
+	 * @throws IOException
+	 */
+	private static double[] measureLocalIO( MatrixBlock mb ) 
+		throws IOException
+	{
+		File tmp = File.createTempFile("calib", ".bin");
+		String fname = tmp.getAbsolutePath();
+		double mbytes = (double)mb.getExactSizeOnDisk() / (1024*1024);
+		double rtime = Double.MAX_VALUE;
+		double wtime = Double.MAX_VALUE;
+		try {
+			for( int i=0; i<CALIB_REPETITIONS; i++ ) {
+				Timing t = new Timing(true);
+				LocalFileUtils.writeMatrixBlockToLocal(fname, mb);
+				wtime = Math.min(wtime, t.stop()/1000);
+				t.start();
+				LocalFileUtils.readMatrixBlockFromLocal(fname);
+				rtime = Math.min(rtime, t.stop()/1000);
+			}
+		}
+		finally {
+			LocalFileUtils.deleteFileIfExists(fname);
+		}
+		
+		return new double[]{ mbytes/Math.max(rtime, 1e-6), mbytes/Math.max(wtime, 1e-6) };
+	}
+	
+	/**
+	 * Measures the latency of a trivial spark job and the shuffle bandwidth
+	 * of repartitioning the blocks of the given matrix.
+	 * 
+	 * @param mb
+	 * @throws DMLRuntimeException
+	 */
+	private void calibrateSpark( MatrixBlock mb ) 
+		throws DMLRuntimeException
+	{
+		try
+		{
+			JavaSparkContext sc = SparkExecutionContext.getSparkContextStatic();
+			int par = SparkExecutionContext.getDefaultParallelism();
+			
+			//job latency (w/o data)
+			ArrayList<Integer> list = new ArrayList<Integer>();
+			for( int i=0; i<par; i++ )
+				list.add(i);
+			double time = Double.MAX_VALUE;
+			for( int i=0; i<CALIB_REPETITIONS; i++ ) {
+				Timing t = new Timing(true);
+				sc.parallelize(list, par).count();
+				time = Math.min(time, t.stop()/1000);
+			}
+			_spJobLatency = time;
+			
+			//shuffle bandwidth (net of job latency, per degree of parallelism)
+			int blen = DMLTranslator.DMLBlockSize;
+			JavaPairRDD<MatrixIndexes,MatrixBlock> in = SparkExecutionContext
+					.toJavaPairRDD(sc, mb, blen, blen).cache();
+			in.count(); //materialize input
+			double mbytes = (double)mb.getExactSizeOnDisk() / (1024*1024);
+			time = Double.MAX_VALUE;
+			for( int i=0; i<CALIB_REPETITIONS; i++ ) {
+				Timing t = new Timing(true);
+				in.repartition(par).count();
+				time = Math.min(time, t.stop()/1000);
+			}
+			_mbsSpShuffle = mbytes / Math.max(par, 1) / Math.max(time - _spJobLatency, 1e-3);
+			in.unpersist();
+		}
+		catch(Exception ex) {
+			throw new DMLRuntimeException(ex);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param fname
+	 * @throws IOException
+	 */
+	public void readProfile( String fname ) 
+		throws IOException
+	{
+		Properties props = new Properties();
+		InputStream in = new FileInputStream(fname);
+		try {
+			props.load(in);
+		}
+		finally {
+			IOUtilFunctions.closeSilently(in);
+		}
+		
+		try {
+			_flopsDense = getValue(props, KEY_FLOPS_DENSE, DEFAULT_FLOPS);
+			_flopsSparse = getValue(props, KEY_FLOPS_SPARSE, DEFAULT_FLOPS);
+			_mbsScan = getValue(props, KEY_MBS_SCAN, DEFAULT_MBS_SCAN);
+			_mbsFSReadDense = getValue(props, KEY_MBS_FSREAD_DENSE, DEFAULT_MBS_FSREAD_DENSE);
+			_mbsFSReadSparse = getValue(props, KEY_MBS_FSREAD_SPARSE, DEFAULT_MBS_FSREAD_SPARSE);
+			_mbsFSWriteDense = getValue(props, KEY_MBS_FSWRITE_DENSE, DEFAULT_MBS_FSWRITE_DENSE);
+			_mbsFSWriteSparse = getValue(props, KEY_MBS_FSWRITE_SPARSE, DEFAULT_MBS_FSWRITE_SPARSE);
+			_spJobLatency = getValue(props, KEY_SP_JOB_LATENCY, DEFAULT_SP_JOB_LATENCY);
+			_mbsSpShuffle = getValue(props, KEY_MBS_SP_SHUFFLE, DEFAULT_MBS_SP_SHUFFLE);
+		}
+		catch(NumberFormatException ex) {
+			throw new IOException("Invalid cost model profile '"+fname+"'.", ex);
+		}
+		
+		_calibrated = true;
+	}
+	
+	/**
+	 * 
+	 * @param fname
+	 * @throws IOException
+	 */
+	public void writeProfile( String fname ) 
+		throws IOException
+	{
+		Properties props = new Properties();
+		props.setProperty(KEY_FLOPS_DENSE, String.valueOf(_flopsDense));
+		props.setProperty(KEY_FLOPS_SPARSE, String.valueOf(_flopsSparse));
+		props.setProperty(KEY_MBS_SCAN, String.valueOf(_mbsScan));
+		props.setProperty(KEY_MBS_FSREAD_DENSE, String.valueOf(_mbsFSReadDense));
+		props.setProperty(KEY_MBS_FSREAD_SPARSE, String.valueOf(_mbsFSReadSparse));
+		props.setProperty(KEY_MBS_FSWRITE_DENSE, String.valueOf(_mbsFSWriteDense));
+		props.setProperty(KEY_MBS_FSWRITE_SPARSE, String.valueOf(_mbsFSWriteSparse));
+		props.setProperty(KEY_SP_JOB_LATENCY, String.valueOf(_spJobLatency));
+		props.setProperty(KEY_MBS_SP_SHUFFLE, String.valueOf(_mbsSpShuffle));
+		
+		OutputStream out = new FileOutputStream(fname);
+		try {
+			props.store(out, KEY_DATE+"="+new Date());
+		}
+		finally {
+			IOUtilFunctions.closeSilently(out);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param props
+	 * @param key
+	 * @param defaultVal
+	 * @return
+	 */
+	private static double getValue( Properties props, String key, double defaultVal ) 
+	{
+		String val = props.getProperty(key);
+		return (val != null) ? Double.parseDouble(val.trim()) : defaultVal;
+	}
+	
+	@Override
+	public String toString() 
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("flops=["+_flopsDense+", "+_flopsSparse+"], ");
+		sb.append("scan="+_mbsScan+"MB/s, ");
+		sb.append("fsread=["+_mbsFSReadDense+", "+_mbsFSReadSparse+"]MB/s, ");
+		sb.append("fswrite=["+_mbsFSWriteDense+", "+_mbsFSWriteSparse+"]MB/s, ");
+		sb.append("spjob="+_spJobLatency+"s, ");
+		sb.append("spshuffle="+_mbsSpShuffle+"MB/s");
+		return sb.toString();
+	}
+	
+	/**
+	 * Main for creating the profile of the current installation, i.e., 
+	 * CostModelProfile <profile-file> [-spark], which requires the same 
+	 * classpath and configuration as the actual script executions.
+	 * 
+	 * @param args
+	 * @throws Exception 
+	 */
+	public static void main(String[] args) 
+		throws Exception
+	{
+		if( args.length < 1 ) {
+			System.err.println("Usage: CostModelProfile <profile-file> [-spark]");
+			return;
+		}
+		
+		if( args.length > 1 && args[1].equals("-spark") )
+			DMLScript.rtplatform = RUNTIME_PLATFORM.HYBRID_SPARK;
+		
+		CostModelProfile profile = new CostModelProfile();
+		profile.calibrate();
+		profile.writeProfile(args[0]);
+		System.out.println("Cost model profile: "+profile.toString());
+	}
+}
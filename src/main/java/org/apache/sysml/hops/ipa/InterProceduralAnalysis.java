@@ -20,6 +20,8 @@
 package org.apache.sysml.hops.ipa;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -32,6 +34,8 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
+import org.apache.sysml.hops.AggBinaryOp;
+import org.apache.sysml.hops.AggUnaryOp;
 import org.apache.sysml.hops.BinaryOp;
 import org.apache.sysml.hops.DataGenOp;
 import org.apache.sysml.hops.DataOp;
@@ -39,11 +43,14 @@ import org.apache.sysml.hops.FunctionOp;
 import org.apache.sysml.hops.FunctionOp.FunctionType;
 import org.apache.sysml.hops.Hop;
 import org.apache.sysml.hops.Hop.DataOpTypes;
+import org.apache.sysml.hops.Hop.OpOp1;
 import org.apache.sysml.hops.Hop.OpOp2;
 import org.apache.sysml.hops.HopsException;
 import org.apache.sysml.hops.OptimizerUtils;
 import org.apache.sysml.hops.Hop.VisitStatus;
 import org.apache.sysml.hops.LiteralOp;
+import org.apache.sysml.hops.ReorgOp;
+import org.apache.sysml.hops.UnaryOp;
 import org.apache.sysml.hops.rewrite.HopRewriteUtils;
 import org.apache.sysml.hops.recompile.Recompiler;
 import org.apache.sysml.parser.DMLProgram;
@@ -59,12 +66,14 @@ import org.apache.sysml.parser.FunctionStatementBlock;
 import org.apache.sysml.parser.IfStatement;
 import org.apache.sysml.parser.IfStatementBlock;
 import org.apache.sysml.parser.LanguageException;
+import org.apache.sysml.parser.ParForStatementBlock;
 import org.apache.sysml.parser.ParseException;
 import org.apache.sysml.parser.StatementBlock;
 import org.apache.sysml.parser.WhileStatement;
 import org.apache.sysml.parser.WhileStatementBlock;
 import org.apache.sysml.runtime.controlprogram.LocalVariableMap;
 import org.apache.sysml.runtime.controlprogram.caching.MatrixObject;
+import org.apache.sysml.runtime.controlprogram.parfor.util.IDSequence;
 import org.apache.sysml.runtime.instructions.cp.BooleanObject;
 import org.apache.sysml.runtime.instructions.cp.Data;
 import org.apache.sysml.runtime.instructions.cp.DoubleObject;
@@ -127,6 +136,14 @@ public class InterProceduralAnalysis
 	private static final boolean FLAG_FUNCTION_RECOMPILE_ONCE   = true; //flag functions which require recompilation inside a loop for full function recompile
 	private static final boolean REMOVE_UNNECESSARY_CHECKPOINTS = true; //remove unnecessary checkpoints (unconditionally overwritten intermediates) 
 	private static final boolean REMOVE_CONSTANT_BINARY_OPS     = true; //remove constant binary operations (e.g., X*ones, where ones=matrix(1,...)) 
+	private static final boolean ELIMINATE_CROSS_BLOCK_CSE      = true; //eliminate common subexpressions across statement blocks (e.g., t(X) in subsequent blocks)
+	
+	//min number of input cells of expressions shared across statement blocks
+	private static final long CSE_MIN_INPUT_CELLS = 1024;
+	
+	//prefix and sequence of temporary variables for shared expressions
+	private static final String CSE_VAR_PREFIX = "_cseVar";
+	private static IDSequence _seqCSE = new IDSequence();
 	
 	static {
 		// for internal debugging only
@@ -197,6 +214,14 @@ public class InterProceduralAnalysis
 		if( REMOVE_CONSTANT_BINARY_OPS ) {
 			removeConstantBinaryOps(dmlp);
 		}
+		
+		//step 7: eliminate common subexpressions across statement blocks
+		//(after size propagation in order to decide on expensive expressions)
+		if( ELIMINATE_CROSS_BLOCK_CSE 
+			&& OptimizerUtils.ALLOW_COMMON_SUBEXPRESSION_ELIMINATION ) 
+		{
+			eliminateCommonSubexpressionsAcrossBlocks(dmlp);
+		}
 	}
 	
 	/**
@@ -1247,4 +1272,473 @@ public class InterProceduralAnalysis
 	
 		hop.setVisited(Hop.VisitStatus.DONE);		
 	}
+	
+	/////////////////////////////
+	// CROSS-BLOCK COMMON SUBEXPRESSION ELIMINATION
+	//////
+	
+	/**
+	 * 
+	 * @param dmlp
+	 * @throws HopsException
+	 */
+	private void eliminateCommonSubexpressionsAcrossBlocks(DMLProgram dmlp) 
+		throws HopsException
+	{
+		//approach: scan over all statement block sequences (main program, functions, and 
+		//nested bodies), keep expensive expressions over transient reads available until
+		//one of their inputs is updated, and replace redundant computations in subsequent 
+		//blocks with transient reads of a temporary written by the first block; the temporary 
+		//is added to the live variables in between and hence removed after its last consumer
+		for( String fnspace : dmlp.getNamespaces().keySet() )
+			for( FunctionStatementBlock fsb : dmlp.getFunctionStatementBlocks(fnspace).values() )
+				rEliminateCommonSubexpressions(((FunctionStatement)fsb.getStatement(0)).getBody());
+		
+		rEliminateCommonSubexpressions(dmlp.getStatementBlocks());
+	}
+	
+	/**
+	 * 
+	 * @param sbs
+	 * @throws HopsException
+	 */
+	private void rEliminateCommonSubexpressions(ArrayList<StatementBlock> sbs) 
+		throws HopsException
+	{
+		if( sbs == null )
+			return;
+		
+		HashMap<String, CSECandidate> avail = new HashMap<String, CSECandidate>();
+		
+		for( int i=0; i<sbs.size(); i++ )
+		{
+			StatementBlock sb = sbs.get(i);
+			
+			if( sb instanceof IfStatementBlock )
+			{
+				IfStatement istmt = (IfStatement)sb.getStatement(0);
+				hoistCommonSubexpressions(sbs, i, avail);
+				rEliminateCommonSubexpressions(istmt.getIfBody());
+				rEliminateCommonSubexpressions(istmt.getElseBody());
+			}
+			else if( sb instanceof WhileStatementBlock )
+			{
+				WhileStatement wstmt = (WhileStatement)sb.getStatement(0);
+				rEliminateCommonSubexpressions(wstmt.getBody());
+			}
+			else if( sb instanceof ForStatementBlock ) 
+			{
+				//parfor bodies are left to the parfor optimizer
+				ForStatement fstmt = (ForStatement)sb.getStatement(0);
+				if( !(sb instanceof ParForStatementBlock) )
+					rEliminateCommonSubexpressions(fstmt.getBody());
+			}
+			else if( sb.get_hops() != null )
+			{
+				//replace redundant expressions and collect new candidates
+				HashMap<String, Hop> cands = new HashMap<String, Hop>();
+				Hop.resetVisitStatus(sb.get_hops());
+				for( Hop root : sb.get_hops() )
+					rEliminateCommonSubexpressions(root, sbs, i, avail, cands);
+				Hop.resetVisitStatus(sb.get_hops());
+				
+				for( Entry<String, Hop> e : cands.entrySet() )
+					if( !avail.containsKey(e.getKey()) && !e.getValue().getParent().isEmpty() )
+						avail.put(e.getKey(), new CSECandidate(e.getValue(), i));
+			}
+			
+			//prune candidates with updated inputs (incl nested blocks)
+			Iterator<Entry<String, CSECandidate>> iter = avail.entrySet().iterator();
+			while( iter.hasNext() ) {
+				CSECandidate c = iter.next().getValue();
+				for( String var : c.inputs )
+					if( sb.variablesUpdated().containsVariable(var) ) {
+						iter.remove();
+						break;
+					}
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param sbs
+	 * @param pos
+	 * @param avail
+	 * @param cands
+	 * @throws HopsException
+	 */
+	private void rEliminateCommonSubexpressions(Hop hop, ArrayList<StatementBlock> sbs, int pos, HashMap<String, CSECandidate> avail, HashMap<String, Hop> cands) 
+		throws HopsException
+	{
+		if( hop.getVisited() == VisitStatus.DONE )
+			return;
+		
+		String key = getCommonSubexpressionKey(hop, true);
+		if( key != null ) 
+		{
+			//replace redundant expression (w/o descending into its inputs)
+			CSECandidate c = avail.get(key);
+			if( c != null ) {
+				addCommonSubexpressionConsumer(sbs, c, pos);
+				replaceWithTransientRead(hop, c.varname);
+				LOG.debug("IPA: Eliminated common subexpression "+key+" (lines "
+					+hop.getBeginLine()+"-"+hop.getEndLine()+") via "+c.varname+".");
+				return;
+			}
+			
+			//collect new candidate
+			if( !cands.containsKey(key) )
+				cands.put(key, hop);
+		}
+		
+		//recursively process child nodes
+		for( Hop c : hop.getInput() )
+			rEliminateCommonSubexpressions(c, sbs, pos, avail, cands);
+		
+		hop.setVisited(VisitStatus.DONE);
+	}
+	
+	/**
+	 * Hoists expensive expressions that are computed by the first statement blocks of 
+	 * both branches of an if statement block into the preceding statement block (or reuses 
+	 * an available temporary). The temporary is consumed and removed in both branches.
+	 * 
+	 * @param sbs
+	 * @param pos
+	 * @param avail
+	 * @throws HopsException
+	 */
+	private void hoistCommonSubexpressions(ArrayList<StatementBlock> sbs, int pos, HashMap<String, CSECandidate> avail) 
+		throws HopsException
+	{
+		IfStatementBlock isb = (IfStatementBlock) sbs.get(pos);
+		IfStatement istmt = (IfStatement)isb.getStatement(0);
+		
+		if( pos < 1 || !isLastLevelStatementBlock(sbs.get(pos-1))
+			|| istmt.getIfBody() == null || istmt.getIfBody().isEmpty()
+			|| istmt.getElseBody() == null || istmt.getElseBody().isEmpty()
+			|| !isLastLevelStatementBlock(istmt.getIfBody().get(0))
+			|| !isLastLevelStatementBlock(istmt.getElseBody().get(0)) )
+		{
+			return;
+		}
+		
+		//collect candidates of both branches
+		StatementBlock prev = sbs.get(pos-1);
+		StatementBlock sb1 = istmt.getIfBody().get(0);
+		StatementBlock sb2 = istmt.getElseBody().get(0);
+		HashMap<String, Hop> cands1 = collectCommonSubexpressionCandidates(sb1.get_hops());
+		HashMap<String, Hop> cands2 = collectCommonSubexpressionCandidates(sb2.get_hops());
+		
+		//process common candidates from large to small expressions
+		ArrayList<String> keys = new ArrayList<String>(cands1.keySet());
+		keys.retainAll(cands2.keySet());
+		Collections.sort(keys, new Comparator<String>() {
+			@Override
+			public int compare(String o1, String o2) {
+				return (o1.length() > o2.length()) ? -1 : (o1.length() < o2.length()) ? 1 : 0;
+			}
+		});
+		
+		for( String key : keys )
+		{
+			Hop h1 = cands1.get(key);
+			Hop h2 = cands2.get(key);
+			if( h1.getParent().isEmpty() || h2.getParent().isEmpty() )
+				continue; //part of already hoisted expression
+			
+			//obtain available or create new temporary in preceding block
+			CSECandidate c = avail.get(key);
+			if( c == null ) {
+				Hop hnew = Recompiler.deepCopyHopsDag(h1);
+				c = new CSECandidate(hnew, pos-1);
+				boolean updated = false;
+				for( String var : c.inputs )
+					updated |= prev.variablesUpdated().containsVariable(var);
+				if( updated )
+					continue;
+			}
+			addCommonSubexpressionConsumer(sbs, c, pos);
+			
+			//consume and remove temporary in both branches
+			DataIdentifier di = c.createDataIdentifier();
+			for( StatementBlock sb : new StatementBlock[]{sb1, sb2} ) {
+				sb.liveIn().addVariable(c.varname, new DataIdentifier(di));
+				sb.variablesRead().addVariable(c.varname, new DataIdentifier(di));
+			}
+			replaceWithTransientRead(h1, c.varname);
+			replaceWithTransientRead(h2, c.varname);
+			avail.remove(key);
+			
+			LOG.debug("IPA: Hoisted common subexpression "+key+" (lines "
+				+isb.getBeginLine()+"-"+isb.getEndLine()+") via "+c.varname+".");
+		}
+	}
+	
+	/**
+	 * 
+	 * @param roots
+	 * @return
+	 */
+	private HashMap<String, Hop> collectCommonSubexpressionCandidates(ArrayList<Hop> roots)
+	{
+		HashMap<String, Hop> ret = new HashMap<String, Hop>();
+		Hop.resetVisitStatus(roots);
+		for( Hop root : roots )
+			rCollectCommonSubexpressionCandidates(root, ret);
+		Hop.resetVisitStatus(roots);
+		return ret;
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param cands
+	 */
+	private void rCollectCommonSubexpressionCandidates(Hop hop, HashMap<String, Hop> cands)
+	{
+		if( hop.getVisited() == VisitStatus.DONE )
+			return;
+		
+		String key = getCommonSubexpressionKey(hop, true);
+		if( key != null && !cands.containsKey(key) )
+			cands.put(key, hop);
+		
+		for( Hop c : hop.getInput() )
+			rCollectCommonSubexpressionCandidates(c, cands);
+		
+		hop.setVisited(VisitStatus.DONE);
+	}
+	
+	/**
+	 * Obtains a structural key of the given expression, which is only defined for
+	 * side-effect-free operations over transient reads and literals. Since transient 
+	 * reads refer to the variables on block entry, equal keys in different blocks 
+	 * denote equal values if none of the input variables is updated in between.
+	 * 
+	 * @param hop
+	 * @param root
+	 * @return key, or null if not a valid (root) candidate
+	 */
+	private String getCommonSubexpressionKey(Hop hop, boolean root)
+	{
+		//root candidates: expensive operations w/ matrix output
+		if( root && !isExpensiveCommonSubexpression(hop) )
+			return null;
+		
+		//leaf nodes: literals and transient reads
+		if( hop instanceof LiteralOp )
+			return hop.getValueType()+":"+hop.getOpString();
+		if( hop instanceof DataOp )
+			return (((DataOp)hop).getDataOpType()==DataOpTypes.TRANSIENTREAD) ? 
+				hop.getOpString() : null;
+		
+		//inner nodes: side-effect-free operations
+		if( !(hop instanceof ReorgOp || hop instanceof AggUnaryOp || hop instanceof AggBinaryOp
+			|| hop instanceof BinaryOp || hop instanceof UnaryOp)
+			|| (hop instanceof UnaryOp && (((UnaryOp)hop).getOp()==OpOp1.PRINT 
+			   || ((UnaryOp)hop).getOp()==OpOp1.STOP))
+			|| (hop instanceof BinaryOp && ((BinaryOp)hop).getOp()==OpOp2.PRINT) )
+		{
+			return null;
+		}
+		
+		StringBuilder sb = new StringBuilder();
+		sb.append(hop.getOpString());
+		sb.append('(');
+		for( int i=0; i<hop.getInput().size(); i++ ) {
+			String ckey = getCommonSubexpressionKey(hop.getInput().get(i), false);
+			if( ckey == null )
+				return null;
+			sb.append((i>0) ? "," : "");
+			sb.append(ckey);
+		}
+		sb.append(')');
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @return
+	 */
+	private boolean isExpensiveCommonSubexpression(Hop hop)
+	{
+		if( hop.getDataType() != DataType.MATRIX 
+			|| !(hop instanceof ReorgOp || hop instanceof AggUnaryOp || hop instanceof AggBinaryOp)
+			|| isFusedMatrixMultInput(hop) )
+		{
+			return false;
+		}
+		
+		//expensive if unknown or sufficiently large inputs
+		double cells = 0;
+		for( Hop c : hop.getInput() )
+			if( c.getDataType() == DataType.MATRIX ) {
+				if( !c.dimsKnown() )
+					return true;
+				cells += (double)c.getDim1() * c.getDim2();
+			}
+		
+		return (cells >= CSE_MIN_INPUT_CELLS);
+	}
+	
+	/**
+	 * Indicates if the given expression is an input of a matrix multiplication that
+	 * might be fused into a single operator (e.g., t(X) in tsmm t(X)%*%X or transpose-mm,
+	 * X%*%v in mmchain t(X)%*%(w*(X%*%v))). Since these rewrites and operator selections
+	 * require a single consumer, neither a temporary (additional consumer in the producer) 
+	 * nor a transient read (no fusion in the consumer) is used for such expressions.
+	 * 
+	 * @param hop
+	 * @return
+	 */
+	private boolean isFusedMatrixMultInput(Hop hop)
+	{
+		for( Hop p : hop.getParent() ) {
+			if( p instanceof AggBinaryOp )
+				return true;
+			if( hop instanceof AggBinaryOp && p instanceof BinaryOp )
+				for( Hop pp : p.getParent() )
+					if( pp instanceof AggBinaryOp )
+						return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Adds a consumer of the given candidate at the given position, which includes 
+	 * the creation of the temporary on the first consumer and the update of live 
+	 * variables between the producer (or previous consumer) and the new consumer.
+	 * 
+	 * @param sbs
+	 * @param c
+	 * @param pos
+	 */
+	private void addCommonSubexpressionConsumer(ArrayList<StatementBlock> sbs, CSECandidate c, int pos)
+	{
+		if( c.lastConsumer == pos )
+			return;
+		
+		int start = c.lastConsumer;
+		if( c.varname == null ) {
+			//create transient write of temporary in producer
+			c.varname = CSE_VAR_PREFIX + _seqCSE.getNextID();
+			Hop hop = c.hop;
+			DataOp twrite = new DataOp(c.varname, hop.getDataType(), hop.getValueType(),
+					hop, DataOpTypes.TRANSIENTWRITE, null);
+			twrite.setOutputParams(hop.getDim1(), hop.getDim2(), hop.getNnz(), 
+					hop.getRowsInBlock(), hop.getColsInBlock());
+			HopRewriteUtils.copyLineNumbers(hop, twrite);
+			StatementBlock prod = sbs.get(c.producer);
+			prod.get_hops().add(twrite);
+			prod.variablesUpdated().addVariable(c.varname, c.createDataIdentifier());
+			prod.liveOut().addVariable(c.varname, c.createDataIdentifier());
+			start = c.producer;
+		}
+		else {
+			//keep temporary alive after previous consumer
+			sbs.get(start).liveOut().addVariable(c.varname, c.createDataIdentifier());
+		}
+		
+		//keep temporary alive in between
+		for( int i=start+1; i<pos; i++ ) {
+			sbs.get(i).liveIn().addVariable(c.varname, c.createDataIdentifier());
+			sbs.get(i).liveOut().addVariable(c.varname, c.createDataIdentifier());
+		}
+		
+		//consume temporary (removed at the end of its last consumer)
+		sbs.get(pos).liveIn().addVariable(c.varname, c.createDataIdentifier());
+		sbs.get(pos).variablesRead().addVariable(c.varname, c.createDataIdentifier());
+		c.lastConsumer = pos;
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param varname
+	 */
+	private void replaceWithTransientRead(Hop hop, String varname)
+	{
+		DataOp tread = new DataOp(varname, hop.getDataType(), hop.getValueType(),
+				DataOpTypes.TRANSIENTREAD, null, hop.getDim1(), hop.getDim2(), 
+				hop.getNnz(), hop.getRowsInBlock(), hop.getColsInBlock());
+		tread.setVisited(VisitStatus.DONE);
+		HopRewriteUtils.copyLineNumbers(hop, tread);
+		
+		ArrayList<Hop> parents = new ArrayList<Hop>(hop.getParent());
+		for( Hop p : parents ) {
+			int pos = HopRewriteUtils.getChildReferencePos(p, hop);
+			HopRewriteUtils.removeChildReferenceByPos(p, hop, pos);
+			HopRewriteUtils.addChildReference(p, tread, pos);
+		}
+		
+		//remove dangling references of replaced expression
+		rRemoveUnreferencedHops(hop);
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 */
+	private void rRemoveUnreferencedHops(Hop hop)
+	{
+		if( !hop.getParent().isEmpty() )
+			return;
+		
+		ArrayList<Hop> inputs = new ArrayList<Hop>(hop.getInput());
+		HopRewriteUtils.removeAllChildReferences(hop);
+		for( Hop c : inputs )
+			rRemoveUnreferencedHops(c);
+	}
+	
+	/**
+	 * 
+	 * @param sb
+	 * @return
+	 */
+	private boolean isLastLevelStatementBlock(StatementBlock sb)
+	{
+		return !(sb instanceof IfStatementBlock || sb instanceof WhileStatementBlock 
+			|| sb instanceof ForStatementBlock || sb instanceof FunctionStatementBlock)
+			&& sb.get_hops() != null;
+	}
+	
+	/**
+	 * Expression available for reuse in subsequent statement blocks.
+	 */
+	private static class CSECandidate
+	{
+		private final Hop hop;           //expression in producer block
+		private final int producer;      //position of producer block
+		private final HashSet<String> inputs; //variables read by expression
+		private int lastConsumer = -1;   //position of last consumer block
+		private String varname = null;   //temporary, created on first reuse
+		
+		public CSECandidate(Hop hop, int producer) {
+			this.hop = hop;
+			this.producer = producer;
+			this.inputs = new HashSet<String>();
+			rCollectInputs(hop);
+		}
+		
+		private void rCollectInputs(Hop current) {
+			if( current instanceof DataOp )
+				inputs.add(current.getName());
+			for( Hop c : current.getInput() )
+				rCollectInputs(c);
+		}
+		
+		public DataIdentifier createDataIdentifier() {
+			DataIdentifier di = new DataIdentifier(varname);
+			di.setDimensions(hop.getDim1(), hop.getDim2());
+			di.setBlockDimensions(hop.getRowsInBlock(), hop.getColsInBlock());
+			di.setDataType(hop.getDataType());
+			di.setValueType(hop.getValueType());
+			return di;
+		}
+	}
 }
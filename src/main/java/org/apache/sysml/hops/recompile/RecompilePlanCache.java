@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.hops.recompile;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.hops.DataOp;
+import org.apache.sysml.hops.Hop;
+import org.apache.sysml.hops.Hop.DataOpTypes;
+import org.apache.sysml.hops.Hop.MultiThreadedHop;
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.runtime.controlprogram.LocalVariableMap;
+import org.apache.sysml.runtime.controlprogram.caching.MatrixObject;
+import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
+import org.apache.sysml.runtime.instructions.Instruction;
+import org.apache.sysml.runtime.instructions.cp.Data;
+import org.apache.sysml.runtime.instructions.cp.ScalarObject;
+import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
+import org.apache.sysml.runtime.matrix.MatrixSketch;
+
+/**
+ * Bounded (LRU) cache of recompiled instructions of a single statement block,
+ * keyed by a signature of all inputs of the hop dag. The signature comprises
+ * the dimensions, block sizes, sparsity and memory classes of all matrix inputs,
+ * the values of all scalar inputs (which are replaced by literals during
+ * recompilation), hop properties set by external optimizers, as well as the
+ * memory budget and runtime platform. Dags with persistent reads or other
+ * inputs are not cacheable.
+ *
+ * Note: The sparsity class uses exact classes for empty and unknown inputs
+ * in order to guarantee the same empty-block rewrites, while all other
+ * sparsities are bucketized on a log scale (i.e., the sizes of inputs within 
+ * a class differ by less than 10%). Since bucketized sparsities could still
+ * cross memory budgets (and thus change execution types or distributed 
+ * operators), the memory class additionally captures if an input fits into
+ * the local memory budget and the broadcast budget of distributed operations.
+ * Matrix multiplication inputs with sparsity sketches further include the
+ * sketch signature, because sketch-based estimates can change the chosen
+ * plan (e.g., the order of matrix multiplication chains) even for inputs
+ * of the same sparsity class. A hash collision of sketch signatures only
+ * reuses a plan compiled with different estimates, which is still correct.
+ */
+public class RecompilePlanCache
+{
+	//max number of cached plans per statement block
+	public static final int MAX_ENTRIES = 8;
+
+	//number of sparsity classes of non-empty inputs per factor of two
+	public static final int NNZ_CLASSES_PER_OCTAVE = 8;
+
+	//global epoch for invalidating all caches on reinit of the recompiler
+	private static final AtomicLong _epoch = new AtomicLong(0);
+
+	private final LinkedHashMap<String, ArrayList<Instruction>> _cache;
+
+	public RecompilePlanCache() {
+		_cache = new LinkedHashMap<String, ArrayList<Instruction>>(MAX_ENTRIES, 0.75f, true) {
+			private static final long serialVersionUID = -2841907346193750124L;
+			@Override
+			protected boolean removeEldestEntry(Entry<String, ArrayList<Instruction>> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		};
+	}
+
+	/**
+	 * Obtains a copy of the cached instructions for the given key.
+	 *
+	 * @param key
+	 * @return instructions, or null if not cached
+	 */
+	public synchronized ArrayList<Instruction> get( String key ) {
+		ArrayList<Instruction> inst = _cache.get(key);
+		return (inst != null) ? new ArrayList<Instruction>(inst) : null;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @param inst
+	 */
+	public synchronized void put( String key, ArrayList<Instruction> inst ) {
+		_cache.put(key, new ArrayList<Instruction>(inst));
+	}
+
+	/**
+	 *
+	 */
+	public synchronized void clear() {
+		_cache.clear();
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return _cache.size();
+	}
+
+	/**
+	 * Invalidates the entries of all plan caches, e.g., on changed optimizer flags.
+	 */
+	public static void invalidateAll() {
+		_epoch.incrementAndGet();
+	}
+
+	/**
+	 * Creates the cache key of the given hop dag for the current variables.
+	 *
+	 * @param hops
+	 * @param vars
+	 * @return cache key, or null if the dag is not cacheable
+	 */
+	public static String createKey( ArrayList<Hop> hops, LocalVariableMap vars )
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(_epoch.get());
+		sb.append(',');
+		sb.append(DMLScript.rtplatform.name());
+		sb.append(',');
+		sb.append((long)OptimizerUtils.getLocalMemBudget());
+
+		HashSet<Long> memo = new HashSet<Long>();
+		for( Hop hop : hops )
+			if( !rAppendKey(hop, vars, memo, sb) )
+				return null;
+
+		return sb.toString();
+	}
+
+	/**
+	 *
+	 * @param hop
+	 * @param vars
+	 * @param memo
+	 * @param sb
+	 * @return false if the dag is not cacheable
+	 */
+	private static boolean rAppendKey( Hop hop, LocalVariableMap vars, HashSet<Long> memo, StringBuilder sb )
+	{
+		if( memo.contains(hop.getHopID()) )
+			return true;
+
+		for( Hop c : hop.getInput() )
+			if( !rAppendKey(c, vars, memo, sb) )
+				return false;
+
+		//hop properties set by external optimizers (e.g., parfor)
+		if( hop.getForcedExecType() != null || hop instanceof MultiThreadedHop ) {
+			sb.append('|');
+			sb.append(hop.getHopID());
+			sb.append(':');
+			sb.append(hop.getForcedExecType());
+			if( hop instanceof MultiThreadedHop ) {
+				sb.append(':');
+				sb.append(((MultiThreadedHop)hop).getMaxNumThreads());
+			}
+		}
+
+		//input characteristics of reads
+		if( hop instanceof DataOp ) {
+			DataOpTypes type = ((DataOp)hop).getDataOpType();
+			if( type == DataOpTypes.PERSISTENTREAD )
+				return false;
+			if( type == DataOpTypes.TRANSIENTREAD ) {
+				Data dat = vars.get(hop.getName());
+				sb.append('|');
+				sb.append(hop.getName());
+				sb.append('=');
+				if( dat instanceof MatrixObject ) {
+					MatrixCharacteristics mc = ((MatrixObject)dat).getMatrixCharacteristics();
+					sb.append(mc.getRows());
+					sb.append('x');
+					sb.append(mc.getCols());
+					sb.append('x');
+					sb.append(mc.getRowsPerBlock());
+					sb.append('x');
+					sb.append(mc.getColsPerBlock());
+					sb.append('x');
+					sb.append(getSparsityClass(mc));
+					sb.append('x');
+					sb.append(getMemoryClass(mc));
+					if( OptimizerUtils.ALLOW_SPARSITY_SKETCHES && Recompiler.isMatMultInput(hop) ) {
+						MatrixSketch sketch = ((MatrixObject)dat).getSketch();
+						sb.append('x');
+						sb.append((sketch != null) ? sketch.getSignature() : "-");
+					}
+				}
+				else if( dat instanceof ScalarObject ) {
+					sb.append(((ScalarObject)dat).getValueType());
+					sb.append(':');
+					sb.append(((ScalarObject)dat).getStringValue());
+				}
+				else if( dat != null ) {
+					return false; //e.g., frames
+				}
+			}
+		}
+
+		memo.add(hop.getHopID());
+		return true;
+	}
+
+	/**
+	 *
+	 * @param mc
+	 * @return
+	 */
+	private static long getSparsityClass( MatrixCharacteristics mc )
+	{
+		if( !mc.dimsKnown() || mc.getNonZeros() < 0 )
+			return -1; //unknown
+		if( mc.getNonZeros() == 0 )
+			return 0;  //empty
+		double sp = OptimizerUtils.getSparsity(mc.getRows(), mc.getCols(), mc.getNonZeros());
+		return 1 + (long)Math.floor(-Math.log(sp) / Math.log(2) * NNZ_CLASSES_PER_OCTAVE);
+	}
+	
+	/**
+	 * Obtains the memory class of an input, where bit 0 indicates if the input
+	 * fits into the local memory budget, and bit 1 indicates if the input fits
+	 * into the broadcast (or distributed cache) budget of distributed operations.
+	 * 
+	 * @param mc
+	 * @return
+	 */
+	private static int getMemoryClass( MatrixCharacteristics mc )
+	{
+		if( !mc.dimsKnown() )
+			return -1; //unknown
+		double sp = (mc.getNonZeros() >= 0) ? 
+			OptimizerUtils.getSparsity(mc.getRows(), mc.getCols(), mc.getNonZeros()) : 1.0;
+		double size = OptimizerUtils.estimateSizeExactSparsity(mc.getRows(), mc.getCols(), sp);
+		
+		int ret = (size <= OptimizerUtils.getLocalMemBudget()) ? 1 : 0;
+		if( DMLScript.rtplatform != RUNTIME_PLATFORM.SINGLE_NODE ) {
+			boolean spark = (DMLScript.rtplatform == RUNTIME_PLATFORM.SPARK 
+				|| DMLScript.rtplatform == RUNTIME_PLATFORM.HYBRID_SPARK);
+			double bcBudget = spark ? SparkExecutionContext.getBroadcastMemoryBudget() :
+				OptimizerUtils.getRemoteMemBudgetMap(true);
+			ret |= (size <= bcBudget) ? 2 : 0;
+		}
+		return ret;
+	}
+}
@@ -35,6 +35,7 @@ import org.apache.wink.json4j.JSONObject;
 
 import org.apache.sysml.api.DMLScript;
 import org.apache.sysml.conf.ConfigurationManager;
+import org.apache.sysml.hops.AggBinaryOp;
 import org.apache.sysml.hops.DataGenOp;
 import org.apache.sysml.hops.DataOp;
 import org.apache.sysml.hops.FunctionOp;
@@ -44,6 +45,7 @@ import org.apache.sysml.hops.Hop.DataGenMethod;
 import org.apache.sysml.hops.Hop.DataOpTypes;
 import org.apache.sysml.hops.Hop.FileFormatTypes;
 import org.apache.sysml.hops.Hop.OpOp1;
+import org.apache.sysml.hops.Hop.ReOrgOp;
 import org.apache.sysml.hops.Hop.VisitStatus;
 import org.apache.sysml.hops.HopsException;
 import org.apache.sysml.hops.IndexingOp;
@@ -102,6 +104,7 @@ import org.apache.sysml.runtime.util.MapReduceTool;
 import org.apache.sysml.utils.Explain;
 import org.apache.sysml.utils.Explain.ExplainType;
 import org.apache.sysml.utils.JSONHelper;
+import org.apache.sysml.utils.Statistics;
 
 /**
  * Dynamic recompilation of hop dags to runtime instructions, which includes the 
@@ -134,6 +137,9 @@ public class Recompiler
 	public static void reinitRecompiler()
 	{
 		rewriter = new ProgramRewriter(false, true);
+		
+		//invalidate cached plans of previous flags
+		RecompilePlanCache.invalidateAll();
 	}
 	
 	/**
@@ -156,64 +162,87 @@ public class Recompiler
 		throws DMLRuntimeException, HopsException, LopsException, DMLUnsupportedOperationException, IOException
 	{
 		ArrayList<Instruction> newInst = null;
+		boolean cacheHit = false;
 
 		//need for synchronization as we do temp changes in shared hops/lops
 		//however, we create deep copies for most dags to allow for concurrent recompile
 		synchronized( hops ) 
 		{	
-			LOG.debug ("\n**************** Optimizer (Recompile) *************\nMemory Budget = " + 
-					   OptimizerUtils.toMB(OptimizerUtils.getLocalMemBudget()) + " MB");
-	
-			// prepare hops dag for recompile
-			if( !inplace ){ 
-				// deep copy hop dag (for non-reversable rewrites)
-				hops = deepCopyHopsDag(hops);
-			}
-			else {
-				// clear existing lops
-				Hop.resetVisitStatus(hops);
-				for( Hop hopRoot : hops )
-					rClearLops( hopRoot );
+			// probe plan cache for equivalent inputs (only for regular runtime recompile,
+			// in-place modifications of the shared hops invalidate the cached plans)
+			String cacheKey = null;
+			if( sb != null && OptimizerUtils.ALLOW_RECOMPILE_PLAN_CACHE ) {
+				if( !inplace && status == null && DMLScript.EXPLAIN != ExplainType.RECOMPILE_HOPS ) {
+					cacheKey = RecompilePlanCache.createKey(hops, vars);
+					newInst = (cacheKey != null) ? sb.getRecompilePlanCache().get(cacheKey) : null;
+					cacheHit = (newInst != null);
+				}
+				else if( inplace )
+					sb.clearRecompilePlanCache();
 			}
+			
+			if( !cacheHit ) {
+				LOG.debug ("\n**************** Optimizer (Recompile) *************\nMemory Budget = " + 
+						   OptimizerUtils.toMB(OptimizerUtils.getLocalMemBudget()) + " MB");
+	
+				// prepare hops dag for recompile
+				if( !inplace ){ 
+					// deep copy hop dag (for non-reversable rewrites)
+					hops = deepCopyHopsDag(hops);
+				}
+				else {
+					// clear existing lops
+					Hop.resetVisitStatus(hops);
+					for( Hop hopRoot : hops )
+						rClearLops( hopRoot );
+				}
 
-			// replace scalar reads with literals 
-			if( !inplace ) {
+				// replace scalar reads with literals 
+				if( !inplace ) {
+					Hop.resetVisitStatus(hops);
+					for( Hop hopRoot : hops )
+						rReplaceLiterals( hopRoot, vars );
+				}
+			
+				// refresh matrix characteristics (update stats)			
 				Hop.resetVisitStatus(hops);
 				for( Hop hopRoot : hops )
-					rReplaceLiterals( hopRoot, vars );
-			}
+					rUpdateStatistics( hopRoot, vars );
 			
-			// refresh matrix characteristics (update stats)			
-			Hop.resetVisitStatus(hops);
-			for( Hop hopRoot : hops )
-				rUpdateStatistics( hopRoot, vars );
+				// dynamic hop rewrites
+				if( !inplace )
+					rewriter.rewriteHopDAGs( hops, null );
 			
-			// dynamic hop rewrites
-			if( !inplace )
-				rewriter.rewriteHopDAGs( hops, null );
+				// refresh memory estimates (based on updated stats,
+				// before: init memo table with propagated worst-case estimates,
+				// after: extract worst-case estimates from memo table 
+				Hop.resetVisitStatus(hops);
+				MemoTable memo = new MemoTable();
+				memo.init(hops, status);
+				Hop.resetVisitStatus(hops);
+				for( Hop hopRoot : hops )
+					hopRoot.refreshMemEstimates(memo); 
+				memo.extract(hops, status);
 			
-			// refresh memory estimates (based on updated stats,
-			// before: init memo table with propagated worst-case estimates,
-			// after: extract worst-case estimates from memo table 
-			Hop.resetVisitStatus(hops);
-			MemoTable memo = new MemoTable();
-			memo.init(hops, status);
-			Hop.resetVisitStatus(hops);
-			for( Hop hopRoot : hops )
-				hopRoot.refreshMemEstimates(memo); 
-			memo.extract(hops, status);
+				// construct lops			
+				Dag<Lop> dag = new Dag<Lop>();
+				for( Hop hopRoot : hops ){
+					Lop lops = hopRoot.constructLops();
+					lops.addToDag(dag);	
+				}		
 			
-			// construct lops			
-			Dag<Lop> dag = new Dag<Lop>();
-			for( Hop hopRoot : hops ){
-				Lop lops = hopRoot.constructLops();
-				lops.addToDag(dag);	
-			}		
+				// generate runtime instructions (incl piggybacking)
+				newInst = dag.getJobs(sb, ConfigurationManager.getConfig());	
 			
-			// generate runtime instructions (incl piggybacking)
-			newInst = dag.getJobs(sb, ConfigurationManager.getConfig());	
+				// put new plan into cache
+				if( cacheKey != null )
+					sb.getRecompilePlanCache().put(cacheKey, newInst);
+			}
 		}
 		
+		if( cacheHit && DMLScript.STATISTICS )
+			Statistics.incrementHOPRecompilePlanCacheHits();
+		
 		// replace thread ids in new instructions
 		if( tid != 0 ) //only in parfor context
 			newInst = ProgramConverter.createDeepCopyInstructionSet(newInst, tid, -1, null, null, null, false, false);
@@ -344,6 +373,10 @@ public class Recompiler
 			LOG.debug ("\n**************** Optimizer (Recompile) *************\nMemory Budget = " + 
 					   OptimizerUtils.toMB(OptimizerUtils.getLocalMemBudget()) + " MB");
 	
+			// invalidate cached plans (in-place update of exec types)
+			if( sb != null )
+				sb.clearRecompilePlanCache();
+			
 			// clear existing lops
 			Hop.resetVisitStatus(hops);
 			for( Hop hopRoot : hops )
@@ -1652,6 +1685,10 @@ public class Recompiler
 					d.setDim1(mo.getNumRows());
 					d.setDim2(mo.getNumColumns());
 					d.setNnz(mo.getNnz());
+					
+					//structural sketch for sparsity estimates of matrix products
+					boolean sketch = OptimizerUtils.ALLOW_SPARSITY_SKETCHES && isMatMultInput(d);
+					d.setSketch(sketch ? mo.getSketch() : null);
 				}
 			}
 		}
@@ -1745,6 +1782,24 @@ public class Recompiler
 		hop.setVisited(VisitStatus.DONE);
 	}
 
+	/**
+	 * Indicates if the given hop is consumed by a matrix multiplication,
+	 * either directly or via transpose.
+	 * 
+	 * @param hop
+	 * @return
+	 */
+	protected static boolean isMatMultInput( Hop hop )
+	{
+		for( Hop p : hop.getParent() ) {
+			if( p instanceof AggBinaryOp && ((AggBinaryOp)p).isMatrixMultiply() )
+				return true;
+			if( p instanceof ReorgOp && ((ReorgOp)p).getOp()==ReOrgOp.TRANSPOSE && isMatMultInput(p) )
+				return true;
+		}
+		return false;
+	}
+	
 	/**
 	 * public interface to package local literal replacement
 	 * 
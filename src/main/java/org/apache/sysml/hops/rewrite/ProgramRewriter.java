@@ -41,6 +41,7 @@ import org.apache.sysml.parser.ParForStatementBlock;
 import org.apache.sysml.parser.StatementBlock;
 import org.apache.sysml.parser.WhileStatement;
 import org.apache.sysml.parser.WhileStatementBlock;
+import org.apache.sysml.runtime.codegen.CodegenUtils;
 
 /**
  * This program rewriter applies a variety of rule-based rewrites
@@ -111,8 +112,12 @@ public class ProgramRewriter
  				_sbRuleSet.add(  new RewriteSplitDagUnknownCSVRead()             ); //dependency: reblock	
  			if( OptimizerUtils.ALLOW_INDIVIDUAL_SB_SPECIFIC_OPS )
  				_sbRuleSet.add(  new RewriteSplitDagDataDependentOperators()     );
- 			if( OptimizerUtils.ALLOW_AUTO_VECTORIZATION )
+ 			if( OptimizerUtils.ALLOW_AUTO_VECTORIZATION || OptimizerUtils.ALLOW_LOOP_UNROLLING )
 				_sbRuleSet.add(  new RewriteForLoopVectorization()               ); //dependency: reblock (reblockop)
+ 			if( OptimizerUtils.ALLOW_LOOP_INVARIANT_CODE_MOTION )
+ 				_sbRuleSet.add(  new RewriteHoistLoopInvariantOperations()       ); //dependency: vectorization
+ 			if( OptimizerUtils.ALLOW_LOOP_UPDATE_IN_PLACE )
+ 				_sbRuleSet.add(  new RewriteMarkLoopVariablesUpdateInPlace()     ); //dependency: vectorization
  			_sbRuleSet.add( new RewriteInjectSparkLoopCheckpointing(true)        ); //dependency: reblock (blocksizes)
 		}
 		
@@ -131,6 +136,10 @@ public class ProgramRewriter
 			//(2) newly introduced operators potentially created redundancy (incl leaf merge to allow for cse)
 			if( OptimizerUtils.ALLOW_COMMON_SUBEXPRESSION_ELIMINATION )             
 				_dagRuleSet.add( new RewriteCommonSubexpressionElimination(true) ); //dependency: simplifications 			
+			
+			//fuse cell-wise operator chains after all simplifications (requires a java compiler)
+			if( OptimizerUtils.ALLOW_OPERATOR_FUSION && CodegenUtils.isCompilerAvailable() )
+				_dagRuleSet.add( new RewriteOperatorFusion()                      ); //dependency: cse, simplifications
 		}
 	}
 	
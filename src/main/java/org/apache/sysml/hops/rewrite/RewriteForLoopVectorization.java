@@ -20,40 +20,76 @@
 package org.apache.sysml.hops.rewrite;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 
 import org.apache.sysml.hops.AggUnaryOp;
 import org.apache.sysml.hops.BinaryOp;
 import org.apache.sysml.hops.DataOp;
 import org.apache.sysml.hops.Hop;
 import org.apache.sysml.hops.Hop.AggOp;
+import org.apache.sysml.hops.Hop.DataOpTypes;
 import org.apache.sysml.hops.Hop.Direction;
 import org.apache.sysml.hops.Hop.OpOp1;
+import org.apache.sysml.hops.Hop.OpOp2;
 import org.apache.sysml.hops.HopsException;
 import org.apache.sysml.hops.IndexingOp;
 import org.apache.sysml.hops.LeftIndexingOp;
 import org.apache.sysml.hops.LiteralOp;
-import org.apache.sysml.hops.Hop.OpOp2;
+import org.apache.sysml.hops.OptimizerUtils;
 import org.apache.sysml.hops.UnaryOp;
+import org.apache.sysml.hops.recompile.Recompiler;
 import org.apache.sysml.parser.ForStatement;
 import org.apache.sysml.parser.ForStatementBlock;
+import org.apache.sysml.parser.FunctionStatementBlock;
 import org.apache.sysml.parser.IfStatementBlock;
+import org.apache.sysml.parser.IntIdentifier;
+import org.apache.sysml.parser.IterablePredicate;
+import org.apache.sysml.parser.ParForStatementBlock;
 import org.apache.sysml.parser.StatementBlock;
+import org.apache.sysml.parser.VariableSet;
 import org.apache.sysml.parser.WhileStatementBlock;
 import org.apache.sysml.parser.Expression.DataType;
 import org.apache.sysml.parser.Expression.ValueType;
 
 /**
- * Rule: Simplify program structure by pulling if or else statement body out
- * (removing the if statement block ifself) in order to allow intra-procedure
- * analysis to propagate exact statistics.
+ * Rule: Vectorize for loops over row or column indexes, whose body is a single
+ * last-level statement block of element-wise operations. All statements need to be
+ * either left indexing X[i+c,...] = f(...) with affine row (column) index, or scalar 
+ * accumulations s = s + g(...), where f and g are element-wise operations over 
+ * cells or rows (columns) indexed by the same affine expression of the loop variable 
+ * and loop-invariant scalars. Loop-carried dependencies are excluded by requiring 
+ * reads of updated matrices to use an offset greater or equal to the write offset. 
+ * Nested loops are vectorized bottom-up, i.e., inner loops first.
+ * 
+ * Non-vectorizable for loops with small bodies are partially unrolled in order to
+ * reduce the per-iteration overhead of instruction dispatch and predicate evaluation.
  * 
  */
 public class RewriteForLoopVectorization extends StatementBlockRewriteRule
 {
-
 	private static final OpOp2[] MAP_SCALAR_AGGREGATE_SOURCE_OPS = new OpOp2[]{OpOp2.PLUS, OpOp2.MULT, OpOp2.MIN, OpOp2.MAX};
 	private static final AggOp[] MAP_SCALAR_AGGREGATE_TARGET_OPS = new AggOp[]{AggOp.SUM,  AggOp.PROD, AggOp.MIN, AggOp.MAX};
 	
+	//note: no logical operations (NOT, AND, OR) because they are scalar-only
+	private static final OpOp1[] ELEMENTWISE_UNARY_OPS = new OpOp1[]{OpOp1.ABS, OpOp1.SIN, OpOp1.COS, 
+		OpOp1.TAN, OpOp1.ASIN, OpOp1.ACOS, OpOp1.ATAN, OpOp1.SIGN, OpOp1.SQRT, OpOp1.LOG, OpOp1.EXP, 
+		OpOp1.ROUND, OpOp1.CEIL, OpOp1.FLOOR, OpOp1.SPROP, OpOp1.SIGMOID};
+	private static final OpOp2[] ELEMENTWISE_BINARY_OPS = new OpOp2[]{OpOp2.PLUS, OpOp2.MINUS, OpOp2.MULT, 
+		OpOp2.DIV, OpOp2.MODULUS, OpOp2.INTDIV, OpOp2.LESS, OpOp2.LESSEQUAL, OpOp2.GREATER, OpOp2.GREATEREQUAL, 
+		OpOp2.EQUAL, OpOp2.NOTEQUAL, OpOp2.MIN, OpOp2.MAX, OpOp2.POW};
+	
+	//unrolling parameters (unroll factor, max number of hops of loop body)
+	private static final int UNROLL_FACTOR = 4;
+	private static final int UNROLL_MAX_BODY_SIZE = 32;
+	
+	//characteristics of (vectorized) expressions per iteration
+	private enum VectorKind {
+		INVARIANT, //loop-invariant scalar
+		CELL,      //single cell of row/column i
+		SLICE,     //row/column i
+		INVALID,
+	}
 	
 	@Override
 	public ArrayList<StatementBlock> rewriteStatementBlock(StatementBlock sb, ProgramRewriteStatus state)
@@ -73,14 +109,20 @@ public class RewriteForLoopVectorization extends StatementBlockRewriteRule
 			if( fs.getBody()!=null && fs.getBody().size()==1 ) //single child block
 			{
 				StatementBlock csb = (StatementBlock) fs.getBody().get(0);
-				if( !(   csb instanceof WhileStatementBlock  //last level block
-					  || csb instanceof IfStatementBlock 
-					  || csb instanceof ForStatementBlock ) )
+				if( isLastLevelStatementBlock(csb) )
 				{
-					//auto vectorzation pattern
-					sb = vectorizeScalarAggregate(sb, csb, from, to, incr, iterVar);           //e.g., for(i){s = s + as.scalar(X[i,2])}
-					sb = vectorizeElementwiseBinary(sb, csb, from, to, incr, iterVar);
-					sb = vectorizeElementwiseUnary(sb, csb, from, to, incr, iterVar);
+					//auto vectorization (e.g., for(i){s = s + as.scalar(X[i,2])}, for(i){Y[i,] = X[i,]*2})
+					if( OptimizerUtils.ALLOW_AUTO_VECTORIZATION ) {
+						sb = vectorizeElementwise(sb, csb, from, to, incr, iterVar, true);
+						if( sb instanceof ForStatementBlock )
+							sb = vectorizeElementwise(sb, csb, from, to, incr, iterVar, false);
+					}
+					
+					//partial loop unrolling, if not vectorized
+					if( OptimizerUtils.ALLOW_LOOP_UNROLLING && sb instanceof ForStatementBlock ) {
+						ret.addAll( unrollForLoop(fsb, csb, iterVar) );
+						return ret;
+					}
 				}	
 			}	
 		}	
@@ -92,6 +134,10 @@ public class RewriteForLoopVectorization extends StatementBlockRewriteRule
 		return ret;
 	}
 	
+	///////////////////////////////////
+	// AUTO VECTORIZATION
+	///////////////////////////////////
+	
 	/**
 	 * Note: unnecessary row or column indexing then later removed via
 	 * dynamic rewrites
@@ -102,299 +148,666 @@ public class RewriteForLoopVectorization extends StatementBlockRewriteRule
 	 * @param to
 	 * @param increment
 	 * @param itervar
+	 * @param rowIx
 	 * @return
 	 * @throws HopsException
 	 */
-	private StatementBlock vectorizeScalarAggregate( StatementBlock sb, StatementBlock csb, Hop from, Hop to, Hop increment, String itervar ) 
+	private StatementBlock vectorizeElementwise( StatementBlock sb, StatementBlock csb, Hop from, Hop to, Hop increment, String itervar, boolean rowIx ) 
 		throws HopsException
 	{
 		StatementBlock ret = sb;
 		
-		//check supported increment values
-		if( !(increment instanceof LiteralOp && ((LiteralOp)increment).getDoubleValue()==1.0) ){
+		//check supported increment values, and no use of iteration variable after loop
+		if( !(increment instanceof LiteralOp && ((LiteralOp)increment).getDoubleValue()==1.0)
+			|| from == null || to == null || sb.liveOut().containsVariable(itervar) ){
 			return ret;
 		}
-			
+		
 		//check for applicability
-		boolean leftScalar = false;
-		boolean rightScalar = false;
-		boolean rowIx = false; //row or col
+		ArrayList<Hop> roots = csb.get_hops();
+		if( roots == null || roots.isEmpty() || !isApplicableForVectorization(roots, itervar, rowIx) )
+			return ret;
 		
-		if( csb.get_hops()!=null && csb.get_hops().size()==1 ){
-			Hop root = csb.get_hops().get(0);
-			
-			if( root.getDataType()==DataType.SCALAR && root.getInput().get(0) instanceof BinaryOp ) {
-				BinaryOp bop = (BinaryOp) root.getInput().get(0);
-				Hop left = bop.getInput().get(0);
-				Hop right = bop.getInput().get(1);
+		//apply rewrite per root
+		HashMap<Long, Hop> memo = new HashMap<Long, Hop>();
+		for( Hop root : roots )
+		{
+			Hop input = root.getInput().get(0);
+			if( root.getDataType()==DataType.MATRIX ) //left indexing
+			{
+				LeftIndexingOp lix = (LeftIndexingOp) input;
+				int index1 = rowIx ? 2 : 4;
+				long offset = getAffineOffset(lix.getInput().get(index1), itervar);
+				setIndexRange(lix, index1, from, to, offset);
+				if( rowIx )
+					lix.setRowLowerEqualsUpper(false);
+				else
+					lix.setColLowerEqualsUpper(false);
 				
-				//check for left scalar plus
-				if( HopRewriteUtils.isValidOp(bop.getOp(), MAP_SCALAR_AGGREGATE_SOURCE_OPS) 
-					&& left instanceof DataOp && left.getDataType() == DataType.SCALAR
-					&& root.getName().equals(left.getName()) 
-					&& right instanceof UnaryOp && ((UnaryOp) right).getOp() == OpOp1.CAST_AS_SCALAR
-					&& right.getInput().get(0) instanceof IndexingOp )
-				{
-					IndexingOp ix = (IndexingOp)right.getInput().get(0);
-					if( ix.getRowLowerEqualsUpper() && ix.getInput().get(1) instanceof DataOp
-						&& ix.getInput().get(1).getName().equals(itervar) ){
-						leftScalar = true;
-						rowIx = true;
-					}
-					else if( ix.getColLowerEqualsUpper() && ix.getInput().get(3) instanceof DataOp
-						&& ix.getInput().get(3).getName().equals(itervar) ){
-						leftScalar = true;
-						rowIx = false;
-					}
-				}
-				//check for right scalar plus
-				else if( HopRewriteUtils.isValidOp(bop.getOp(), MAP_SCALAR_AGGREGATE_SOURCE_OPS)  
-					&& right instanceof DataOp && right.getDataType() == DataType.SCALAR
-					&& root.getName().equals(right.getName()) 
-					&& left instanceof UnaryOp && ((UnaryOp) left).getOp() == OpOp1.CAST_AS_SCALAR
-					&& left.getInput().get(0) instanceof IndexingOp )
-				{
-					IndexingOp ix = (IndexingOp)left.getInput().get(0);
-					if( ix.getRowLowerEqualsUpper() && ix.getInput().get(1) instanceof DataOp
-						&& ix.getInput().get(1).getName().equals(itervar) ){
-						rightScalar = true;
-						rowIx = true;
-					}
-					else if( ix.getColLowerEqualsUpper() && ix.getInput().get(3) instanceof DataOp
-						&& ix.getInput().get(3).getName().equals(itervar) ){
-						rightScalar = true;
-						rowIx = false;
-					}
+				Hop rhs = lix.getInput().get(1);
+				Hop vrhs = rVectorize(rhs, from, to, itervar, rowIx, memo);
+				replaceChildReference(lix, rhs, vrhs);
+				lix.refreshSizeInformation();
+			}
+			else //scalar aggregate
+			{
+				BinaryOp bop = (BinaryOp) input;
+				int pos = bop.getInput().get(0).getName().equals(root.getName()) ? 1 : 0;
+				AggOp aggOp = MAP_SCALAR_AGGREGATE_TARGET_OPS[
+					HopRewriteUtils.getValidOpPos(bop.getOp(), MAP_SCALAR_AGGREGATE_SOURCE_OPS)];
+				Hop expr = bop.getInput().get(pos);
+				Hop vexpr = isMatchingAggregate(expr, aggOp) ?
+					rVectorize(expr.getInput().get(0), from, to, itervar, rowIx, memo) :
+					rVectorize(expr, from, to, itervar, rowIx, memo);
+				AggUnaryOp agg = new AggUnaryOp(expr.getName(), DataType.SCALAR, ValueType.DOUBLE, aggOp, Direction.RowCol, vexpr);
+				HopRewriteUtils.copyLineNumbers(expr, agg);
+				agg.refreshSizeInformation();
+				replaceChildReference(bop, expr, agg);
+			}
+		}
+		
+		ret = csb;
+		//ret.liveIn().removeVariable(itervar);
+		LOG.debug("Applied vectorizeElementwiseForLoop ("+(rowIx?"row":"column")+"-wise, lines "
+			+sb.getBeginLine()+"-"+sb.getEndLine()+").");
+		
+		return ret;
+	}
+	
+	/**
+	 * 
+	 * @param roots
+	 * @param itervar
+	 * @param rowIx
+	 * @return
+	 * @throws HopsException
+	 */
+	private boolean isApplicableForVectorization( ArrayList<Hop> roots, String itervar, boolean rowIx ) 
+		throws HopsException
+	{
+		//collect updated variables and write offsets of left indexing
+		HashSet<String> updated = new HashSet<String>();
+		HashMap<String, Long> offsets = new HashMap<String, Long>();
+		for( Hop root : roots )
+		{
+			if( !(root instanceof DataOp && ((DataOp)root).getDataOpType()==DataOpTypes.TRANSIENTWRITE)
+				|| root.getName().equals(itervar) )
+				return false;
+			
+			Hop input = root.getInput().get(0);
+			if( root.getDataType()==DataType.MATRIX && input instanceof LeftIndexingOp ) {
+				LeftIndexingOp lix = (LeftIndexingOp) input;
+				Hop target = lix.getInput().get(0);
+				Long offset = getAffineOffset(lix.getInput().get(rowIx ? 2 : 4), itervar);
+				if( !isTransientRead(target, root.getName()) || offset == null
+					|| !(rowIx ? lix.getRowLowerEqualsUpper() : lix.getColLowerEqualsUpper()) )
+					return false;
+				offsets.put(root.getName(), offset);
+			}
+			else if( root.getDataType()==DataType.SCALAR && input instanceof BinaryOp ) {
+				BinaryOp bop = (BinaryOp) input;
+				if( !HopRewriteUtils.isValidOp(bop.getOp(), MAP_SCALAR_AGGREGATE_SOURCE_OPS)
+					|| !(isTransientRead(bop.getInput().get(0), root.getName()) 
+						|| isTransientRead(bop.getInput().get(1), root.getName())) )
+					return false;
+			}
+			else {
+				return false;
+			}
+			updated.add(root.getName());
+		}
+		
+		//check element-wise operations over cells or rows/columns of iteration
+		HashMap<Long, VectorKind> memo = new HashMap<Long, VectorKind>();
+		for( Hop root : roots )
+		{
+			Hop input = root.getInput().get(0);
+			if( root.getDataType()==DataType.MATRIX ) {
+				LeftIndexingOp lix = (LeftIndexingOp) input;
+				int index1 = rowIx ? 4 : 2; //other dimension
+				VectorKind kind = rGetVectorKind(lix.getInput().get(1), itervar, rowIx, updated, offsets, memo);
+				if(   !isInvariantBound(lix.getInput().get(index1), itervar, updated)
+					|| !isInvariantBound(lix.getInput().get(index1+1), itervar, updated)
+					|| !(kind==VectorKind.CELL || kind==VectorKind.SLICE) )
+					return false;
+			}
+			else {
+				BinaryOp bop = (BinaryOp) input;
+				int pos = bop.getInput().get(0).getName().equals(root.getName()) ? 1 : 0;
+				AggOp aggOp = MAP_SCALAR_AGGREGATE_TARGET_OPS[
+					HopRewriteUtils.getValidOpPos(bop.getOp(), MAP_SCALAR_AGGREGATE_SOURCE_OPS)];
+				Hop expr = bop.getInput().get(pos);
+				if( isMatchingAggregate(expr, aggOp) ) { //e.g., s = s + sum(X[i,])
+					VectorKind kind = rGetVectorKind(expr.getInput().get(0), itervar, rowIx, updated, offsets, memo);
+					if( !(kind==VectorKind.CELL || kind==VectorKind.SLICE) )
+						return false;
 				}
+				else if( expr.getDataType()!=DataType.SCALAR
+					|| rGetVectorKind(expr, itervar, rowIx, updated, offsets, memo) != VectorKind.CELL )
+					return false;
 			}
 		}
 		
-		//apply rewrite if possible
-		if( leftScalar || rightScalar ) 
+		return true;
+	}
+	
+	/**
+	 * Determines the characteristics of the given expression per iteration.
+	 * 
+	 * @param hop
+	 * @param itervar
+	 * @param rowIx
+	 * @param updated
+	 * @param offsets
+	 * @param memo
+	 * @return
+	 * @throws HopsException
+	 */
+	private VectorKind rGetVectorKind( Hop hop, String itervar, boolean rowIx, HashSet<String> updated, HashMap<String, Long> offsets, HashMap<Long, VectorKind> memo ) 
+		throws HopsException
+	{
+		if( memo.containsKey(hop.getHopID()) )
+			return memo.get(hop.getHopID());
+		
+		VectorKind ret = VectorKind.INVALID;
+		
+		if( hop instanceof LiteralOp ) 
 		{
-			Hop root = csb.get_hops().get(0);
-			BinaryOp bop = (BinaryOp) root.getInput().get(0);
-			Hop cast = bop.getInput().get( leftScalar?1:0 );
-			Hop ix = cast.getInput().get(0);
-			int aggOpPos = HopRewriteUtils.getValidOpPos(bop.getOp(), MAP_SCALAR_AGGREGATE_SOURCE_OPS);
-			AggOp aggOp = MAP_SCALAR_AGGREGATE_TARGET_OPS[aggOpPos];
-			//replace cast with sum
-			AggUnaryOp newSum = new AggUnaryOp(cast.getName(), DataType.SCALAR, ValueType.DOUBLE, aggOp, Direction.RowCol, ix);
-			HopRewriteUtils.removeChildReference(cast, ix);
-			HopRewriteUtils.removeChildReference(bop, cast);
-			HopRewriteUtils.addChildReference(bop, newSum, leftScalar?1:0 );
-			//modify indexing expression according to loop predicate from-to
-			//NOTE: any redundant index operations are removed via dynamic algebraic simplification rewrites
+			ret = VectorKind.INVARIANT;
+		}
+		else if( hop instanceof DataOp ) //scalar variables not updated in loop
+		{
+			if( hop.getDataType()==DataType.SCALAR && isTransientRead(hop, hop.getName())
+				&& !hop.getName().equals(itervar) && !updated.contains(hop.getName()) )
+				ret = VectorKind.INVARIANT;
+		}
+		else if( hop instanceof IndexingOp ) //right indexing w/ affine index
+		{
+			IndexingOp ix = (IndexingOp) hop;
+			Hop data = ix.getInput().get(0);
 			int index1 = rowIx ? 1 : 3;
-			int index2 = rowIx ? 2 : 4;
-			HopRewriteUtils.removeChildReferenceByPos(ix, ix.getInput().get(index1), index1);
-			HopRewriteUtils.addChildReference(ix, from, index1);
-			HopRewriteUtils.removeChildReferenceByPos(ix, ix.getInput().get(index2), index2);
-			HopRewriteUtils.addChildReference(ix, to, index2);
-			
-			ret = csb;
-			//ret.liveIn().removeVariable(itervar);
-			LOG.debug("Applied vectorizeScalarSumForLoop.");
+			int index2 = rowIx ? 3 : 1; //other dimension
+			Long offset = getAffineOffset(ix.getInput().get(index1), itervar);
+			if( data.getDataType()==DataType.MATRIX && isTransientRead(data, data.getName()) 
+				&& (rowIx ? ix.getRowLowerEqualsUpper() : ix.getColLowerEqualsUpper()) && offset != null
+				&& isInvariantBound(ix.getInput().get(index2), itervar, updated)
+				&& isInvariantBound(ix.getInput().get(index2+1), itervar, updated) 
+				//no loop-carried dependency (read before write in previous iteration)
+				&& (!offsets.containsKey(data.getName()) || offset >= offsets.get(data.getName()))
+				&& (offsets.containsKey(data.getName()) || !updated.contains(data.getName())) )
+			{
+				ret = (rowIx ? ix.getColLowerEqualsUpper() : ix.getRowLowerEqualsUpper()) ? 
+					VectorKind.CELL : VectorKind.SLICE;
+			}
+		}
+		else if( hop instanceof UnaryOp ) 
+		{
+			UnaryOp uop = (UnaryOp) hop;
+			VectorKind in = rGetVectorKind(hop.getInput().get(0), itervar, rowIx, updated, offsets, memo);
+			if( uop.getOp()==OpOp1.CAST_AS_SCALAR && in==VectorKind.CELL )
+				ret = VectorKind.CELL;
+			else if( HopRewriteUtils.isValidOp(uop.getOp(), ELEMENTWISE_UNARY_OPS) )
+				ret = in;
+		}
+		else if( hop instanceof BinaryOp 
+			&& HopRewriteUtils.isValidOp(((BinaryOp)hop).getOp(), ELEMENTWISE_BINARY_OPS) )
+		{
+			VectorKind in1 = rGetVectorKind(hop.getInput().get(0), itervar, rowIx, updated, offsets, memo);
+			VectorKind in2 = rGetVectorKind(hop.getInput().get(1), itervar, rowIx, updated, offsets, memo);
+			if( in1 == VectorKind.INVARIANT )
+				ret = in2;
+			else if( in2 == VectorKind.INVARIANT || in1 == in2 )
+				ret = in1;
 		}
 		
+		//invariant matrices would require broadcasting
+		if( ret == VectorKind.INVARIANT && hop.getDataType()!=DataType.SCALAR )
+			ret = VectorKind.INVALID;
+		
+		memo.put(hop.getHopID(), ret);
 		return ret;
 	}
 	
 	/**
-	 * Note: unnecessary row or column indexing then later removed via
-	 * dynamic rewrites
+	 * Creates the vectorized expression, where per-iteration cells and rows/columns
+	 * are replaced by the columns/rows or matrices over the loop range.
 	 * 
-	 * @param sb
-	 * @param csb
+	 * @param hop
 	 * @param from
 	 * @param to
-	 * @param increment
 	 * @param itervar
+	 * @param rowIx
+	 * @param memo
 	 * @return
 	 * @throws HopsException
 	 */
-	private StatementBlock vectorizeElementwiseBinary( StatementBlock sb, StatementBlock csb, Hop from, Hop to, Hop increment, String itervar ) 
+	private Hop rVectorize( Hop hop, Hop from, Hop to, String itervar, boolean rowIx, HashMap<Long, Hop> memo ) 
 		throws HopsException
 	{
-		StatementBlock ret = sb;
+		if( memo.containsKey(hop.getHopID()) )
+			return memo.get(hop.getHopID());
 		
-		//check supported increment values
-		if( !(increment instanceof LiteralOp && ((LiteralOp)increment).getDoubleValue()==1.0) ){
-			return ret;
+		Hop ret = hop; //loop-invariant scalars
+		
+		if( hop instanceof IndexingOp ) 
+		{
+			//modify indexing expression according to loop predicate from-to
+			IndexingOp ix = (IndexingOp) hop;
+			int index1 = rowIx ? 1 : 3;
+			long offset = getAffineOffset(ix.getInput().get(index1), itervar);
+			setIndexRange(ix, index1, from, to, offset);
+			if( rowIx )
+				ix.setRowLowerEqualsUpper(false);
+			else
+				ix.setColLowerEqualsUpper(false);
+			ix.refreshSizeInformation();
 		}
-			
-		//check for applicability
-		boolean apply = false;
-		boolean rowIx = false; //row or col
-		if( csb.get_hops()!=null && csb.get_hops().size()==1 )
+		else if( hop instanceof UnaryOp && ((UnaryOp)hop).getOp()==OpOp1.CAST_AS_SCALAR ) 
 		{
-			Hop root = csb.get_hops().get(0);
-			
-			if( root.getDataType()==DataType.MATRIX && root.getInput().get(0) instanceof LeftIndexingOp )
-			{
-				LeftIndexingOp lix = (LeftIndexingOp) root.getInput().get(0);
-				Hop lixlhs = lix.getInput().get(0);
-				Hop lixrhs = lix.getInput().get(1);
-				
-				if( lixlhs instanceof DataOp && lixrhs instanceof BinaryOp
-					&& lixrhs.getInput().get(0) instanceof IndexingOp	
-					&& lixrhs.getInput().get(1) instanceof IndexingOp
-					&& lixrhs.getInput().get(0).getInput().get(0) instanceof DataOp
-					&& lixrhs.getInput().get(1).getInput().get(0) instanceof DataOp)
-				{			
-					IndexingOp rix0 = (IndexingOp) lixrhs.getInput().get(0);
-					IndexingOp rix1 = (IndexingOp) lixrhs.getInput().get(1);
-					
-					//check for rowwise
-					if(    lix.getRowLowerEqualsUpper() && rix0.getRowLowerEqualsUpper() && rix1.getRowLowerEqualsUpper() 
-						&& lix.getInput().get(2).getName().equals(itervar)
-						&& rix0.getInput().get(1).getName().equals(itervar)
-						&& rix1.getInput().get(1).getName().equals(itervar))
-					{
-						apply = true;
-						rowIx = true;
-					}
-					//check for colwise
-					if(    lix.getColLowerEqualsUpper() && rix0.getColLowerEqualsUpper() && rix1.getColLowerEqualsUpper() 
-						&& lix.getInput().get(4).getName().equals(itervar)
-						&& rix0.getInput().get(3).getName().equals(itervar)
-						&& rix1.getInput().get(3).getName().equals(itervar))
-					{
-						apply = true;
-						rowIx = false;
-					}
-				}
+			ret = rVectorize(hop.getInput().get(0), from, to, itervar, rowIx, memo);
+		}
+		else if( hop instanceof UnaryOp ) 
+		{
+			Hop in = rVectorize(hop.getInput().get(0), from, to, itervar, rowIx, memo);
+			if( in != hop.getInput().get(0) ) {
+				ret = new UnaryOp(hop.getName(), DataType.MATRIX, ValueType.DOUBLE, ((UnaryOp)hop).getOp(), in);
+				HopRewriteUtils.setOutputBlocksizes(ret, in.getRowsInBlock(), in.getColsInBlock());
+				HopRewriteUtils.copyLineNumbers(hop, ret);
+				ret.refreshSizeInformation();
 			}
-		}	
-		
-		//apply rewrite if possible
-		if( apply ) 
+		}
+		else if( hop instanceof BinaryOp ) 
 		{
-			Hop root = csb.get_hops().get(0);
-			LeftIndexingOp lix = (LeftIndexingOp) root.getInput().get(0);
-			BinaryOp bop = (BinaryOp) lix.getInput().get(1);
-			IndexingOp rix0 = (IndexingOp) bop.getInput().get(0);
-			IndexingOp rix1 = (IndexingOp) bop.getInput().get(1);
-			int index1 = rowIx ? 2 : 4;
-			int index2 = rowIx ? 3 : 5;
-			//modify left indexing bounds
-			HopRewriteUtils.removeChildReferenceByPos(lix, lix.getInput().get(index1), index1 );
-			HopRewriteUtils.addChildReference(lix, from, index1);
-			HopRewriteUtils.removeChildReferenceByPos(lix, lix.getInput().get(index2), index2 );
-			HopRewriteUtils.addChildReference(lix, to, index2);
-			//modify both right indexing
-			HopRewriteUtils.removeChildReferenceByPos(rix0, rix0.getInput().get(index1-1), index1-1 );
-			HopRewriteUtils.addChildReference(rix0, from, index1-1);
-			HopRewriteUtils.removeChildReferenceByPos(rix0, rix0.getInput().get(index2-1), index2-1 );
-			HopRewriteUtils.addChildReference(rix0, to, index2-1);
-			HopRewriteUtils.removeChildReferenceByPos(rix1, rix1.getInput().get(index1-1), index1-1 );
-			HopRewriteUtils.addChildReference(rix1, from, index1-1);
-			HopRewriteUtils.removeChildReferenceByPos(rix1, rix1.getInput().get(index2-1), index2-1 );
-			HopRewriteUtils.addChildReference(rix1, to, index2-1);
-			rix0.refreshSizeInformation();
-			rix1.refreshSizeInformation();
-			bop.refreshSizeInformation();
-			lix.refreshSizeInformation();
-			
-			ret = csb;
-			//ret.liveIn().removeVariable(itervar);
-			LOG.debug("Applied vectorizeElementwiseBinaryForLoop.");
+			Hop in1 = rVectorize(hop.getInput().get(0), from, to, itervar, rowIx, memo);
+			Hop in2 = rVectorize(hop.getInput().get(1), from, to, itervar, rowIx, memo);
+			if( in1 != hop.getInput().get(0) || in2 != hop.getInput().get(1) ) {
+				Hop in = (in1.getDataType()==DataType.MATRIX) ? in1 : in2;
+				ret = new BinaryOp(hop.getName(), DataType.MATRIX, ValueType.DOUBLE, ((BinaryOp)hop).getOp(), in1, in2);
+				HopRewriteUtils.setOutputBlocksizes(ret, in.getRowsInBlock(), in.getColsInBlock());
+				HopRewriteUtils.copyLineNumbers(hop, ret);
+				ret.refreshSizeInformation();
+			}
 		}
 		
+		memo.put(hop.getHopID(), ret);
 		return ret;
 	}
 	
 	/**
-	 * Note: unnecessary row or column indexing then later removed via
-	 * dynamic rewrites
+	 * Replaces the lower and upper index bounds at the given positions
+	 * by the loop range (from+offset):(to+offset).
 	 * 
-	 * @param sb
-	 * @param csb
+	 * @param hop
+	 * @param index1
 	 * @param from
 	 * @param to
-	 * @param increment
-	 * @param itervar
+	 * @param offset
+	 */
+	private void setIndexRange( Hop hop, int index1, Hop from, Hop to, long offset )
+	{
+		int index2 = index1 + 1;
+		HopRewriteUtils.removeChildReferenceByPos(hop, hop.getInput().get(index1), index1);
+		HopRewriteUtils.addChildReference(hop, getOffsetHop(from, offset), index1);
+		HopRewriteUtils.removeChildReferenceByPos(hop, hop.getInput().get(index2), index2);
+		HopRewriteUtils.addChildReference(hop, getOffsetHop(to, offset), index2);
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param offset
 	 * @return
+	 */
+	private Hop getOffsetHop( Hop hop, long offset )
+	{
+		if( offset == 0 )
+			return hop;
+		
+		return (offset > 0) ?
+			HopRewriteUtils.createBinary(hop, new LiteralOp(offset), OpOp2.PLUS) :
+			HopRewriteUtils.createBinary(hop, new LiteralOp(-offset), OpOp2.MINUS);
+	}
+	
+	/**
+	 * Obtains the offset c of index expressions i, i+c, c+i, or i-c.
+	 * 
+	 * @param hop
+	 * @param itervar
+	 * @return offset, or null if not an affine index expression
 	 * @throws HopsException
 	 */
-	private StatementBlock vectorizeElementwiseUnary( StatementBlock sb, StatementBlock csb, Hop from, Hop to, Hop increment, String itervar )
+	private Long getAffineOffset( Hop hop, String itervar ) 
 		throws HopsException
 	{
-		StatementBlock ret = sb;
+		if( isTransientRead(hop, itervar) )
+			return 0L;
 		
-		//check supported increment values
-		if( !(increment instanceof LiteralOp && ((LiteralOp)increment).getDoubleValue()==1.0) ){
+		if( hop instanceof BinaryOp ) {
+			OpOp2 op = ((BinaryOp)hop).getOp();
+			Hop left = hop.getInput().get(0);
+			Hop right = hop.getInput().get(1);
+			if( (op==OpOp2.PLUS || op==OpOp2.MINUS) && isTransientRead(left, itervar) && isIntegerLiteral(right) )
+				return (op==OpOp2.PLUS ? 1 : -1) * (long)((LiteralOp)right).getDoubleValue();
+			else if( op==OpOp2.PLUS && isIntegerLiteral(left) && isTransientRead(right, itervar) )
+				return (long)((LiteralOp)left).getDoubleValue();
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Indicates if the given index bound is loop-invariant, where dimensions
+	 * of updated matrices are invariant because they are only updated via 
+	 * left indexing.
+	 * 
+	 * @param hop
+	 * @param itervar
+	 * @param updated
+	 * @return
+	 */
+	private boolean isInvariantBound( Hop hop, String itervar, HashSet<String> updated ) {
+		return isInvariantBound(hop, itervar, updated, true);
+	}
+	
+	/**
+	 * Indicates if the given expression is a side-effect-free, loop-invariant 
+	 * scalar expression that is cheap to evaluate (i.e., w/o matrix operations
+	 * except for meta data accesses).
+	 * 
+	 * @param hop
+	 * @param itervar
+	 * @param updated
+	 * @param invariantDims true if dimensions of updated matrices are invariant
+	 * @return
+	 */
+	private boolean isInvariantBound( Hop hop, String itervar, HashSet<String> updated, boolean invariantDims )
+	{
+		if( hop instanceof LiteralOp )
+			return true;
+		else if( hop instanceof DataOp )
+			return hop.getDataType()==DataType.SCALAR && isTransientRead(hop, hop.getName())
+				&& !hop.getName().equals(itervar) && !updated.contains(hop.getName());
+		else if( hop instanceof UnaryOp && HopRewriteUtils.isValidOp(((UnaryOp)hop).getOp(), 
+			new OpOp1[]{OpOp1.NROW, OpOp1.NCOL, OpOp1.LENGTH}) ) 
+			return hop.getInput().get(0).getDataType()==DataType.MATRIX 
+				&& isTransientRead(hop.getInput().get(0), hop.getInput().get(0).getName())
+				&& (invariantDims || !updated.contains(hop.getInput().get(0).getName()));
+		else if( hop.getDataType()==DataType.SCALAR && (hop instanceof UnaryOp || hop instanceof BinaryOp) 
+			&& !(hop instanceof UnaryOp && (((UnaryOp)hop).getOp()==OpOp1.PRINT || ((UnaryOp)hop).getOp()==OpOp1.STOP))
+			&& !(hop instanceof BinaryOp && ((BinaryOp)hop).getOp()==OpOp2.PRINT) ) {
+			boolean ret = true;
+			for( Hop c : hop.getInput() )
+				ret &= isInvariantBound(c, itervar, updated, invariantDims);
 			return ret;
 		}
-			
-		//check for applicability
-		boolean apply = false;
-		boolean rowIx = false; //row or col
-		if( csb.get_hops()!=null && csb.get_hops().size()==1 )
+		
+		return false;
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param aggOp
+	 * @return
+	 */
+	private boolean isMatchingAggregate( Hop hop, AggOp aggOp )
+	{
+		return hop instanceof AggUnaryOp && ((AggUnaryOp)hop).getOp()==aggOp 
+			&& ((AggUnaryOp)hop).getDirection()==Direction.RowCol;
+	}
+	
+	/**
+	 * 
+	 * @param parent
+	 * @param child
+	 * @param newChild
+	 */
+	private void replaceChildReference( Hop parent, Hop child, Hop newChild )
+	{
+		if( child == newChild )
+			return;
+		
+		int pos = HopRewriteUtils.getChildReferencePos(parent, child);
+		HopRewriteUtils.removeChildReferenceByPos(parent, child, pos);
+		HopRewriteUtils.addChildReference(parent, newChild, pos);
+		rRemoveUnreferencedHops(child);
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 */
+	private void rRemoveUnreferencedHops( Hop hop )
+	{
+		if( !hop.getParent().isEmpty() )
+			return;
+		
+		ArrayList<Hop> inputs = new ArrayList<Hop>(hop.getInput());
+		HopRewriteUtils.removeAllChildReferences(hop);
+		for( Hop c : inputs )
+			rRemoveUnreferencedHops(c);
+	}
+	
+	///////////////////////////////////
+	// PARTIAL LOOP UNROLLING
+	///////////////////////////////////
+	
+	/**
+	 * Partially unrolls the given for loop by a constant factor k into a loop
+	 * for(i in from:(to-k+1), k) over k copies of the body (w/ i, i+1, ..., i+k-1),
+	 * followed by the original loop over the remaining iterations.
+	 * 
+	 * Since the runtime evaluates from and to only once on loop entry but the
+	 * remainder loop evaluates them again after the unrolled loop, we require
+	 * these expressions to be cheap scalar expressions over variables that are
+	 * not updated within the loop (e.g., for(i in 1:nrow(X))).
+	 * 
+	 * @param fsb
+	 * @param csb
+	 * @param itervar
+	 * @return
+	 * @throws HopsException
+	 */
+	private ArrayList<StatementBlock> unrollForLoop( ForStatementBlock fsb, StatementBlock csb, String itervar ) 
+		throws HopsException
+	{
+		ArrayList<StatementBlock> ret = new ArrayList<StatementBlock>();
+		Hop from = fsb.getFromHops();
+		Hop to = fsb.getToHops();
+		Hop incr = fsb.getIncrementHops();
+		
+		//check for applicability (w/o parfor, unit increment, invariant from/to, small
+		//body, and no update or use of the iteration variable after the loop)
+		HashSet<String> updated = new HashSet<String>(fsb.variablesUpdated().getVariableNames());
+		if( fsb instanceof ParForStatementBlock || from == null || to == null
+			|| !(incr instanceof LiteralOp && ((LiteralOp)incr).getDoubleValue()==1.0)
+			|| !isInvariantBound(from, itervar, updated, false)
+			|| !isInvariantBound(to, itervar, updated, false)
+			|| csb.get_hops() == null || csb.get_hops().isEmpty()
+			|| csb.variablesUpdated().containsVariable(itervar)
+			|| fsb.liveOut().containsVariable(itervar)
+			|| countHops(csb.get_hops()) > UNROLL_MAX_BODY_SIZE ) 
 		{
-			Hop root = csb.get_hops().get(0);
-			
-			if( root.getDataType()==DataType.MATRIX && root.getInput().get(0) instanceof LeftIndexingOp )
-			{
-				LeftIndexingOp lix = (LeftIndexingOp) root.getInput().get(0);
-				Hop lixlhs = lix.getInput().get(0);
-				Hop lixrhs = lix.getInput().get(1);
-				
-				if( lixlhs instanceof DataOp && lixrhs instanceof UnaryOp 
-					&& lixrhs.getInput().get(0) instanceof IndexingOp
-					&& lixrhs.getInput().get(0).getInput().get(0) instanceof DataOp )
-				{
-					IndexingOp rix = (IndexingOp) lixrhs.getInput().get(0);
-					//check for rowwise
-					if(    lix.getRowLowerEqualsUpper() && rix.getRowLowerEqualsUpper() 
-						&& lix.getInput().get(2).getName().equals(itervar)
-						&& rix.getInput().get(1).getName().equals(itervar) )
-					{
-						apply = true;
-						rowIx = true;
-					}
-					//check for colwise
-					if(    lix.getColLowerEqualsUpper() && rix.getColLowerEqualsUpper() 
-						&& lix.getInput().get(4).getName().equals(itervar)
-						&& rix.getInput().get(3).getName().equals(itervar) )
-					{
-						apply = true;
-						rowIx = false;
-					}
-				}
-			}
-		}	
+			ret.add(fsb);
+			return ret;
+		}
 		
-		//apply rewrite if possible
-		if( apply ) 
+		//create k copies of the loop body w/ shifted iteration variable
+		ArrayList<StatementBlock> body = new ArrayList<StatementBlock>();
+		for( int j=0; j<UNROLL_FACTOR; j++ )
 		{
-			Hop root = csb.get_hops().get(0);
-			LeftIndexingOp lix = (LeftIndexingOp) root.getInput().get(0);
-			UnaryOp uop = (UnaryOp) lix.getInput().get(1);
-			IndexingOp rix = (IndexingOp) uop.getInput().get(0);
-			int index1 = rowIx ? 2 : 4;
-			int index2 = rowIx ? 3 : 5;
-			//modify left indexing bounds
-			HopRewriteUtils.removeChildReferenceByPos(lix, lix.getInput().get(index1), index1 );
-			HopRewriteUtils.addChildReference(lix, from, index1);
-			HopRewriteUtils.removeChildReferenceByPos(lix, lix.getInput().get(index2), index2 );
-			HopRewriteUtils.addChildReference(lix, to, index2);
-			//modify right indexing
-			HopRewriteUtils.removeChildReferenceByPos(rix, rix.getInput().get(index1-1), index1-1 );
-			HopRewriteUtils.addChildReference(rix, from, index1-1);
-			HopRewriteUtils.removeChildReferenceByPos(rix, rix.getInput().get(index2-1), index2-1 );
-			HopRewriteUtils.addChildReference(rix, to, index2-1);
-			rix.refreshSizeInformation();
-			uop.refreshSizeInformation();
-			lix.refreshSizeInformation();
+			ArrayList<Hop> hops = Recompiler.deepCopyHopsDag(csb.get_hops());
+			if( j > 0 )
+				replaceIterationVariable(hops, itervar, j);
 			
-			ret = csb;
-			//ret.liveIn().removeVariable(itervar);
-			LOG.debug("Applied vectorizeElementwiseUnaryForLoop.");
+			StatementBlock sb = new StatementBlock();
+			sb.setDMLProg(csb.getDMLProg());
+			sb.setAllPositions(csb.getFilename(), csb.getBeginLine(), csb.getBeginColumn(), csb.getEndLine(), csb.getEndColumn());
+			sb.setStatements(csb.getStatements());
+			sb.setReadVariables(csb.variablesRead());
+			sb.setUpdatedVariables(csb.variablesUpdated());
+			sb.setLiveIn(new VariableSet(csb.liveIn()));
+			VariableSet liveOut = new VariableSet(csb.liveOut());
+			if( j < UNROLL_FACTOR-1 ) //keep variables of next copy live
+				liveOut.addVariables(csb.liveIn());
+			sb.setLiveOut(liveOut);
+			sb.set_hops(hops);
+			sb.updateRecompilationFlag();
+			body.add(sb);
 		}
 		
+		//create unrolled for loop (shallow copy of live variables, as in parfor)
+		ForStatementBlock ufsb = new ForStatementBlock();
+		ufsb.setDMLProg(fsb.getDMLProg());
+		ufsb.setAllPositions(fsb.getFilename(), fsb.getBeginLine(), fsb.getBeginColumn(), fsb.getEndLine(), fsb.getEndColumn());
+		ufsb.setReadVariables(fsb.variablesRead());
+		ufsb.setUpdatedVariables(fsb.variablesUpdated());
+		ufsb.setLiveIn(new VariableSet(fsb.liveIn()));
+		VariableSet liveOut = new VariableSet(fsb.liveOut());
+		liveOut.addVariables(fsb.liveIn()); //inputs of remaining iterations
+		ufsb.setLiveOut(liveOut);
+		IterablePredicate ip = fsb.getIterPredicate();
+		ForStatement ufs = new ForStatement();
+		ufs.setPredicate(new IterablePredicate(ip.getIterVar(), ip.getFromExpr(), ip.getToExpr(), 
+			new IntIdentifier(UNROLL_FACTOR, fsb.getFilename(), fsb.getBeginLine(), fsb.getBeginColumn(), fsb.getEndLine(), fsb.getEndColumn()), 
+			null, fsb.getFilename(), fsb.getBeginLine(), fsb.getBeginColumn(), fsb.getEndLine(), fsb.getEndColumn()));
+		ufs.setBody(body);
+		ufsb.addStatement(ufs);
+		ufsb.setFromHops(Recompiler.deepCopyHopsDag(from));
+		ufsb.setToHops(HopRewriteUtils.createBinary(Recompiler.deepCopyHopsDag(to), 
+			new LiteralOp(UNROLL_FACTOR-1), OpOp2.MINUS));
+		ufsb.setIncrementHops(new LiteralOp(UNROLL_FACTOR));
+		ufsb.updatePredicateRecompilationFlags();
+		
+		//modify original loop for remaining iterations: 
+		//from + k * max(0, (to - from + 1) %/% k)
+		Hop n = HopRewriteUtils.createBinary(HopRewriteUtils.createBinary(Recompiler.deepCopyHopsDag(to), 
+			Recompiler.deepCopyHopsDag(from), OpOp2.MINUS), new LiteralOp(1), OpOp2.PLUS);
+		Hop m = HopRewriteUtils.createBinary(HopRewriteUtils.createBinary(n, 
+			new LiteralOp(UNROLL_FACTOR), OpOp2.INTDIV), new LiteralOp(0), OpOp2.MAX);
+		fsb.setFromHops(HopRewriteUtils.createBinary(from, 
+			HopRewriteUtils.createBinary(m, new LiteralOp(UNROLL_FACTOR), OpOp2.MULT), OpOp2.PLUS));
+		fsb.updatePredicateRecompilationFlags();
+		
+		ret.add(ufsb);
+		ret.add(fsb);
+		
+		LOG.debug("Applied unrollForLoop (lines "+fsb.getBeginLine()+"-"+fsb.getEndLine()+"): k="+UNROLL_FACTOR+".");
+		
 		return ret;
 	}
 	
+	/**
+	 * Replaces all reads of the iteration variable by (itervar + offset).
+	 * 
+	 * @param roots
+	 * @param itervar
+	 * @param offset
+	 */
+	private void replaceIterationVariable( ArrayList<Hop> roots, String itervar, int offset )
+	{
+		ArrayList<Hop> treads = new ArrayList<Hop>();
+		HashSet<Long> memo = new HashSet<Long>();
+		for( Hop root : roots )
+			rCollectTransientReads(root, itervar, treads, memo);
+		
+		for( Hop tread : treads ) {
+			ArrayList<Hop> parents = new ArrayList<Hop>(tread.getParent());
+			Hop plus = HopRewriteUtils.createBinary(tread, new LiteralOp(offset), OpOp2.PLUS);
+			for( Hop p : parents )
+				replaceChildReference(p, tread, plus);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param varname
+	 * @param treads
+	 * @param memo
+	 */
+	private void rCollectTransientReads( Hop hop, String varname, ArrayList<Hop> treads, HashSet<Long> memo )
+	{
+		if( memo.contains(hop.getHopID()) )
+			return;
+		
+		if( isTransientRead(hop, varname) )
+			treads.add(hop);
+		for( Hop c : hop.getInput() )
+			rCollectTransientReads(c, varname, treads, memo);
+		
+		memo.add(hop.getHopID());
+	}
+	
+	/**
+	 * 
+	 * @param roots
+	 * @return
+	 */
+	private int countHops( ArrayList<Hop> roots )
+	{
+		HashSet<Long> memo = new HashSet<Long>();
+		for( Hop root : roots )
+			rCountHops(root, memo);
+		return memo.size();
+	}
 	
+	/**
+	 * 
+	 * @param hop
+	 * @param memo
+	 */
+	private void rCountHops( Hop hop, HashSet<Long> memo )
+	{
+		if( memo.contains(hop.getHopID()) )
+			return;
+		for( Hop c : hop.getInput() )
+			rCountHops(c, memo);
+		memo.add(hop.getHopID());
+	}
+	
+	///////////////////////////////////
+	// UTILS
+	///////////////////////////////////
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param varname
+	 * @return
+	 */
+	private static boolean isTransientRead( Hop hop, String varname )
+	{
+		return hop instanceof DataOp && ((DataOp)hop).getDataOpType()==DataOpTypes.TRANSIENTREAD
+			&& hop.getName().equals(varname);
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @return
+	 * @throws HopsException
+	 */
+	private static boolean isIntegerLiteral( Hop hop ) 
+		throws HopsException
+	{
+		if( !(hop instanceof LiteralOp) || hop.getDataType()!=DataType.SCALAR
+			|| !(hop.getValueType()==ValueType.INT || hop.getValueType()==ValueType.DOUBLE) )
+			return false;
+		double val = ((LiteralOp)hop).getDoubleValue();
+		return val == Math.floor(val);
+	}
+	
+	/**
+	 * 
+	 * @param sb
+	 * @return
+	 */
+	private static boolean isLastLevelStatementBlock( StatementBlock sb )
+	{
+		return !(   sb instanceof WhileStatementBlock 
+				 || sb instanceof IfStatementBlock 
+				 || sb instanceof ForStatementBlock 
+				 || sb instanceof FunctionStatementBlock );
+	}
 }
@@ -0,0 +1,404 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.hops.rewrite;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.apache.sysml.hops.AggBinaryOp;
+import org.apache.sysml.hops.AggUnaryOp;
+import org.apache.sysml.hops.BinaryOp;
+import org.apache.sysml.hops.DataOp;
+import org.apache.sysml.hops.Hop;
+import org.apache.sysml.hops.Hop.DataOpTypes;
+import org.apache.sysml.hops.Hop.OpOp1;
+import org.apache.sysml.hops.Hop.OpOp2;
+import org.apache.sysml.hops.Hop.ReOrgOp;
+import org.apache.sysml.hops.Hop.VisitStatus;
+import org.apache.sysml.hops.HopsException;
+import org.apache.sysml.hops.LiteralOp;
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.hops.ReorgOp;
+import org.apache.sysml.hops.UnaryOp;
+import org.apache.sysml.hops.recompile.Recompiler;
+import org.apache.sysml.parser.DataIdentifier;
+import org.apache.sysml.parser.ForStatement;
+import org.apache.sysml.parser.ForStatementBlock;
+import org.apache.sysml.parser.FunctionStatementBlock;
+import org.apache.sysml.parser.IfStatementBlock;
+import org.apache.sysml.parser.StatementBlock;
+import org.apache.sysml.parser.VariableSet;
+import org.apache.sysml.parser.WhileStatement;
+import org.apache.sysml.parser.WhileStatementBlock;
+import org.apache.sysml.parser.Expression.DataType;
+import org.apache.sysml.runtime.controlprogram.parfor.util.IDSequence;
+
+/**
+ * Rule: Hoist loop-invariant operations out of while/for/parfor loops. Operations
+ * of the (unconditionally executed) last-level statement blocks of a loop body are 
+ * loop-invariant if they are side-effect-free and only depend on literals and 
+ * variables that are not updated within the loop. Maximal invariant subdags are 
+ * computed once in a new statement block before the loop, bound to temporaries,
+ * and replaced by transient reads of these temporaries in the loop body.
+ * 
+ * Since the temporaries are live over the entire loop, we only hoist operations 
+ * with known output size that fit into a fraction of the local memory budget,
+ * and remove them in a new statement block after the loop. Hoisted operations are
+ * also executed for loops with zero iterations and hence must not raise errors.
+ * Nested loops are handled bottom-up, i.e., operations hoisted out of an inner
+ * loop are subsequently hoisted out of outer loops if invariant there as well.
+ */
+public class RewriteHoistLoopInvariantOperations extends StatementBlockRewriteRule
+{
+	//max fraction of the local memory budget per hoisted operation
+	private static final double MAX_MEM_FRACTION = 0.1;
+	
+	//side-effect-free operations that cannot raise errors (given valid dimensions)
+	private static final OpOp1[] SAFE_UNARY_OPS = new OpOp1[]{
+		OpOp1.NOT, OpOp1.ABS, OpOp1.SIN, OpOp1.COS, OpOp1.TAN, OpOp1.ASIN, OpOp1.ACOS, 
+		OpOp1.ATAN, OpOp1.SIGN, OpOp1.SQRT, OpOp1.LOG, OpOp1.EXP, OpOp1.ROUND, OpOp1.CEIL, 
+		OpOp1.FLOOR, OpOp1.CUMSUM, OpOp1.CUMPROD, OpOp1.CUMMIN, OpOp1.CUMMAX, OpOp1.SPROP, 
+		OpOp1.SIGMOID, OpOp1.SELP, OpOp1.LOG_NZ};
+	private static final OpOp2[] SAFE_BINARY_OPS = new OpOp2[]{
+		OpOp2.PLUS, OpOp2.MINUS, OpOp2.MULT, OpOp2.DIV, OpOp2.MODULUS, OpOp2.INTDIV, 
+		OpOp2.LESS, OpOp2.LESSEQUAL, OpOp2.GREATER, OpOp2.GREATEREQUAL, OpOp2.EQUAL, 
+		OpOp2.NOTEQUAL, OpOp2.MIN, OpOp2.MAX, OpOp2.AND, OpOp2.OR, OpOp2.LOG, OpOp2.POW, 
+		OpOp2.MINUS_NZ, OpOp2.LOG_NZ, OpOp2.MINUS1_MULT};
+	
+	private static String _varnamePrefix = "_licmVar";
+	private static IDSequence _seq = new IDSequence();
+	
+	@Override
+	public ArrayList<StatementBlock> rewriteStatementBlock(StatementBlock sb, ProgramRewriteStatus state)
+		throws HopsException 
+	{
+		ArrayList<StatementBlock> ret = new ArrayList<StatementBlock>();
+		StatementBlock sb2 = null;
+		
+		if( sb instanceof WhileStatementBlock || sb instanceof ForStatementBlock ) //incl parfor
+		{
+			ArrayList<StatementBlock> body = (sb instanceof WhileStatementBlock) ?
+				((WhileStatement)sb.getStatement(0)).getBody() :
+				((ForStatement)sb.getStatement(0)).getBody();
+			
+			//determine loop-variant variables (incl nested updates and iteration variable)
+			HashSet<String> variant = new HashSet<String>(sb.variablesUpdated().getVariableNames());
+			if( sb instanceof ForStatementBlock )
+				variant.add(((ForStatement)sb.getStatement(0)).getIterablePredicate().getIterVar().getName());
+			
+			//create new statement block for hoisted operations
+			StatementBlock sb1 = new StatementBlock();
+			sb1.setDMLProg(sb.getDMLProg());
+			sb1.setAllPositions(sb.getFilename(), sb.getBeginLine(), sb.getBeginColumn(), sb.getEndLine(), sb.getEndColumn());
+			sb1.setLiveIn(new VariableSet());
+			sb1.setLiveOut(new VariableSet());
+			ArrayList<Hop> sb1hops = new ArrayList<Hop>();
+			
+			//hoist invariant operations of last-level statement blocks
+			for( StatementBlock csb : body )
+				if( isLastLevelStatementBlock(csb) ) {
+					HashMap<Long, Boolean> memo = new HashMap<Long, Boolean>();
+					Hop.resetVisitStatus(csb.get_hops());
+					for( Hop root : csb.get_hops() )
+						rHoistLoopInvariantOperations(root, variant, memo, sb, csb, sb1, sb1hops);
+					Hop.resetVisitStatus(csb.get_hops());
+				}
+			
+			if( !sb1hops.isEmpty() ) {
+				//keep inputs of hoisted operations live (no cleanup before loop)
+				sb1.liveOut().addVariables(sb1.liveIn());
+				sb1.set_hops(sb1hops);
+				sb1.updateRecompilationFlag();
+				ret.add(sb1);
+				
+				//create cleanup statement block after the loop
+				sb2 = createCleanupStatementBlock(sb, sb1);
+				
+				LOG.debug("Applied hoistLoopInvariantOperations (lines "+sb.getBeginLine()
+					+"-"+sb.getEndLine()+"): "+sb1.liveOut().getVariableNames().size()+" variables.");
+			}
+		}
+		
+		ret.add(sb);
+		if( sb2 != null )
+			ret.add(sb2);
+		return ret;
+	}
+	
+	/**
+	 * Creates a statement block that removes the hoisted temporaries after the loop. 
+	 * The block has no hops but the temporaries as live-in and not live-out variables,
+	 * for which the runtime program creation explicitly generates remove variable 
+	 * instructions (see DMLProgram.createRuntimeProgramBlock).
+	 * 
+	 * @param sb
+	 * @param sb1
+	 * @return
+	 */
+	private StatementBlock createCleanupStatementBlock(StatementBlock sb, StatementBlock sb1)
+	{
+		StatementBlock sb2 = new StatementBlock();
+		sb2.setDMLProg(sb.getDMLProg());
+		sb2.setAllPositions(sb.getFilename(), sb.getEndLine(), sb.getEndColumn(), sb.getEndLine(), sb.getEndColumn());
+		sb2.setLiveIn(new VariableSet());
+		sb2.setLiveOut(new VariableSet());
+		sb2.liveIn().addVariables(sb.liveOut());
+		sb2.liveOut().addVariables(sb.liveOut());
+		sb2.liveIn().addVariables(sb1.variablesUpdated());
+		sb2.set_hops(new ArrayList<Hop>());
+		
+		return sb2;
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param variant
+	 * @param memo
+	 * @param sb
+	 * @param csb
+	 * @param sb1
+	 * @param sb1hops
+	 * @throws HopsException
+	 */
+	private void rHoistLoopInvariantOperations(Hop hop, HashSet<String> variant, HashMap<Long, Boolean> memo, 
+			StatementBlock sb, StatementBlock csb, StatementBlock sb1, ArrayList<Hop> sb1hops) 
+		throws HopsException
+	{
+		if( hop.getVisited() == VisitStatus.DONE )
+			return;
+		
+		//hoist maximal invariant operations (w/o descending into its inputs)
+		if( isHoistCandidate(hop) && rIsLoopInvariant(hop, variant, memo) ) {
+			hoistOperation(hop, sb, csb, sb1, sb1hops);
+			return;
+		}
+		
+		//recursively process child nodes
+		ArrayList<Hop> inputs = new ArrayList<Hop>(hop.getInput());
+		for( Hop c : inputs )
+			rHoistLoopInvariantOperations(c, variant, memo, sb, csb, sb1, sb1hops);
+		
+		hop.setVisited(VisitStatus.DONE);
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param sb
+	 * @param csb
+	 * @param sb1
+	 * @param sb1hops
+	 * @throws HopsException
+	 */
+	private void hoistOperation(Hop hop, StatementBlock sb, StatementBlock csb, StatementBlock sb1, ArrayList<Hop> sb1hops) 
+		throws HopsException
+	{
+		String varname = _varnamePrefix + _seq.getNextID();
+		long rlen = hop.getDim1();
+		long clen = hop.getDim2();
+		long nnz = hop.getNnz();
+		long brlen = hop.getRowsInBlock();
+		long bclen = hop.getColsInBlock();
+		
+		//create transient write of deep copy (disjoint operators across dags)
+		Hop copy = Recompiler.deepCopyHopsDag(hop);
+		DataOp twrite = new DataOp(varname, hop.getDataType(), hop.getValueType(),
+				copy, DataOpTypes.TRANSIENTWRITE, null);
+		twrite.setOutputParams(rlen, clen, nnz, brlen, bclen);
+		HopRewriteUtils.copyLineNumbers(hop, twrite);
+		sb1hops.add(twrite);
+		
+		//replace invariant operation with transient read
+		DataOp tread = new DataOp(varname, hop.getDataType(), hop.getValueType(),
+				DataOpTypes.TRANSIENTREAD, null, rlen, clen, nnz, brlen, bclen);
+		tread.setVisited(VisitStatus.DONE);
+		HopRewriteUtils.copyLineNumbers(hop, tread);
+		ArrayList<Hop> parents = new ArrayList<Hop>(hop.getParent());
+		for( Hop p : parents ) {
+			int pos = HopRewriteUtils.getChildReferencePos(p, hop);
+			HopRewriteUtils.removeChildReferenceByPos(p, hop, pos);
+			HopRewriteUtils.addChildReference(p, tread, pos);
+		}
+		rRemoveUnreferencedHops(hop);
+		
+		//update live variables (temporary live over entire loop)
+		DataIdentifier diVar = new DataIdentifier(varname);
+		diVar.setDimensions(rlen, clen);
+		diVar.setBlockDimensions(brlen, bclen);
+		diVar.setDataType(hop.getDataType());
+		diVar.setValueType(hop.getValueType());
+		sb1.liveOut().addVariable(varname, new DataIdentifier(diVar));
+		sb1.variablesUpdated().addVariable(varname, new DataIdentifier(diVar));
+		sb.liveIn().addVariable(varname, new DataIdentifier(diVar));
+		sb.variablesRead().addVariable(varname, new DataIdentifier(diVar));
+		csb.liveIn().addVariable(varname, new DataIdentifier(diVar));
+		csb.liveOut().addVariable(varname, new DataIdentifier(diVar));
+		csb.variablesRead().addVariable(varname, new DataIdentifier(diVar));
+		
+		//inputs of hoisted operation
+		for( String var : getReadVariables(copy) ) 
+			if( sb.liveIn().containsVariable(var) ) {
+				DataIdentifier di = sb.liveIn().getVariable(var);
+				sb1.liveIn().addVariable(var, di);
+				sb1.variablesRead().addVariable(var, di);
+			}
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @return
+	 */
+	private boolean isHoistCandidate(Hop hop) 
+	{
+		//matrix operations w/ known output size that fits into the budget
+		if( hop.getDataType() != DataType.MATRIX || !isValidOperation(hop) || !hop.dimsKnown() )
+			return false;
+		
+		double sp = (hop.getNnz() >= 0) ? OptimizerUtils.getSparsity(
+			hop.getDim1(), hop.getDim2(), hop.getNnz()) : 1.0;
+		long size = OptimizerUtils.estimateSizeExactSparsity(hop.getDim1(), hop.getDim2(), sp);
+		
+		return size <= MAX_MEM_FRACTION * OptimizerUtils.getLocalMemBudget();
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param variant
+	 * @param memo
+	 * @return
+	 */
+	private boolean rIsLoopInvariant(Hop hop, HashSet<String> variant, HashMap<Long, Boolean> memo) 
+	{
+		if( memo.containsKey(hop.getHopID()) )
+			return memo.get(hop.getHopID());
+		
+		boolean ret = false;
+		if( hop instanceof LiteralOp )
+			ret = true;
+		else if( hop instanceof DataOp )
+			ret = ((DataOp)hop).getDataOpType() == DataOpTypes.TRANSIENTREAD
+				&& !variant.contains(hop.getName());
+		else if( isValidOperation(hop) ) {
+			ret = true;
+			for( Hop c : hop.getInput() )
+				ret &= rIsLoopInvariant(c, variant, memo);
+		}
+		
+		memo.put(hop.getHopID(), ret);
+		return ret;
+	}
+	
+	/**
+	 * Indicates if the given operation is side-effect-free, deterministic, and cannot 
+	 * raise runtime errors. The latter is required because hoisted operations are also
+	 * executed for loops with zero iterations. Hence, we exclude indexing (out-of-bounds), 
+	 * casts, reshapes, and linear algebra functions that fail on invalid inputs, and require 
+	 * known and compatible dimensions for matrix-matrix operations.
+	 * 
+	 * @param hop
+	 * @return
+	 */
+	private boolean isValidOperation(Hop hop)
+	{
+		if( hop instanceof ReorgOp )
+			return ((ReorgOp)hop).getOp() == ReOrgOp.TRANSPOSE;
+		else if( hop instanceof AggUnaryOp )
+			return true;
+		else if( hop instanceof AggBinaryOp ) {
+			Hop in1 = hop.getInput().get(0);
+			Hop in2 = hop.getInput().get(1);
+			return in1.dimsKnown() && in2.dimsKnown() && in1.getDim2() == in2.getDim1();
+		}
+		else if( hop instanceof BinaryOp ) {
+			Hop in1 = hop.getInput().get(0);
+			Hop in2 = hop.getInput().get(1);
+			if( !HopRewriteUtils.isValidOp(((BinaryOp)hop).getOp(), SAFE_BINARY_OPS) )
+				return false;
+			if( in1.getDataType() != DataType.MATRIX || in2.getDataType() != DataType.MATRIX )
+				return true;
+			//matrix-matrix, matrix-vector, and outer vector operations
+			return in1.dimsKnown() && in2.dimsKnown() 
+				&& (HopRewriteUtils.isEqualSize(in1, in2)
+				|| (in1.getDim1() == in2.getDim1() && in2.getDim2() == 1)
+				|| (in1.getDim2() == in2.getDim2() && in2.getDim1() == 1)
+				|| (in1.getDim2() == 1 && in2.getDim1() == 1));
+		}
+		else if( hop instanceof UnaryOp )
+			return HopRewriteUtils.isValidOp(((UnaryOp)hop).getOp(), SAFE_UNARY_OPS);
+		
+		return false;
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @return
+	 */
+	private HashSet<String> getReadVariables(Hop hop)
+	{
+		HashSet<String> ret = new HashSet<String>();
+		rGetReadVariables(hop, ret);
+		return ret;
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param vars
+	 */
+	private void rGetReadVariables(Hop hop, HashSet<String> vars)
+	{
+		if( hop instanceof DataOp )
+			vars.add(hop.getName());
+		for( Hop c : hop.getInput() )
+			rGetReadVariables(c, vars);
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 */
+	private void rRemoveUnreferencedHops(Hop hop)
+	{
+		if( !hop.getParent().isEmpty() )
+			return;
+		
+		ArrayList<Hop> inputs = new ArrayList<Hop>(hop.getInput());
+		HopRewriteUtils.removeAllChildReferences(hop);
+		for( Hop c : inputs )
+			rRemoveUnreferencedHops(c);
+	}
+	
+	/**
+	 * 
+	 * @param sb
+	 * @return
+	 */
+	private boolean isLastLevelStatementBlock(StatementBlock sb)
+	{
+		return !(sb instanceof IfStatementBlock || sb instanceof WhileStatementBlock 
+			|| sb instanceof ForStatementBlock || sb instanceof FunctionStatementBlock)
+			&& sb.get_hops() != null;
+	}
+}
@@ -20,16 +20,22 @@
 package org.apache.sysml.hops.rewrite;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 
+import org.apache.sysml.hops.BinaryOp;
 import org.apache.sysml.hops.DataOp;
 import org.apache.sysml.hops.Hop;
 import org.apache.sysml.hops.HopsException;
 import org.apache.sysml.hops.Hop.DataOpTypes;
 import org.apache.sysml.hops.OptimizerUtils;
 import org.apache.sysml.parser.DataIdentifier;
+import org.apache.sysml.parser.ForStatement;
 import org.apache.sysml.parser.ForStatementBlock;
+import org.apache.sysml.parser.IfStatement;
+import org.apache.sysml.parser.IfStatementBlock;
 import org.apache.sysml.parser.StatementBlock;
 import org.apache.sysml.parser.VariableSet;
+import org.apache.sysml.parser.WhileStatement;
 import org.apache.sysml.parser.WhileStatementBlock;
 import org.apache.sysml.parser.Expression.DataType;
 import org.apache.sysml.parser.Expression.ValueType;
@@ -37,7 +43,10 @@ import org.apache.sysml.parser.Expression.ValueType;
 /**
  * Rule: Insert checkpointing operations for caching purposes. Currently, we
  * follow a heuristic of checkpointing (1) all variables used read-only in loops,
- * and (2) intermediates used by multiple consumers.
+ * and (2) intermediates used by multiple consumers. Checkpoints of variables with
+ * join consumers in the loop body (e.g., matrix-matrix binary operations) are
+ * partitioned by the block partitioner, in order to avoid shuffling them again in 
+ * every iteration. 
  * 
  * TODO (2) implement injection for multiple consumers (local and global).
  * 
@@ -87,6 +96,10 @@ public class RewriteInjectSparkLoopCheckpointing extends StatementBlockRewriteRu
 			//step 2: insert statement block with checkpointing operations
 			if( !candidates.isEmpty() ) //existing candidates
 			{
+				ArrayList<StatementBlock> body = (sb instanceof WhileStatementBlock) ?
+					((WhileStatement)sb.getStatement(0)).getBody() :
+					((ForStatement)sb.getStatement(0)).getBody();
+				
 				StatementBlock sb0 = new StatementBlock();
 				sb0.setDMLProg(sb.getDMLProg());
 				sb0.setAllPositions(sb.getFilename(), sb.getBeginLine(), sb.getBeginColumn(), sb.getEndLine(), sb.getEndColumn());
@@ -99,6 +112,7 @@ public class RewriteInjectSparkLoopCheckpointing extends StatementBlockRewriteRu
 					DataOp tread = new DataOp(var, DataType.MATRIX, ValueType.DOUBLE, DataOpTypes.TRANSIENTREAD, 
 							            dat.getFilename(), dat.getDim1(), dat.getDim2(), dat.getNnz(), blocksize, blocksize);
 					tread.setRequiresCheckpoint( true );
+					tread.setRequiresPartitionedCheckpoint( hasJoinConsumers(body, var) );
 					DataOp twrite = new DataOp(var, DataType.MATRIX, ValueType.DOUBLE, tread, DataOpTypes.TRANSIENTWRITE, null);
 					HopRewriteUtils.setOutputParameters(twrite, dat.getDim1(), dat.getDim2(), blocksize, blocksize, dat.getNnz());					
 					hops.add(twrite);
@@ -120,4 +134,97 @@ public class RewriteInjectSparkLoopCheckpointing extends StatementBlockRewriteRu
 		
 		return ret;
 	}
+	
+	/**
+	 * 
+	 * @param sbs
+	 * @param var
+	 * @return
+	 */
+	private static boolean hasJoinConsumers( ArrayList<StatementBlock> sbs, String var )
+	{
+		boolean ret = false;
+		
+		for( StatementBlock sb : sbs )
+		{
+			//statement blocks w/o reference to var
+			if( !sb.variablesRead().containsVariable(var) )
+				continue;
+			
+			if( sb instanceof ForStatementBlock ) { //incl parfor
+				ret |= hasJoinConsumers(((ForStatement)sb.getStatement(0)).getBody(), var);
+			}
+			else if( sb instanceof WhileStatementBlock ) {
+				ret |= hasJoinConsumers(((WhileStatement)sb.getStatement(0)).getBody(), var);
+			}
+			else if( sb instanceof IfStatementBlock ) {
+				IfStatement istmt = (IfStatement)sb.getStatement(0);
+				ret |= hasJoinConsumers(istmt.getIfBody(), var)
+					|| hasJoinConsumers(istmt.getElseBody(), var);
+			}
+			else if( sb.get_hops() != null ) { //generic statement block
+				HashSet<Long> memo = new HashSet<Long>();
+				for( Hop root : sb.get_hops() )
+					ret |= rHasJoinConsumers(root, var, memo);
+			}
+			
+			if( ret ) break;
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param var
+	 * @param memo
+	 * @return
+	 */
+	private static boolean rHasJoinConsumers( Hop hop, String var, HashSet<Long> memo )
+	{
+		if( memo.contains(hop.getHopID()) )
+			return false;
+		
+		//matrix-matrix binary operations w/o vectors (join instead of broadcast)
+		if( hop instanceof BinaryOp && hop.getInput().size() == 2
+			&& hop.getInput().get(0).getDataType() == DataType.MATRIX
+			&& hop.getInput().get(1).getDataType() == DataType.MATRIX )
+		{
+			Hop in1 = hop.getInput().get(0);
+			Hop in2 = hop.getInput().get(1);
+			if( (isTransientRead(in1, var) || isTransientRead(in2, var))
+				&& !isVector(in1) && !isVector(in2) )
+				return true;
+		}
+		
+		for( Hop c : hop.getInput() )
+			if( rHasJoinConsumers(c, var, memo) )
+				return true;
+		
+		memo.add(hop.getHopID());
+		return false;
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @param var
+	 * @return
+	 */
+	private static boolean isTransientRead( Hop hop, String var )
+	{
+		return hop instanceof DataOp && var.equals(hop.getName())
+			&& ((DataOp)hop).getDataOpType() == DataOpTypes.TRANSIENTREAD;
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @return
+	 */
+	private static boolean isVector( Hop hop )
+	{
+		return hop.getDim1() == 1 || hop.getDim2() == 1;
+	}
 }
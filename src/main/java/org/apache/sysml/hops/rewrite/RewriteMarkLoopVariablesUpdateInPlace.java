@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.hops.rewrite;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.hops.AggBinaryOp;
+import org.apache.sysml.hops.AggUnaryOp;
+import org.apache.sysml.hops.BinaryOp;
+import org.apache.sysml.hops.DataOp;
+import org.apache.sysml.hops.Hop;
+import org.apache.sysml.hops.Hop.DataOpTypes;
+import org.apache.sysml.hops.HopsException;
+import org.apache.sysml.hops.IndexingOp;
+import org.apache.sysml.hops.LeftIndexingOp;
+import org.apache.sysml.hops.ReorgOp;
+import org.apache.sysml.hops.TernaryOp;
+import org.apache.sysml.hops.UnaryOp;
+import org.apache.sysml.parser.ForStatement;
+import org.apache.sysml.parser.ForStatementBlock;
+import org.apache.sysml.parser.IfStatement;
+import org.apache.sysml.parser.IfStatementBlock;
+import org.apache.sysml.parser.ParForStatementBlock;
+import org.apache.sysml.parser.StatementBlock;
+import org.apache.sysml.parser.WhileStatement;
+import org.apache.sysml.parser.WhileStatementBlock;
+import org.apache.sysml.parser.Expression.DataType;
+
+/**
+ * Rule: Mark matrix variables of for/while loops for update in-place, if all
+ * updates in the loop body are left indexing operations X[...] = Y that are
+ * directly written back to X, and all other reads of X are guaranteed to
+ * (1) not create aliases (e.g., via assignments or function calls), and
+ * (2) be evaluated before the update (i.e., inputs of the left indexing).
+ * At runtime, the loop creates a private copy of these variables on loop
+ * entry, which is subsequently updated in-place without copying the entire
+ * matrix per left indexing operation.
+ *
+ */
+public class RewriteMarkLoopVariablesUpdateInPlace extends StatementBlockRewriteRule
+{
+	@Override
+	public ArrayList<StatementBlock> rewriteStatementBlock(StatementBlock sb, ProgramRewriteStatus status)
+		throws HopsException
+	{
+		ArrayList<StatementBlock> ret = new ArrayList<StatementBlock>();
+
+		//apply rewrite for while and for loops (w/o parfor, and only w/ cp operations)
+		if(    (sb instanceof WhileStatementBlock || sb instanceof ForStatementBlock)
+			&& !(sb instanceof ParForStatementBlock) && !status.isInParforContext()
+			&& DMLScript.rtplatform != RUNTIME_PLATFORM.HADOOP
+			&& DMLScript.rtplatform != RUNTIME_PLATFORM.SPARK )
+		{
+			ArrayList<StatementBlock> body = (sb instanceof WhileStatementBlock) ?
+				((WhileStatement)sb.getStatement(0)).getBody() :
+				((ForStatement)sb.getStatement(0)).getBody();
+
+			//determine candidates (matrices updated in loop and existing on loop entry)
+			ArrayList<String> candidates = new ArrayList<String>();
+			for( String var : sb.variablesUpdated().getVariableNames() )
+				if(    sb.variablesUpdated().getVariable(var).getDataType() == DataType.MATRIX
+					&& sb.liveIn().containsVariable(var)
+					&& isApplicableForUpdateInPlace(body, var) )
+				{
+					candidates.add(var);
+				}
+
+			sb.setUpdateInPlaceVars(candidates);
+			if( !candidates.isEmpty() && LOG.isDebugEnabled() )
+				LOG.debug("Applied rewriteMarkLoopVariablesUpdateInPlace (lines "
+					+sb.getBeginLine()+"-"+sb.getEndLine()+"): "+candidates);
+		}
+
+		ret.add(sb);
+		return ret;
+	}
+
+	/**
+	 *
+	 * @param sbs
+	 * @param var
+	 * @return
+	 * @throws HopsException
+	 */
+	private boolean isApplicableForUpdateInPlace( ArrayList<StatementBlock> sbs, String var )
+		throws HopsException
+	{
+		boolean ret = true;
+
+		for( StatementBlock sb : sbs )
+		{
+			//statement blocks w/o reference to var
+			if(    !sb.variablesRead().containsVariable(var)
+				&& !sb.variablesUpdated().containsVariable(var) )
+				continue;
+
+			if( sb instanceof ParForStatementBlock ) {
+				ret = false;
+			}
+			else if( sb instanceof ForStatementBlock ) {
+				ForStatementBlock fsb = (ForStatementBlock) sb;
+				ret &= isApplicableForUpdateInPlace(fsb.getFromHops(), var)
+					&& isApplicableForUpdateInPlace(fsb.getToHops(), var)
+					&& isApplicableForUpdateInPlace(fsb.getIncrementHops(), var)
+					&& isApplicableForUpdateInPlace(((ForStatement)sb.getStatement(0)).getBody(), var);
+			}
+			else if( sb instanceof WhileStatementBlock ) {
+				WhileStatementBlock wsb = (WhileStatementBlock) sb;
+				ret &= isApplicableForUpdateInPlace(wsb.getPredicateHops(), var)
+					&& isApplicableForUpdateInPlace(((WhileStatement)sb.getStatement(0)).getBody(), var);
+			}
+			else if( sb instanceof IfStatementBlock ) {
+				IfStatementBlock isb = (IfStatementBlock) sb;
+				IfStatement istmt = (IfStatement)sb.getStatement(0);
+				ret &= isApplicableForUpdateInPlace(isb.getPredicateHops(), var)
+					&& isApplicableForUpdateInPlace(istmt.getIfBody(), var)
+					&& isApplicableForUpdateInPlace(istmt.getElseBody(), var);
+			}
+			else if( sb.get_hops() != null ) { //generic statement block
+				ret &= isApplicableForUpdateInPlaceHops(sb.get_hops(), var);
+			}
+			else {
+				ret = false;
+			}
+
+			if( !ret ) break;
+		}
+
+		return ret;
+	}
+
+	/**
+	 *
+	 * @param root
+	 * @param var
+	 * @return
+	 */
+	private boolean isApplicableForUpdateInPlace( Hop root, String var )
+	{
+		if( root == null )
+			return true;
+		ArrayList<Hop> roots = new ArrayList<Hop>();
+		roots.add(root);
+		return isApplicableForUpdateInPlaceHops(roots, var);
+	}
+
+	/**
+	 *
+	 * @param roots
+	 * @param var
+	 * @return
+	 */
+	private boolean isApplicableForUpdateInPlaceHops( ArrayList<Hop> roots, String var )
+	{
+		//collect transient reads and writes of var
+		ArrayList<Hop> treads = new ArrayList<Hop>();
+		ArrayList<Hop> twrites = new ArrayList<Hop>();
+		HashSet<Long> memo = new HashSet<Long>();
+		for( Hop root : roots )
+			rCollectTransientReadsWrites(root, var, treads, twrites, memo);
+
+		//check that all writes are chains of left indexing on a read of var,
+		//i.e., X[...] = Y (with a single consumer per left indexing)
+		if( twrites.size() > 1 )
+			return false;
+		Hop lix = null;
+		if( !twrites.isEmpty() ) {
+			Hop current = twrites.get(0).getInput().get(0);
+			if( !(current instanceof LeftIndexingOp) || current.getParent().size() > 1 )
+				return false;
+			while( current.getInput().get(0) instanceof LeftIndexingOp ) {
+				current = current.getInput().get(0);
+				if( current.getParent().size() > 1 )
+					return false;
+			}
+			if( !treads.contains(current.getInput().get(0)) )
+				return false;
+			lix = current;
+		}
+
+		//check that all other reads do not create aliases and are evaluated
+		//before the in-place update (i.e., are inputs of the left indexing)
+		for( Hop tread : treads )
+			for( Hop p : tread.getParent() )
+			{
+				if( p == lix ) {
+					if( lix.getInput().lastIndexOf(tread) != 0 )
+						return false;
+				}
+				else if( !isNonAliasingRead(p, tread)
+					|| (lix != null && !rIsInputOf(p, lix, new HashSet<Long>())) )
+					return false;
+			}
+
+		return true;
+	}
+
+	/**
+	 *
+	 * @param hop
+	 * @param var
+	 * @param treads
+	 * @param twrites
+	 * @param memo
+	 */
+	private void rCollectTransientReadsWrites( Hop hop, String var, ArrayList<Hop> treads, ArrayList<Hop> twrites, HashSet<Long> memo )
+	{
+		if( memo.contains(hop.getHopID()) )
+			return;
+
+		if( hop instanceof DataOp && var.equals(hop.getName()) ) {
+			DataOpTypes type = ((DataOp)hop).getDataOpType();
+			if( type == DataOpTypes.TRANSIENTREAD )
+				treads.add(hop);
+			else if( type == DataOpTypes.TRANSIENTWRITE )
+				twrites.add(hop);
+		}
+
+		for( Hop c : hop.getInput() )
+			rCollectTransientReadsWrites(c, var, treads, twrites, memo);
+
+		memo.add(hop.getHopID());
+	}
+
+	/**
+	 * Indicates if the given consumer of a variable read is guaranteed to create
+	 * a new output, i.e., does not create an alias to the variable. Since dynamic
+	 * rewrites might later remove unnecessary operations (e.g., X[,1:ncol(X)]), the
+	 * runtime additionally binds deep copies of update in-place matrices on 
+	 * assignments and function calls (see MatrixObject.getNonAliasedMatrixObject).
+	 *
+	 * @param p
+	 * @param tread
+	 * @return
+	 */
+	private boolean isNonAliasingRead( Hop p, Hop tread )
+	{
+		return (  p instanceof IndexingOp || p instanceof AggUnaryOp
+			   || p instanceof AggBinaryOp || p instanceof BinaryOp
+			   || p instanceof TernaryOp || p instanceof ReorgOp
+			   || p instanceof UnaryOp
+			   || (p instanceof LeftIndexingOp && p.getInput().indexOf(tread) > 0) );
+	}
+
+	/**
+	 *
+	 * @param hop
+	 * @param current
+	 * @param memo
+	 * @return
+	 */
+	private boolean rIsInputOf( Hop hop, Hop current, HashSet<Long> memo )
+	{
+		if( memo.contains(current.getHopID()) )
+			return false;
+
+		for( Hop c : current.getInput() )
+			if( c == hop || rIsInputOf(hop, c, memo) )
+				return true;
+
+		memo.add(current.getHopID());
+		return false;
+	}
+}
@@ -27,15 +27,28 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
 import org.apache.sysml.hops.AggBinaryOp;
 import org.apache.sysml.hops.Hop;
+import org.apache.sysml.hops.Hop.ReOrgOp;
 import org.apache.sysml.hops.HopsException;
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.hops.ReorgOp;
+import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
+import org.apache.sysml.runtime.matrix.MatrixSketch;
 import org.apache.sysml.utils.Explain;
 
 /**
  * Rule: Determine the optimal order of execution for a chain of
  * matrix multiplications Solution: Classic Dynamic Programming
- * Approach Currently, the approach based only on matrix dimensions
+ * Approach. The cost model accounts for the number of non-zero scalar
+ * products (based on the sparsity or structural sketches of inputs and
+ * estimated intermediates), the dense allocation of intermediates, the
+ * special tsmm and mmchain kernels, as well as distributed operations
+ * (broadcast-based mapmm vs shuffle-based) for intermediates that exceed
+ * the local memory budget. Chains with unknown sparsity are marked for
+ * dynamic recompilation if this choice matters.
  * Goal: To reduce the number of computations in the run-time
  * (map-reduce) layer
  */
@@ -45,6 +58,13 @@ public class RewriteMatrixMultChainOptimization extends HopRewriteRule
 	private static final Log LOG = LogFactory.getLog(RewriteMatrixMultChainOptimization.class.getName());
 	private static final boolean LDEBUG = false;
 	
+	//sparsity-aware cost model (otherwise dense costs based on dimensions only)
+	private static final boolean SPARSITY_AWARE_COSTS = true;
+	
+	//cost weights for distributed matrix multiplications
+	private static final double DIST_MAPMM_FACTOR = 2;
+	private static final double DIST_SHUFFLE_FACTOR = 4;
+	
 	static
 	{
 		// for internal debugging only
@@ -210,7 +230,11 @@ public class RewriteMatrixMultChainOptimization extends HopRewriteRule
 				
 				// Invoke Dynamic Programming
 				int size = mmChain.size();
-				int[][] split = mmChainDP(dimsArray, mmChain.size());
+				int[][] split = mmChainDP(dimsArray, mmChain, mmChain.size());
+				
+				// Mark for recompilation if unknown sparsity might affect the order
+				if( SPARSITY_AWARE_COSTS && requiresRecompile(dimsArray, mmChain) )
+					hop.setRequiresRecompile();
 				
 				 // Step 5: Relink the hops using the optimal ordering (split[][]) found from DP.
 				LOG.trace("Optimal MM Chain: ");
@@ -221,20 +245,25 @@ public class RewriteMatrixMultChainOptimization extends HopRewriteRule
 	
 	/**
 	 * mmChainDP(): Core method to perform dynamic programming on a given array
-	 * of matrix dimensions.
+	 * of matrix dimensions, extended by the sparsity of inputs and estimated 
+	 * intermediates (propagated along the optimal sub-chains).
 	 * 
 	 * Thomas H. Cormen, Charles E. Leiserson, Ronald L. Rivest, Clifford Stein
 	 * Introduction to Algorithms, Third Edition, MIT Press, page 395.
 	 */
-	private int[][] mmChainDP(double[] dimArray, int size) 
+	private int[][] mmChainDP(double[] dimArray, ArrayList<Hop> chain, int size) 
 	{
 		double[][] dpMatrix = new double[size][size]; //min cost table
 		int[][] split = new int[size][size]; //min cost index table
+		double[][] spMatrix = new double[size][size]; //sparsity of sub-chains
+		MatrixSketch[][] skMatrix = new MatrixSketch[size][size]; //sketches of sub-chains
 
 		//init minimum costs for chains of length 1
 		for (int i = 0; i < size; i++) {
 			Arrays.fill(dpMatrix[i], 0);
 			Arrays.fill(split[i], -1);
+			spMatrix[i][i] = getSparsity(chain.get(i));
+			skMatrix[i][i] = getSketch(chain.get(i));
 		}
 
 		//compute cost-optimal chains for increasing chain sizes 
@@ -247,7 +276,9 @@ public class RewriteMatrixMultChainOptimization extends HopRewriteRule
 				{
 					//recursive cost computation
 					double cost = dpMatrix[i][k] + dpMatrix[k + 1][j] 
-							  + (dimArray[i] * dimArray[k + 1] * dimArray[j + 1]);
+							  + (SPARSITY_AWARE_COSTS ? 
+							  	getMatMultCost(dimArray, chain, spMatrix, skMatrix, i, k, j) :
+							  	(dimArray[i] * dimArray[k + 1] * dimArray[j + 1]));
 					
 					//prune suboptimal
 					if (cost < dpMatrix[i][j]) {
@@ -255,6 +286,14 @@ public class RewriteMatrixMultChainOptimization extends HopRewriteRule
 						split[i][j] = k;
 					}
 				}
+				
+				//estimate sparsity of optimal sub-chain
+				int k = split[i][j];
+				skMatrix[i][j] = MatrixSketch.createMatMultSketch(skMatrix[i][k], skMatrix[k+1][j]);
+				spMatrix[i][j] = (skMatrix[i][j] != null) ? 
+					OptimizerUtils.getSparsity((long)dimArray[i], (long)dimArray[j+1], skMatrix[i][j].getNonZeros()) :
+					OptimizerUtils.getMatMultSparsity(spMatrix[i][k], spMatrix[k+1][j], 
+						(long)dimArray[i], (long)dimArray[k+1], (long)dimArray[j+1], false);
 
 				if( LOG.isTraceEnabled() ){
 					LOG.trace("mmchainopt [i="+(i+1)+",j="+(j+1)+"]: costs = "+dpMatrix[i][j]+", split = "+(split[i][j]+1));
@@ -265,6 +304,121 @@ public class RewriteMatrixMultChainOptimization extends HopRewriteRule
 		return split;
 	}
 
+	/**
+	 * Computes the costs of multiplying the sub-chains (i,k) and (k+1,j), 
+	 * given the sparsity (and optional sketches) of both sub-chains.
+	 * 
+	 * @param dimArray
+	 * @param chain
+	 * @param spMatrix
+	 * @param skMatrix
+	 * @param i
+	 * @param k
+	 * @param j
+	 * @return
+	 */
+	private double getMatMultCost(double[] dimArray, ArrayList<Hop> chain, double[][] spMatrix, 
+			MatrixSketch[][] skMatrix, int i, int k, int j) 
+	{
+		double m = dimArray[i], cd = dimArray[k + 1], n = dimArray[j + 1];
+		double sp1 = spMatrix[i][k], sp2 = spMatrix[k + 1][j];
+		
+		//number of non-zero scalar products (all kernels skip zeros at least in one input)
+		MatrixSketch sk1 = skMatrix[i][k], sk2 = skMatrix[k + 1][j];
+		double prods = (sk1 != null && sk2 != null) ? 
+			MatrixSketch.getMatMultProducts(sk1, sk2) : m * cd * n * sp1 * sp2;
+		
+		//tsmm t(X)%*%X or X%*%t(X), which computes only the upper triangle
+		if( i == k && k + 1 == j && (isTransposeOf(chain.get(i), chain.get(j)) 
+			|| isTransposeOf(chain.get(j), chain.get(i))) )
+			prods /= 2;
+		//mmchain t(X)%*%(X%*%v), which is fused into the single pass of X%*%v
+		else if( i == k && k + 2 == j && n == 1 && isTransposeOf(chain.get(i), chain.get(k + 1)) )
+			prods = 0;
+		
+		//dense allocation of the output (all matrix multiplications use dense intermediates)
+		double cost = prods + m * n;
+		
+		//distributed operations if the operation exceeds the local memory budget
+		if( DMLScript.rtplatform != RUNTIME_PLATFORM.SINGLE_NODE ) {
+			double size1 = OptimizerUtils.estimateSizeExactSparsity((long)m, (long)cd, sp1);
+			double size2 = OptimizerUtils.estimateSizeExactSparsity((long)cd, (long)n, sp2);
+			double size3 = OptimizerUtils.estimateSizeExactSparsity((long)m, (long)n, 1.0);
+			if( size1 + size2 + size3 > OptimizerUtils.getLocalMemBudget() ) {
+				boolean spark = (DMLScript.rtplatform == RUNTIME_PLATFORM.SPARK 
+					|| DMLScript.rtplatform == RUNTIME_PLATFORM.HYBRID_SPARK);
+				double bcBudget = spark ? SparkExecutionContext.getBroadcastMemoryBudget() :
+					OptimizerUtils.getRemoteMemBudgetMap(true);
+				cost *= (Math.min(size1, size2) < bcBudget) ? 
+					DIST_MAPMM_FACTOR : DIST_SHUFFLE_FACTOR;
+			}
+		}
+		
+		return cost;
+	}
+	
+	/**
+	 * Indicates if the chain with unknown input sparsity should be re-optimized
+	 * during dynamic recompilation, i.e., if any possible intermediate exceeds
+	 * the local memory budget when estimated as dense.
+	 * 
+	 * @param dimArray
+	 * @param chain
+	 * @return
+	 */
+	private boolean requiresRecompile(double[] dimArray, ArrayList<Hop> chain) 
+	{
+		if( !OptimizerUtils.ALLOW_DYN_RECOMPILATION )
+			return false;
+		
+		boolean nnzKnown = true;
+		for( Hop h : chain )
+			nnzKnown &= (h.getNnz() >= 0);
+		if( nnzKnown )
+			return false;
+		
+		for( int i = 0; i < chain.size(); i++ )
+			for( int j = i + 1; j < chain.size(); j++ )
+				if( OptimizerUtils.estimateSizeExactSparsity((long)dimArray[i], (long)dimArray[j + 1], 1.0) 
+					> OptimizerUtils.getLocalMemBudget() )
+					return true;
+		
+		return false;
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @return
+	 */
+	private double getSparsity( Hop hop ) {
+		return (hop.getNnz() >= 0) ? 
+			OptimizerUtils.getSparsity(hop.getDim1(), hop.getDim2(), hop.getNnz()) : 1.0;
+	}
+	
+	/**
+	 * 
+	 * @param hop
+	 * @return
+	 */
+	private MatrixSketch getSketch( Hop hop ) {
+		MatrixSketch sk = hop.getSketch();
+		return ( sk != null && sk.getRows() == hop.getDim1() 
+			&& sk.getCols() == hop.getDim2() ) ? sk : null;
+	}
+	
+	/**
+	 * Indicates if hop1 is the transpose of hop2.
+	 * 
+	 * @param hop1
+	 * @param hop2
+	 * @return
+	 */
+	private boolean isTransposeOf( Hop hop1, Hop hop2 ) {
+		return ( hop1 instanceof ReorgOp && ((ReorgOp)hop1).getOp() == ReOrgOp.TRANSPOSE
+			&& hop1.getInput().get(0) == hop2 );
+	}
+
 	/**
 	 * mmChainRelinkHops(): This method gets invoked after finding the optimal
 	 * order (split[][]) from dynamic programming. It relinks the Hops that are
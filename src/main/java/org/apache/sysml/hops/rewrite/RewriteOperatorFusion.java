@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.hops.rewrite;
+
+import java.util.ArrayList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.hops.AggUnaryOp;
+import org.apache.sysml.hops.BinaryOp;
+import org.apache.sysml.hops.Hop;
+import org.apache.sysml.hops.Hop.AggOp;
+import org.apache.sysml.hops.Hop.Direction;
+import org.apache.sysml.hops.Hop.OpOp1;
+import org.apache.sysml.hops.Hop.OpOp2;
+import org.apache.sysml.hops.HopsException;
+import org.apache.sysml.hops.LiteralOp;
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.hops.UnaryOp;
+import org.apache.sysml.hops.codegen.SpoofCompiler;
+import org.apache.sysml.hops.codegen.SpoofFusedOp;
+import org.apache.sysml.parser.Expression.DataType;
+import org.apache.sysml.parser.Expression.ValueType;
+import org.apache.sysml.runtime.codegen.SpoofCellwise.CellType;
+
+/**
+ * Rule: Operator fusion of chains of element-wise operations, optionally
+ * followed by a sum or row sums aggregation, into a single fused operator
+ * with generated code (see SpoofCompiler). This avoids the materialization
+ * of all intermediates of the chain. Fusion regions are determined in a
+ * greedy top-down manner, where intermediates with multiple consumers
+ * bound the region (to prevent redundant computation). Since the generated
+ * operators rely on known input sizes, this rewrite is a dynamic rewrite
+ * and hence, also applied during dynamic recompilation.
+ *
+ */
+public class RewriteOperatorFusion extends HopRewriteRule
+{
+	private static final Log LOG = LogFactory.getLog(RewriteOperatorFusion.class.getName());
+
+	//unary operators that are sparse-safe over sparse-safe inputs
+	private static OpOp1[] LOOKUP_VALID_SPARSESAFE_UNARY = new OpOp1[]{OpOp1.ABS, OpOp1.SQRT,
+		OpOp1.ROUND, OpOp1.SIN, OpOp1.TAN, OpOp1.SIGN, OpOp1.SELP, OpOp1.SPROP, OpOp1.FLOOR, OpOp1.CEIL};
+
+	@Override
+	public ArrayList<Hop> rewriteHopDAGs(ArrayList<Hop> roots, ProgramRewriteStatus state)
+		throws HopsException
+	{
+		if( roots == null )
+			return roots;
+
+		for( Hop h : roots )
+			rule_OperatorFusion( h );
+
+		return roots;
+	}
+
+	@Override
+	public Hop rewriteHopDAG(Hop root, ProgramRewriteStatus state)
+		throws HopsException
+	{
+		if( root == null )
+			return root;
+
+		rule_OperatorFusion( root );
+
+		return root;
+	}
+
+	/**
+	 *
+	 * @param hop
+	 * @throws HopsException
+	 */
+	private void rule_OperatorFusion(Hop hop)
+		throws HopsException
+	{
+		if( hop.getVisited() == Hop.VisitStatus.DONE )
+			return;
+
+		//process childs top-down (in order to find maximal regions)
+		for( int i=0; i<hop.getInput().size(); i++ ) {
+			Hop hi = hop.getInput().get(i);
+			hi = fuseCellwiseRegion(hi);
+			rule_OperatorFusion(hi);
+		}
+
+		hop.setVisited(Hop.VisitStatus.DONE);
+	}
+
+	/**
+	 * Tries to fuse the region rooted at the given hop, and replaces the
+	 * root in all its parents with the fused operator.
+	 *
+	 * @param hop
+	 * @return
+	 * @throws HopsException
+	 */
+	private Hop fuseCellwiseRegion(Hop hop)
+		throws HopsException
+	{
+		if( hop.getVisited() == Hop.VisitStatus.DONE )
+			return hop;
+
+		//determine region type and cell-wise root
+		CellType type = null;
+		Hop cellRoot = null;
+		if( isCellwiseOp(hop) ) {
+			type = CellType.NO_AGG;
+			cellRoot = hop;
+		}
+		else if( hop instanceof AggUnaryOp && ((AggUnaryOp)hop).getOp()==AggOp.SUM
+			&& (((AggUnaryOp)hop).getDirection()==Direction.Row || ((AggUnaryOp)hop).getDirection()==Direction.RowCol)
+			&& isCellwiseOp(hop.getInput().get(0)) && hop.getInput().get(0).getParent().size()==1 )
+		{
+			type = (((AggUnaryOp)hop).getDirection()==Direction.Row) ? CellType.ROW_AGG : CellType.FULL_AGG;
+			cellRoot = hop.getInput().get(0);
+		}
+		else {
+			return hop;
+		}
+
+		//collect region members and leaf inputs
+		ArrayList<Hop> members = new ArrayList<Hop>();
+		ArrayList<Hop> leaves = new ArrayList<Hop>();
+		if( type != CellType.NO_AGG )
+			members.add(hop);
+		rCollectRegion(cellRoot, true, members, leaves);
+		if( members.size() < 2 )
+			return hop;
+
+		//check sizes, and determine main, side, and scalar inputs
+		if( !cellRoot.dimsKnown() || hop.getParent().isEmpty() )
+			return hop;
+		long m = cellRoot.getDim1();
+		long n = cellRoot.getDim2();
+		Hop main = null;
+		ArrayList<Hop> sides = new ArrayList<Hop>();
+		ArrayList<Hop> scalars = new ArrayList<Hop>();
+		for( Hop leaf : leaves ) {
+			if( leaf.getDataType() == DataType.SCALAR ) {
+				if( leaf.getValueType() == ValueType.STRING )
+					return hop;
+				if( !(leaf instanceof LiteralOp) )
+					scalars.add(leaf);
+			}
+			else if( !leaf.dimsKnown() )
+				return hop;
+			else if( main == null && leaf.getDim1()==m && leaf.getDim2()==n )
+				main = leaf;
+			else if( (leaf.getDim1()==m || leaf.getDim1()==1) && (leaf.getDim2()==n || leaf.getDim2()==1) )
+				sides.add(leaf);
+			else
+				return hop;
+		}
+		if( main == null || !isValidMemory(hop, main, leaves) )
+			return hop;
+
+		//generate and compile fused operator
+		boolean sparseSafe = rIsSparseSafe(cellRoot, main);
+		Class<?> cla = SpoofCompiler.generateCellwise(hop, main, sides, scalars, type, sparseSafe);
+		if( cla == null ) //compilation failed, keep unfused operators
+			return hop;
+
+		//create fused operator
+		ArrayList<Hop> inputs = new ArrayList<Hop>();
+		inputs.add(main);
+		inputs.addAll(sides);
+		inputs.addAll(scalars);
+		DataType dt = (type==CellType.FULL_AGG) ? DataType.SCALAR : DataType.MATRIX;
+		SpoofFusedOp fop = new SpoofFusedOp(hop.getName(), dt, ValueType.DOUBLE, cla, type, sparseSafe, inputs);
+		if( dt == DataType.MATRIX )
+			HopRewriteUtils.setOutputBlocksizes(fop, hop.getRowsInBlock(), hop.getColsInBlock());
+		else
+			HopRewriteUtils.setOutputParametersForScalar(fop);
+		HopRewriteUtils.copyLineNumbers(hop, fop);
+		fop.refreshSizeInformation();
+
+		//replace root in all parents, and remove region members
+		ArrayList<Hop> parents = new ArrayList<Hop>(hop.getParent());
+		for( Hop p : parents ) {
+			int pos = HopRewriteUtils.getChildReferencePos(p, hop);
+			HopRewriteUtils.removeChildReferenceByPos(p, hop, pos);
+			HopRewriteUtils.addChildReference(p, fop, pos);
+		}
+		for( Hop member : members )
+			HopRewriteUtils.removeAllChildReferences(member);
+
+		LOG.debug("Applied fuseCellwiseRegion (line "+hop.getBeginLine()+"): "
+			+ members.size()+" operators, "+type.name().toLowerCase()+" -> "+cla.getSimpleName());
+
+		return fop;
+	}
+
+	/**
+	 *
+	 * @param hop
+	 * @param root
+	 * @param members
+	 * @param leaves
+	 */
+	private void rCollectRegion( Hop hop, boolean root, ArrayList<Hop> members, ArrayList<Hop> leaves )
+	{
+		//region boundaries: non-cellwise ops or intermediates with multiple consumers
+		if( !isCellwiseOp(hop) || (!root && hop.getParent().size() > 1) ) {
+			if( !leaves.contains(hop) )
+				leaves.add(hop);
+			return;
+		}
+
+		members.add(hop);
+		for( Hop c : hop.getInput() )
+			rCollectRegion(c, false, members, leaves);
+	}
+
+	/**
+	 *
+	 * @param hop
+	 * @return
+	 */
+	private static boolean isCellwiseOp( Hop hop )
+	{
+		if( hop.getDataType() != DataType.MATRIX )
+			return false;
+
+		if( hop instanceof BinaryOp ) {
+			BinaryOp bop = (BinaryOp)hop;
+			return SpoofCompiler.isSupported(bop.getOp())
+				&& (bop.getInput().get(0).getDataType()==DataType.MATRIX
+				 || bop.getInput().get(1).getDataType()==DataType.MATRIX);
+		}
+		else if( hop instanceof UnaryOp ) {
+			UnaryOp uop = (UnaryOp)hop;
+			return SpoofCompiler.isSupported(uop.getOp())
+				&& uop.getInput().get(0).getDataType()==DataType.MATRIX;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Indicates if the given region evaluates to zero for zero cells of the
+	 * main input, independent of all side inputs.
+	 *
+	 * @param hop
+	 * @param main
+	 * @return
+	 */
+	private static boolean rIsSparseSafe( Hop hop, Hop main )
+	{
+		if( hop == main )
+			return true;
+
+		if( hop instanceof BinaryOp && isCellwiseOp(hop) ) {
+			OpOp2 op = ((BinaryOp)hop).getOp();
+			Hop left = hop.getInput().get(0);
+			Hop right = hop.getInput().get(1);
+			switch( op ) {
+				case MULT:
+					return rIsSparseSafe(left, main) || rIsSparseSafe(right, main);
+				case PLUS: case MINUS:
+					return rIsSparseSafe(left, main) && rIsSparseSafe(right, main);
+				case MINUS_NZ: case LOG_NZ:
+					return rIsSparseSafe(left, main);
+				case POW:
+					return right instanceof LiteralOp
+						&& HopRewriteUtils.getDoubleValueSafe((LiteralOp)right) > 0
+						&& rIsSparseSafe(left, main);
+				default:
+					return false;
+			}
+		}
+		else if( hop instanceof UnaryOp && isCellwiseOp(hop) ) {
+			return HopRewriteUtils.isValidOp(((UnaryOp)hop).getOp(), LOOKUP_VALID_SPARSESAFE_UNARY)
+				&& rIsSparseSafe(hop.getInput().get(0), main);
+		}
+
+		return false;
+	}
+
+	/**
+	 * Checks that the fused operator is executable in the current execution mode,
+	 * i.e., in CP for all modes except spark, and in spark w/ broadcast side inputs.
+	 *
+	 * @param root
+	 * @param main
+	 * @param leaves
+	 * @return
+	 */
+	private static boolean isValidMemory( Hop root, Hop main, ArrayList<Hop> leaves )
+	{
+		if( DMLScript.rtplatform == RUNTIME_PLATFORM.SINGLE_NODE )
+			return true;
+
+		//compute memory of inputs and output
+		double memIn = 0, memSide = 0;
+		for( Hop leaf : leaves )
+			if( leaf.getDataType() == DataType.MATRIX ) {
+				double mem = OptimizerUtils.estimateSizeExactSparsity(
+					leaf.getDim1(), leaf.getDim2(), (leaf.getNnz()>=0) ?
+					OptimizerUtils.getSparsity(leaf.getDim1(), leaf.getDim2(), leaf.getNnz()) : 1.0);
+				memIn += mem;
+				memSide += (leaf != main) ? mem : 0;
+			}
+		double memOut = (root.getDataType()==DataType.MATRIX) ?
+			OptimizerUtils.estimateSize(root.getDim1(), root.getDim2()) : 0;
+
+		boolean localValid = (memIn + memOut) < OptimizerUtils.getLocalMemBudget();
+		if( OptimizerUtils.isSparkExecutionMode() )
+			return localValid || OptimizerUtils.checkSparkBroadcastMemoryBudget(memSide);
+
+		return localValid;
+	}
+}
@@ -21,17 +21,20 @@ package org.apache.sysml.hops.rewrite;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Map;
 
 import org.apache.sysml.hops.DataOp;
 import org.apache.sysml.hops.Hop;
 import org.apache.sysml.hops.Hop.DataOpTypes;
 import org.apache.sysml.hops.HopsException;
 import org.apache.sysml.hops.Hop.VisitStatus;
+import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
 
 /**
  * This rewrite is a custom rewrite for JMLC in order to replace all persistent reads
- * and writes with transient reads and writes from the symbol table.
- * 
+ * and writes with transient reads and writes from the symbol table. Optionally, 
+ * the known dimensions of inputs are attached to the resulting transient reads,
+ * in order to specialize the compiled plan to the given input sizes.
  * 
  */
 public class RewriteRemovePersistentReadWrite extends HopRewriteRule
@@ -39,8 +42,14 @@ public class RewriteRemovePersistentReadWrite extends HopRewriteRule
 	
 	private HashSet<String> _inputs = null;
 	private HashSet<String> _outputs = null;
+	private Map<String, MatrixCharacteristics> _inputsMeta = null;
 	
 	public RewriteRemovePersistentReadWrite( String[] in, String[] out )
+	{
+		this(in, out, null);
+	}
+	
+	public RewriteRemovePersistentReadWrite( String[] in, String[] out, Map<String, MatrixCharacteristics> inMeta )
 	{
 		_inputs = new HashSet<String>();
 		for( String var : in )
@@ -48,6 +57,7 @@ public class RewriteRemovePersistentReadWrite extends HopRewriteRule
 		_outputs = new HashSet<String>();
 		for( String var : out )
 			_outputs.add( var );
+		_inputsMeta = inMeta;
 	}
 	
 	@Override
@@ -101,8 +111,21 @@ public class RewriteRemovePersistentReadWrite extends HopRewriteRule
 			switch( dotype ) 
 			{
 				case PERSISTENTREAD:
-					if( _inputs.contains(dop.getName()) )
+					if( _inputs.contains(dop.getName()) ) {
 						dop.setDataOpType(DataOpTypes.TRANSIENTREAD);
+						
+						//attach known input dimensions, if available
+						MatrixCharacteristics mc = (_inputsMeta != null) ? 
+								_inputsMeta.get(dop.getName()) : null;
+						if( mc != null ) {
+							if( mc.rowsKnown() )
+								dop.setDim1(mc.getRows());
+							if( mc.colsKnown() )
+								dop.setDim2(mc.getCols());
+							if( mc.nnzKnown() )
+								dop.setNnz(mc.getNonZeros());
+						}
+					}
 					break;
 				case PERSISTENTWRITE:
 					if( _outputs.contains(dop.getName()) )
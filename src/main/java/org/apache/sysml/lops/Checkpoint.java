@@ -47,6 +47,7 @@ public class Checkpoint extends Lop
 	public static final String STORAGE_LEVEL = "storage.level"; 
 
 	private StorageLevel _storageLevel;
+	private boolean _partition = false;
 	
 
 	/**
@@ -57,10 +58,10 @@ public class Checkpoint extends Lop
 	 * @param dt
 	 * @param vt
 	 * @param level
-	 * @param et
+	 * @param partition partition by block partitioner (e.g., for subsequent joins)
 	 * @throws LopsException
 	 */
-	public Checkpoint(Lop input, DataType dt, ValueType vt, String level) 
+	public Checkpoint(Lop input, DataType dt, ValueType vt, String level, boolean partition) 
 		throws LopsException
 	{
 		super(Lop.Type.Checkpoint, dt, vt);		
@@ -68,6 +69,7 @@ public class Checkpoint extends Lop
 		input.addOutput(this);
 		
 		_storageLevel = StorageLevel.fromString(level);
+		_partition = partition;
 		
 		boolean breaksAlignment = false;
 		boolean aligner = false;
@@ -87,9 +89,14 @@ public class Checkpoint extends Lop
 		_storageLevel = level;
 	}
 	
+	public boolean isPartitioned()
+	{
+		return _partition;
+	}
+	
 	@Override
 	public String toString() {
-		return "Checkpoint - storage.level = " + _storageLevel.toString();
+		return "Checkpoint - storage.level = " + _storageLevel.toString() + ", partition = " + _partition;
 	}
 	
 	@Override
@@ -111,6 +118,8 @@ public class Checkpoint extends Lop
 		sb.append( prepOutputOperand(output));
 		sb.append( OPERAND_DELIMITOR );
 		sb.append( getStorageLevelString(_storageLevel) );
+		sb.append( OPERAND_DELIMITOR );
+		sb.append( _partition );
 		
 		return sb.toString();
 
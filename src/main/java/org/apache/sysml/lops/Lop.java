@@ -58,6 +58,7 @@ public abstract class Lop
 		WeightedSquaredLoss, WeightedSigmoid, WeightedDivMM, WeightedCeMM, WeightedUMM,
 		SortKeys, PickValues,
 		Checkpoint, 										//Spark persist into storage level
+		SpoofFused,                                         //CP/SP fused operator
 	};
 
 	/**
@@ -478,6 +479,11 @@ public abstract class Lop
 		throw new LopsException(this.printErrorLocation() + "Should never be invoked in Baseclass");
 	}
 	
+	/** Method should be overridden if needed **/
+	public String getInstructions(String[] inputs, String output) throws LopsException {
+		throw new LopsException(this.printErrorLocation() + "Should never be invoked in Baseclass");
+	}
+	
 	/** Method should be overridden if needed **/
 	public String getInstructions() throws LopsException {
 		throw new LopsException(this.printErrorLocation() + "Should never be invoked in Baseclass");
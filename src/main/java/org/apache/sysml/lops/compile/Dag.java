@@ -1427,6 +1427,15 @@ public class Dag<N extends Lop>
 					
 					inst_string = node.getInstructions(inputs, outputs);
 				}
+				else if ( node.getType() == Lop.Type.SpoofFused )
+				{
+					String[] inputs = new String[node.getInputs().size()];
+					int count = 0;
+					for( Lop in : node.getInputs() )
+						inputs[count++] = in.getOutputParameters().getLabel();
+					
+					inst_string = node.getInstructions(inputs, node.getOutputParameters().getLabel());
+				}
 				else {
 					if ( node.getInputs().isEmpty() ) {
 						// currently, such a case exists only for Rand lop
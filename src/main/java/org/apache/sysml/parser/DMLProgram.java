@@ -534,6 +534,17 @@ public class DMLProgram
 				instruct = dag.getJobs(sb, config);
 				rtpb.addInstructions(instruct);
 			}
+			else if( sb.liveIn() != null && sb.liveOut() != null ) {
+				// blocks w/o lops (e.g., cleanup blocks of hoisted loop invariants) 
+				// do not pass the dag, hence we explicitly remove live-in but not 
+				// live-out variables as done in Dag.generateRemoveInstructions
+				for( String varName : sb.liveIn().getVariableNames() )
+					if( !sb.liveOut().containsVariable(varName) ) {
+						Instruction inst = createCleanupInstruction(varName);
+						inst.setLocation(sb.liveIn().getVariable(varName));
+						rtpb.addInstruction(inst);
+					}
+			}
 			
 			/*// TODO: check with Doug
 			// add instruction for a function call
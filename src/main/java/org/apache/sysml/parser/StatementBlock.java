@@ -31,6 +31,7 @@ import org.apache.sysml.api.MLContextProxy;
 import org.apache.sysml.hops.Hop;
 import org.apache.sysml.hops.HopsException;
 import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.hops.recompile.RecompilePlanCache;
 import org.apache.sysml.hops.recompile.Recompiler;
 import org.apache.sysml.lops.Lop;
 import org.apache.sysml.parser.Expression.DataType;
@@ -55,6 +56,8 @@ public class StatementBlock extends LiveVariableAnalysis
 	HashMap<String,ConstIdentifier> _constVarsOut;
 	
 	private boolean _requiresRecompile = false;
+	private RecompilePlanCache _planCache = null;
+	private ArrayList<String> _updateInPlaceVars = new ArrayList<String>(); //loop variables
 	
 	public StatementBlock(){
 		_dmlProg = null;
@@ -148,6 +151,7 @@ public class StatementBlock extends LiveVariableAnalysis
 
 	public void set_hops(ArrayList<Hop> hops) {
 		_hops = hops;
+		clearRecompilePlanCache();
 	}
 
 	public void setLops(ArrayList<Lop> lops) {
@@ -1061,5 +1065,42 @@ public class StatementBlock extends LiveVariableAnalysis
 		return _requiresRecompile;
 	}
 	
+	/**
+	 * Obtains the cache of recompiled instructions of this statement block.
+	 * 
+	 * @return
+	 */
+	public synchronized RecompilePlanCache getRecompilePlanCache()
+	{
+		if( _planCache == null )
+			_planCache = new RecompilePlanCache();
+		return _planCache;
+	}
+	
+	/**
+	 * Clears the cache of recompiled instructions, which is required 
+	 * whenever the hops of this statement block are modified in-place.
+	 */
+	public synchronized void clearRecompilePlanCache()
+	{
+		if( _planCache != null )
+			_planCache.clear();
+	}
+	
+	/**
+	 * Sets the matrix variables that can be updated in-place by left indexing 
+	 * within this loop (see RewriteMarkLoopVariablesUpdateInPlace).
+	 * 
+	 * @param vars
+	 */
+	public void setUpdateInPlaceVars( ArrayList<String> vars )
+	{
+		_updateInPlaceVars = vars;
+	}
+	
+	public ArrayList<String> getUpdateInPlaceVars()
+	{
+		return _updateInPlaceVars;
+	}
 	
 }  // end class
@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.runtime.codegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import javax.tools.JavaFileObject.Kind;
+
+import org.apache.commons.math3.util.FastMath;
+import org.apache.sysml.runtime.DMLRuntimeException;
+
+/**
+ * Utilities for the in-memory compilation of generated operator classes via
+ * the system java compiler, and a JVM-wide cache of compiled classes and their
+ * byte code. The byte code allows to load generated classes in remote JVMs
+ * (e.g., spark executors) without the need for a java compiler there.
+ * Both caches are bounded (LRU), and fused operators re-register their classes
+ * on lop construction, i.e., before the related instructions are parsed.
+ *
+ */
+public class CodegenUtils
+{
+	//max number of cached classes (and byte code) per JVM
+	public static final int MAX_CLASS_CACHE_SIZE = 1024;
+	
+	//JVM-wide cache of loaded classes and their byte code
+	private static LinkedHashMap<String, Class<?>> _cache = 
+		new LinkedHashMap<String, Class<?>>(16, 0.75f, true) {
+			private static final long serialVersionUID = -2306539738372957145L;
+			@Override
+			protected boolean removeEldestEntry(Entry<String, Class<?>> eldest) {
+				return size() > MAX_CLASS_CACHE_SIZE;
+			}
+		};
+	private static LinkedHashMap<String, byte[]> _bytes = 
+		new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 6619023459722176512L;
+			@Override
+			protected boolean removeEldestEntry(Entry<String, byte[]> eldest) {
+				return size() > MAX_CLASS_CACHE_SIZE;
+			}
+		};
+	
+	//classpath of the system java compiler (lazily initialized)
+	private static String _classpath = null;
+
+	/**
+	 * Indicates if a java compiler is available in the current JVM,
+	 * which is not the case if executed within a plain JRE.
+	 *
+	 * @return
+	 */
+	public static boolean isCompilerAvailable() {
+		return ToolProvider.getSystemJavaCompiler() != null;
+	}
+
+	/**
+	 * Compiles the given java source of a class with the given fully
+	 * qualified name, and loads the resulting class.
+	 *
+	 * @param name
+	 * @param src
+	 * @return
+	 * @throws DMLRuntimeException
+	 */
+	public synchronized static Class<?> compileClass( String name, String src )
+		throws DMLRuntimeException
+	{
+		//probe cache of loaded classes
+		Class<?> ret = _cache.get(name);
+		if( ret != null )
+			return ret;
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if( compiler == null )
+			throw new DMLRuntimeException("No java compiler available for code generation.");
+
+		//in-memory compilation against the classpath of the runtime classes
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		InMemoryFileManager fm = new InMemoryFileManager(
+				compiler.getStandardFileManager(diagnostics, null, null));
+		List<String> options = Arrays.asList("-classpath",
+				getClasspath(), "-proc:none", "-nowarn");
+		List<JavaFileObject> units = Arrays.asList((JavaFileObject)new SourceFileObject(name, src));
+		boolean success = compiler.getTask(null, fm, diagnostics, options, null, units).call();
+
+		if( !success ) {
+			StringBuilder sb = new StringBuilder();
+			for( Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics() )
+				sb.append(d.toString()+"\n");
+			throw new DMLRuntimeException("Failed to compile generated class "+name+":\n"+sb.toString()+src);
+		}
+
+		return loadClass(name, fm.getClassBytes());
+	}
+
+	/**
+	 * Obtains a previously compiled class from the local cache.
+	 *
+	 * @param name
+	 * @return
+	 * @throws DMLRuntimeException
+	 */
+	public synchronized static Class<?> getClass( String name )
+		throws DMLRuntimeException
+	{
+		Class<?> ret = _cache.get(name);
+		if( ret == null )
+			throw new DMLRuntimeException("Generated class "+name+" not available.");
+		return ret;
+	}
+
+	/**
+	 * Obtains a compiled class from the local cache, or loads it from the
+	 * given byte code if not yet available in this JVM.
+	 *
+	 * @param name
+	 * @param classBytes
+	 * @return
+	 */
+	public synchronized static Class<?> getClass( String name, byte[] classBytes )
+	{
+		Class<?> ret = _cache.get(name);
+		if( ret == null )
+			ret = loadClass(name, classBytes);
+		return ret;
+	}
+
+	/**
+	 * Registers (or refreshes) a previously compiled class and its byte code
+	 * in the local cache, which ensures its availability for instruction parsing 
+	 * even if it was evicted in the meantime.
+	 * 
+	 * @param cla
+	 * @param classBytes
+	 */
+	public synchronized static void registerClass( Class<?> cla, byte[] classBytes ) {
+		_cache.put(cla.getName(), cla);
+		if( classBytes != null )
+			_bytes.put(cla.getName(), classBytes);
+	}
+	
+	/**
+	 * Obtains the byte code of a previously compiled class.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public synchronized static byte[] getClassBytes( String name ) {
+		return _bytes.get(name);
+	}
+
+	/**
+	 * Creates a new instance of the given generated class.
+	 *
+	 * @param cla
+	 * @return
+	 * @throws DMLRuntimeException
+	 */
+	public static Object createInstance( Class<?> cla )
+		throws DMLRuntimeException
+	{
+		try {
+			return cla.newInstance();
+		}
+		catch(Exception ex) {
+			throw new DMLRuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Removes all generated classes from the local cache.
+	 */
+	public synchronized static void clearClassCache() {
+		_cache.clear();
+		_bytes.clear();
+	}
+
+	/**
+	 * Obtains the classpath for compiling generated classes. Since the runtime
+	 * classes might be loaded by a custom class loader (e.g., in application 
+	 * servers or spark), we derive the classpath from the code sources and class 
+	 * loaders of the classes referenced by generated code, and append the system 
+	 * classpath.
+	 * 
+	 * @return
+	 */
+	private static String getClasspath() 
+	{
+		if( _classpath == null ) {
+			LinkedHashSet<String> paths = new LinkedHashSet<String>();
+			addCodeSource(SpoofCellwise.class, paths);
+			addCodeSource(FastMath.class, paths);
+			for( ClassLoader cl = SpoofCellwise.class.getClassLoader(); cl != null; cl = cl.getParent() )
+				if( cl instanceof URLClassLoader )
+					for( URL url : ((URLClassLoader)cl).getURLs() )
+						addPath(url, paths);
+			for( String path : System.getProperty("java.class.path").split(File.pathSeparator) )
+				if( !path.isEmpty() )
+					paths.add(path);
+			
+			StringBuilder sb = new StringBuilder();
+			for( String path : paths ) {
+				if( sb.length() > 0 )
+					sb.append(File.pathSeparator);
+				sb.append(path);
+			}
+			_classpath = sb.toString();
+		}
+		return _classpath;
+	}
+	
+	private static void addCodeSource( Class<?> cla, LinkedHashSet<String> paths ) {
+		CodeSource cs = cla.getProtectionDomain().getCodeSource();
+		if( cs != null && cs.getLocation() != null )
+			addPath(cs.getLocation(), paths);
+	}
+	
+	private static void addPath( URL url, LinkedHashSet<String> paths ) {
+		try {
+			if( "file".equals(url.getProtocol()) )
+				paths.add(new File(url.toURI()).getPath());
+		}
+		catch(Exception ex) {
+			//ignore invalid urls (not usable by the compiler)
+		}
+	}
+	
+	private static Class<?> loadClass( String name, byte[] classBytes ) {
+		ByteClassLoader loader = new ByteClassLoader(
+				CodegenUtils.class.getClassLoader(), name, classBytes);
+		Class<?> ret = loader.defineGeneratedClass();
+		_cache.put(name, ret);
+		_bytes.put(name, classBytes);
+		return ret;
+	}
+
+	/**
+	 * In-memory source file of a generated class.
+	 */
+	private static class SourceFileObject extends SimpleJavaFileObject
+	{
+		private final String _src;
+
+		protected SourceFileObject( String name, String src ) {
+			super(URI.create("string:///" + name.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+			_src = src;
+		}
+
+		@Override
+		public CharSequence getCharContent( boolean ignoreEncodingErrors ) {
+			return _src;
+		}
+	}
+
+	/**
+	 * In-memory class file, which collects the generated byte code.
+	 */
+	private static class ClassFileObject extends SimpleJavaFileObject
+	{
+		private final ByteArrayOutputStream _bos = new ByteArrayOutputStream();
+
+		protected ClassFileObject( String name ) {
+			super(URI.create("bytes:///" + name.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+		}
+
+		@Override
+		public OutputStream openOutputStream() {
+			return _bos;
+		}
+
+		public byte[] getBytes() {
+			return _bos.toByteArray();
+		}
+	}
+
+	/**
+	 * File manager that redirects compiler outputs into memory.
+	 */
+	private static class InMemoryFileManager extends ForwardingJavaFileManager<JavaFileManager>
+	{
+		private ClassFileObject _out = null;
+
+		protected InMemoryFileManager( JavaFileManager fm ) {
+			super(fm);
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput( Location location, String className, Kind kind, FileObject sibling ) {
+			_out = new ClassFileObject(className);
+			return _out;
+		}
+
+		public byte[] getClassBytes() {
+			return _out.getBytes();
+		}
+	}
+
+	/**
+	 * Class loader for a single class given as byte code.
+	 */
+	private static class ByteClassLoader extends ClassLoader
+	{
+		private final String _name;
+		private final byte[] _classBytes;
+		private Class<?> _class = null;
+
+		protected ByteClassLoader( ClassLoader parent, String name, byte[] classBytes ) {
+			super(parent);
+			_name = name;
+			_classBytes = classBytes;
+		}
+
+		public Class<?> defineGeneratedClass() {
+			_class = defineClass(_name, _classBytes, 0, _classBytes.length);
+			return _class;
+		}
+
+		@Override
+		protected Class<?> findClass( String name ) 
+			throws ClassNotFoundException 
+		{
+			if( _class == null || !_name.equals(name) )
+				throw new ClassNotFoundException(name);
+			return _class;
+		}
+	}
+}
@@ -0,0 +1,398 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.runtime.codegen;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.sysml.runtime.DMLRuntimeException;
+import org.apache.sysml.runtime.functionobjects.KahanPlus;
+import org.apache.sysml.runtime.instructions.cp.DoubleObject;
+import org.apache.sysml.runtime.instructions.cp.KahanObject;
+import org.apache.sysml.runtime.instructions.cp.ScalarObject;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.matrix.data.SparseRow;
+
+/**
+ * Base class of all generated cell-wise operators (see SpoofCompiler), which
+ * evaluate a fused chain of element-wise operations per cell of the main input
+ * (the first input), without materializing any intermediates. Side inputs are
+ * either of the same size as the main input, or row/column vectors, which are
+ * broadcast accordingly. The cell results are either written to the output
+ * (no aggregation), aggregated per row (row sums), or over all cells (sum).
+ *
+ * Generated operators only implement the scalar function genexec, while the
+ * iteration over dense/sparse inputs, aggregation, and multi-threading is
+ * handled here. If an operator is sparse-safe (i.e., a zero value of the main
+ * input always yields a zero result), we only iterate over non-zero cells.
+ *
+ */
+public abstract class SpoofCellwise implements Serializable
+{
+	private static final long serialVersionUID = 3442528770573293590L;
+
+	//min number of cells for multi-threaded execution
+	private static final long PAR_NUMCELL_THRESHOLD = 1024*1024; //Min 1M elements
+
+	public enum CellType {
+		NO_AGG,   //output of the same size as the main input
+		ROW_AGG,  //output column vector of row sums
+		FULL_AGG, //scalar output of the sum over all cells
+	}
+
+	private final CellType _type;
+	private final boolean _sparseSafe;
+
+	public SpoofCellwise( CellType type, boolean sparseSafe ) {
+		_type = type;
+		_sparseSafe = sparseSafe;
+	}
+
+	public CellType getCellType() {
+		return _type;
+	}
+
+	public boolean isSparseSafe() {
+		return _sparseSafe;
+	}
+
+	/**
+	 * Executes the fused operator with full aggregation (sum) over all cells.
+	 *
+	 * @param inputs main input, followed by side inputs
+	 * @param scalarObjects scalar inputs
+	 * @param k degree of parallelism
+	 * @return
+	 * @throws DMLRuntimeException
+	 */
+	public ScalarObject execute( ArrayList<MatrixBlock> inputs, ArrayList<ScalarObject> scalarObjects, int k )
+		throws DMLRuntimeException
+	{
+		if( _type != CellType.FULL_AGG )
+			throw new DMLRuntimeException("Invalid scalar execution of cell-wise operator: "+_type);
+
+		//prepare inputs
+		MatrixBlock a = inputs.get(0);
+		SideInput[] b = prepSideInputs(inputs);
+		double[] scalars = prepScalars(scalarObjects);
+		int m = a.getNumRows();
+		int n = a.getNumColumns();
+
+		//early abort on empty sparse-safe inputs
+		if( _sparseSafe && a.isEmptyBlock(false) )
+			return new DoubleObject(0);
+
+		//sequential or multi-threaded execution
+		KahanObject kbuff = new KahanObject(0, 0);
+		if( !isParallelizable(m, n, k) ) {
+			executeRowRange(a, b, scalars, null, kbuff, 0, m);
+		}
+		else {
+			try {
+				ExecutorService pool = Executors.newFixedThreadPool( k );
+				ArrayList<CellwiseTask> tasks = createTasks(a, b, scalars, null, m, k);
+				List<Future<KahanObject>> rtasks = pool.invokeAll(tasks);
+				pool.shutdown();
+
+				//aggregate partial results
+				KahanPlus kplus = KahanPlus.getKahanPlusFnObject();
+				for( Future<KahanObject> rtask : rtasks ) {
+					KahanObject tmp = rtask.get();
+					kplus.execute(kbuff, tmp._sum, tmp._correction);
+				}
+			}
+			catch(Exception ex) {
+				throw new DMLRuntimeException(ex);
+			}
+		}
+
+		return new DoubleObject(kbuff._sum);
+	}
+
+	/**
+	 * Executes the fused operator without or with row aggregation.
+	 *
+	 * @param inputs main input, followed by side inputs
+	 * @param scalarObjects scalar inputs
+	 * @param out output matrix block
+	 * @param k degree of parallelism
+	 * @return
+	 * @throws DMLRuntimeException
+	 */
+	public MatrixBlock execute( ArrayList<MatrixBlock> inputs, ArrayList<ScalarObject> scalarObjects, MatrixBlock out, int k )
+		throws DMLRuntimeException
+	{
+		if( _type == CellType.FULL_AGG )
+			throw new DMLRuntimeException("Invalid matrix execution of cell-wise operator: "+_type);
+
+		//prepare inputs
+		MatrixBlock a = inputs.get(0);
+		SideInput[] b = prepSideInputs(inputs);
+		double[] scalars = prepScalars(scalarObjects);
+		int m = a.getNumRows();
+		int n = a.getNumColumns();
+
+		//prepare output (sparse only for sparse-safe operations over sparse inputs)
+		boolean sparseOut = (_type == CellType.NO_AGG && _sparseSafe && a.isInSparseFormat());
+		out.reset(m, (_type == CellType.NO_AGG) ? n : 1, sparseOut);
+
+		//early abort on empty sparse-safe inputs
+		if( _sparseSafe && a.isEmptyBlock(false) )
+			return out;
+
+		if( sparseOut )
+			out.allocateSparseRowsBlock();
+		else
+			out.allocateDenseBlock();
+
+		//sequential or multi-threaded execution
+		long nnz = 0;
+		if( !isParallelizable(m, n, k) ) {
+			nnz = executeRowRange(a, b, scalars, out, null, 0, m);
+		}
+		else {
+			try {
+				ExecutorService pool = Executors.newFixedThreadPool( k );
+				ArrayList<CellwiseTask> tasks = createTasks(a, b, scalars, out, m, k);
+				List<Future<KahanObject>> rtasks = pool.invokeAll(tasks);
+				pool.shutdown();
+				for( Future<KahanObject> rtask : rtasks )
+					rtask.get(); //error handling
+				for( CellwiseTask task : tasks )
+					nnz += task.getNonZeros();
+			}
+			catch(Exception ex) {
+				throw new DMLRuntimeException(ex);
+			}
+		}
+
+		out.setNonZeros(nnz);
+		out.examSparsity();
+
+		return out;
+	}
+
+	/**
+	 * Generated scalar function of the fused operator, where a is the value
+	 * of the main input at the given cell.
+	 *
+	 * @param a
+	 * @param b
+	 * @param scalars
+	 * @param rix
+	 * @param cix
+	 * @return
+	 */
+	protected abstract double genexec( double a, SideInput[] b, double[] scalars, int rix, int cix );
+
+	/**
+	 * Obtains the value of the given side input for the given cell of the
+	 * main input, incl broadcasting of row and column vectors.
+	 *
+	 * @param b
+	 * @param rix
+	 * @param cix
+	 * @return
+	 */
+	protected static double getValue( SideInput b, int rix, int cix ) {
+		int r = b.rowVector ? 0 : rix;
+		int c = b.colVector ? 0 : cix;
+		return (b.values != null) ? b.values[r*b.clen+c] :
+			b.mb.quickGetValue(r, c);
+	}
+
+	////////////////////////////////
+	// internal execution
+	////////////////////////////////
+
+	private boolean isParallelizable( int m, int n, int k ) {
+		return k > 1 && m > k && (long)m * n >= PAR_NUMCELL_THRESHOLD;
+	}
+
+	private ArrayList<CellwiseTask> createTasks( MatrixBlock a, SideInput[] b, double[] scalars, MatrixBlock out, int m, int k ) {
+		ArrayList<CellwiseTask> tasks = new ArrayList<CellwiseTask>();
+		int blklen = (int)(Math.ceil((double)m/k));
+		for( int i=0; i<k & i*blklen<m; i++ )
+			tasks.add(new CellwiseTask(a, b, scalars, out, i*blklen, Math.min((i+1)*blklen, m)));
+		return tasks;
+	}
+
+	/**
+	 * Evaluates all cells of the given row range, and either writes the results
+	 * to the output (no or row aggregation), or aggregates them into the given
+	 * kahan buffer (full aggregation).
+	 *
+	 * @param a
+	 * @param b
+	 * @param scalars
+	 * @param out
+	 * @param kbuff
+	 * @param rl
+	 * @param ru
+	 * @return number of non-zeros in the output row range
+	 */
+	private long executeRowRange( MatrixBlock a, SideInput[] b, double[] scalars, MatrixBlock out, KahanObject kbuff, int rl, int ru )
+	{
+		KahanPlus kplus = KahanPlus.getKahanPlusFnObject();
+		KahanObject rbuff = new KahanObject(0, 0);
+		int n = a.getNumColumns();
+		boolean sparseIn = a.isInSparseFormat();
+		double[] avals = sparseIn ? null : a.getDenseBlock();
+		SparseRow[] arows = sparseIn ? a.getSparseBlock() : null;
+		double[] c = (out != null) ? out.getDenseBlock() : null;
+		SparseRow[] crows = (out != null) ? out.getSparseBlock() : null;
+		long lnnz = 0;
+
+		for( int i=rl; i<ru; i++ )
+		{
+			rbuff.set(0, 0);
+			SparseRow arow = (arows != null && i < arows.length) ? arows[i] : null;
+
+			if( _sparseSafe && sparseIn ) {
+				//iterate over non-zero cells only
+				if( arow == null || arow.isEmpty() )
+					continue;
+				int alen = arow.size();
+				int[] aix = arow.getIndexContainer();
+				double[] aval = arow.getValueContainer();
+				if( crows != null )
+					crows[i] = new SparseRow(alen, n);
+				for( int j=0; j<alen; j++ ) {
+					double val = genexec(aval[j], b, scalars, i, aix[j]);
+					if( crows != null ) {
+						if( val != 0 )
+							crows[i].append(aix[j], val);
+					}
+					else if( c != null && _type == CellType.NO_AGG ) {
+						c[i*n+aix[j]] = val;
+						lnnz += (val != 0) ? 1 : 0;
+					}
+					else
+						kplus.execute2((c != null) ? rbuff : kbuff, val);
+				}
+				if( crows != null )
+					lnnz += crows[i].size();
+			}
+			else {
+				//iterate over all cells (w/ positional scan of sparse rows)
+				int apos = 0;
+				int alen = (arow != null) ? arow.size() : 0;
+				int[] aix = (arow != null) ? arow.getIndexContainer() : null;
+				double[] aval = (arow != null) ? arow.getValueContainer() : null;
+				for( int j=0, aix2=i*n; j<n; j++, aix2++ ) {
+					double aij = 0;
+					if( avals != null )
+						aij = avals[aix2];
+					else if( apos < alen && aix[apos] == j )
+						aij = aval[apos++];
+					double val = genexec(aij, b, scalars, i, j);
+					if( c != null && _type == CellType.NO_AGG ) {
+						c[aix2] = val;
+						lnnz += (val != 0) ? 1 : 0;
+					}
+					else
+						kplus.execute2((c != null) ? rbuff : kbuff, val);
+				}
+			}
+
+			//write row aggregate
+			if( c != null && _type == CellType.ROW_AGG ) {
+				c[i] = rbuff._sum;
+				lnnz += (rbuff._sum != 0) ? 1 : 0;
+			}
+		}
+
+		return lnnz;
+	}
+
+	private static SideInput[] prepSideInputs( ArrayList<MatrixBlock> inputs ) {
+		SideInput[] b = new SideInput[inputs.size()-1];
+		for( int i=1; i<inputs.size(); i++ )
+			b[i-1] = new SideInput(inputs.get(i));
+		return b;
+	}
+
+	private static double[] prepScalars( ArrayList<ScalarObject> scalarObjects ) {
+		double[] scalars = new double[scalarObjects.size()];
+		for( int i=0; i<scalarObjects.size(); i++ )
+			scalars[i] = scalarObjects.get(i).getDoubleValue();
+		return scalars;
+	}
+
+	/**
+	 * Side input with direct access to dense values (if allocated),
+	 * and meta data for broadcasting of vectors.
+	 */
+	protected static class SideInput
+	{
+		public final MatrixBlock mb;
+		public final double[] values;
+		public final int clen;
+		public final boolean rowVector;
+		public final boolean colVector;
+
+		public SideInput( MatrixBlock in ) {
+			mb = in;
+			values = in.isInSparseFormat() ? null : in.getDenseBlock();
+			clen = in.getNumColumns();
+			rowVector = (in.getNumRows() == 1);
+			colVector = (in.getNumColumns() == 1);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private class CellwiseTask implements Callable<KahanObject>
+	{
+		private final MatrixBlock _a;
+		private final SideInput[] _b;
+		private final double[] _scalars;
+		private final MatrixBlock _out;
+		private final int _rl;
+		private final int _ru;
+		private long _nnz = 0;
+
+		protected CellwiseTask( MatrixBlock a, SideInput[] b, double[] scalars, MatrixBlock out, int rl, int ru ) {
+			_a = a;
+			_b = b;
+			_scalars = scalars;
+			_out = out;
+			_rl = rl;
+			_ru = ru;
+		}
+
+		@Override
+		public KahanObject call() throws DMLRuntimeException {
+			KahanObject kbuff = new KahanObject(0, 0);
+			_nnz = executeRowRange(_a, _b, _scalars, _out, kbuff, _rl, _ru);
+			return kbuff;
+		}
+
+		public long getNonZeros() {
+			return _nnz;
+		}
+	}
+}
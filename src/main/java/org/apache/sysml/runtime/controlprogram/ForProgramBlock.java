@@ -171,6 +171,10 @@ public class ForProgramBlock extends ProgramBlock
 		// initialize iter var to from value
 		IntObject iterVar = new IntObject(iterVarName, from.getLongValue() );
 		
+		// prepare update in-place variables (only if at least one iteration)
+		ArrayList<String> uipVars = (from.getLongValue() <= to.getLongValue()) ?
+			prepareUpdateInPlaceVariables(ec) : new ArrayList<String>();
+		
 		// execute for loop
 		try 
 		{
@@ -203,6 +207,9 @@ public class ForProgramBlock extends ProgramBlock
 			throw new DMLRuntimeException(printBlockErrorLocation() + "Error evaluating for program block", e);
 		}
 		
+		// reset update in-place flags
+		resetUpdateInPlaceVariableFlags(ec, uipVars);
+		
 		//execute exit instructions
 		try {
 			executeInstructions(_exitInstructions, ec);	
@@ -101,6 +101,7 @@ import org.apache.sysml.runtime.instructions.cp.DoubleObject;
 import org.apache.sysml.runtime.instructions.cp.IntObject;
 import org.apache.sysml.runtime.instructions.cp.StringObject;
 import org.apache.sysml.runtime.instructions.cp.VariableCPInstruction;
+import org.apache.sysml.runtime.instructions.spark.data.RDDObject;
 import org.apache.sysml.runtime.matrix.data.OutputInfo;
 import org.apache.sysml.utils.Statistics;
 import org.apache.sysml.yarn.ropt.YarnClusterAnalyzer;
@@ -259,6 +260,7 @@ public class ParForProgramBlock extends ForProgramBlock
 	protected LocalVariableMap _variablesDPOriginal = null;
 	protected LocalVariableMap _variablesDPReuse    = null;
 	protected String           _colocatedDPMatrix   = null;
+	protected RDDObject        _colocatedDPReuse    = null; //persisted partitioned rdd (spark fused dp)
 	protected boolean          _tSparseCol          = false;
 	protected int              _replicationDP       = WRITE_REPLICATION_FACTOR;
 	protected int              _replicationExport   = -1;
@@ -1097,15 +1099,23 @@ public class ParForProgramBlock extends ForProgramBlock
 		if( _monitor )
 			StatisticMonitor.putPFStat(_ID, Stat.PARFOR_INIT_TASKS_T, time.stop());
 		
-		//write matrices to HDFS 
-		exportMatricesToHDFS(ec);
-				
-		// Step 4) submit MR job (wait for finished work)
-		OutputInfo inputOI = ((inputMatrix.getSparsity()<0.1 && inputDPF==PDataPartitionFormat.COLUMN_WISE)||
-				              (inputMatrix.getSparsity()<0.001 && inputDPF==PDataPartitionFormat.ROW_WISE))? 
-				             OutputInfo.BinaryCellOutputInfo : OutputInfo.BinaryBlockOutputInfo;
+		//write matrices to HDFS (except the partitioned input, which is passed 
+		//as partitioned rdd and hence, never read from hdfs by the workers)
+		exportMatricesToHDFS(ec, _colocatedDPMatrix);
+		
+		// Step 4) submit Spark job (wait for finished work)
+		//partitioned input rdd is persisted and reused if the input is read-only in surrounding loops
+		boolean reuseDP = ALLOW_REUSE_PARTITION_VARS 
+				&& ProgramRecompiler.isApplicableForReuseVariable(sb.getDMLProg(), sb, _colocatedDPMatrix);
+		if( !reuseDP ) { //cleanup previously persisted partitions
+			RemoteDPParForSpark.cleanupPartitionedInput(ec, _colocatedDPReuse);
+			_colocatedDPReuse = null;
+		}
+		RDDObject dpInput = RemoteDPParForSpark.getPartitionedInput(ec, _colocatedDPMatrix, 
+				inputDPF, _numThreads, _colocatedDPReuse, reuseDP);
+		_colocatedDPReuse = reuseDP ? dpInput : null;
 		RemoteParForJobReturn ret = RemoteDPParForSpark.runJob(_ID, itervar.getName(), _colocatedDPMatrix, program, resultFile, 
-				inputMatrix, ec, inputDPF, inputOI, _tSparseCol, _enableCPCaching, _numThreads );
+				inputMatrix, ec, dpInput, _tSparseCol, _enableCPCaching );
 		
 		if( _monitor ) 
 			StatisticMonitor.putPFStat(_ID, Stat.PARFOR_WAIT_EXEC_T, time.stop());
@@ -1312,10 +1322,13 @@ public class ParForProgramBlock extends ForProgramBlock
 	 * 
 	 * @throws CacheException
 	 */
-	private void exportMatricesToHDFS( ExecutionContext ec ) 
+	private void exportMatricesToHDFS( ExecutionContext ec, String... excludeListNames ) 
 		throws CacheException 
 	{
 		ParForStatementBlock sb = (ParForStatementBlock)getStatementBlock();
+		HashSet<String> excludeList = new HashSet<String>();
+		for( String var : excludeListNames )
+			excludeList.add(var);
 		
 		if( LIVEVAR_AWARE_EXPORT && sb != null)
 		{
@@ -1326,7 +1339,8 @@ public class ParForProgramBlock extends ForProgramBlock
 			{
 				Data d = ec.getVariable(key);
 				if (    d.getDataType() == DataType.MATRIX
-					 && varsRead.containsVariable(key)  )
+					 && varsRead.containsVariable(key) 
+					 && !excludeList.contains(key) )
 				{
 					MatrixObject mo = (MatrixObject)d;
 					mo.exportData( _replicationExport );
@@ -1339,7 +1353,8 @@ public class ParForProgramBlock extends ForProgramBlock
 			for (String key : ec.getVariables().keySet() ) 
 			{
 				Data d = ec.getVariable(key);
-				if ( d.getDataType() == DataType.MATRIX )
+				if (    d.getDataType() == DataType.MATRIX 
+					 && !excludeList.contains(key) )
 				{
 					MatrixObject mo = (MatrixObject)d;
 					mo.exportData( _replicationExport );
@@ -2053,6 +2068,20 @@ public class ParForProgramBlock extends ForProgramBlock
 		}
 	}
 	
+	/**
+	 * Removes the persisted partitioned input, which is reused across invocations
+	 * of this parfor in surrounding loops. This is called on program cleanup.
+	 * 
+	 * @param ec
+	 */
+	public void cleanupPartitionedInputReuse(ExecutionContext ec)
+	{
+		if( _colocatedDPReuse != null ) {
+			RemoteDPParForSpark.cleanupPartitionedInput(ec, _colocatedDPReuse);
+			_colocatedDPReuse = null;
+		}
+	}
+	
 	private void resetOptimizerFlags()
 	{
 		//reset all state that was set but is not guaranteed to be overwritten by optimizer
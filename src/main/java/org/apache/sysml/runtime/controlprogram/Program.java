@@ -28,6 +28,7 @@ import org.apache.sysml.runtime.DMLRuntimeException;
 import org.apache.sysml.runtime.DMLScriptException;
 import org.apache.sysml.runtime.DMLUnsupportedOperationException;
 import org.apache.sysml.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
 
 
 public class Program 
@@ -152,9 +153,39 @@ public class Program
 		catch(Exception e) {
 			throw new DMLRuntimeException(e);
 		}
+		finally {
+			//cleanup persisted partitioned inputs of parfor (reused in loops)
+			if( ec instanceof SparkExecutionContext ) {
+				for( FunctionProgramBlock fpb : getFunctionProgramBlocks().values() )
+					rCleanupPartitionedInputReuse(fpb.getChildBlocks(), ec);
+				rCleanupPartitionedInputReuse(_programBlocks, ec);
+			}
+		}
 		
 		ec.clearDebugProgramCounters();
 	}
+	
+	/**
+	 * 
+	 * @param pbs
+	 * @param ec
+	 */
+	private static void rCleanupPartitionedInputReuse(ArrayList<ProgramBlock> pbs, ExecutionContext ec)
+	{
+		for( ProgramBlock pb : pbs ) {
+			if( pb instanceof WhileProgramBlock )
+				rCleanupPartitionedInputReuse(((WhileProgramBlock)pb).getChildBlocks(), ec);
+			else if( pb instanceof IfProgramBlock ) {
+				rCleanupPartitionedInputReuse(((IfProgramBlock)pb).getChildBlocksIfBody(), ec);
+				rCleanupPartitionedInputReuse(((IfProgramBlock)pb).getChildBlocksElseBody(), ec);
+			}
+			else if( pb instanceof ForProgramBlock ) { //incl parfor
+				if( pb instanceof ParForProgramBlock )
+					((ParForProgramBlock)pb).cleanupPartitionedInputReuse(ec);
+				rCleanupPartitionedInputReuse(((ForProgramBlock)pb).getChildBlocks(), ec);
+			}
+		}
+	}
 		
 	
 	public void printMe() {
@@ -20,16 +20,30 @@
 package org.apache.sysml.runtime.controlprogram;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
 import org.apache.sysml.api.MLContextProxy;
+import org.apache.sysml.hops.AggBinaryOp;
+import org.apache.sysml.hops.AggUnaryOp;
+import org.apache.sysml.hops.BinaryOp;
+import org.apache.sysml.hops.DataOp;
 import org.apache.sysml.hops.Hop;
+import org.apache.sysml.hops.Hop.DataOpTypes;
+import org.apache.sysml.hops.Hop.OpOp2;
+import org.apache.sysml.hops.Hop.ReOrgOp;
+import org.apache.sysml.hops.IndexingOp;
+import org.apache.sysml.hops.LeftIndexingOp;
 import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.hops.ReorgOp;
+import org.apache.sysml.hops.UnaryOp;
 import org.apache.sysml.hops.recompile.Recompiler;
 import org.apache.sysml.parser.StatementBlock;
+import org.apache.sysml.parser.Expression.DataType;
 import org.apache.sysml.parser.Expression.ValueType;
 import org.apache.sysml.runtime.DMLRuntimeException;
 import org.apache.sysml.runtime.DMLScriptException;
@@ -45,6 +59,9 @@ import org.apache.sysml.runtime.instructions.cp.IntObject;
 import org.apache.sysml.runtime.instructions.cp.ScalarObject;
 import org.apache.sysml.runtime.instructions.cp.StringObject;
 import org.apache.sysml.runtime.instructions.cp.VariableCPInstruction;
+import org.apache.sysml.runtime.lineage.LineageCache;
+import org.apache.sysml.runtime.lineage.LineageItem;
+import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
 import org.apache.sysml.runtime.matrix.data.MatrixBlock;
 import org.apache.sysml.utils.Statistics;
 import org.apache.sysml.yarn.DMLAppMasterUtils;
@@ -146,7 +163,8 @@ public class ProgramBlock
 			long t0 = DMLScript.STATISTICS ? System.nanoTime() : 0;
 			if(    OptimizerUtils.ALLOW_DYN_RECOMPILATION 
 				&& _sb != null 
-				&& _sb.requiresRecompilation() )
+				&& _sb.requiresRecompilation() 
+				&& !isSmallDataExecution(_sb.get_hops(), ec) )
 			{
 				tmp = Recompiler.recompileHopsDag(_sb, _sb.get_hops(), ec.getVariables(), null, false, _tid);
 				
@@ -187,7 +205,8 @@ public class ProgramBlock
 		try {
 			long t0 = DMLScript.STATISTICS ? System.nanoTime() : 0;
 			if(    OptimizerUtils.ALLOW_DYN_RECOMPILATION 
-				&& requiresRecompile )
+				&& requiresRecompile 
+				&& !isSmallDataExecution(hops, ec) )
 			{
 				tmp = Recompiler.recompileHopsDag(hops, ec.getVariables(), null, false, _tid);
 			}
@@ -305,8 +324,20 @@ public class ProgramBlock
 			// pre-process instruction (debug state, inst patching, listeners)
 			Instruction tmp = currInst.preprocessInstruction( ec );
 			
-			// process actual instruction
-			tmp.processInstruction( ec );
+			// obtain lineage of instruction output and probe reuse cache
+			LineageItem li = OptimizerUtils.ALLOW_LINEAGE_REUSE ? 
+					LineageCache.getLineageItem(tmp, ec) : null;
+			if( li == null || !LineageCache.reuse(tmp, li, ec) )
+			{
+				long t1 = (li != null) ? System.nanoTime() : 0;
+				
+				// process actual instruction
+				tmp.processInstruction( ec );
+				
+				// maintain lineage and reuse cache
+				if( li != null )
+					LineageCache.put(tmp, li, ec, System.nanoTime()-t1);
+			}
 			
 			// post-process instruction (debug) 
 			tmp.postprocessInstruction( ec );
@@ -344,6 +375,251 @@ public class ProgramBlock
 		}
 	}
 	
+	/**
+	 * Indicates if dynamic recompilation of the given hop dag can be skipped, because 
+	 * we execute in single-node mode (i.e., all operations are CP operations, independent
+	 * of the sizes), and all matrix operators of the dag are small. Since compile-time
+	 * sizes are unknown in typical cases (e.g., inputs of JMLC prepared scripts), the
+	 * sizes are bounded by the actual dimensions of the matrix inputs (transient reads), 
+	 * propagated through the dag without modifying the shared hops. Operators whose
+	 * output size cannot be bounded this way (e.g., reshape, table, or rand with 
+	 * unknown dimensions) always require recompilation.
+	 * 
+	 * @param hops
+	 * @param ec
+	 * @return
+	 */
+	protected static boolean isSmallDataExecution( ArrayList<Hop> hops, ExecutionContext ec )
+	{
+		if(    !OptimizerUtils.ALLOW_SMALL_DATA_FAST_PATH 
+			|| DMLScript.rtplatform != RUNTIME_PLATFORM.SINGLE_NODE 
+			|| hops == null )
+			return false;
+		
+		//memoization via hop ids (no visit status, hops might be shared across threads)
+		HashMap<Long, long[]> memo = new HashMap<Long, long[]>();
+		for( Hop hop : hops )
+			if( rGetSmallDataSize(hop, ec.getVariables(), memo) == null )
+				return false;
+		return true;
+	}
+	
+	/**
+	 * 
+	 * @param hops
+	 * @param ec
+	 * @return
+	 */
+	protected static boolean isSmallDataExecution( Hop hops, ExecutionContext ec )
+	{
+		if( hops == null )
+			return false;
+		ArrayList<Hop> tmp = new ArrayList<Hop>();
+		tmp.add(hops);
+		return isSmallDataExecution(tmp, ec);
+	}
+	
+	/**
+	 * Obtains upper bounds of the output dimensions of the given hop, derived from the
+	 * actual dimensions of the matrix inputs, or null if these bounds are unknown or any
+	 * matrix operator of the sub dag exceeds the small-data threshold (dense, worst-case).
+	 * 
+	 * @param hop
+	 * @param vars
+	 * @param memo
+	 * @return output dimensions (rows, cols), or null if not small
+	 */
+	private static long[] rGetSmallDataSize( Hop hop, LocalVariableMap vars, HashMap<Long, long[]> memo )
+	{
+		if( memo.containsKey(hop.getHopID()) )
+			return memo.get(hop.getHopID());
+		
+		//bounds of all inputs
+		long[][] in = new long[hop.getInput().size()][];
+		for( int i=0; i<in.length; i++ )
+			if( (in[i] = rGetSmallDataSize(hop.getInput().get(i), vars, memo)) == null )
+				return null;
+		
+		long[] ret = null;
+		if( hop.getDataType() == DataType.SCALAR ) {
+			ret = new long[]{0, 0};
+		}
+		else if( hop.getDataType() != DataType.MATRIX ) {
+			return null; //e.g., frames, function calls
+		}
+		else if( hop instanceof DataOp && ((DataOp)hop).getDataOpType() == DataOpTypes.TRANSIENTREAD ) {
+			//actual input characteristics (compile-time sizes might be unknown)
+			Data dat = vars.get(hop.getName());
+			if( dat instanceof MatrixObject ) {
+				MatrixCharacteristics mc = ((MatrixObject)dat).getMatrixCharacteristics();
+				if( mc.dimsKnown() )
+					ret = new long[]{mc.getRows(), mc.getCols()};
+			}
+		}
+		else if( hop.dimsKnown() ) {
+			ret = new long[]{hop.getDim1(), hop.getDim2()};
+		}
+		else {
+			ret = inferSmallDataSize(hop, in);
+		}
+		
+		//check matrix output size (dense, incl. dense matmult intermediates)
+		if( ret == null || (hop.getDataType() == DataType.MATRIX 
+			&& OptimizerUtils.estimateSize(ret[0], ret[1]) > OptimizerUtils.SMALL_DATA_THRESHOLD) )
+			return null;
+		
+		memo.put(hop.getHopID(), ret);
+		return ret;
+	}
+	
+	/**
+	 * Infers upper bounds of the output dimensions of a matrix operator with
+	 * unknown compile-time dimensions from the bounds of its inputs.
+	 * 
+	 * @param hop
+	 * @param in bounds of all inputs (0x0 for scalars)
+	 * @return output dimensions (rows, cols), or null if unknown
+	 */
+	private static long[] inferSmallDataSize( Hop hop, long[][] in )
+	{
+		//max and sum of dimensions of all matrix inputs
+		long maxRows = 0, maxCols = 0, sumRows = 0, sumCols = 0;
+		for( int i=0; i<in.length; i++ )
+			if( hop.getInput().get(i).getDataType() == DataType.MATRIX ) {
+				maxRows = Math.max(maxRows, in[i][0]);
+				maxCols = Math.max(maxCols, in[i][1]);
+				sumRows += in[i][0];
+				sumCols += in[i][1];
+			}
+		
+		if( hop instanceof AggBinaryOp && in.length == 2 ) {
+			return new long[]{in[0][0], in[1][1]};
+		}
+		else if( hop instanceof ReorgOp ) {
+			ReOrgOp op = ((ReorgOp)hop).getOp();
+			if( op == ReOrgOp.TRANSPOSE )
+				return new long[]{in[0][1], in[0][0]};
+			else if( op == ReOrgOp.DIAG )
+				return new long[]{maxRows, maxRows}; //n x n or n x 1
+			else if( op == ReOrgOp.REV || op == ReOrgOp.SORT )
+				return in[0];
+			return null; //reshape
+		}
+		else if( hop instanceof BinaryOp ) {
+			OpOp2 op = ((BinaryOp)hop).getOp();
+			if( op == OpOp2.CBIND )
+				return new long[]{maxRows, sumCols};
+			else if( op == OpOp2.RBIND )
+				return new long[]{sumRows, maxCols};
+			else if( op == OpOp2.SOLVE )
+				return new long[]{maxCols, maxCols};
+			//cell-wise, incl. matrix-vector and outer operations
+			return (maxRows > 0) ? new long[]{maxRows, maxCols} : null;
+		}
+		else if( hop instanceof UnaryOp || hop instanceof AggUnaryOp 
+			|| hop instanceof IndexingOp || hop instanceof LeftIndexingOp || hop instanceof DataOp ) {
+			//same or smaller output (e.g., aggregates, right indexing, writes)
+			return (maxRows > 0) ? new long[]{maxRows, maxCols} : null;
+		}
+		
+		return null; //e.g., rand, table, removeEmpty
+	}
+	
+	/**
+	 * Prepares the update in-place variables of a loop (see RewriteMarkLoopVariablesUpdateInPlace)
+	 * by replacing them with private copies marked for update in-place. The copy prevents side 
+	 * effects on aliased variables but happens only once per loop instead of per left indexing.
+	 * Since in-place variables are pinned in memory, this is only applied as long as all 
+	 * in-place variables of the loop (incl. variables prepared by outer loops) together fit
+	 * into the local memory budget. Replaced matrix objects are cleaned up unless referenced
+	 * by other variables.
+	 * 
+	 * @param ec
+	 * @return names of prepared variables
+	 * @throws DMLRuntimeException
+	 */
+	protected ArrayList<String> prepareUpdateInPlaceVariables( ExecutionContext ec ) 
+		throws DMLRuntimeException
+	{
+		ArrayList<String> ret = new ArrayList<String>();
+		if( _sb == null || _sb.getUpdateInPlaceVars().isEmpty() )
+			return ret;
+		
+		//memory of variables already pinned by outer loops
+		double memTotal = 0;
+		for( String varname : _sb.getUpdateInPlaceVars() ) {
+			Data dat = ec.getVariable(varname);
+			if( dat instanceof MatrixObject && ((MatrixObject)dat).isUpdateInPlaceEnabled() )
+				memTotal += getUpdateInPlaceMemEstimate((MatrixObject)dat);
+		}
+		
+		for( String varname : _sb.getUpdateInPlaceVars() ) 
+		{
+			Data dat = ec.getVariable(varname);
+			if( !(dat instanceof MatrixObject) || ((MatrixObject)dat).isUpdateInPlaceEnabled() )
+				continue; //e.g., already prepared by outer loop
+			
+			//check cumulative memory budget of all in-place variables
+			MatrixObject mo = (MatrixObject)dat;
+			MatrixCharacteristics mc = mo.getMatrixCharacteristics();
+			double mem = getUpdateInPlaceMemEstimate(mo);
+			if( !mc.dimsKnown() || memTotal + mem > OptimizerUtils.getLocalMemBudget() )
+				continue;
+			memTotal += mem;
+			
+			//create private deep copy (w/ dense empty block preferred for update in-place)
+			MatrixObject moNew = new MatrixObject(mo);
+			MatrixBlock mb = null;
+			if( mo.getNnz() != 0 ) {
+				mb = new MatrixBlock(mo.acquireRead());
+				mo.release();
+			}
+			else
+				mb = new MatrixBlock((int)mc.getRows(), (int)mc.getCols(), false);
+			moNew.setFileName(mo.getFileName()+"_uip");
+			moNew.setFileExists(false);
+			moNew.acquireModify(mb);
+			moNew.enableUpdateInPlace(true);
+			moNew.release();
+			
+			ec.setVariable(varname, moNew);
+			ret.add(varname);
+			
+			//cleanup replaced object (buffer pool, eviction files) if not referenced
+			ec.cleanupMatrixObject(mo);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * 
+	 * @param mo
+	 * @return
+	 */
+	private static double getUpdateInPlaceMemEstimate( MatrixObject mo )
+	{
+		MatrixCharacteristics mc = mo.getMatrixCharacteristics();
+		return mc.dimsKnown() ? 
+			OptimizerUtils.estimateSizeExactSparsity(mc.getRows(), mc.getCols(), 1.0) : 0;
+	}
+	
+	/**
+	 * Resets the update in-place flags of the given loop variables after loop 
+	 * execution, which makes the final matrix objects again subject to caching.
+	 * 
+	 * @param ec
+	 * @param varnames
+	 */
+	protected void resetUpdateInPlaceVariableFlags( ExecutionContext ec, ArrayList<String> varnames ) 
+	{
+		for( String varname : varnames ) {
+			Data dat = ec.getVariable(varname);
+			if( dat instanceof MatrixObject )
+				((MatrixObject)dat).enableUpdateInPlace(false);
+		}
+	}
+	
 	/**
 	 * 
 	 * @param inst
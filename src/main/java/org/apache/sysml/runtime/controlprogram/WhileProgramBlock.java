@@ -172,6 +172,10 @@ public class WhileProgramBlock extends ProgramBlock
 
 		BooleanObject predResult = executePredicate(ec); 
 		
+		//prepare update in-place variables
+		ArrayList<String> uipVars = predResult.getBooleanValue() ? 
+			prepareUpdateInPlaceVariables(ec) : new ArrayList<String>();
+		
 		//execute while loop
 		try 
 		{
@@ -196,6 +200,9 @@ public class WhileProgramBlock extends ProgramBlock
 			throw new DMLRuntimeException(this.printBlockErrorLocation() + "Error evaluating while program block.", e);
 		}
 		
+		//reset update in-place flags
+		resetUpdateInPlaceVariableFlags(ec, uipVars);
+		
 		//execute exit instructions
 		try {
 			executeInstructions(_exitInstructions, ec);
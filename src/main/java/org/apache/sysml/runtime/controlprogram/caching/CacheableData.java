@@ -59,6 +59,7 @@ public abstract class CacheableData extends Data
     
 	public static final long 	CACHING_THRESHOLD = 4*1024; //obj not s.t. caching if below threshold [in bytes]
 	public static final double 	CACHING_BUFFER_SIZE = 0.15; 
+	public static final double 	CACHING_LINEAGE_SIZE = 0.05; //lineage-based reuse cache
 	public static final RPolicy CACHING_BUFFER_POLICY = RPolicy.FIFO; 
 	public static final boolean CACHING_BUFFER_PAGECACHE = false; 
 	public static final boolean CACHING_WRITE_CACHE_ON_READ = false;
@@ -67,7 +68,7 @@ public abstract class CacheableData extends Data
 	
 	
 	//flag indicating if caching is turned on (eviction writes only happen if activeFlag is true)
-	private static boolean _activeFlag = false;
+	private static volatile boolean _activeFlag = false;
 	
     public static String cacheEvictionLocalFilePath = null; //set during init
     public static String cacheEvictionLocalFilePrefix = "cache";
@@ -434,8 +435,9 @@ public abstract class CacheableData extends Data
 		_activeFlag = true; //turn on caching
 	}
 	
-	public static synchronized boolean isCachingActive()
+	public static boolean isCachingActive()
 	{
+		//no synchronization (volatile flag), as probed on every acquire/release
 		return _activeFlag;
 	}
 	
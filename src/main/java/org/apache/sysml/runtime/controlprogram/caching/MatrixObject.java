@@ -34,12 +34,15 @@ import org.apache.sysml.parser.Expression.ValueType;
 import org.apache.sysml.runtime.DMLRuntimeException;
 import org.apache.sysml.runtime.controlprogram.ParForProgramBlock.PDataPartitionFormat;
 import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
+import org.apache.sysml.runtime.controlprogram.parfor.util.IDSequence;
 import org.apache.sysml.runtime.instructions.spark.data.BroadcastObject;
 import org.apache.sysml.runtime.instructions.spark.data.RDDObject;
 import org.apache.sysml.runtime.instructions.spark.data.RDDProperties;
 import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
 import org.apache.sysml.runtime.matrix.MatrixDimensionsMetaData;
 import org.apache.sysml.runtime.matrix.MatrixFormatMetaData;
+import org.apache.sysml.runtime.lineage.LineageItem;
+import org.apache.sysml.runtime.matrix.MatrixSketch;
 import org.apache.sysml.runtime.matrix.MetaData;
 import org.apache.sysml.runtime.matrix.data.FileFormatProperties;
 import org.apache.sysml.runtime.matrix.data.InputInfo;
@@ -121,6 +124,10 @@ public class MatrixObject extends CacheableData
 	private boolean _isAcquireFromEmpty = false; //flag if read from status empty 
 	private boolean _cleanupFlag = true; //flag if obj unpinned (cleanup enabled)
 	private boolean _updateInPlaceFlag = false; //flag if in-place update
+	private MatrixSketch _sketch = null; //structural sketch of in-memory data
+	private LineageItem _lineage = null; //lineage of in-memory data
+	private long _dataID = -1; //identity of in-memory data (assigned on demand)
+	private static final IDSequence _dataSeq = new IDSequence();
 	
 	//spark-specific handles
 	//note: we use the abstraction of LineageObjects for two reasons: (1) to keep track of cleanup
@@ -336,6 +343,66 @@ public class MatrixObject extends CacheableData
 		return mc.getNonZeros();
 	}
 	
+	/**
+	 * Obtains the lineage of the matrix data, which is maintained by traced 
+	 * instructions and cleared whenever the data is modified otherwise.
+	 * 
+	 * @return lineage item, or null if unknown
+	 */
+	public LineageItem getLineage() {
+		return _lineage;
+	}
+	
+	/**
+	 * 
+	 * @param li
+	 */
+	public void setLineage(LineageItem li) {
+		_lineage = li;
+	}
+	
+	/**
+	 * Obtains the identity of the matrix data, which is assigned on first request
+	 * and reset whenever the data is modified. Matrix objects holding copies of the 
+	 * same data might share this identity (e.g., for sharing broadcasts).
+	 * 
+	 * @return
+	 */
+	public synchronized long getDataID() 
+	{
+		if( _dataID < 0 )
+			_dataID = _dataSeq.getNextID();
+		return _dataID;
+	}
+	
+	/**
+	 * Sets the identity of the matrix data, which is only valid if the data of
+	 * this matrix object is a copy of the data with the given identity.
+	 * 
+	 * @param id
+	 */
+	public synchronized void setDataID( long id ) {
+		_dataID = id;
+	}
+	
+	/**
+	 * Obtains the structural sketch of the in-memory matrix, which is created
+	 * on first request and maintained until the data is modified. Evicted or 
+	 * not yet read matrices are not restored just for sketch creation.
+	 * 
+	 * @return sketch, or null if not available
+	 */
+	public synchronized MatrixSketch getSketch()
+	{
+		if( _sketch == null && !isModify() ) {
+			MatrixBlock mb = (_data != null) ? _data : 
+				(_cache != null) ? _cache.get() : null;
+			_sketch = MatrixSketch.createSketch(mb);
+		}
+		
+		return _sketch;
+	}
+	
 	/**
 	 * 
 	 * @return
@@ -443,6 +510,18 @@ public class MatrixObject extends CacheableData
 			bc.setBackReference(this);
 	}
 	
+	/**
+	 * Invalidates the broadcast handle on modification of the matrix data,
+	 * which prevents the reuse of broadcasts of the old data.
+	 */
+	private void invalidateBroadcastHandle()
+	{
+		if( _bcHandle != null ) {
+			SparkExecutionContext.invalidateBroadcastHandle(_bcHandle);
+			setBroadcastHandle(null);
+		}
+	}
+	
 	
 	// *********************************************
 	// ***                                       ***
@@ -589,6 +668,10 @@ public class MatrixObject extends CacheableData
 		_dirtyFlag = true;
 		_isAcquireFromEmpty = false;
 		
+		//invalidate broadcast of old data (in-place modification)
+		invalidateBroadcastHandle();
+		_dataID = -1;
+		
 		if( DMLScript.STATISTICS ){
 			long t1 = System.nanoTime();
 			CacheStatistics.incrementAcquireMTime(t1-t0);
@@ -621,6 +704,8 @@ public class MatrixObject extends CacheableData
 		
 		//clear old data 
 		clearData(); 
+		invalidateBroadcastHandle();
+		_dataID = -1;
 		
 		//cache status maintenance
 		super.acquire (true, false); //no need to load evicted matrix
@@ -666,6 +751,9 @@ public class MatrixObject extends CacheableData
 			//set flags for write
 			write = true;
 			_dirtyFlag = true;
+			_sketch = null;
+			_lineage = null;
+			_dataID = -1;
 			
 			//update meta data
 			refreshMetaData();
@@ -740,6 +828,9 @@ public class MatrixObject extends CacheableData
 		
 		// clear the in-memory data
 		_data = null;	
+		_sketch = null;
+		_lineage = null;
+		_dataID = -1;
 		clearCache();
 		
 		// clear rdd/broadcast back refs
@@ -1637,6 +1728,8 @@ public class MatrixObject extends CacheableData
 	 * @param add
 	 */
 	private void updateStatusPinned(boolean add) {
+		if( !isCachingActive() ) //e.g., JMLC (avoid thread-local overhead)
+			return;
 		if( _data != null ) { //data should never be null
 			long size = sizePinned.get();
 			size += (add ? 1 : -1) * _data.getSizeInMemory();
@@ -1682,6 +1775,33 @@ public class MatrixObject extends CacheableData
 		return _updateInPlaceFlag;
 	}
 	
+	/**
+	 * Obtains a matrix object that is safe to bind to another variable, i.e., 
+	 * a deep copy if this object is marked for update in-place (because subsequent
+	 * in-place updates would otherwise be visible through the alias), and this
+	 * object otherwise.
+	 * 
+	 * @return
+	 * @throws CacheException
+	 */
+	public MatrixObject getNonAliasedMatrixObject() 
+		throws CacheException
+	{
+		if( !_updateInPlaceFlag )
+			return this;
+		
+		MatrixObject moNew = new MatrixObject(this);
+		MatrixBlock mb = new MatrixBlock(acquireRead());
+		release();
+		moNew.setFileName(getFileName()+"_cp"+moNew.getUniqueCacheID());
+		moNew.setFileExists(false);
+		moNew.enableUpdateInPlace(false);
+		moNew.acquireModify(mb);
+		moNew.release();
+		
+		return moNew;
+	}
+	
 	
 
 	/**
@@ -20,11 +20,14 @@
 package org.apache.sysml.runtime.controlprogram.context;
 
 import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.spark.SparkConf;
@@ -54,6 +57,7 @@ import org.apache.sysml.runtime.instructions.spark.data.LineageObject;
 import org.apache.sysml.runtime.instructions.spark.data.PartitionedBroadcastMatrix;
 import org.apache.sysml.runtime.instructions.spark.data.PartitionedMatrixBlock;
 import org.apache.sysml.runtime.instructions.spark.data.RDDObject;
+import org.apache.sysml.runtime.instructions.spark.data.SparkKryoRegistrator;
 import org.apache.sysml.runtime.instructions.spark.functions.CopyBinaryCellFunction;
 import org.apache.sysml.runtime.instructions.spark.functions.CopyBlockPairFunction;
 import org.apache.sysml.runtime.instructions.spark.functions.CopyTextInputFunction;
@@ -79,6 +83,12 @@ public class SparkExecutionContext extends ExecutionContext
 	private static boolean LAZY_SPARKCTX_CREATION = true;
 	private static boolean ASYNCHRONOUS_VAR_DESTROY = true;
 	private static boolean FAIR_SCHEDULER_MODE = true;
+	private static boolean KRYO_SERIALIZATION = true;
+	private static boolean BROADCAST_CACHE = true;
+	
+	//max kryo buffer size (max supported by spark), required for large blocks 
+	//and broadcast partitions (spark default 64m), unless configured by the user
+	private static final String KRYO_BUFFER_MAX = "2047m";
 	
 	//executor memory and relative fractions as obtained from the spark configuration
 	private static long _memExecutors = -1; //mem per executors
@@ -92,6 +102,11 @@ public class SparkExecutionContext extends ExecutionContext
 	// This limitation may eventually be removed; see SPARK-2243 for more details.
 	private static JavaSparkContext _spctx = null; 
 	
+	//shared cache of partitioned broadcasts across matrix objects of the same data 
+	//(e.g., after recreating matrix objects or copies of in-memory intermediates), 
+	//keyed by data identity and version
+	private static final HashMap<String, BroadcastCacheEntry> _bcCache = new HashMap<String, BroadcastCacheEntry>();
+	
 	protected SparkExecutionContext(Program prog) 
 	{
 		//protected constructor to force use of ExecutionContextFactory
@@ -188,6 +203,7 @@ public class SparkExecutionContext extends ExecutionContext
 				// This is discouraged in spark but have added only for those testcase that cannot stop the context properly
 				// conf.set("spark.driver.allowMultipleContexts", "true");
 				conf.set("spark.ui.enabled", "false");
+				setSerializationConfig(conf);
 				_spctx = new JavaSparkContext(conf);
 			}
 			else //default cluster setup
@@ -205,6 +221,9 @@ public class SparkExecutionContext extends ExecutionContext
 					conf.set("spark.scheduler.mode", "FAIR");
 				}
 				
+				//use kryo serialization with our custom serializers (if not configured otherwise)
+				setSerializationConfig(conf);
+				
 				_spctx = new JavaSparkContext(conf);
 			}
 		}
@@ -220,6 +239,30 @@ public class SparkExecutionContext extends ExecutionContext
 		}
 	}	
 	
+	/**
+	 * Configures kryo serialization for rdd shuffle and caching, with registered
+	 * custom serializers for matrix indexes and blocks. We only overwrite the
+	 * serializer and max kryo buffer size if not explicitly configured via the 
+	 * spark configuration.
+	 * 
+	 * @param conf
+	 */
+	private static void setSerializationConfig(SparkConf conf)
+	{
+		String kryo = "org.apache.spark.serializer.KryoSerializer";
+		if( KRYO_SERIALIZATION && !conf.contains("spark.serializer") ) {
+			conf.set("spark.serializer", kryo);
+			conf.set("spark.kryo.registrator", SparkKryoRegistrator.class.getName());
+		}
+		
+		//increase max kryo buffer to avoid buffer overflows on serialization
+		if( kryo.equals(conf.get("spark.serializer", null)) 
+			&& !conf.contains("spark.kryoserializer.buffer.max")
+			&& !conf.contains("spark.kryoserializer.buffer.max.mb") ) {
+			conf.set("spark.kryoserializer.buffer.max", KRYO_BUFFER_MAX);
+		}
+	}
+	
 	/**
 	 * Spark instructions should call this for all matrix inputs except broadcast
 	 * variables.
@@ -338,10 +381,10 @@ public class SparkExecutionContext extends ExecutionContext
 	}
 	
 	/**
-	 * TODO So far we only create broadcast variables but never destroy
-	 * them. This is a memory leak which might lead to executor out-of-memory.
-	 * However, in order to handle this, we need to keep track when broadcast 
-	 * variables are no longer required.
+	 * Obtains the partitioned broadcast for the given variable. Broadcasts are reused
+	 * via the broadcast handle of the matrix object, and across matrix objects of the same
+	 * data via a shared, reference-counted broadcast cache. Broadcasts are destroyed
+	 * on cleanup of the last referencing handle (see rCleanupLineageObject).
 	 * 
 	 * @param varname
 	 * @return
@@ -363,6 +406,19 @@ public class SparkExecutionContext extends ExecutionContext
 			bret = mo.getBroadcastHandle().getBroadcast();
 		}
 		
+		//reuse shared broadcast of the same data (never created for this matrix object)
+		//note: key only computed on handle misses because it might require hdfs accesses
+		String key = null;
+		if( bret == null && BROADCAST_CACHE ) 
+		{
+			key = getBroadcastCacheKey(mo);
+			if( key != null ) {
+				bret = pinCachedBroadcast(key);
+				if( bret != null )
+					mo.setBroadcastHandle(new BroadcastObject(bret, varname, key));
+			}
+		}
+		
 		//create new broadcast handle (never created, evicted)
 		if( bret == null ) 
 		{
@@ -394,13 +450,129 @@ public class SparkExecutionContext extends ExecutionContext
 			}
 		
 			bret = new PartitionedBroadcastMatrix(ret);
-			BroadcastObject bchandle = new BroadcastObject(bret, varname);
+			BroadcastObject bchandle = new BroadcastObject(bret, varname, key);
 			mo.setBroadcastHandle(bchandle);
+			if( key != null )
+				putCachedBroadcast(key, bret);
 		}
 		
 		return bret;
 	}
 	
+	/**
+	 * Obtains the broadcast cache key of a matrix object. Matrix objects whose in-memory 
+	 * data might deviate from the file (dirty, e.g., loop intermediates) are identified by
+	 * their data identity, which is reset on any modification. All other matrix objects
+	 * are identified by the backing hdfs file and its version by the file modification 
+	 * time and length (as files might be overwritten with data of equal characteristics).
+	 * 
+	 * @param mo
+	 * @return cache key, or null if the data identity is unknown
+	 */
+	private static String getBroadcastCacheKey( MatrixObject mo )
+	{
+		MatrixCharacteristics mc = mo.getMatrixCharacteristics();
+		
+		//in-memory data, identified by data identity
+		if( mo.isDirty() || !mo.isFileExists() || mo.getFileName()==null )
+			return "mem_" + mo.getDataID() + "_" + mc.getRowsPerBlock() + "_" + mc.getColsPerBlock();
+		
+		try
+		{
+			Path path = new Path(mo.getFileName());
+			long mtime = MapReduceTool.getModificationTimeOnHDFS(path);
+			long len = MapReduceTool.getFilesizeOnHDFS(path);
+			
+			return mo.getFileName() + "_" + mtime + "_" + len + "_" + mc.getRows() + "_" + mc.getCols() 
+				+ "_" + mc.getRowsPerBlock() + "_" + mc.getColsPerBlock() + "_" + mc.getNonZeros();
+		}
+		catch(IOException ex) {
+			//robustness for non-existing files: no broadcast reuse
+			LOG.debug("Failed to obtain broadcast cache key for "+mo.getFileName()+".", ex);
+			return null;
+		}
+	}
+	
+	/**
+	 * Invalidates the broadcast handle of a modified matrix object: releases its reference
+	 * to a shared, cached broadcast and clears the handle. The broadcasts are not destroyed
+	 * because they might still be used by pending rdd operations.
+	 * 
+	 * @param bob
+	 */
+	public static void invalidateBroadcastHandle( BroadcastObject bob )
+	{
+		PartitionedBroadcastMatrix pbm = bob.getBroadcast();
+		if( pbm != null && bob.getCacheKey() != null )
+			releaseCachedBroadcast(bob.getCacheKey(), pbm);
+		bob.clearBroadcast();
+	}
+	
+	/**
+	 * Obtains a valid cached broadcast and increments its reference count.
+	 * 
+	 * @param key
+	 * @return cached broadcast, or null if not cached or evicted
+	 */
+	private static PartitionedBroadcastMatrix pinCachedBroadcast( String key )
+	{
+		synchronized( _bcCache ) 
+		{
+			BroadcastCacheEntry entry = _bcCache.get(key);
+			if( entry == null )
+				return null;
+			
+			//remove invalid entries (soft reference evicted or destroyed)
+			PartitionedBroadcastMatrix pbm = entry.getBroadcast();
+			if( pbm == null ) {
+				_bcCache.remove(key);
+				return null;
+			}
+			
+			entry.incrementNumReferences();
+			return pbm;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param key
+	 * @param pbm
+	 */
+	private static void putCachedBroadcast( String key, PartitionedBroadcastMatrix pbm )
+	{
+		synchronized( _bcCache ) {
+			_bcCache.put(key, new BroadcastCacheEntry(pbm));
+		}
+	}
+	
+	/**
+	 * Decrements the reference count of a cached broadcast and removes the
+	 * cache entry if there are no remaining references.
+	 * 
+	 * @param key
+	 * @param pbm
+	 * @return true if the broadcast is no longer referenced and should be destroyed
+	 */
+	private static boolean releaseCachedBroadcast( String key, PartitionedBroadcastMatrix pbm )
+	{
+		synchronized( _bcCache ) 
+		{
+			BroadcastCacheEntry entry = _bcCache.get(key);
+			
+			//not cached anymore or replaced by a new broadcast
+			if( entry == null || entry.getBroadcast() != pbm )
+				return true;
+			
+			entry.decrementNumReferences();
+			if( entry.getNumReferences() <= 0 ) {
+				_bcCache.remove(key);
+				return true;
+			}
+			return false;
+		}
+	}
+	
 	/**
 	 * 
 	 * @param varname
@@ -415,6 +587,11 @@ public class SparkExecutionContext extends ExecutionContext
 		JavaPairRDD<MatrixIndexes,MatrixBlock> in = getBinaryBlockRDDHandleForVariable(varname);
 		MatrixCharacteristics mc = getMatrixCharacteristics(varname);
 		
+		//reuse existing partitioner (propagated via partitioning-preserving operations)
+		//in order to allow joins of co-partitioned rdds without shuffle
+		if( SparkUtils.isBlockPartitioned(in) )
+			return (BlockPartitioner) in.partitioner().get();
+		
 		//create tile-based matrix partitioner
 		return new BlockPartitioner(mc, in.partitions().size());
 	}
@@ -965,10 +1142,16 @@ public class SparkExecutionContext extends ExecutionContext
 			}
 		}
 		else if( lob instanceof BroadcastObject ) {
-			PartitionedBroadcastMatrix pbm = ((BroadcastObject)lob).getBroadcast();
-			if( pbm != null ) //robustness for evictions
-				for( Broadcast<PartitionedMatrixBlock> bc : pbm.getBroadcasts() )
-					cleanupBroadcastVariable(bc);
+			BroadcastObject bob = (BroadcastObject)lob;
+			PartitionedBroadcastMatrix pbm = bob.getBroadcast();
+			if( pbm != null ) { //robustness for evictions
+				//destroy broadcasts only if not shared with other handles
+				if( bob.getCacheKey()==null || releaseCachedBroadcast(bob.getCacheKey(), pbm) ) {
+					for( Broadcast<PartitionedMatrixBlock> bc : pbm.getBroadcasts() )
+						cleanupBroadcastVariable(bc);
+				}
+				bob.clearBroadcast();
+			}
 		}
 	
 		//recursively process lineage children
@@ -1227,4 +1410,45 @@ public class SparkExecutionContext extends ExecutionContext
 		
 	}
 	
+	/**
+	 * Entry of the shared broadcast cache with reference count of broadcast
+	 * handles. The broadcast is kept via soft reference, consistent with the
+	 * graceful cleanup of broadcast handles in case of memory pressure.
+	 */
+	private static class BroadcastCacheEntry
+	{
+		private SoftReference<PartitionedBroadcastMatrix> _pbm = null;
+		private int _numRef = -1;
+		
+		public BroadcastCacheEntry( PartitionedBroadcastMatrix pbm ) {
+			_pbm = new SoftReference<PartitionedBroadcastMatrix>(pbm);
+			_numRef = 1;
+		}
+		
+		public PartitionedBroadcastMatrix getBroadcast() 
+		{
+			//check for evicted soft reference
+			PartitionedBroadcastMatrix pbm = _pbm.get();
+			if( pbm == null )
+				return null;
+			
+			//check for validity of individual broadcasts
+			for( Broadcast<PartitionedMatrixBlock> bc : pbm.getBroadcasts() )
+				if( !bc.isValid() )
+					return null;
+			return pbm;
+		}
+		
+		public int getNumReferences() {
+			return _numRef;
+		}
+		
+		public void incrementNumReferences() {
+			_numRef++;
+		}
+		
+		public void decrementNumReferences() {
+			_numRef--;
+		}
+	}
 }
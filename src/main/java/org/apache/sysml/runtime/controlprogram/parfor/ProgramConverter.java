@@ -181,13 +181,17 @@ public class ProgramConverter
 					MatrixBlock mbVar = mo.acquireRead();
 					moNew.acquireModify (new MatrixBlock(mbVar));
 					mo.release();
+					moNew.release();
+					//share data identity of the copy (e.g., for broadcasts) until modified
+					if( mo.isDirty() )
+						moNew.setDataID(mo.getDataID());
 				} else {
 					//create empty matrix block w/ dense representation (preferred for update in-place)
 					//Creating a dense matrix block is valid because empty block not allocated and transfer 
 					// to sparse representation happens in left indexing in place operation.
 					moNew.acquireModify(new MatrixBlock((int)mo.getNumRows(), (int)mo.getNumColumns(), false));
+					moNew.release();
 				}
-				moNew.release();			
 				cpec.setVariable(var, moNew);
 			}
 		}
@@ -23,6 +23,7 @@ import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.Writable;
 import org.apache.spark.Accumulator;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaSparkContext;
@@ -30,6 +31,7 @@ import org.apache.spark.api.java.JavaSparkContext;
 import scala.Tuple2;
 
 import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.lops.Checkpoint;
 import org.apache.sysml.runtime.DMLRuntimeException;
 import org.apache.sysml.runtime.DMLUnsupportedOperationException;
 import org.apache.sysml.runtime.controlprogram.LocalVariableMap;
@@ -37,6 +39,8 @@ import org.apache.sysml.runtime.controlprogram.ParForProgramBlock.PDataPartition
 import org.apache.sysml.runtime.controlprogram.caching.MatrixObject;
 import org.apache.sysml.runtime.controlprogram.context.ExecutionContext;
 import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
+import org.apache.sysml.runtime.instructions.spark.data.LineageObject;
+import org.apache.sysml.runtime.instructions.spark.data.RDDObject;
 import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
 import org.apache.sysml.runtime.matrix.MatrixDimensionsMetaData;
 import org.apache.sysml.runtime.matrix.data.InputInfo;
@@ -57,23 +61,28 @@ public class RemoteDPParForSpark
 	protected static final Log LOG = LogFactory.getLog(RemoteDPParForSpark.class.getName());
 	
 	/**
+	 * Runs the fused data partitioning and execute job over an already partitioned 
+	 * input rdd (see getPartitionedInput), which allows to hand out persisted and 
+	 * co-located matrix partitions to the parfor workers without re-partitioning.
 	 * 
 	 * @param pfid
+	 * @param itervar
+	 * @param matrixvar
 	 * @param program
-	 * @param taskFile
 	 * @param resultFile
-	 * @param enableCPCaching 
-	 * @param mode
-	 * @param numMappers
-	 * @param replication
+	 * @param input
+	 * @param ec
+	 * @param dpin
+	 * @param tSparseCol
+	 * @param enableCPCaching
 	 * @return
 	 * @throws DMLRuntimeException
-	 * @throws DMLUnsupportedOperationException 
+	 * @throws DMLUnsupportedOperationException
 	 */
+	@SuppressWarnings("unchecked")
 	public static RemoteParForJobReturn runJob(long pfid, String itervar, String matrixvar, String program, String resultFile, MatrixObject input, 
-			                                   ExecutionContext ec,
-			                                   PDataPartitionFormat dpf, OutputInfo oi, boolean tSparseCol, //config params
-			                                   boolean enableCPCaching, int numReducers )  //opt params
+			                                   ExecutionContext ec, RDDObject dpin, boolean tSparseCol, //config params
+			                                   boolean enableCPCaching )  //opt params
 		throws DMLRuntimeException, DMLUnsupportedOperationException
 	{
 		String jobname = "ParFor-DPESP";
@@ -85,20 +94,19 @@ public class RemoteDPParForSpark
 		//prepare input parameters
 		MatrixDimensionsMetaData md = (MatrixDimensionsMetaData) input.getMetaData();
 		MatrixCharacteristics mc = md.getMatrixCharacteristics();
-		InputInfo ii = InputInfo.BinaryBlockInputInfo;
-				
+		PDataPartitionFormat dpf = dpin.getPartitionFormat();
+		
 		//initialize accumulators for tasks/iterations
 		Accumulator<Integer> aTasks = sc.accumulator(0);
 		Accumulator<Integer> aIters = sc.accumulator(0);
 		
-		JavaPairRDD<MatrixIndexes,MatrixBlock> in = sec.getBinaryBlockRDDHandleForVariable(matrixvar);
-		DataPartitionerRemoteSparkMapper dpfun = new DataPartitionerRemoteSparkMapper(mc, ii, oi, dpf);
+		//note: the spark data partitioner always creates binary block partitions (independent
+		//of the given output info), hence we always collect binary blocks in the workers
+		JavaPairRDD<Long,Iterable<Writable>> in = (JavaPairRDD<Long,Iterable<Writable>>) dpin.getRDD();
 		RemoteDPParForSparkWorker efun = new RemoteDPParForSparkWorker(program, matrixvar, itervar, 
-				          enableCPCaching, mc, tSparseCol, dpf, oi, aTasks, aIters);
+				          enableCPCaching, mc, tSparseCol, dpf, OutputInfo.BinaryBlockOutputInfo, aTasks, aIters);
 		List<Tuple2<Long,String>> out = 
-				in.flatMapToPair(dpfun)         //partition the input blocks
-		          .groupByKey(numReducers)      //group partition blocks 		          
-		          .mapPartitionsToPair( efun )  //execute parfor tasks, incl cleanup
+				in.mapPartitionsToPair( efun )  //execute parfor tasks, incl cleanup
 		          .collect();                   //get output handles
 		
 		//de-serialize results
@@ -118,4 +126,83 @@ public class RemoteDPParForSpark
 		
 		return ret;
 	}
+	
+	/**
+	 * Obtains the rdd of grouped matrix partitions (partition id, partition blocks) for the
+	 * given input variable. If an existing partitioned rdd is passed and was created over the
+	 * same input rdd and with the same partition format, it is directly reused. If persist is
+	 * enabled, the new partitioned rdd is persisted in order to allow repeated parfor invocations 
+	 * (e.g., in surrounding loops) over read-only inputs to reuse the co-located partitions
+	 * without re-partitioning the input or materializing the partitions on hdfs.
+	 * 
+	 * @param ec
+	 * @param matrixvar
+	 * @param dpf
+	 * @param numReducers
+	 * @param reuse
+	 * @param persist
+	 * @return
+	 * @throws DMLRuntimeException
+	 * @throws DMLUnsupportedOperationException
+	 */
+	public static RDDObject getPartitionedInput( ExecutionContext ec, String matrixvar, PDataPartitionFormat dpf, 
+			int numReducers, RDDObject reuse, boolean persist ) 
+		throws DMLRuntimeException, DMLUnsupportedOperationException
+	{
+		SparkExecutionContext sec = (SparkExecutionContext)ec;
+		MatrixObject mo = sec.getMatrixObject(matrixvar);
+		MatrixCharacteristics mc = mo.getMatrixCharacteristics();
+		JavaPairRDD<MatrixIndexes,MatrixBlock> in = sec.getBinaryBlockRDDHandleForVariable(matrixvar);
+		RDDObject inro = mo.getRDDHandle(); //guaranteed to exist (see above)
+		
+		//reuse existing partitioned rdd (same input rdd and partition format)
+		if( reuse != null && reuse.getPartitionFormat() == dpf 
+			&& matrixvar.equals(reuse.getVarName())
+			&& !reuse.getLineageChilds().isEmpty()
+			&& reuse.getLineageChilds().get(0) == inro ) 
+		{
+			LOG.trace("Reuse partitioned rdd of variable "+matrixvar+" (format="+dpf+").");
+			return reuse;
+		}
+		
+		//cleanup stale partitioned rdd (e.g., different input rdd)
+		cleanupPartitionedInput(ec, reuse);
+		
+		//create partitioned rdd (partition and group input blocks)
+		DataPartitionerRemoteSparkMapper dpfun = new DataPartitionerRemoteSparkMapper(
+				mc, InputInfo.BinaryBlockInputInfo, OutputInfo.BinaryBlockOutputInfo, dpf);
+		JavaPairRDD<Long,Iterable<Writable>> out = 
+				in.flatMapToPair(dpfun)       //partition the input blocks
+				  .groupByKey(numReducers);   //group partition blocks
+		
+		//persist partitioned rdd for reuse (lazily on first job)
+		if( persist )
+			out.persist( Checkpoint.DEFAULT_STORAGE_LEVEL );
+		
+		//create rdd handle with lineage to input rdd
+		RDDObject ret = new RDDObject(out, matrixvar);
+		ret.setPartitionFormat(dpf);
+		ret.addLineageChild(inro);
+		
+		return ret;
+	}
+	
+	/**
+	 * Removes a persisted partitioned rdd from executor memory and disk and 
+	 * releases the reference to its input rdd.
+	 * 
+	 * @param ec
+	 * @param dpin
+	 */
+	public static void cleanupPartitionedInput( ExecutionContext ec, RDDObject dpin ) 
+	{
+		if( dpin == null )
+			return;
+		
+		SparkExecutionContext sec = (SparkExecutionContext)ec;
+		sec.cleanupRDDVariable(dpin.getRDD());
+		for( LineageObject c : dpin.getLineageChilds() )
+			c.decrementNumReferences();
+		dpin.getLineageChilds().clear();
+	}
 }
@@ -46,6 +46,7 @@ import org.apache.sysml.hops.LiteralOp;
 import org.apache.sysml.hops.OptimizerUtils;
 import org.apache.sysml.hops.ParameterizedBuiltinOp;
 import org.apache.sysml.hops.ReorgOp;
+import org.apache.sysml.hops.cost.CostModelProfile;
 import org.apache.sysml.hops.rewrite.HopRewriteUtils;
 import org.apache.sysml.hops.rewrite.ProgramRewriteStatus;
 import org.apache.sysml.hops.rewrite.ProgramRewriter;
@@ -1017,8 +1018,22 @@ public class OptimizerRuleBased extends Optimizer
 	 */
 	protected boolean isLargeProblem(OptNode pn, double M0)
 	{
-		return ((_N >= PROB_SIZE_THRESHOLD_REMOTE || _Nmax >= 10 * PROB_SIZE_THRESHOLD_REMOTE )
+		boolean ret = ((_N >= PROB_SIZE_THRESHOLD_REMOTE || _Nmax >= 10 * PROB_SIZE_THRESHOLD_REMOTE )
 				&& M0 > PROB_SIZE_THRESHOLD_MB ); //original operations at least larger than 256MB
+		
+		//cost-based refinement w/ calibrated profile: remote parfor only if the reduced
+		//execution time (w/ a scan of the working set per iteration as lower bound) 
+		//amortizes the spark job latency
+		CostModelProfile profile = CostModelProfile.getProfile();
+		if( ret && profile.isCalibrated() && OptimizerUtils.isSparkExecutionMode() )
+		{
+			double timeIter = profile.getScanTime(M0);
+			double timeLocal = Math.ceil((double)_N/_lk) * timeIter;
+			double timeRemote = profile.getSparkJobLatency() + Math.ceil((double)_N/_rk) * timeIter;
+			ret = (timeRemote < timeLocal);
+		}
+		
+		return ret;
 	}
 	
 	/**
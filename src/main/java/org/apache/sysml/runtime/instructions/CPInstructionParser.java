@@ -54,6 +54,7 @@ import org.apache.sysml.runtime.instructions.cp.QuantileSortCPInstruction;
 import org.apache.sysml.runtime.instructions.cp.QuaternaryCPInstruction;
 import org.apache.sysml.runtime.instructions.cp.RelationalBinaryCPInstruction;
 import org.apache.sysml.runtime.instructions.cp.ReorgCPInstruction;
+import org.apache.sysml.runtime.instructions.cp.SpoofCPInstruction;
 import org.apache.sysml.runtime.instructions.cp.StringInitCPInstruction;
 import org.apache.sysml.runtime.instructions.cp.TernaryCPInstruction;
 import org.apache.sysml.runtime.instructions.cp.UaggOuterChainCPInstruction;
@@ -246,6 +247,8 @@ public class CPInstructionParser extends InstructionParser
 		
 		String2CPInstructionType.put( "partition", CPINSTRUCTION_TYPE.Partition);
 		
+		String2CPInstructionType.put( "spoof", CPINSTRUCTION_TYPE.SpoofFused);
+		
 		
 		//CP FILE instruction
 		String2CPFileInstructionType = new HashMap<String, CPINSTRUCTION_TYPE>();
@@ -392,6 +395,9 @@ public class CPInstructionParser extends InstructionParser
 	
 			case Covariance:
 				return CovarianceCPInstruction.parseInstruction(str);
+			
+			case SpoofFused:
+				return SpoofCPInstruction.parseInstruction(str);
 				
 			case INVALID:
 			
@@ -57,6 +57,10 @@ public abstract class Instruction
 	protected String instOpcode = null;
 	private long instID = -1;
 	
+	//cached probe for label updates (instruction string it was computed for)
+	private volatile String _labelProbeInst = null;
+	private boolean _requiresLabelUpdate = false;
+	
 	//originating script positions
 	protected int beginLine = -1;
 	protected int endLine = -1;  
@@ -172,7 +176,14 @@ public abstract class Instruction
 	 */
 	public boolean requiresLabelUpdate()
 	{
-		return instString.contains( Lop.VARIABLE_NAME_PLACEHOLDER );
+		//probe the instruction string only once, as called on every execution
+		//(the probe is invalidated on modified instruction strings)
+		String inst = instString;
+		if( inst != _labelProbeInst ) {
+			_requiresLabelUpdate = inst.contains( Lop.VARIABLE_NAME_PLACEHOLDER );
+			_labelProbeInst = inst;
+		}
+		return _requiresLabelUpdate;
 	}	
 	
 	/**
@@ -68,6 +68,7 @@ import org.apache.sysml.runtime.instructions.spark.ReorgSPInstruction;
 import org.apache.sysml.runtime.instructions.spark.RmmSPInstruction;
 import org.apache.sysml.runtime.instructions.spark.SPInstruction;
 import org.apache.sysml.runtime.instructions.spark.SPInstruction.SPINSTRUCTION_TYPE;
+import org.apache.sysml.runtime.instructions.spark.SpoofSPInstruction;
 import org.apache.sysml.runtime.instructions.spark.TernarySPInstruction;
 import org.apache.sysml.runtime.instructions.spark.TsmmSPInstruction;
 import org.apache.sysml.runtime.instructions.spark.QuantileSortSPInstruction;
@@ -256,6 +257,8 @@ public class SPInstructionParser extends InstructionParser
 		
 		String2SPInstructionType.put( "binuaggchain", SPINSTRUCTION_TYPE.BinUaggChain);
 		
+		String2SPInstructionType.put( "spoof"   , SPINSTRUCTION_TYPE.SpoofFused);
+		
 		String2SPInstructionType.put( "write"   , SPINSTRUCTION_TYPE.Write);
 	}
 
@@ -407,6 +410,9 @@ public class SPInstructionParser extends InstructionParser
 				
 			case Checkpoint:
 				return CheckpointSPInstruction.parseInstruction(str);
+			
+			case SpoofFused:
+				return SpoofSPInstruction.parseInstruction(str);
 				
 			case INVALID:
 			default:
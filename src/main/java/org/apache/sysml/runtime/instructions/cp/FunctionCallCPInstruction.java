@@ -157,7 +157,10 @@ public class FunctionCallCPInstruction extends CPInstruction
 				if( operand.getDataType()==DataType.SCALAR )
 					currFormalParamValue = ec.getScalarInput(operand.getName(), operand.getValueType(), operand.isLiteral());
 				else
-					currFormalParamValue = ec.getVariable(operand.getName());					
+					currFormalParamValue = ec.getVariable(operand.getName());
+				//prevent aliases of update in-place matrices
+				if( currFormalParamValue instanceof MatrixObject )
+					currFormalParamValue = ((MatrixObject)currFormalParamValue).getNonAliasedMatrixObject();
 			}
 				
 			functionVariables.put(currFormalParamName,currFormalParamValue);						
@@ -186,8 +186,10 @@ public class MatrixIndexingCPInstruction extends UnaryCPInstruction
 			ec.releaseMatrixInput(input1.getName());
 			
 			//ensure correct sparse/dense output representation
-			//(memory guarded by release of input)
-			resultBlock.examSparsity();
+			//(memory guarded by release of input; in-place updates keep their 
+			//representation to prevent repeated conversions per loop iteration)
+			if( !inplace )
+				resultBlock.examSparsity();
 			
 			//unpin output
 			ec.setMatrixOutput(output.getName(), resultBlock, inplace);
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.runtime.instructions.cp;
+
+import java.util.ArrayList;
+
+import org.apache.sysml.parser.Expression.DataType;
+import org.apache.sysml.runtime.DMLRuntimeException;
+import org.apache.sysml.runtime.DMLUnsupportedOperationException;
+import org.apache.sysml.runtime.codegen.CodegenUtils;
+import org.apache.sysml.runtime.codegen.SpoofCellwise;
+import org.apache.sysml.runtime.codegen.SpoofCellwise.CellType;
+import org.apache.sysml.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysml.runtime.instructions.InstructionUtils;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+
+/**
+ * CP instruction of a fused operator, which is executed by an instance
+ * of the generated operator class.
+ */
+public class SpoofCPInstruction extends ComputationCPInstruction
+{
+	private final SpoofCellwise _op;
+	private final CPOperand[] _in;
+	private final int _numThreads;
+
+	public SpoofCPInstruction(SpoofCellwise op, CPOperand[] in, CPOperand out, int k, String opcode, String istr)
+	{
+		super(null, null, null, out, opcode, istr);
+		_cptype = CPINSTRUCTION_TYPE.SpoofFused;
+		_op = op;
+		_in = in;
+		_numThreads = k;
+	}
+
+	/**
+	 *
+	 * @param str
+	 * @return
+	 * @throws DMLRuntimeException
+	 */
+	public static SpoofCPInstruction parseInstruction( String str )
+		throws DMLRuntimeException
+	{
+		//parse instruction parts (without exec type)
+		String[] parts = InstructionUtils.getInstructionPartsWithValueType( str );
+
+		//parts: opcode, class, inputs*, output, k
+		String opcode = parts[0];
+		Class<?> cla = CodegenUtils.getClass(parts[1]);
+		CPOperand[] in = new CPOperand[parts.length-4];
+		for( int i=0; i<in.length; i++ )
+			in[i] = new CPOperand(parts[2+i]);
+		CPOperand out = new CPOperand(parts[parts.length-2]);
+		int k = Integer.parseInt(parts[parts.length-1]);
+
+		SpoofCellwise op = (SpoofCellwise) CodegenUtils.createInstance(cla);
+		return new SpoofCPInstruction(op, in, out, k, opcode, str);
+	}
+
+	@Override
+	public void processInstruction(ExecutionContext ec)
+		throws DMLUnsupportedOperationException, DMLRuntimeException
+	{
+		//get matrix and scalar inputs
+		ArrayList<MatrixBlock> inputs = new ArrayList<MatrixBlock>();
+		ArrayList<ScalarObject> scalars = new ArrayList<ScalarObject>();
+		for( CPOperand input : _in ) {
+			if( input.getDataType() == DataType.MATRIX )
+				inputs.add(ec.getMatrixInput(input.getName()));
+			else
+				scalars.add(ec.getScalarInput(input.getName(), input.getValueType(), input.isLiteral()));
+		}
+
+		//execute fused operator and set output
+		if( _op.getCellType() == CellType.FULL_AGG ) {
+			ScalarObject out = _op.execute(inputs, scalars, _numThreads);
+			ec.setScalarOutput(output.getName(), out);
+		}
+		else {
+			MatrixBlock out = _op.execute(inputs, scalars, new MatrixBlock(), _numThreads);
+			ec.setMatrixOutput(output.getName(), out);
+		}
+
+		//release matrix inputs
+		for( CPOperand input : _in )
+			if( input.getDataType() == DataType.MATRIX )
+				ec.releaseMatrixInput(input.getName());
+	}
+}
@@ -650,7 +650,10 @@ public class VariableCPInstruction extends CPInstruction
 			ec.cleanupMatrixObject((MatrixObject) input2_data);
 		}
 		
-		// do the actual copy!
+		// do the actual copy! (w/ deep copy of update in-place matrices, which
+		// might be aliased after dynamic rewrites like unnecessary indexing)
+		if( dd instanceof MatrixObject )
+			dd = ((MatrixObject)dd).getNonAliasedMatrixObject();
 		ec.setVariable(input2.getName(), dd);
 	}
 	
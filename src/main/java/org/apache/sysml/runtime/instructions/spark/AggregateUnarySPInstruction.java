@@ -119,7 +119,8 @@ public class AggregateUnarySPInstruction extends UnarySPInstruction
 		//perform aggregation if necessary and put output into symbol table
 		if( _aggtype == SparkAggType.SINGLE_BLOCK )
 		{
-			MatrixBlock out2 = RDDAggregateUtils.aggStable(out, aggop);
+			MatrixBlock out2 = RDDAggregateUtils.aggStable(
+					sec.getMatrixCharacteristics(output.getName()), out, aggop);
 			
 			//drop correction after aggregation
 			out2.dropLastRowsOrColums(aggop.correctionLocation);
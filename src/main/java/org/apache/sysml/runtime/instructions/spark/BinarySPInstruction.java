@@ -19,6 +19,7 @@
 
 package org.apache.sysml.runtime.instructions.spark;
 
+import org.apache.spark.Partitioner;
 import org.apache.spark.api.java.JavaPairRDD;
 
 import org.apache.sysml.lops.BinaryM.VectorType;
@@ -30,12 +31,14 @@ import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
 import org.apache.sysml.runtime.instructions.InstructionUtils;
 import org.apache.sysml.runtime.instructions.cp.CPOperand;
 import org.apache.sysml.runtime.instructions.cp.ScalarObject;
+import org.apache.sysml.runtime.instructions.spark.data.BlockPartitioner;
 import org.apache.sysml.runtime.instructions.spark.data.PartitionedBroadcastMatrix;
 import org.apache.sysml.runtime.instructions.spark.functions.MatrixMatrixBinaryOpFunction;
 import org.apache.sysml.runtime.instructions.spark.functions.MatrixScalarUnaryFunction;
 import org.apache.sysml.runtime.instructions.spark.functions.MatrixVectorBinaryOpPartitionFunction;
 import org.apache.sysml.runtime.instructions.spark.functions.OuterVectorBinaryOpFunction;
 import org.apache.sysml.runtime.instructions.spark.functions.ReplicateVectorFunction;
+import org.apache.sysml.runtime.instructions.spark.utils.SparkUtils;
 import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
 import org.apache.sysml.runtime.matrix.data.MatrixBlock;
 import org.apache.sysml.runtime.matrix.data.MatrixIndexes;
@@ -126,10 +129,14 @@ public abstract class BinarySPInstruction extends ComputationSPInstruction
 		if( numRepRight > 1 )
 			in2 = in2.flatMapToPair(new ReplicateVectorFunction(rowvector, numRepRight));
 		
-		//execute binary operation
-		JavaPairRDD<MatrixIndexes,MatrixBlock> out = in1
-				.join(in2)
-				.mapValues(new MatrixMatrixBinaryOpFunction(bop));
+		//execute binary operation (join w/ explicit block partitioner if none of the inputs 
+		//is partitioned, which preserves the partitioning for subsequent operations; otherwise
+		//the join reuses the existing partitioner and hence, shuffles at most one input)
+		Partitioner part = getJoinPartitioner(in1, in2, 
+				(numRepLeft>1 || numRepRight>1) ? sec.getMatrixCharacteristics(output.getName()) : mc1);
+		JavaPairRDD<MatrixIndexes,MatrixBlock> out = (part != null) ?
+				in1.join(in2, part) : in1.join(in2);
+		out = out.mapValues(new MatrixMatrixBinaryOpFunction(bop));
 		
 		//set output RDD
 		updateBinaryOutputMatrixCharacteristics(sec);
@@ -138,6 +145,31 @@ public abstract class BinarySPInstruction extends ComputationSPInstruction
 		sec.addLineageRDD(output.getName(), rddVar2);
 	}
 	
+	/**
+	 * Obtains an explicit partitioner for binary matrix-matrix joins, if none of the
+	 * inputs is already partitioned (e.g., reads or checkpoints w/o partitioning). 
+	 * 
+	 * @param in1
+	 * @param in2
+	 * @param mcOut
+	 * @return block partitioner, or null if the default join partitioning applies
+	 */
+	private static Partitioner getJoinPartitioner( JavaPairRDD<MatrixIndexes,MatrixBlock> in1, 
+			JavaPairRDD<MatrixIndexes,MatrixBlock> in2, MatrixCharacteristics mcOut )
+	{
+		//reuse existing partitioners (default join behavior)
+		if( SparkUtils.isPartitioned(in1) || SparkUtils.isPartitioned(in2) )
+			return null;
+		
+		//create tile-based block partitioner for known output characteristics
+		if( mcOut.dimsKnown() && mcOut.getRowsPerBlock()>0 && mcOut.getColsPerBlock()>0 ) {
+			int numParts = Math.max(in1.partitions().size(), in2.partitions().size());
+			return new BlockPartitioner(mcOut, numParts);
+		}
+		
+		return null;
+	}
+	
 	/**
 	 * 
 	 * @param ec
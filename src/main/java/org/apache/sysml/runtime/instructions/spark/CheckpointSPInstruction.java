@@ -32,8 +32,10 @@ import org.apache.sysml.runtime.controlprogram.parfor.stat.InfrastructureAnalyze
 import org.apache.sysml.runtime.instructions.InstructionUtils;
 import org.apache.sysml.runtime.instructions.cp.BooleanObject;
 import org.apache.sysml.runtime.instructions.cp.CPOperand;
+import org.apache.sysml.runtime.instructions.spark.data.BlockPartitioner;
 import org.apache.sysml.runtime.instructions.spark.data.RDDObject;
 import org.apache.sysml.runtime.instructions.spark.functions.CopyBlockFunction;
+import org.apache.sysml.runtime.instructions.spark.utils.SparkUtils;
 import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
 import org.apache.sysml.runtime.matrix.data.MatrixBlock;
 import org.apache.sysml.runtime.matrix.data.MatrixIndexes;
@@ -45,26 +47,34 @@ public class CheckpointSPInstruction extends UnarySPInstruction
 	//default storage level
 	private StorageLevel _level = null;
 	
-	public CheckpointSPInstruction(Operator op, CPOperand in, CPOperand out, StorageLevel level, String opcode, String istr){
+	//partition checkpointed rdds by the block partitioner, which requires a single shuffle
+	//but allows subsequent joins of the checkpointed rdd (e.g., of a read-only matrix in 
+	//loops) without shuffling it again in every iteration (decided during compilation, 
+	//because the shuffle is pure overhead for map-side consumers such as mapmm)
+	private boolean _partition = false;
+	
+	public CheckpointSPInstruction(Operator op, CPOperand in, CPOperand out, StorageLevel level, boolean partition, String opcode, String istr){
 		super(op, in, out, opcode, istr);
 		_sptype = SPINSTRUCTION_TYPE.Reorg;
 		
 		_level = level;
+		_partition = partition;
 	}
 	
 	public static CheckpointSPInstruction parseInstruction ( String str ) 
 		throws DMLRuntimeException 
 	{
 		String[] parts = InstructionUtils.getInstructionPartsWithValueType(str);
-		InstructionUtils.checkNumFields(parts, 3);
+		InstructionUtils.checkNumFields(parts, 4);
 		
 		String opcode = parts[0];
 		CPOperand in = new CPOperand(parts[1]);
 		CPOperand out = new CPOperand(parts[2]);
 
 		StorageLevel level = StorageLevel.fromString(parts[3]);
+		boolean partition = Boolean.parseBoolean(parts[4]);
 
-		return new CheckpointSPInstruction(null, in, out, level, opcode, str);
+		return new CheckpointSPInstruction(null, in, out, level, partition, opcode, str);
 	}
 	
 	@Override
@@ -101,7 +111,14 @@ public class CheckpointSPInstruction extends UnarySPInstruction
 			boolean coalesce = ( numPartitions < in.partitions().size() );
 			
 			//checkpoint pre-processing rdd operations
-			if( coalesce ) {
+			if( requiresBlockPartitioning(mcIn, in) ) {
+				//partition by tile-based block partitioner (w/ merged partitions if too many
+				//partitions), which also creates a new rdd and hence allows for short-circuit 
+				//collects as well
+				int numParts = coalesce ? numPartitions : in.partitions().size();
+				out = in.partitionBy(new BlockPartitioner(mcIn, numParts));
+			}
+			else if( coalesce ) {
 				//merge partitions without shuffle if too many partitions
 				out = in.coalesce( numPartitions );
 			}
@@ -138,6 +155,20 @@ public class CheckpointSPInstruction extends UnarySPInstruction
 		sec.setVariable( output.getName(), mo);
 	}
 	
+	/**
+	 * 
+	 * @param mc
+	 * @param in
+	 * @return
+	 */
+	private boolean requiresBlockPartitioning(MatrixCharacteristics mc, JavaPairRDD<MatrixIndexes,MatrixBlock> in)
+	{
+		//partitioning only for unpartitioned rdds of known size
+		return _partition && !SparkUtils.isPartitioned(in) 
+			&& mc.dimsKnown()
+			&& mc.getRowsPerBlock()>0 && mc.getColsPerBlock()>0;
+	}
+	
 	/**
 	 * 
 	 * @param mc
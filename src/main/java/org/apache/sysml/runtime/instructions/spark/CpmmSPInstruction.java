@@ -110,7 +110,8 @@ public class CpmmSPInstruction extends BinarySPInstruction
 		//process cpmm aggregation and handle outputs				
 		if( _aggtype == SparkAggType.SINGLE_BLOCK )
 		{
-			MatrixBlock out2 = RDDAggregateUtils.sumStable(out);
+			MatrixBlock out2 = RDDAggregateUtils.sumStable(
+					sec.getMatrixCharacteristics(output.getName()), out);
 			
 			//put output block into symbol table (no lineage because single block)
 			//this also includes implicit maintenance of matrix characteristics
@@ -118,7 +119,8 @@ public class CpmmSPInstruction extends BinarySPInstruction
 		}
 		else //DEFAULT: MULTI_BLOCK
 		{
-			out = RDDAggregateUtils.sumByKeyStable(out); 
+			out = RDDAggregateUtils.sumByKeyStable(
+					sec.getMatrixCharacteristics(output.getName()), out);
 			
 			//put output RDD handle into symbol table
 			sec.setRDDHandleForVariable(output.getName(), out);
@@ -140,7 +140,8 @@ public class MapmmSPInstruction extends BinarySPInstruction
 		//perform aggregation if necessary and put output into symbol table
 		if( _aggtype == SparkAggType.SINGLE_BLOCK )
 		{
-			MatrixBlock out2 = RDDAggregateUtils.sumStable(out);
+			MatrixBlock out2 = RDDAggregateUtils.sumStable(
+					sec.getMatrixCharacteristics(output.getName()), out);
 			
 			//put output block into symbol table (no lineage because single block)
 			//this also includes implicit maintenance of matrix characteristics
@@ -149,7 +150,8 @@ public class MapmmSPInstruction extends BinarySPInstruction
 		else //MULTI_BLOCK or NONE
 		{
 			if( _aggtype == SparkAggType.MULTI_BLOCK )
-				out = RDDAggregateUtils.sumByKeyStable(out);
+				out = RDDAggregateUtils.sumByKeyStable(
+						sec.getMatrixCharacteristics(output.getName()), out);
 		
 			//put output RDD handle into symbol table
 			sec.setRDDHandleForVariable(output.getName(), out);
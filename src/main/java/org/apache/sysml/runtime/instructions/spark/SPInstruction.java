@@ -45,7 +45,7 @@ public abstract class SPInstruction extends Instruction
 		CentralMoment, Covariance, QSort, QPick,
 		ParameterizedBuiltin, MAppend, RAppend, GAppend, GAlignedAppend, Rand, 
 		MatrixReshape, Ternary, Quaternary, CumsumAggregate, CumsumOffset, BinUaggChain, UaggOuterChain, 
-		Write, INVALID, 
+		SpoofFused, Write, INVALID, 
 	};
 	
 	protected SPINSTRUCTION_TYPE _sptype;
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.runtime.instructions.spark;
+
+import java.util.ArrayList;
+
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.function.PairFunction;
+
+import scala.Tuple2;
+
+import org.apache.sysml.parser.Expression.DataType;
+import org.apache.sysml.runtime.DMLRuntimeException;
+import org.apache.sysml.runtime.DMLUnsupportedOperationException;
+import org.apache.sysml.runtime.codegen.CodegenUtils;
+import org.apache.sysml.runtime.codegen.SpoofCellwise;
+import org.apache.sysml.runtime.codegen.SpoofCellwise.CellType;
+import org.apache.sysml.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
+import org.apache.sysml.runtime.instructions.InstructionUtils;
+import org.apache.sysml.runtime.instructions.cp.CPOperand;
+import org.apache.sysml.runtime.instructions.cp.DoubleObject;
+import org.apache.sysml.runtime.instructions.cp.ScalarObject;
+import org.apache.sysml.runtime.instructions.spark.data.PartitionedBroadcastMatrix;
+import org.apache.sysml.runtime.instructions.spark.utils.RDDAggregateUtils;
+import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.matrix.data.MatrixIndexes;
+
+/**
+ * Spark instruction of a fused operator, where the main input is processed
+ * block-wise and all side inputs are broadcasts. Since there is no java
+ * compiler required on the executors, the byte code of the generated class
+ * is shipped along with the function and loaded on first use.
+ */
+public class SpoofSPInstruction extends SPInstruction
+{
+	private final String _className;
+	private final CellType _type;
+	private final CPOperand[] _in;
+	private final CPOperand _out;
+
+	public SpoofSPInstruction(String className, CellType type, CPOperand[] in, CPOperand out, String opcode, String istr)
+	{
+		super(opcode, istr);
+		_sptype = SPINSTRUCTION_TYPE.SpoofFused;
+		_className = className;
+		_type = type;
+		_in = in;
+		_out = out;
+	}
+
+	/**
+	 *
+	 * @param str
+	 * @return
+	 * @throws DMLRuntimeException
+	 */
+	public static SpoofSPInstruction parseInstruction( String str )
+		throws DMLRuntimeException
+	{
+		//parse instruction parts (without exec type)
+		String[] parts = InstructionUtils.getInstructionPartsWithValueType( str );
+
+		//parts: opcode, class, inputs*, output, k (ignored)
+		String opcode = parts[0];
+		SpoofCellwise op = (SpoofCellwise) CodegenUtils.createInstance(CodegenUtils.getClass(parts[1]));
+		CPOperand[] in = new CPOperand[parts.length-4];
+		for( int i=0; i<in.length; i++ )
+			in[i] = new CPOperand(parts[2+i]);
+		CPOperand out = new CPOperand(parts[parts.length-2]);
+
+		return new SpoofSPInstruction(parts[1], op.getCellType(), in, out, opcode, str);
+	}
+
+	@Override
+	public void processInstruction(ExecutionContext ec)
+		throws DMLRuntimeException, DMLUnsupportedOperationException
+	{
+		SparkExecutionContext sec = (SparkExecutionContext)ec;
+
+		//get main rdd input, and broadcast side and scalar inputs
+		JavaPairRDD<MatrixIndexes,MatrixBlock> in = sec.getBinaryBlockRDDHandleForVariable( _in[0].getName() );
+		MatrixCharacteristics mcIn = sec.getMatrixCharacteristics(_in[0].getName());
+		ArrayList<PartitionedBroadcastMatrix> bcIn = new ArrayList<PartitionedBroadcastMatrix>();
+		ArrayList<Boolean> rowVect = new ArrayList<Boolean>();
+		ArrayList<Boolean> colVect = new ArrayList<Boolean>();
+		ArrayList<ScalarObject> scalars = new ArrayList<ScalarObject>();
+		for( int i=1; i<_in.length; i++ ) {
+			if( _in[i].getDataType() == DataType.MATRIX ) {
+				MatrixCharacteristics mc = sec.getMatrixCharacteristics(_in[i].getName());
+				bcIn.add(sec.getBroadcastForVariable(_in[i].getName()));
+				rowVect.add(mc.getRows() == 1);
+				colVect.add(mc.getCols() == 1);
+			}
+			else
+				scalars.add(sec.getScalarInput(_in[i].getName(), _in[i].getValueType(), _in[i].isLiteral()));
+		}
+
+		//execute fused operator per block
+		RDDSpoofFunction fspoof = new RDDSpoofFunction(_className,
+				CodegenUtils.getClassBytes(_className), bcIn, rowVect, colVect, scalars);
+		JavaPairRDD<MatrixIndexes,MatrixBlock> out = in.mapToPair(fspoof);
+
+		if( _type == CellType.FULL_AGG ) {
+			//aggregate partial sums into a scalar output
+			MatrixBlock tmp = RDDAggregateUtils.sumStable(out);
+			sec.setScalarOutput(_out.getName(), new DoubleObject(tmp.quickGetValue(0, 0)));
+		}
+		else {
+			//aggregate partial row sums if necessary
+			if( _type == CellType.ROW_AGG )
+				out = RDDAggregateUtils.sumByKeyStable(out);
+
+			//update output statistics if not inferred
+			MatrixCharacteristics mcOut = sec.getMatrixCharacteristics(_out.getName());
+			if( !mcOut.dimsKnown() )
+				mcOut.set(mcIn.getRows(), (_type==CellType.NO_AGG) ? mcIn.getCols() : 1,
+						mcIn.getRowsPerBlock(), mcIn.getColsPerBlock());
+
+			//set output RDD and maintain lineage
+			sec.setRDDHandleForVariable(_out.getName(), out);
+			sec.addLineageRDD(_out.getName(), _in[0].getName());
+			for( int i=1; i<_in.length; i++ )
+				if( _in[i].getDataType() == DataType.MATRIX )
+					sec.addLineageBroadcast(_out.getName(), _in[i].getName());
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static class RDDSpoofFunction implements PairFunction<Tuple2<MatrixIndexes, MatrixBlock>, MatrixIndexes, MatrixBlock>
+	{
+		private static final long serialVersionUID = -4837195626738112964L;
+
+		private final String _className;
+		private final byte[] _classBytes;
+		private final ArrayList<PartitionedBroadcastMatrix> _bcIn;
+		private final ArrayList<Boolean> _rowVect;
+		private final ArrayList<Boolean> _colVect;
+		private final ArrayList<ScalarObject> _scalars;
+
+		//lazily created on executors
+		private transient SpoofCellwise _op = null;
+
+		public RDDSpoofFunction( String className, byte[] classBytes, ArrayList<PartitionedBroadcastMatrix> bcIn,
+				ArrayList<Boolean> rowVect, ArrayList<Boolean> colVect, ArrayList<ScalarObject> scalars )
+		{
+			_className = className;
+			_classBytes = classBytes;
+			_bcIn = bcIn;
+			_rowVect = rowVect;
+			_colVect = colVect;
+			_scalars = scalars;
+		}
+
+		@Override
+		public Tuple2<MatrixIndexes, MatrixBlock> call( Tuple2<MatrixIndexes, MatrixBlock> arg0 )
+			throws Exception
+		{
+			//load generated class, if not yet available in this JVM
+			if( _op == null ) {
+				Class<?> cla = CodegenUtils.getClass(_className, _classBytes);
+				_op = (SpoofCellwise) CodegenUtils.createInstance(cla);
+			}
+
+			MatrixIndexes ixIn = arg0._1();
+			int rix = (int)ixIn.getRowIndex();
+			int cix = (int)ixIn.getColumnIndex();
+
+			//collect main input and aligned side input blocks
+			ArrayList<MatrixBlock> inputs = new ArrayList<MatrixBlock>();
+			inputs.add(arg0._2());
+			for( int i=0; i<_bcIn.size(); i++ )
+				inputs.add(_bcIn.get(i).getMatrixBlock(
+						_rowVect.get(i) ? 1 : rix, _colVect.get(i) ? 1 : cix));
+
+			//execute fused operator on block
+			if( _op.getCellType() == CellType.FULL_AGG ) {
+				ScalarObject so = _op.execute(inputs, _scalars, 1);
+				MatrixBlock out = new MatrixBlock(1, 1, false);
+				out.quickSetValue(0, 0, so.getDoubleValue());
+				return new Tuple2<MatrixIndexes, MatrixBlock>(new MatrixIndexes(1,1), out);
+			}
+			else {
+				MatrixBlock out = _op.execute(inputs, _scalars, new MatrixBlock(), 1);
+				MatrixIndexes ixOut = (_op.getCellType()==CellType.ROW_AGG) ?
+						new MatrixIndexes(rix, 1) : new MatrixIndexes(rix, cix);
+				return new Tuple2<MatrixIndexes, MatrixBlock>(ixOut, out);
+			}
+		}
+	}
+}
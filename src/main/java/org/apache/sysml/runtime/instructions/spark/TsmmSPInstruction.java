@@ -87,7 +87,8 @@ public class TsmmSPInstruction extends UnarySPInstruction
 		//(this formulation with values() requires --conf spark.driver.maxResultSize=0)
 		RDDTSMMFunction ftsmm = new RDDTSMMFunction(_type);		
 		JavaPairRDD<MatrixIndexes,MatrixBlock> tmp = in.mapValues(ftsmm);
-		MatrixBlock out = RDDAggregateUtils.sumStable(tmp);
+		MatrixBlock out = RDDAggregateUtils.sumStable(
+				sec.getMatrixCharacteristics(output.getName()), tmp);
 		      
 		//put output block into symbol table (no lineage because single block)
 		//this also includes implicit maintenance of matrix characteristics
@@ -100,7 +100,8 @@ public class ZipmmSPInstruction extends BinarySPInstruction
 				   .mapValues(new ZipMultiplyFunction(_tRewrite));  // compute block multiplications, incl t(y)
 				   
 		//single-block aggregation (guaranteed by zipmm blocksize constraint)
-		MatrixBlock out2 = RDDAggregateUtils.sumStable(out);
+		MatrixBlock out2 = RDDAggregateUtils.sumStable(
+				sec.getMatrixCharacteristics(output.getName()), out);
 		
 		//final transpose of result (for t(t(y)%*%X))), if transpose rewrite
 		if( _tRewrite ) {
@@ -28,12 +28,34 @@ public class BroadcastObject extends LineageObject
 	//soft reference storage for graceful cleanup in case of memory pressure
 	private SoftReference<PartitionedBroadcastMatrix> _bcHandle = null;
 	
+	//key of shared broadcast cache entry, if broadcast shared across matrix objects
+	private String _cacheKey = null;
+	
 	public BroadcastObject( PartitionedBroadcastMatrix bvar, String varName )
 	{
 		_bcHandle = new SoftReference<PartitionedBroadcastMatrix>(bvar);
 		_varName = varName;
 	}
 	
+	public BroadcastObject( PartitionedBroadcastMatrix bvar, String varName, String cacheKey )
+	{
+		this(bvar, varName);
+		_cacheKey = cacheKey;
+	}
+	
+	public String getCacheKey() {
+		return _cacheKey;
+	}
+	
+	/**
+	 * Releases the reference to the broadcast handle without destroying 
+	 * the underlying broadcasts, which might be shared with other handles.
+	 */
+	public void clearBroadcast() {
+		_bcHandle.clear();
+		_cacheKey = null;
+	}
+	
 	/**
 	 * 
 	 * @return
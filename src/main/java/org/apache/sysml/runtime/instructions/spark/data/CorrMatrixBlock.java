@@ -113,7 +113,7 @@ public class CorrMatrixBlock implements Externalizable
 	 * @param dos
 	 * @throws IOException
 	 */
-	private void writeHeaderAndPayload(DataOutput dos) 
+	void writeHeaderAndPayload(DataOutput dos) 
 		throws IOException 
 	{
 		dos.writeByte((_corr!=null)?1:0);
@@ -127,7 +127,7 @@ public class CorrMatrixBlock implements Externalizable
 	 * @param dis
 	 * @throws IOException 
 	 */
-	private void readHeaderAndPayload(DataInput dis) 
+	void readHeaderAndPayload(DataInput dis) 
 		throws IOException 
 	{
 		boolean corrExists = (dis.readByte() != 0) ? true : false;
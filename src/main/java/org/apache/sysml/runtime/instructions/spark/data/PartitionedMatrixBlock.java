@@ -349,7 +349,7 @@ public class PartitionedMatrixBlock implements Externalizable
 	 * @param dos
 	 * @throws IOException 
 	 */
-	private void writeHeaderAndPayload(DataOutput dos) 
+	void writeHeaderAndPayload(DataOutput dos) 
 		throws IOException
 	{
 		dos.writeInt(_rlen);
@@ -367,7 +367,7 @@ public class PartitionedMatrixBlock implements Externalizable
 	 * @param din
 	 * @throws IOException 
 	 */
-	private void readHeaderAndPayload(DataInput dis) 
+	void readHeaderAndPayload(DataInput dis) 
 		throws IOException
 	{
 		_rlen = dis.readInt();
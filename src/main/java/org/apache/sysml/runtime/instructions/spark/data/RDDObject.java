@@ -21,6 +21,8 @@ package org.apache.sysml.runtime.instructions.spark.data;
 
 import org.apache.spark.api.java.JavaPairRDD;
 
+import org.apache.sysml.runtime.controlprogram.ParForProgramBlock.PDataPartitionFormat;
+
 public class RDDObject extends LineageObject
 {
 
@@ -30,6 +32,7 @@ public class RDDObject extends LineageObject
 	private boolean _checkpointed = false; //created via checkpoint instruction
 	private boolean _hdfsfile = false;     //created from hdfs file
 	private String  _hdfsFname = null;     //hdfs filename, if created from hdfs.  
+	private PDataPartitionFormat _dpf = null; //partition format, if created via parfor data partitioning
 	
 	public RDDObject( JavaPairRDD<?,?> rddvar, String varName)
 	{
@@ -72,6 +75,14 @@ public class RDDObject extends LineageObject
 		return _hdfsFname;
 	}
 	
+	public void setPartitionFormat( PDataPartitionFormat dpf ) {
+		_dpf = dpf;
+	}
+	
+	public PDataPartitionFormat getPartitionFormat() {
+		return _dpf;
+	}
+	
 
 	/**
 	 * Indicates if rdd is an hdfs file or a checkpoint over an hdfs file;
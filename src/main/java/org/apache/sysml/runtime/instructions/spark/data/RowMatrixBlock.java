@@ -113,7 +113,7 @@ public class RowMatrixBlock implements Externalizable
 	 * @param dos
 	 * @throws IOException
 	 */
-	private void writeHeaderAndPayload(DataOutput dos) 
+	void writeHeaderAndPayload(DataOutput dos) 
 		throws IOException 
 	{
 		dos.writeInt(_len);
@@ -126,7 +126,7 @@ public class RowMatrixBlock implements Externalizable
 	 * @param dis
 	 * @throws IOException 
 	 */
-	private void readHeaderAndPayload(DataInput dis) 
+	void readHeaderAndPayload(DataInput dis) 
 		throws IOException 
 	{
 		_len = dis.readInt();
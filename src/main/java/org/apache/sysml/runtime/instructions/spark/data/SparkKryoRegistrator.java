@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.runtime.instructions.spark.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.spark.serializer.KryoRegistrator;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.matrix.data.MatrixIndexes;
+import org.apache.sysml.runtime.util.FastBufferedDataInputStream;
+import org.apache.sysml.runtime.util.FastBufferedDataOutputStream;
+
+/**
+ * Kryo registrator for all SystemML data types that are used as keys or values
+ * of RDDs or broadcasts. The custom serializers redirect kryo serialization to
+ * our default hadoop writable serialization (see Externalizable implementations),
+ * which includes the efficient serialization of dense, sparse, and empty blocks,
+ * but avoids the overhead of java serialization (object stream headers, class
+ * descriptors, and block data mode) for shuffle and caching.
+ *
+ * NOTE: Our fast buffered data input only reads exactly the requested number
+ * of bytes from the underlying input, which makes it safe to use over the
+ * shared kryo input without consuming bytes of subsequent objects. The buffered
+ * streams are reused across objects, which is safe because serializers are 
+ * created per kryo instance, and kryo instances are not shared across threads.
+ */
+public class SparkKryoRegistrator implements KryoRegistrator
+{
+	@Override
+	public void registerClasses(Kryo kryo)
+	{
+		//register matrix indexes and blocks with custom serializers
+		kryo.register(MatrixIndexes.class, new MatrixIndexesSerializer());
+		kryo.register(MatrixBlock.class, new MatrixBlockSerializer());
+
+		//register block wrappers with custom serializers
+		kryo.register(PartitionedMatrixBlock.class, new PartitionedMatrixBlockSerializer());
+		kryo.register(CorrMatrixBlock.class, new CorrMatrixBlockSerializer());
+		kryo.register(RowMatrixBlock.class, new RowMatrixBlockSerializer());
+	}
+
+	/**
+	 * Matrix indexes are always positive, hence we use variable-length
+	 * encoding, which requires only 2 bytes for typical block indexes.
+	 */
+	private static class MatrixIndexesSerializer extends Serializer<MatrixIndexes>
+	{
+		@Override
+		public void write(Kryo kryo, Output output, MatrixIndexes ix) {
+			output.writeLong(ix.getRowIndex(), true);
+			output.writeLong(ix.getColumnIndex(), true);
+		}
+
+		@Override
+		public MatrixIndexes read(Kryo kryo, Input input, Class<MatrixIndexes> type) {
+			long rix = input.readLong(true);
+			long cix = input.readLong(true);
+			return new MatrixIndexes(rix, cix);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static class MatrixBlockSerializer extends BufferedSerializer<MatrixBlock>
+	{
+		@Override
+		public void write(Kryo kryo, Output output, MatrixBlock mb) {
+			try {
+				//fast serialize of dense/sparse/empty blocks
+				FastBufferedDataOutputStream fos = getOutputStream(output);
+				mb.write(fos);
+				fos.flush();
+			}
+			catch(IOException ex) {
+				throw new KryoException(ex);
+			}
+		}
+
+		@Override
+		public MatrixBlock read(Kryo kryo, Input input, Class<MatrixBlock> type) {
+			try {
+				//fast deserialize of dense/sparse/empty blocks
+				MatrixBlock mb = new MatrixBlock();
+				mb.readFields(getInputStream(input));
+				return mb;
+			}
+			catch(IOException ex) {
+				throw new KryoException(ex);
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static class PartitionedMatrixBlockSerializer extends BufferedSerializer<PartitionedMatrixBlock>
+	{
+		@Override
+		public void write(Kryo kryo, Output output, PartitionedMatrixBlock pmb) {
+			try {
+				FastBufferedDataOutputStream fos = getOutputStream(output);
+				pmb.writeHeaderAndPayload(fos);
+				fos.flush();
+			}
+			catch(IOException ex) {
+				throw new KryoException(ex);
+			}
+		}
+
+		@Override
+		public PartitionedMatrixBlock read(Kryo kryo, Input input, Class<PartitionedMatrixBlock> type) {
+			try {
+				PartitionedMatrixBlock pmb = new PartitionedMatrixBlock();
+				pmb.readHeaderAndPayload(getInputStream(input));
+				return pmb;
+			}
+			catch(IOException ex) {
+				throw new KryoException(ex);
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static class CorrMatrixBlockSerializer extends BufferedSerializer<CorrMatrixBlock>
+	{
+		@Override
+		public void write(Kryo kryo, Output output, CorrMatrixBlock cmb) {
+			try {
+				FastBufferedDataOutputStream fos = getOutputStream(output);
+				cmb.writeHeaderAndPayload(fos);
+				fos.flush();
+			}
+			catch(IOException ex) {
+				throw new KryoException(ex);
+			}
+		}
+
+		@Override
+		public CorrMatrixBlock read(Kryo kryo, Input input, Class<CorrMatrixBlock> type) {
+			try {
+				CorrMatrixBlock cmb = new CorrMatrixBlock();
+				cmb.readHeaderAndPayload(getInputStream(input));
+				return cmb;
+			}
+			catch(IOException ex) {
+				throw new KryoException(ex);
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static class RowMatrixBlockSerializer extends BufferedSerializer<RowMatrixBlock>
+	{
+		@Override
+		public void write(Kryo kryo, Output output, RowMatrixBlock rmb) {
+			try {
+				FastBufferedDataOutputStream fos = getOutputStream(output);
+				rmb.writeHeaderAndPayload(fos);
+				fos.flush();
+			}
+			catch(IOException ex) {
+				throw new KryoException(ex);
+			}
+		}
+
+		@Override
+		public RowMatrixBlock read(Kryo kryo, Input input, Class<RowMatrixBlock> type) {
+			try {
+				RowMatrixBlock rmb = new RowMatrixBlock();
+				rmb.readHeaderAndPayload(getInputStream(input));
+				return rmb;
+			}
+			catch(IOException ex) {
+				throw new KryoException(ex);
+			}
+		}
+	}
+
+	/**
+	 * Base serializer with reusable buffered data input and output streams,
+	 * which avoids the allocation of stream buffers per serialized object.
+	 */
+	private static abstract class BufferedSerializer<T> extends Serializer<T>
+	{
+		private ReusableDataOutputStream _fos = null;
+		private ReusableDataInputStream _fis = null;
+
+		protected FastBufferedDataOutputStream getOutputStream(Output output) {
+			if( _fos == null )
+				_fos = new ReusableDataOutputStream(output);
+			else
+				_fos.setOutput(output);
+			return _fos;
+		}
+
+		protected FastBufferedDataInputStream getInputStream(Input input) {
+			if( _fis == null )
+				_fis = new ReusableDataInputStream(input);
+			else
+				_fis.setInput(input);
+			return _fis;
+		}
+	}
+
+	private static class ReusableDataOutputStream extends FastBufferedDataOutputStream
+	{
+		public ReusableDataOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		public void setOutput(OutputStream out) {
+			this.out = out;
+		}
+	}
+
+	private static class ReusableDataInputStream extends FastBufferedDataInputStream
+	{
+		public ReusableDataInputStream(InputStream in) {
+			super(in);
+		}
+
+		public void setInput(InputStream in) {
+			this.in = in;
+		}
+	}
+}
@@ -19,20 +19,32 @@
 
 package org.apache.sysml.runtime.instructions.spark.utils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.function.Function;
 import org.apache.spark.api.java.function.Function2;
+import org.apache.spark.api.java.function.PairFlatMapFunction;
+
+import scala.Tuple2;
 
+import org.apache.sysml.hops.OptimizerUtils;
 import org.apache.sysml.lops.PartialAggregate.CorrectionLocationType;
 import org.apache.sysml.runtime.DMLRuntimeException;
 import org.apache.sysml.runtime.functionobjects.KahanPlus;
+import org.apache.sysml.runtime.functionobjects.Plus;
 import org.apache.sysml.runtime.instructions.cp.KahanObject;
 import org.apache.sysml.runtime.instructions.spark.data.CorrMatrixBlock;
 import org.apache.sysml.runtime.instructions.spark.data.RowMatrixBlock;
+import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
 import org.apache.sysml.runtime.matrix.data.MatrixBlock;
 import org.apache.sysml.runtime.matrix.data.MatrixIndexes;
 import org.apache.sysml.runtime.matrix.data.OperationsOnMatrixValues;
 import org.apache.sysml.runtime.matrix.operators.AggregateOperator;
+import org.apache.sysml.runtime.matrix.operators.BinaryOperator;
 
 /**
  * Collection of utility methods for aggregating binary block rdds. As a general
@@ -44,10 +56,26 @@ import org.apache.sysml.runtime.matrix.operators.AggregateOperator;
 public class RDDAggregateUtils 
 {
 	
-	//internal configuration to use tree aggregation (treeReduce w/ depth=2),
-	//this is currently disabled because it was 2x slower than a simple
-	//single-block reduce due to additional overhead for shuffling 
-	private static final boolean TREE_AGGREGATION = false; 
+	//internal configuration to use tree aggregation (treeReduce w/ given depth) for 
+	//single-block aggregates; by default (-1), the use of tree aggregation and its depth 
+	//is decided per operation according to the number of partitions and the output size 
+	//because for small aggregates over moderate numbers of partitions, tree aggregation was
+	//2x slower than a simple single-block reduce due to additional overhead for shuffling;
+	//a depth of 0 or 1 disables tree aggregation, while >=2 forces the given depth.
+	public static int TREE_AGGREGATION_DEPTH = -1; 
+	
+	//thresholds for automatic tree aggregation, where the driver receives and merges
+	//one partial aggregate per partition with a simple single-block reduce
+	private static final int TREE_AGGREGATION_MIN_PARTITIONS = 2048;
+	private static final long TREE_AGGREGATION_MAX_DRIVER_SIZE = 1024*1024*1024; //1GB
+	private static final int TREE_AGGREGATION_MAX_DEPTH = 4;
+	
+	//internal configuration for partition-local pre-aggregation in sum by key, which 
+	//folds the corrections into the partial aggregates before shuffle (and hence, halves
+	//the shuffle size over passing correction blocks along) but keeps all distinct output 
+	//blocks of a partition in memory (max budget of worst-case output size per task)
+	public static boolean PARTITION_PREAGGREGATION = true;
+	private static final long PARTITION_PREAGGREGATION_MAX_SIZE = 128*1024*1024; //128MB
 	
 	/**
 	 * 
@@ -55,11 +83,25 @@ public class RDDAggregateUtils
 	 * @return
 	 */
 	public static MatrixBlock sumStable( JavaPairRDD<MatrixIndexes, MatrixBlock> in )
+	{
+		return sumStable(null, in);
+	}
+	
+	/**
+	 * 
+	 * @param mcOut output matrix characteristics, used to decide on tree aggregation
+	 * @param in
+	 * @return
+	 */
+	public static MatrixBlock sumStable( MatrixCharacteristics mcOut, JavaPairRDD<MatrixIndexes, MatrixBlock> in )
 	{
 		//stable sum of all blocks with correction block per function instance
-		if( TREE_AGGREGATION ) {
+		//(in tree aggregation each reduce task merges exactly one key, which
+		//ensures consistent corrections per function instance)
+		int depth = getTreeAggregationDepth(mcOut, in.partitions().size());
+		if( depth >= 2 ) {
 			return in.values().treeReduce( 
-					new SumSingleBlockFunction() );	
+					new SumSingleBlockFunction(), depth );	
 		}
 		else { //DEFAULT
 			return in.values().reduce( 
@@ -98,6 +140,24 @@ public class RDDAggregateUtils
 	 */
 	public static JavaPairRDD<MatrixIndexes, MatrixBlock> sumByKeyStable( JavaPairRDD<MatrixIndexes, MatrixBlock> in )
 	{
+		return sumByKeyStable(null, in);
+	}
+	
+	/**
+	 * 
+	 * @param mcOut output matrix characteristics, used to decide on partition-local pre-aggregation
+	 * @param in
+	 * @return
+	 */
+	public static JavaPairRDD<MatrixIndexes, MatrixBlock> sumByKeyStable( MatrixCharacteristics mcOut, JavaPairRDD<MatrixIndexes, MatrixBlock> in )
+	{
+		//partition-local stable pre-aggregation with folded corrections (if applicable),
+		//which preserves the partitioning because keys remain unchanged
+		if( isPartitionPreAggregationApplicable(mcOut) ) {
+			in = in.mapPartitionsToPair(
+					new SumPartitionLocalFunction(), true);
+		}
+		
 		//stable sum of blocks per key, by passing correction blocks along with aggregates 		
 		JavaPairRDD<MatrixIndexes, CorrMatrixBlock> tmp = 
 				in.combineByKey( new CreateBlockCombinerFunction(), 
@@ -162,10 +222,29 @@ public class RDDAggregateUtils
 	 * @return
 	 */
 	public static MatrixBlock aggStable( JavaPairRDD<MatrixIndexes, MatrixBlock> in, AggregateOperator aop )
+	{
+		return aggStable(null, in, aop);
+	}
+	
+	/**
+	 * 
+	 * @param mcOut output matrix characteristics, used to decide on tree aggregation
+	 * @param in
+	 * @param aop
+	 * @return
+	 */
+	public static MatrixBlock aggStable( MatrixCharacteristics mcOut, JavaPairRDD<MatrixIndexes, MatrixBlock> in, AggregateOperator aop )
 	{
 		//stable aggregate of all blocks with correction block per function instance
-		return in.values().reduce( 
-				new AggregateSingleBlockFunction(aop) );
+		int depth = getTreeAggregationDepth(mcOut, in.partitions().size());
+		if( depth >= 2 ) {
+			return in.values().treeReduce( 
+					new AggregateSingleBlockFunction(aop), depth );
+		}
+		else { //DEFAULT
+			return in.values().reduce( 
+					new AggregateSingleBlockFunction(aop) );
+		}
 	}
 	
 	/**
@@ -271,6 +350,105 @@ public class RDDAggregateUtils
 							    new MergeRowBlockCombinerFunction() );
 	}
 	
+	/**
+	 * Obtains the depth of tree aggregation for single-block aggregates. A simple reduce 
+	 * sends one partial aggregate per partition to the driver, which merges them serially. 
+	 * Hence, we use tree aggregation only if the number of partitions or the total size of 
+	 * partial aggregates exceeds the driver thresholds, and pick the smallest depth whose 
+	 * final fan-in (roughly the depth-th root of the number of partitions) satisfies both.
+	 * 
+	 * @param mcOut output matrix characteristics (or null if unknown)
+	 * @param numParts number of input partitions
+	 * @return tree aggregation depth (values below 2 indicate a simple reduce)
+	 */
+	public static int getTreeAggregationDepth( MatrixCharacteristics mcOut, int numParts )
+	{
+		//forced configuration (incl disabled tree aggregation)
+		if( TREE_AGGREGATION_DEPTH >= 0 )
+			return TREE_AGGREGATION_DEPTH;
+		
+		//worst-case size of partial aggregate (0 if unknown, i.e., decision on partitions only)
+		long size = (mcOut != null && mcOut.dimsKnown()) ? 
+				OptimizerUtils.estimateSize(mcOut.getRows(), mcOut.getCols()) : 0;
+		
+		//simple reduce for moderate number of partitions and partial aggregates
+		if( numParts < TREE_AGGREGATION_MIN_PARTITIONS 
+			&& (double)numParts * size <= TREE_AGGREGATION_MAX_DRIVER_SIZE ) {
+			return 1;
+		}
+		
+		//smallest depth with acceptable fan-in at the driver
+		for( int depth=2; depth<TREE_AGGREGATION_MAX_DEPTH; depth++ ) {
+			double fanin = Math.ceil(Math.pow(numParts, 1.0/depth));
+			if( fanin < TREE_AGGREGATION_MIN_PARTITIONS 
+				&& fanin * size <= TREE_AGGREGATION_MAX_DRIVER_SIZE ) {
+				return depth;
+			}
+		}
+		
+		return TREE_AGGREGATION_MAX_DEPTH;
+	}
+	
+	/**
+	 * Indicates if partition-local pre-aggregation is applicable for sum by key, which
+	 * requires known output dimensions in order to bound the size of the local aggregates.
+	 * 
+	 * @param mcOut output matrix characteristics (or null if unknown)
+	 * @return
+	 */
+	private static boolean isPartitionPreAggregationApplicable( MatrixCharacteristics mcOut )
+	{
+		return PARTITION_PREAGGREGATION 
+			&& mcOut != null && mcOut.dimsKnown()
+			&& OptimizerUtils.estimateSize(mcOut.getRows(), mcOut.getCols())
+			   <= PARTITION_PREAGGREGATION_MAX_SIZE;
+	}
+	
+	/**
+	 * This function aggregates all blocks of a partition per key via kahan+ with corrections,
+	 * and finally folds the corrections into the partial aggregates. The first block and key
+	 * are copied because the aggregation updates the partial aggregates in place and input
+	 * iterators (e.g., over hadoop sequence files) might reuse key and value objects.
+	 * 
+	 */
+	private static class SumPartitionLocalFunction implements PairFlatMapFunction<Iterator<Tuple2<MatrixIndexes, MatrixBlock>>, MatrixIndexes, MatrixBlock> 
+	{
+		private static final long serialVersionUID = -4738282960419548361L;
+		
+		private MergeSumBlockValueFunction _merge = new MergeSumBlockValueFunction();
+		private BinaryOperator _bop = new BinaryOperator(Plus.getPlusFnObject());
+		
+		@Override
+		public Iterable<Tuple2<MatrixIndexes, MatrixBlock>> call(Iterator<Tuple2<MatrixIndexes, MatrixBlock>> arg0)
+			throws Exception 
+		{
+			HashMap<MatrixIndexes, CorrMatrixBlock> agg = new HashMap<MatrixIndexes, CorrMatrixBlock>();
+			
+			//partition-local aggregation of blocks per key
+			while( arg0.hasNext() ) {
+				Tuple2<MatrixIndexes, MatrixBlock> tmp = arg0.next();
+				CorrMatrixBlock cmb = agg.get(tmp._1());
+				if( cmb == null )
+					agg.put(new MatrixIndexes(tmp._1()), new CorrMatrixBlock(new MatrixBlock(tmp._2())));
+				else
+					agg.put(tmp._1(), _merge.call(cmb, tmp._2()));
+			}
+			
+			//fold corrections into partial aggregates
+			ArrayList<Tuple2<MatrixIndexes, MatrixBlock>> ret = 
+					new ArrayList<Tuple2<MatrixIndexes, MatrixBlock>>(agg.size());
+			for( Entry<MatrixIndexes, CorrMatrixBlock> e : agg.entrySet() ) {
+				MatrixBlock value = e.getValue().getValue();
+				MatrixBlock corr = e.getValue().getCorrection();
+				if( corr != null && !corr.isEmptyBlock(false) )
+					value.binaryOperationsInPlace(_bop, corr);
+				ret.add(new Tuple2<MatrixIndexes, MatrixBlock>(e.getKey(), value));
+			}
+			
+			return ret;
+		}
+	}
+	
 	/**
 	 * 
 	 */
@@ -35,6 +35,7 @@ import scala.Tuple2;
 import org.apache.sysml.lops.Checkpoint;
 import org.apache.sysml.runtime.DMLRuntimeException;
 import org.apache.sysml.runtime.DMLUnsupportedOperationException;
+import org.apache.sysml.runtime.instructions.spark.data.BlockPartitioner;
 import org.apache.sysml.runtime.instructions.spark.functions.CopyBinaryCellFunction;
 import org.apache.sysml.runtime.instructions.spark.functions.CopyBlockFunction;
 import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
@@ -269,6 +270,29 @@ public class SparkUtils
 		return sc.parallelizePairs(list);
 	}
 	
+	/**
+	 * Indicates if the given rdd is partitioned by a known partitioner. Joins with such
+	 * an rdd do not shuffle it (and also not the other input if co-partitioned), and 
+	 * key-preserving operations like mapValues retain its partitioning.
+	 * 
+	 * @param in
+	 * @return
+	 */
+	public static boolean isPartitioned( JavaPairRDD<?,?> in ) {
+		return in.partitioner().isPresent();
+	}
+	
+	/**
+	 * Indicates if the given rdd is partitioned by our tile-based block partitioner.
+	 * 
+	 * @param in
+	 * @return
+	 */
+	public static boolean isBlockPartitioned( JavaPairRDD<?,?> in ) {
+		return in.partitioner().isPresent() 
+			&& in.partitioner().get() instanceof BlockPartitioner;
+	}
+	
 	/**
 	 * 
 	 * @param input
@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.runtime.lineage;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map.Entry;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import org.apache.sysml.conf.ConfigurationManager;
+import org.apache.sysml.parser.Expression.DataType;
+import org.apache.sysml.runtime.DMLRuntimeException;
+import org.apache.sysml.runtime.controlprogram.caching.CacheableData;
+import org.apache.sysml.runtime.controlprogram.caching.MatrixObject;
+import org.apache.sysml.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysml.runtime.controlprogram.parfor.stat.InfrastructureAnalyzer;
+import org.apache.sysml.runtime.instructions.Instruction;
+import org.apache.sysml.runtime.instructions.cp.ComputationCPInstruction;
+import org.apache.sysml.runtime.instructions.cp.Data;
+import org.apache.sysml.runtime.instructions.cp.DataGenCPInstruction;
+import org.apache.sysml.runtime.instructions.cp.DataPartitionCPInstruction;
+import org.apache.sysml.runtime.instructions.cp.MultiReturnBuiltinCPInstruction;
+import org.apache.sysml.runtime.instructions.cp.ScalarObject;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.utils.Statistics;
+
+/**
+ * Lineage tracing of CP instruction outputs and bounded reuse cache of the results 
+ * of expensive instructions. The lineage of an instruction output is derived from 
+ * the instruction opcode, its literal parameters, the values of scalar inputs, and 
+ * the lineage of matrix inputs, where the lineage of matrix variables is attached to 
+ * the matrix objects and hence naturally passed through copies and function calls. 
+ * Instructions with unknown input lineage (e.g., outputs of MR/Spark jobs that are 
+ * not persistent, or in-memory inputs of JMLC) are not traced.
+ * 
+ * The cache shares the budget basis of the buffer pool and keeps its blocks as soft 
+ * references like the in-memory cache of matrix objects, i.e., entries are cleared 
+ * under memory pressure before pinned data is affected. On exceeded budget, entries
+ * are evicted in order of their compute time savings per byte. Cached blocks are private
+ * copies that are never bound to matrix objects (but copied on reuse), because the
+ * buffer pool changes the representation of blocks in place (e.g., on serialization).
+ * 
+ */
+public class LineageCache 
+{
+	private static final Log LOG = LogFactory.getLog(LineageCache.class.getName());
+	
+	//max height of lineage traces (to bound the size of traces in long-running loops)
+	public static final int MAX_LINEAGE_HEIGHT = 1024;
+	
+	//min compute time of cached results [in nano sec]
+	public static final long MIN_COMPUTE_TIME = 1000000;
+	
+	//expensive instructions whose results are subject to caching
+	private static final HashSet<String> REUSE_OPCODES = new HashSet<String>();
+	static {
+		REUSE_OPCODES.add("ba+*");
+		REUSE_OPCODES.add("tsmm");
+		REUSE_OPCODES.add("mmchain");
+		REUSE_OPCODES.add("pmm");
+		REUSE_OPCODES.add("solve");
+		REUSE_OPCODES.add("inverse");
+		REUSE_OPCODES.add("cholesky");
+		REUSE_OPCODES.add("r'");
+		REUSE_OPCODES.add("uack+");
+		REUSE_OPCODES.add("uark+");
+		REUSE_OPCODES.add("uacmean");
+		REUSE_OPCODES.add("uarmean");
+	}
+	
+	private static final HashMap<LineageItem, CacheEntry> _cache = new HashMap<LineageItem, CacheEntry>();
+	private static long _size = 0; //in bytes
+	
+	/**
+	 * Obtains the lineage of the output of the given instruction, which is only 
+	 * defined for deterministic CP instructions with matrix output and known input
+	 * lineage. Must be called before instruction execution.
+	 * 
+	 * @param inst
+	 * @param ec
+	 * @return lineage item, or null if not traceable
+	 */
+	public static LineageItem getLineageItem( Instruction inst, ExecutionContext ec ) 
+	{
+		if( !(inst instanceof ComputationCPInstruction)
+			|| inst instanceof MultiReturnBuiltinCPInstruction
+			|| inst instanceof DataPartitionCPInstruction
+			|| (inst instanceof DataGenCPInstruction && (inst.getOpcode().equals("rand") 
+				|| inst.getOpcode().equals("sample"))) )
+		{
+			return null;
+		}
+		
+		ComputationCPInstruction cinst = (ComputationCPInstruction) inst;
+		if( cinst.output == null || cinst.output.getDataType() != DataType.MATRIX )
+			return null;
+		
+		//create lineage of all operands except the output
+		String[] parts = inst.toString().split(Instruction.OPERAND_DELIM);
+		LineageItem[] inputs = new LineageItem[parts.length-2];
+		for( int i=2; i<parts.length; i++ ) 
+		{
+			String[] opr = parts[i].split(Instruction.VALUETYPE_PREFIX);
+			if( opr.length < 3 ) {
+				//plain instruction parameter
+				inputs[i-2] = new LineageItem(LineageItem.LITERAL_OPCODE, parts[i]);
+			}
+			else if( opr.length == 4 && Boolean.parseBoolean(opr[3]) ) {
+				//literal operand
+				inputs[i-2] = new LineageItem(LineageItem.LITERAL_OPCODE, opr[2]+":"+opr[0]);
+			}
+			else if( opr[0].equals(cinst.output.getName()) ) {
+				inputs[i-2] = new LineageItem(LineageItem.LITERAL_OPCODE, "out");
+			}
+			else {
+				//variable operand (scalars by value, matrices by lineage)
+				Data dat = ec.getVariable(opr[0]);
+				if( dat instanceof ScalarObject ) {
+					ScalarObject so = (ScalarObject) dat;
+					inputs[i-2] = new LineageItem(LineageItem.LITERAL_OPCODE, 
+						so.getValueType()+":"+so.getStringValue());
+				}
+				else if( dat instanceof MatrixObject )
+					inputs[i-2] = getLineageItem((MatrixObject)dat);
+				
+				if( inputs[i-2] == null || inputs[i-2].getHeight() >= MAX_LINEAGE_HEIGHT )
+					return null;
+			}
+		}
+		
+		return new LineageItem(parts[1], null, inputs);
+	}
+	
+	/**
+	 * Probes the cache for the given lineage and, if available, binds the cached 
+	 * result to the output variable of the given instruction.
+	 * 
+	 * @param inst
+	 * @param li
+	 * @param ec
+	 * @return true if the instruction output was obtained from the cache
+	 * @throws DMLRuntimeException
+	 */
+	public static boolean reuse( Instruction inst, LineageItem li, ExecutionContext ec ) 
+		throws DMLRuntimeException
+	{
+		if( !REUSE_OPCODES.contains(inst.getOpcode()) )
+			return false;
+		
+		MatrixBlock mb = null;
+		synchronized( _cache ) {
+			CacheEntry e = _cache.get(li);
+			if( e != null && (mb = e.getBlock()) == null )
+				removeEntry(li);
+		}
+		
+		if( mb != null ) {
+			//bind a copy of the private cached block
+			String varname = ((ComputationCPInstruction)inst).output.getName();
+			ec.setMatrixOutput(varname, new MatrixBlock(mb));
+			ec.getMatrixObject(varname).setLineage(li);
+			Statistics.incrementLineageCacheHits();
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Attaches the given lineage to the output of the executed instruction and
+	 * puts the result of expensive instructions into the cache.
+	 * 
+	 * @param inst
+	 * @param li
+	 * @param ec
+	 * @param computeTime compute time of the instruction [in nano sec]
+	 * @throws DMLRuntimeException
+	 */
+	public static void put( Instruction inst, LineageItem li, ExecutionContext ec, long computeTime ) 
+		throws DMLRuntimeException
+	{
+		String varname = ((ComputationCPInstruction)inst).output.getName();
+		MatrixObject mo = ec.getMatrixObject(varname);
+		mo.setLineage(li);
+		
+		if( !REUSE_OPCODES.contains(inst.getOpcode()) || computeTime < MIN_COMPUTE_TIME )
+			return;
+		
+		//keep the block pinned while copying (no concurrent eviction)
+		MatrixBlock mb = mo.acquireRead();
+		try
+		{
+			long size = Math.max(mb.estimateSizeInMemory(), 1);
+			double score = (double)computeTime / size;
+			
+			synchronized( _cache ) 
+			{
+				long limit = getCacheLimit();
+				if( size > limit || _cache.containsKey(li) )
+					return;
+				
+				//evict entries with lower compute time savings per byte
+				while( _size + size > limit ) {
+					LineageItem victim = null;
+					double minScore = Double.MAX_VALUE;
+					for( Entry<LineageItem, CacheEntry> e : _cache.entrySet() ) {
+						double escore = (e.getValue().getBlock() != null) ? 
+							e.getValue().getScore() : -1; //cleared soft references first
+						if( escore < minScore ) {
+							minScore = escore;
+							victim = e.getKey();
+						}
+					}
+					if( victim == null || minScore >= score )
+						return; //no admission
+					removeEntry(victim);
+				}
+				
+				//cache a private copy of the output block
+				_cache.put(li, new CacheEntry(new MatrixBlock(mb), size, score));
+				_size += size;
+			}
+			
+			if( LOG.isTraceEnabled() )
+				LOG.trace("Cached result of "+inst.getOpcode()+" ("+size+" bytes, "+computeTime+" ns).");
+		}
+		finally {
+			mo.release();
+		}
+	}
+	
+	/**
+	 * Clears the cache, e.g., on changed input files outside the file system.
+	 */
+	public static void clear() 
+	{
+		synchronized( _cache ) {
+			_cache.clear();
+			_size = 0;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return
+	 */
+	public static long getCacheLimit() {
+		return (long)(CacheableData.CACHING_LINEAGE_SIZE * InfrastructureAnalyzer.getLocalMaxMemory());
+	}
+	
+	/**
+	 * Obtains the lineage of the given matrix object. Objects without lineage that 
+	 * are backed by an unmodified file (e.g., persistent reads) obtain a read item,
+	 * qualified by the file modification time and length in order to distinguish
+	 * different versions of the same file.
+	 * 
+	 * @param mo
+	 * @return lineage item, or null if unknown
+	 */
+	private static LineageItem getLineageItem( MatrixObject mo )
+	{
+		LineageItem ret = mo.getLineage();
+		
+		if( ret == null && !mo.isDirty() && mo.getFileName() != null ) {
+			try {
+				FileSystem fs = FileSystem.get(ConfigurationManager.getCachedJobConf());
+				Path path = new Path(mo.getFileName());
+				if( fs.exists(path) ) {
+					FileStatus fstat = fs.getFileStatus(path);
+					ret = new LineageItem(LineageItem.READ_OPCODE, mo.getFileName()
+						+":"+fstat.getModificationTime()+":"+fstat.getLen());
+					mo.setLineage(ret);
+				}
+			}
+			catch(Exception ex) {
+				LOG.warn("Failed to obtain file status of "+mo.getFileName()+".", ex);
+			}
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * 
+	 * @param li
+	 */
+	private static void removeEntry( LineageItem li ) {
+		CacheEntry e = _cache.remove(li);
+		if( e != null )
+			_size -= e.getSize();
+	}
+	
+	/**
+	 * Cached result with compute time savings per byte.
+	 */
+	private static class CacheEntry
+	{
+		private final SoftReference<MatrixBlock> _block;
+		private final long _size;
+		private final double _score;
+		
+		public CacheEntry( MatrixBlock block, long size, double score ) {
+			_block = new SoftReference<MatrixBlock>(block);
+			_size = size;
+			_score = score;
+		}
+		
+		public MatrixBlock getBlock() {
+			return _block.get();
+		}
+		
+		public long getSize() {
+			return _size;
+		}
+		
+		public double getScore() {
+			return _score;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.runtime.lineage;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Immutable node of a lineage trace, i.e., the opcode and literal data of an
+ * operation together with the lineage of its inputs. Leaf items represent
+ * literals (incl values of scalar variables) and reads of files. Two items are 
+ * equal if they describe the same computation, which allows for the reuse of 
+ * results across loop iterations or script executions. Since lineage traces are
+ * DAGs with shared sub-traces, the comparison memoizes pairs of items already 
+ * found equal in order to avoid exponential traversals.
+ * 
+ */
+public class LineageItem 
+{
+	public static final String LITERAL_OPCODE = "lit";
+	public static final String READ_OPCODE = "read";
+	
+	private final String _opcode;
+	private final String _data;
+	private final LineageItem[] _inputs;
+	private final int _height;
+	private final int _hash;
+	
+	public LineageItem( String opcode, String data ) {
+		this(opcode, data, new LineageItem[0]);
+	}
+	
+	public LineageItem( String opcode, String data, LineageItem[] inputs ) 
+	{
+		_opcode = opcode;
+		_data = data;
+		_inputs = inputs;
+		
+		//precompute height and hash code (to avoid repeated traversals)
+		int height = 0;
+		int hash = opcode.hashCode();
+		hash = 31 * hash + ((data != null) ? data.hashCode() : 0);
+		for( LineageItem in : inputs ) {
+			height = Math.max(height, in._height+1);
+			hash = 31 * hash + in._hash;
+		}
+		_height = height;
+		_hash = hash;
+	}
+	
+	public String getOpcode() {
+		return _opcode;
+	}
+	
+	public String getData() {
+		return _data;
+	}
+	
+	public LineageItem[] getInputs() {
+		return _inputs;
+	}
+	
+	public int getHeight() {
+		return _height;
+	}
+	
+	@Override
+	public int hashCode() {
+		return _hash;
+	}
+	
+	@Override
+	public boolean equals( Object o ) 
+	{
+		if( this == o )
+			return true;
+		if( !(o instanceof LineageItem) )
+			return false;
+		
+		return rEquals((LineageItem) o, 
+			new IdentityHashMap<LineageItem, Set<LineageItem>>());
+	}
+	
+	/**
+	 * 
+	 * @param that
+	 * @param memo pairs of items already found equal
+	 * @return
+	 */
+	private boolean rEquals( LineageItem that, IdentityHashMap<LineageItem, Set<LineageItem>> memo ) 
+	{
+		if( this == that )
+			return true;
+		
+		//compare local attributes
+		if( _hash != that._hash || _height != that._height 
+			|| _inputs.length != that._inputs.length
+			|| !_opcode.equals(that._opcode)
+			|| !(_data != null ? _data.equals(that._data) : that._data == null) )
+			return false;
+		
+		//probe memo of already compared sub-traces
+		Set<LineageItem> equal = memo.get(this);
+		if( equal != null && equal.contains(that) )
+			return true;
+		
+		//recursively compare inputs
+		for( int i=0; i<_inputs.length; i++ )
+			if( !_inputs[i].rEquals(that._inputs[i], memo) )
+				return false;
+		
+		if( equal == null ) {
+			equal = Collections.newSetFromMap(new IdentityHashMap<LineageItem, Boolean>());
+			memo.put(this, equal);
+		}
+		equal.add(that);
+		return true;
+	}
+	
+	@Override
+	public String toString() 
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(_opcode);
+		if( _data != null ) {
+			sb.append('[');
+			sb.append(_data);
+			sb.append(']');
+		}
+		if( _inputs.length > 0 ) {
+			sb.append('(');
+			for( int i=0; i<_inputs.length; i++ ) {
+				sb.append((i>0) ? "," : "");
+				sb.append(_inputs[i].toString());
+			}
+			sb.append(')');
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.runtime.matrix;
+
+import java.util.Arrays;
+
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.matrix.data.SparseRow;
+
+/**
+ * Lightweight structural sketch of a matrix, consisting of the number of
+ * non-zeros per row and per column. In contrast to the overall sparsity,
+ * these counts capture skew (e.g., few dense rows/columns in graph data)
+ * and hence allow for much more accurate sparsity estimates of matrix
+ * products. Sketches are immutable and created from in-memory sparse
+ * blocks or derived from the sketches of the inputs of an operation.
+ *
+ */
+public class MatrixSketch
+{
+	private final long _rlen;
+	private final long _clen;
+	private final long _nnz;
+	private final int[] _rnnz; //nnz per row
+	private final int[] _cnnz; //nnz per column
+
+	//summary statistics of row/column counts
+	private final int _nonEmptyRows;
+	private final int _nonEmptyCols;
+	private final int _maxRowNnz;
+	private final int _maxColNnz;
+
+	//lazily computed signature (immutable sketch)
+	private String _signature = null;
+
+	private MatrixSketch( long rlen, long clen, long nnz, int[] rnnz, int[] cnnz )
+	{
+		_rlen = rlen;
+		_clen = clen;
+		_nnz = nnz;
+		_rnnz = rnnz;
+		_cnnz = cnnz;
+
+		int nr = 0, mr = 0;
+		for( int i=0; i<rnnz.length; i++ ) {
+			nr += (rnnz[i]!=0) ? 1 : 0;
+			mr = Math.max(mr, rnnz[i]);
+		}
+		int nc = 0, mc = 0;
+		for( int j=0; j<cnnz.length; j++ ) {
+			nc += (cnnz[j]!=0) ? 1 : 0;
+			mc = Math.max(mc, cnnz[j]);
+		}
+		_nonEmptyRows = nr;
+		_nonEmptyCols = nc;
+		_maxRowNnz = mr;
+		_maxColNnz = mc;
+	}
+
+	public long getRows() {
+		return _rlen;
+	}
+
+	public long getCols() {
+		return _clen;
+	}
+
+	public long getNonZeros() {
+		return _nnz;
+	}
+
+	public int getNonEmptyRows() {
+		return _nonEmptyRows;
+	}
+
+	public int getNonEmptyCols() {
+		return _nonEmptyCols;
+	}
+
+	public int getMaxRowNnz() {
+		return _maxRowNnz;
+	}
+
+	public int getMaxColNnz() {
+		return _maxColNnz;
+	}
+
+	/**
+	 * Obtains a signature of this sketch, which is equal for sketches with
+	 * equal counts and used as part of cache keys of compiled plans.
+	 *
+	 * @return signature
+	 */
+	public String getSignature()
+	{
+		if( _signature == null ) {
+			_signature = _nnz+":"+_nonEmptyRows+":"+_nonEmptyCols+":"+_maxRowNnz
+				+":"+_maxColNnz+":"+Arrays.hashCode(_rnnz)+":"+Arrays.hashCode(_cnnz);
+		}
+		return _signature;
+	}
+
+	/**
+	 * Creates the sketch of the given matrix block. Sketches are only created
+	 * for non-empty blocks in sparse representation because (1) these counts
+	 * are cheaply available from the sparse rows, and (2) for dense inputs the
+	 * average-case estimates (or dense outputs) are already sufficiently accurate.
+	 *
+	 * @param mb
+	 * @return sketch, or null if not applicable
+	 */
+	public static MatrixSketch createSketch( MatrixBlock mb )
+	{
+		if( mb == null || !mb.isInSparseFormat() || mb.isEmptyBlock(false) )
+			return null;
+
+		int m = mb.getNumRows();
+		int n = mb.getNumColumns();
+		int[] rnnz = new int[m];
+		int[] cnnz = new int[n];
+		long nnz = 0;
+
+		SparseRow[] rows = mb.getSparseBlock();
+		for( int i=0; i<m && i<rows.length; i++ ) {
+			SparseRow row = rows[i];
+			if( row == null || row.isEmpty() )
+				continue;
+			int alen = row.size();
+			int[] aix = row.getIndexContainer();
+			rnnz[i] = alen;
+			for( int k=0; k<alen; k++ )
+				cnnz[aix[k]]++;
+			nnz += alen;
+		}
+
+		return new MatrixSketch(m, n, nnz, rnnz, cnnz);
+	}
+
+	/**
+	 * Creates the sketch of t(A) from the sketch of A.
+	 *
+	 * @param a
+	 * @return
+	 */
+	public static MatrixSketch createTransposeSketch( MatrixSketch a )
+	{
+		if( a == null )
+			return null;
+
+		return new MatrixSketch(a._clen, a._rlen, a._nnz, a._cnnz, a._rnnz);
+	}
+
+	/**
+	 * Derives the sketch of A %*% B from the sketches of A and B, by scaling the
+	 * row counts of A and column counts of B to the estimated number of non-zeros.
+	 *
+	 * @param a
+	 * @param b
+	 * @return sketch, or null if not applicable
+	 */
+	public static MatrixSketch createMatMultSketch( MatrixSketch a, MatrixSketch b )
+	{
+		if( a == null || b == null || a._clen != b._rlen )
+			return null;
+
+		long nnz = estimateMatMultNnz(a, b);
+		int[] rnnz = scaleCounts(a._rnnz, (double)nnz/a._nnz, b._clen);
+		int[] cnnz = scaleCounts(b._cnnz, (double)nnz/b._nnz, a._rlen);
+
+		return new MatrixSketch(a._rlen, b._clen, nnz, rnnz, cnnz);
+	}
+
+	/**
+	 * Estimates the number of non-zeros of A %*% B. The estimate is exact (w/o
+	 * cancellation) if all rows of A or all columns of B have at most one non-zero.
+	 * Otherwise, each outer product A[,k] %*% B[k,] is assumed to be uniformly
+	 * distributed over the output area spanned by non-empty rows of A and
+	 * non-empty columns of B, bounded by the total number of scalar products.
+	 *
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static long estimateMatMultNnz( MatrixSketch a, MatrixSketch b )
+	{
+		//total number of scalar products (upper bound)
+		double prods = getMatMultProducts(a, b);
+
+		//exact for selection / permutation-like matrices
+		if( a._maxRowNnz <= 1 || b._maxColNnz <= 1 )
+			return (long) prods;
+
+		//average case within non-empty output area
+		double area = (double)a._nonEmptyRows * b._nonEmptyCols;
+		if( area <= 0 )
+			return 0;
+		double lnEmpty = 0;
+		for( int k=0; k<a._cnnz.length; k++ ) {
+			double p = (double)a._cnnz[k] * b._rnnz[k] / area;
+			if( p >= 1 )
+				return (long) area;
+			lnEmpty += Math.log1p(-p);
+		}
+		double nnz = area * (1 - Math.exp(lnEmpty));
+
+		return (long) Math.ceil(Math.min(nnz, prods));
+	}
+
+	/**
+	 * Obtains the exact number of non-zero scalar products of A %*% B, 
+	 * which is an upper bound of the output non-zeros and a measure of 
+	 * the compute costs of sparse matrix multiplication.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static double getMatMultProducts( MatrixSketch a, MatrixSketch b )
+	{
+		double prods = 0;
+		for( int k=0; k<a._cnnz.length; k++ )
+			prods += (double)a._cnnz[k] * b._rnnz[k];
+		return prods;
+	}
+
+	/**
+	 *
+	 * @param counts
+	 * @param scale
+	 * @param max
+	 * @return
+	 */
+	private static int[] scaleCounts( int[] counts, double scale, long max )
+	{
+		int[] ret = new int[counts.length];
+		for( int i=0; i<counts.length; i++ )
+			if( counts[i] > 0 && scale > 0 )
+				ret[i] = (int) Math.min(max, Math.max(1, Math.round(counts[i]*scale)));
+		return ret;
+	}
+}
@@ -173,6 +173,68 @@ public class MatrixBlock extends MatrixValue implements Externalizable
 		this.copy(that);
 	}
 	
+	/**
+	 * Creates a dense matrix block that wraps the given row-major array 
+	 * of length rl*cl, without copying it (in contrast to the CSR constructor). 
+	 * Hence, the block and the array share the same data: the caller must not 
+	 * modify the array as long as the matrix block is in use, and in-place 
+	 * updates of the block are visible in the array.
+	 * 
+	 * @param rl
+	 * @param cl
+	 * @param arr
+	 */
+	public MatrixBlock(int rl, int cl, double[] arr)
+	{
+		this(rl, cl, false);
+		denseBlock = arr;
+		recomputeNonZeros();
+	}
+	
+	/**
+	 * Creates a sparse matrix block from the given CSR representation
+	 * (row pointers of length rl+1, and column indexes sorted per row), 
+	 * which is directly copied into the sparse rows without intermediate
+	 * dense representation or per-cell appends. Explicit zeros are skipped,
+	 * and the representation is finally adjusted to the actual sparsity.
+	 * 
+	 * @param rl
+	 * @param cl
+	 * @param rowPtr
+	 * @param colIdx
+	 * @param vals
+	 * @throws DMLRuntimeException
+	 */
+	public MatrixBlock(int rl, int cl, int[] rowPtr, int[] colIdx, double[] vals) 
+		throws DMLRuntimeException
+	{
+		this(rl, cl, true);
+		sparseBlock = new SparseRow[rl];
+		for( int i=0; i<rl; i++ ) {
+			int apos = rowPtr[i];
+			int alen = rowPtr[i+1] - apos;
+			if( alen > 0 ) {
+				SparseRow row = new SparseRow(alen);
+				int[] cix = row.getIndexContainer();
+				double[] cvals = row.getValueContainer();
+				int pos = 0;
+				for( int k=apos; k<apos+alen; k++ )
+					if( vals[k] != 0 ) {
+						cix[pos] = colIdx[k];
+						cvals[pos++] = vals[k];
+					}
+				if( pos > 0 ) {
+					row.setSize(pos);
+					sparseBlock[i] = row;
+					nonZeros += pos;
+				}
+			}
+		}
+		
+		//convert to dense if necessary
+		examSparsity();
+	}
+	
 	////////
 	// Initialization methods
 	// (reset, init, allocate, etc)
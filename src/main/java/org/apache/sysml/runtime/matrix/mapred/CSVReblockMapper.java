@@ -118,6 +118,40 @@ public class CSVReblockMapper extends MapperBase implements Mapper<LongWritable,
 		return row;
 	}
 	
+	/**
+	 * Variant of processRow for an already parsed row, given as a 1 x clen
+	 * matrix block (e.g., from fused transform apply).
+	 * 
+	 * @param row
+	 * @param cells
+	 * @param rowOffset
+	 * @param num
+	 * @param outTag
+	 * @param brlen
+	 * @param bclen
+	 * @param out
+	 * @return
+	 * @throws IOException
+	 */
+	public static IndexedBlockRow processRow(IndexedBlockRow row, MatrixBlock cells, long rowOffset, long num, byte outTag, int brlen, int bclen, OutputCollector<TaggedFirstSecondIndexes, BlockRow> out) throws IOException
+	{
+		row.getIndexes().setTag(outTag);
+		long rowIndex=UtilFunctions.blockIndexCalculation(rowOffset+num+1, brlen);
+		row.getRow().indexInBlock=UtilFunctions.cellInBlockCalculation(rowOffset+num+1, brlen);
+		
+		int clen = cells.getNumColumns();
+		for(int start=0, col=0; start<clen; start+=bclen, col++)
+		{
+			int lbclen = Math.min(bclen, clen-start);
+			row.getRow().data.reset(1, lbclen);
+			row.getIndexes().setIndexes(rowIndex, col+1);
+			for(int k=0; k<lbclen; k++)
+				row.getRow().data.appendValue(0, k, cells.quickGetValue(0, start+k));
+			out.collect(row.getIndexes(), row.getRow());
+		}
+		return row;
+	}
+	
 	@Override
 	public void map(LongWritable key, Text value,
 			OutputCollector<TaggedFirstSecondIndexes, BlockRow> out, Reporter reporter)
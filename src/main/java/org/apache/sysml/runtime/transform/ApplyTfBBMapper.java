@@ -39,6 +39,7 @@ import org.apache.sysml.runtime.DMLRuntimeException;
 import org.apache.sysml.runtime.instructions.mr.CSVReblockInstruction;
 import org.apache.sysml.runtime.matrix.CSVReblockMR;
 import org.apache.sysml.runtime.matrix.CSVReblockMR.OffsetCount;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
 import org.apache.sysml.runtime.matrix.data.TaggedFirstSecondIndexes;
 import org.apache.sysml.runtime.matrix.mapred.CSVReblockMapper;
 import org.apache.sysml.runtime.matrix.mapred.CSVReblockMapper.IndexedBlockRow;
@@ -53,6 +54,7 @@ public class ApplyTfBBMapper extends MapperBase implements Mapper<LongWritable,
 	
 	// variables relevant to CSV Reblock
 	private IndexedBlockRow idxRow = null;
+	private MatrixBlock tfRow = null; // output row of fused apply
 	private long rowOffset=0;
 	private HashMap<Long, Long> offsetMap=new HashMap<Long, Long>();
 	private boolean _first = true;
@@ -95,6 +97,7 @@ public class ApplyTfBBMapper extends MapperBase implements Mapper<LongWritable,
 			
 			//always dense since common csv usecase
 			idxRow.getRow().data.reset(1, maxBclen, false);		
+			tfRow = new MatrixBlock(1, tfmapper.getNumFusedApplyColumns(), false);
 
 		} catch (IOException e) { throw new RuntimeException(e); }
  		 catch(JSONException e)  { throw new RuntimeException(e); }
@@ -123,13 +126,14 @@ public class ApplyTfBBMapper extends MapperBase implements Mapper<LongWritable,
 		
 		if(!tfmapper.omit(words))
 		{
-			words = tfmapper.apply(words);
 			try {
-				tfmapper.check(words);
+				// Fused apply into a single output row (w/o intermediate strings)
+				CSVReblockInstruction ins = csv_reblock_instructions.get(0).get(0);
+				tfRow.reset(1, tfRow.getNumColumns(), false);
+				tfmapper.apply(words, tfRow, 0, ins.fill, ins.fillValue);
 				
 				// Perform CSV Reblock
-				CSVReblockInstruction ins = csv_reblock_instructions.get(0).get(0);
-				idxRow = CSVReblockMapper.processRow(idxRow, words, rowOffset, num, ins.output, ins.brlen, ins.bclen, ins.fill, ins.fillValue, out);
+				idxRow = CSVReblockMapper.processRow(idxRow, tfRow, rowOffset, num, ins.output, ins.brlen, ins.bclen, out);
 			}
 			catch(DMLRuntimeException e) {
 				throw new RuntimeException(e.getMessage() + ":" + rawValue.toString());
@@ -50,15 +50,19 @@ public class BinAgent extends TransformationAgent {
 	public static final String MIN_PREFIX = "min";
 	public static final String MAX_PREFIX = "max";
 	public static final String NBINS_PREFIX = "nbins";
+	public static final String QUANTILES_PREFIX = "quantiles";
 
 	private int[] _binList = null;
-	//private byte[] _binMethodList = null;	// Not used, since only equi-width is supported for now. 
+	private byte[] _binMethodList = null;	// 1: equi-width, 2: equi-height
 	private int[] _numBins = null;
 
 	private double[] _min=null, _max=null;	// min and max among non-missing values
 
 	private double[] _binWidths = null;		// width of a bin for each attribute
 	
+	private QuantileSketch[] _sketches = null;	// quantile sketches for equi-height attributes (null otherwise)
+	private double[][] _binBounds = null;		// upper bin boundaries for equi-height attributes (null otherwise)
+	
 	BinAgent() { }
 	
 	BinAgent(JSONObject parsedSpec) throws JSONException {
@@ -69,15 +73,17 @@ public class BinAgent extends TransformationAgent {
 		JSONObject obj = (JSONObject) parsedSpec.get(TX_METHOD.BIN.toString());
 		
 		JSONArray attrs = (JSONArray) obj.get(JSON_ATTRS);
-		//JSONArray mthds = (JSONArray) obj.get(JSON_MTHD);
+		JSONArray mthds = obj.containsKey(JSON_MTHD) ? (JSONArray) obj.get(JSON_MTHD) : null;
 		JSONArray nbins = (JSONArray) obj.get(JSON_NBINS);
 			
 		assert(attrs.size() == nbins.size());
 			
 		_binList = new int[attrs.size()];
+		_binMethodList = new byte[attrs.size()];
 		_numBins = new int[attrs.size()];
 		for(int i=0; i < _binList.length; i++) {
 			_binList[i] = UtilFunctions.toInt(attrs.get(i));
+			_binMethodList[i] = (mthds != null) ? ((Number) mthds.get(i)).byteValue() : 1;
 			_numBins[i] = UtilFunctions.toInt(nbins.get(i)); 
 		}
 		
@@ -88,6 +94,14 @@ public class BinAgent extends TransformationAgent {
 		Arrays.fill(_max, -Double.MAX_VALUE);
 		
 		_binWidths = new double[_binList.length];
+		
+		// quantile sketches for equi-height binning, computed in the same 
+		// single pass as min/max (instead of an exact sort of the column)
+		_sketches = new QuantileSketch[_binList.length];
+		_binBounds = new double[_binList.length][];
+		for(int i=0; i < _binList.length; i++)
+			if( _binMethodList[i] == 2 )
+				_sketches[i] = new QuantileSketch();
 	}
 	
 	public void prepare(String[] words, TfUtils agents) {
@@ -100,15 +114,42 @@ public class BinAgent extends TransformationAgent {
 			String w = null;
 			double d = 0;
 				
-			// equi-width
 			w = UtilFunctions.unquote(words[colID-1].trim());
-			if(!agents.isNA(w)) {
+			if(!agents.isNA(w)) 
 				d = UtilFunctions.parseToDouble(w);
-				if(d < _min[i])
-					_min[i] = d;
-				if(d > _max[i])
-					_max[i] = d;
+			else {
+				// missing values imputed with a constant contribute to both 
+				// min/max and quantiles (all other missing values are ignored)
+				MVImputeAgent mvagent = agents.getMVImputeAgent();
+				if ( mvagent.isImputed(colID) == -1 || mvagent.getMethod(colID) != MVMethod.CONSTANT )
+					continue;
+				d = UtilFunctions.parseToDouble(mvagent.getReplacement(colID));
 			}
+			
+			if(d < _min[i])
+				_min[i] = d;
+			if(d > _max[i])
+				_max[i] = d;
+			if( _sketches[i] != null )
+				_sketches[i].add(d);
+		}
+	}
+	
+	/**
+	 * Merges the partial min/max values and quantile sketches of the given agent, 
+	 * constructed over a disjoint set of rows, into this agent.
+	 * 
+	 * @param that
+	 */
+	void mergeTfMtd(BinAgent that) {
+		if ( _binList == null )
+			return;
+		
+		for(int i=0; i <_binList.length; i++) {
+			_min[i] = Math.min(_min[i], that._min[i]);
+			_max[i] = Math.max(_max[i], that._max[i]);
+			if( _sketches[i] != null )
+				_sketches[i].merge(that._sketches[i]);
 		}
 	}
 	
@@ -127,6 +168,11 @@ public class BinAgent extends TransformationAgent {
 		return  new DistinctValue(s, -1L);
 	}
 	
+	private DistinctValue prepQuantilesOutput(int idx) throws CharacterCodingException {
+		String s =  QUANTILES_PREFIX + _sketches[idx].encode();
+		return  new DistinctValue(s, -1L);
+	}
+	
 	/**
 	 * Method to output transformation metadata from the mappers. 
 	 * This information is collected and merged by the reducers.
@@ -147,6 +193,8 @@ public class BinAgent extends TransformationAgent {
 				out.collect(iw,  prepMinOutput(i));
 				out.collect(iw,  prepMaxOutput(i));
 				out.collect(iw,  prepNBinsOutput(i));
+				if( _sketches[i] != null )
+					out.collect(iw,  prepQuantilesOutput(i));
 			}
 		} catch(Exception e) {
 			throw new IOException(e);
@@ -165,6 +213,8 @@ public class BinAgent extends TransformationAgent {
 				list.add( new Tuple2<Integer,DistinctValue>(iw, prepMinOutput(i)) );
 				list.add( new Tuple2<Integer,DistinctValue>(iw, prepMaxOutput(i)) );
 				list.add( new Tuple2<Integer,DistinctValue>(iw, prepNBinsOutput(i)) );
+				if( _sketches[i] != null )
+					list.add( new Tuple2<Integer,DistinctValue>(iw, prepQuantilesOutput(i)) );
 			}
 		} catch(Exception e) {
 			throw new IOException(e);
@@ -172,11 +222,36 @@ public class BinAgent extends TransformationAgent {
 		return list;
 	}
 
-	private void writeTfMtd(int colID, String min, String max, String binwidth, String nbins, String tfMtdDir, FileSystem fs, TfUtils agents) throws IOException 
+	/**
+	 * Writes the bin metadata of a single column, in the format colID,min,max,binwidth,nbins 
+	 * for equi-width binning, followed by the upper boundaries of the first nbins-1 bins 
+	 * (approximate quantiles) for equi-height binning. 
+	 * 
+	 * @param colID
+	 * @param min
+	 * @param max
+	 * @param binwidth
+	 * @param nbins
+	 * @param sketch quantile sketch, or null for equi-width binning
+	 * @param tfMtdDir
+	 * @param fs
+	 * @param agents
+	 * @throws IOException
+	 */
+	static void writeTfMtd(int colID, String min, String max, String binwidth, String nbins, QuantileSketch sketch, String tfMtdDir, FileSystem fs, TfUtils agents) throws IOException 
 	{
 		Path pt = new Path(tfMtdDir+"/Bin/"+ agents.getName(colID) + BIN_FILE_SUFFIX);
 		BufferedWriter br=new BufferedWriter(new OutputStreamWriter(fs.create(pt,true)));
-		br.write(colID + TXMTD_SEP + min + TXMTD_SEP + max + TXMTD_SEP + binwidth + TXMTD_SEP + nbins + "\n");
+		br.write(colID + TXMTD_SEP + min + TXMTD_SEP + max + TXMTD_SEP + binwidth + TXMTD_SEP + nbins);
+		if( sketch != null ) {
+			int k = UtilFunctions.parseToInt(nbins);
+			double[] qs = new double[k-1];
+			for( int j=0; j<k-1; j++ )
+				qs[j] = (double)(j+1)/k;
+			for( double b : sketch.getQuantiles(qs) )
+				br.write(TXMTD_SEP + Double.toString(b));
+		}
+		br.write("\n");
 		br.close();
 	}
 
@@ -192,6 +267,7 @@ public class BinAgent extends TransformationAgent {
 		double min = Double.MAX_VALUE;
 		double max = -Double.MAX_VALUE;
 		int nbins = 0;
+		QuantileSketch sketch = null;
 		
 		DistinctValue val = new DistinctValue();
 		String w = null;
@@ -214,13 +290,20 @@ public class BinAgent extends TransformationAgent {
 			else if (w.startsWith(NBINS_PREFIX)) {
 				nbins = (int) UtilFunctions.parseToLong( w.substring(NBINS_PREFIX.length() ) );
 			}
+			else if (w.startsWith(QUANTILES_PREFIX)) {
+				QuantileSketch tmp = QuantileSketch.decode( w.substring(QUANTILES_PREFIX.length()) );
+				if( sketch == null )
+					sketch = tmp;
+				else
+					sketch.merge(tmp);
+			}
 			else
 				throw new RuntimeException("MVImputeAgent: Invalid prefix while merging map output: " + w);
 		}
 		
 		// write merged metadata
 		double binwidth = (max-min)/nbins;
-		writeTfMtd(colID, Double.toString(min), Double.toString(max), Double.toString(binwidth), Integer.toString(nbins), outputDir, fs, agents);
+		writeTfMtd(colID, Double.toString(min), Double.toString(max), Double.toString(binwidth), Integer.toString(nbins), sketch, outputDir, fs, agents);
 	}
 	
 	
@@ -243,7 +326,7 @@ public class BinAgent extends TransformationAgent {
 			}
 			
 			double binwidth = (_max[i] - _min[i])/_numBins[i];
-			writeTfMtd(colID, Double.toString(_min[i]), Double.toString(_max[i]), Double.toString(binwidth), Integer.toString(_numBins[i]), outputDir, fs, agents);
+			writeTfMtd(colID, Double.toString(_min[i]), Double.toString(_max[i]), Double.toString(binwidth), Integer.toString(_numBins[i]), _sketches[i], outputDir, fs, agents);
 		}
 	}
 	
@@ -273,7 +356,7 @@ public class BinAgent extends TransformationAgent {
 				TfUtils.checkValidInputFile(fs, path, true); 
 					
 				BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(path)));
-				// format: colID,min,max,nbins
+				// format: colID,min,max,binwidth,nbins[,bound_1,...,bound_nbins-1]
 				String[] fields = br.readLine().split(TXMTD_SEP);
 				double min = UtilFunctions.parseToDouble(fields[1]);
 				//double max = UtilFunctions.parseToDouble(fields[2]);
@@ -284,6 +367,14 @@ public class BinAgent extends TransformationAgent {
 				_min[i] = min;
 				_binWidths[i] = binwidth; // (max-min)/nbins;
 				
+				// upper bin boundaries of equi-height binning
+				_binBounds[i] = null;
+				if( fields.length > 5 ) {
+					_binBounds[i] = new double[fields.length-5];
+					for( int j=5; j<fields.length; j++ )
+						_binBounds[i][j-5] = UtilFunctions.parseToDouble(fields[j]);
+				}
+				
 				br.close();
 			}
 		}
@@ -309,13 +400,7 @@ public class BinAgent extends TransformationAgent {
 			
 			try {
 			double val = UtilFunctions.parseToDouble(words[colID-1]);
-			int binid = 1;
-			double tmp = _min[i] + _binWidths[i];
-			while(val > tmp && binid < _numBins[i]) {
-				tmp += _binWidths[i];
-				binid++;
-			}
-			words[colID-1] = Integer.toString(binid);
+			words[colID-1] = Integer.toString(getBinID(i, val));
 			} catch(NumberFormatException e)
 			{
 				throw new RuntimeException("Encountered \"" + words[colID-1] + "\" in column ID \"" + colID + "\", when expecting a numeric value. Consider adding \"" + words[colID-1] + "\" to na.strings, along with an appropriate imputation method.");
@@ -325,6 +410,39 @@ public class BinAgent extends TransformationAgent {
 		return words;
 	}
 	
+	/**
+	 * Returns the bin id (starting at 1) of the given value for the
+	 * binned column at the given position of the bin list.
+	 * 
+	 * @param idx
+	 * @param val
+	 * @return
+	 */
+	public int getBinID(int idx, double val) {
+		// equi-height: first bin whose upper boundary is >= val (binary search)
+		double[] bounds = _binBounds[idx];
+		if( bounds != null ) {
+			int lo = 0, hi = bounds.length;
+			while( lo < hi ) {
+				int mid = (lo + hi) >>> 1;
+				if( bounds[mid] < val )
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo + 1;
+		}
+		
+		// equi-width
+		int binid = 1;
+		double tmp = _min[idx] + _binWidths[idx];
+		while(val > tmp && binid < _numBins[idx]) {
+			tmp += _binWidths[idx];
+			binid++;
+		}
+		return binid;
+	}
+	
 	/**
 	 * Check if the given column ID is subjected to this transformation.
 	 * 
@@ -341,7 +459,7 @@ public class BinAgent extends TransformationAgent {
 
 	@Override
 	public void print() {
-		System.out.print("Binning List (Equi-width): \n    ");
+		System.out.print("Binning List: \n    ");
 		for(int i : _binList) {
 			System.out.print(i + " ");
 		}
@@ -349,6 +467,10 @@ public class BinAgent extends TransformationAgent {
 		for(int b : _numBins) {
 			System.out.print(b + " ");
 		}
+		System.out.print("\n    ");
+		for(byte m : _binMethodList) {
+			System.out.print((m==2 ? "equi-height" : "equi-width") + " ");
+		}
 		System.out.println();
 	}
 
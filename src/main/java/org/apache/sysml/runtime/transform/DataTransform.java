@@ -30,6 +30,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import org.apache.hadoop.fs.FileStatus;
@@ -37,7 +42,13 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.TextInputFormat;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.wink.json4j.JSONArray;
@@ -48,6 +59,7 @@ import scala.Tuple2;
 
 import org.apache.sysml.conf.ConfigurationManager;
 import org.apache.sysml.conf.DMLConfig;
+import org.apache.sysml.hops.OptimizerUtils;
 import org.apache.sysml.lops.CSVReBlock;
 import org.apache.sysml.lops.Lop;
 import org.apache.sysml.lops.LopProperties.ExecType;
@@ -342,7 +354,7 @@ public class DataTransform {
 				if(stmp.equals(BIN_METHOD_WIDTH))
 					btmp = (byte)1;
 				else if ( stmp.equals(BIN_METHOD_HEIGHT))
-					throw new IOException("Equi-height binning method is not yet supported, in transformation specification file: " + specFileWithNames);
+					btmp = (byte)2;
 				else
 					throw new IOException("Unknown missing value imputation method (" + stmp + ") in transformation specification file: " + specFileWithNames);
 				binMethods[i] = btmp;
@@ -1220,14 +1232,13 @@ public class DataTransform {
 	 */
 	private static JobReturn performTransform(JobConf job, FileSystem fs, String inputPath, int ncols, CSVFileFormatProperties prop, String specFileWithIDs, String tfMtdPath, boolean isApply, MatrixObject result, String headerLine, boolean isBB, boolean isCSV ) throws IOException, DMLRuntimeException, IllegalArgumentException, JSONException {
 		
-		String[] na = TfUtils.parseNAStrings(prop.getNAStrings());
-		
-		JSONObject spec = TfUtils.readSpec(fs, specFileWithIDs);
-		TfUtils agents = new TfUtils(headerLine, prop.hasHeader(), prop.getDelim(), na, spec, ncols, tfMtdPath, null, null );
+		//multi-threaded transform over splits of the input (binary block output only, 
+		//because the csv output is written as a single file in the order of input rows)
+		int k = OptimizerUtils.getParallelTransformParallelism();
+		if( k > 1 && isBB && !isCSV )
+			return performTransformParallel(job, fs, inputPath, ncols, prop, specFileWithIDs, tfMtdPath, isApply, result, headerLine, k);
 		
-		MVImputeAgent _mia = agents.getMVImputeAgent();
-		RecodeAgent _ra = agents.getRecodeAgent();
-		BinAgent _ba = agents.getBinAgent();
+		TfUtils agents = createAgents(fs, ncols, prop, specFileWithIDs, tfMtdPath, headerLine);
 		DummycodeAgent _da = agents.getDummycodeAgent();
 
 		// List of files to read
@@ -1256,46 +1267,17 @@ public class DataTransform {
 				}
 				br.close();
 			}
-			
-			if(agents.getValid() == 0) 
-				throw new DMLRuntimeException(ERROR_MSG_ZERO_ROWS);
-			
-			_mia.outputTransformationMetadata(tfMtdPath, fs, agents);
-			_ba.outputTransformationMetadata(tfMtdPath, fs, agents);
-			_ra.outputTransformationMetadata(tfMtdPath, fs, agents);
-		
-			// prepare agents for the subsequent phase of applying transformation metadata
-			
-			// NO need to loadTxMtd for _ra, since the maps are already present in the memory
-			Path tmp = new Path(tfMtdPath);
-			_mia.loadTxMtd(job, fs, tmp, agents);
-			_ba.loadTxMtd(job, fs, tmp, agents);
-			
-			_da.setRecodeMapsCP( _ra.getCPRecodeMaps() );
-			_da.setNumBins(_ba.getBinList(), _ba.getNumBins());
-			_da.loadTxMtd(job, fs, tmp, agents);
 		}
 		else {
 			// Count the number of rows
 			int rows[] = countNumRows(files, prop, fs, agents);
 			agents.setTotal(rows[0]);
 			agents.setValid(rows[1]);
-			
-			if(agents.getValid() == 0) 
-				throw new DMLRuntimeException("Number of rows in the transformed output (potentially, after ommitting the ones with missing values) is zero. Cannot proceed.");
-			
-			// Load transformation metadata
-			// prepare agents for the subsequent phase of applying transformation metadata
-			Path tmp = new Path(tfMtdPath);
-			_mia.loadTxMtd(job, fs, tmp, agents);
-			_ra.loadTxMtd(job, fs, tmp, agents);
-			_ba.loadTxMtd(job, fs, tmp, agents);
-			
-			_da.setRecodeMaps( _ra.getRecodeMaps() );
-			_da.setNumBins(_ba.getBinList(), _ba.getNumBins());
-			_da.loadTxMtd(job, fs, tmp, agents);
 		}
 		
+		// Output (on build) and load transformation metadata
+		prepareAgentsForApply(job, fs, tfMtdPath, isApply, agents);
+		
 		// -----------------------------
 		// Apply transformation metadata
 		// -----------------------------
@@ -1306,17 +1288,7 @@ public class DataTransform {
 		BufferedWriter out=new BufferedWriter(new OutputStreamWriter(fs.create(new Path(result.getFileName()),true)));		
 		StringBuilder sb = new StringBuilder();
 		
-		MatrixBlock mb = null; 
-		if ( isBB ) 
-		{
-			int estNNZ = (int)agents.getValid() * ncols;
-			mb = new MatrixBlock((int)agents.getValid(), numColumnsTf, estNNZ );
-			
-			if ( mb.isInSparseFormat() )
-				mb.allocateSparseRowsBlock();
-			else
-				mb.allocateDenseBlock();
-		}
+		MatrixBlock mb = isBB ? allocateOutputBlock(agents, ncols, numColumnsTf) : null; 
 
 		int rowID = 0; // rowid to be used in filling the matrix block
 		
@@ -1341,25 +1313,29 @@ public class DataTransform {
 
 				if(!agents.omit(words))
 				{
-					words = agents.apply(words, !isApply);
-	
 					if (isCSV)
 					{
+						words = agents.apply(words, !isApply);
 						out.write( agents.checkAndPrepOutputString(words, sb) );
 						out.write("\n");
-					}
-					
-					if( isBB ) 
-					{
-						agents.check(words);
-						for(int c=0; c<words.length; c++)
+						
+						if( isBB ) 
 						{
-							if(words[c] == null || words[c].isEmpty())
-								;
-							else 
-								mb.appendValue(rowID, c, UtilFunctions.parseToDouble(words[c]));
+							agents.check(words);
+							for(int c=0; c<words.length; c++)
+							{
+								if(words[c] == null || words[c].isEmpty())
+									;
+								else 
+									mb.appendValue(rowID, c, UtilFunctions.parseToDouble(words[c]));
+							}
 						}
 					}
+					else if( isBB ) 
+					{
+						// fused apply directly into the output block
+						agents.apply(words, mb, rowID, true, 0);
+					}
 					rowID++;
 				}
 			}
@@ -1367,6 +1343,212 @@ public class DataTransform {
 		}
 		out.close();
 		
+		return finalizeOutput(result, mb, agents, numColumnsTf);
+	}
+	
+	/**
+	 * Multi-threaded variant of performTransform with binary block output. The input 
+	 * is processed in two passes over its splits: (1) a parallel build of partial 
+	 * transformation metadata per split (or a parallel count of valid rows for apply), 
+	 * which is merged and written out as in the sequential case, and (2) a parallel 
+	 * apply of the transformation metadata into disjoint row ranges of the 
+	 * preallocated output block.
+	 * 
+	 * @param job
+	 * @param fs
+	 * @param inputPath
+	 * @param ncols
+	 * @param prop
+	 * @param specFileWithIDs
+	 * @param tfMtdPath
+	 * @param isApply
+	 * @param result
+	 * @param headerLine
+	 * @param k
+	 * @return
+	 * @throws IOException
+	 * @throws DMLRuntimeException
+	 * @throws IllegalArgumentException
+	 * @throws JSONException
+	 */
+	private static JobReturn performTransformParallel(JobConf job, FileSystem fs, String inputPath, int ncols, CSVFileFormatProperties prop, String specFileWithIDs, String tfMtdPath, boolean isApply, MatrixObject result, String headerLine, int k) throws IOException, DMLRuntimeException, IllegalArgumentException, JSONException {
+		
+		TfUtils agents = createAgents(fs, ncols, prop, specFileWithIDs, tfMtdPath, headerLine);
+		DummycodeAgent _da = agents.getDummycodeAgent();
+		
+		// Splits of the input, sorted by path and offset (header in first split)
+		JobConf job2 = new JobConf(job);
+		FileInputFormat.addInputPath(job2, new Path(inputPath));
+		TextInputFormat informat = new TextInputFormat();
+		informat.configure(job2);
+		InputSplit[] splits = getSortedSplits(informat, job2, k);
+		
+		ExecutorService pool = Executors.newFixedThreadPool(k);
+		try 
+		{
+			// ---------------------------------
+			// Construct transformation metadata
+			// ---------------------------------
+			
+			ArrayList<TransformBuildTask> btasks = new ArrayList<TransformBuildTask>();
+			for( int i=0; i<splits.length; i++ ) {
+				TfUtils pagents = isApply ? agents : createAgents(fs, ncols, prop, specFileWithIDs, tfMtdPath, headerLine);
+				btasks.add(new TransformBuildTask(informat, job2, splits[i], pagents, i==0 && prop.hasHeader(), isApply));
+			}
+			List<Future<TfUtils>> bret = pool.invokeAll(btasks);
+			
+			// merge partial metadata and determine row offsets per split
+			long[] offsets = new long[splits.length];
+			long total = 0, valid = 0;
+			for( int i=0; i<splits.length; i++ ) {
+				TfUtils pagents = bret.get(i).get();
+				offsets[i] = valid;
+				total += btasks.get(i).getTotal();
+				valid += btasks.get(i).getValid();
+				if( !isApply )
+					agents.mergeTfMtd(pagents);
+			}
+			agents.setTotal(total);
+			agents.setValid(valid);
+			
+			// Output (on build) and load transformation metadata
+			prepareAgentsForApply(job, fs, tfMtdPath, isApply, agents);
+			
+			// -----------------------------
+			// Apply transformation metadata
+			// -----------------------------
+			
+			String dcdHeader = _da.constructDummycodedHeader(headerLine, agents.getDelim());
+			int numColumnsTf = _da.genDcdMapsAndColTypes(fs, tfMtdPath, ncols, agents);
+			DataTransform.generateHeaderFiles(fs, tfMtdPath, headerLine, dcdHeader);
+			
+			MapReduceTool.deleteFileIfExistOnHDFS(result.getFileName());
+			
+			MatrixBlock mb = allocateOutputBlock(agents, ncols, numColumnsTf);
+			
+			// apply in parallel into disjoint row ranges (agents are read-only during apply)
+			ArrayList<TransformApplyTask> atasks = new ArrayList<TransformApplyTask>();
+			for( int i=0; i<splits.length; i++ )
+				atasks.add(new TransformApplyTask(informat, job2, splits[i], agents, 
+					i==0 && prop.hasHeader(), mb, (int)offsets[i]));
+			for( Future<Object> task : pool.invokeAll(atasks) )
+				task.get(); //error handling
+			
+			return finalizeOutput(result, mb, agents, numColumnsTf);
+		}
+		catch(DMLRuntimeException ex) {
+			throw ex;
+		}
+		catch(Exception ex) {
+			throw new DMLRuntimeException("Failed parallel transform.", ex);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Creates the transformation agents for the given spec and header, shared by 
+	 * the sequential and multi-threaded transform (and the split-local agents).
+	 * 
+	 * @param fs
+	 * @param ncols
+	 * @param prop
+	 * @param specFileWithIDs
+	 * @param tfMtdPath
+	 * @param headerLine
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private static TfUtils createAgents(FileSystem fs, int ncols, CSVFileFormatProperties prop, String specFileWithIDs, String tfMtdPath, String headerLine) 
+		throws IOException, JSONException
+	{
+		String[] na = TfUtils.parseNAStrings(prop.getNAStrings());
+		JSONObject spec = TfUtils.readSpec(fs, specFileWithIDs);
+		return new TfUtils(headerLine, prop.hasHeader(), prop.getDelim(), na, spec, ncols, tfMtdPath, null, null );
+	}
+	
+	/**
+	 * Writes the constructed transformation metadata (build only) and loads the 
+	 * transformation metadata into the agents for the subsequent apply phase. 
+	 * Requires that the number of total and valid rows are already set.
+	 * 
+	 * @param job
+	 * @param fs
+	 * @param tfMtdPath
+	 * @param isApply
+	 * @param agents
+	 * @throws IOException
+	 * @throws DMLRuntimeException
+	 * @throws IllegalArgumentException
+	 * @throws JSONException
+	 */
+	private static void prepareAgentsForApply(JobConf job, FileSystem fs, String tfMtdPath, boolean isApply, TfUtils agents) 
+		throws IOException, DMLRuntimeException, IllegalArgumentException, JSONException
+	{
+		MVImputeAgent _mia = agents.getMVImputeAgent();
+		RecodeAgent _ra = agents.getRecodeAgent();
+		BinAgent _ba = agents.getBinAgent();
+		DummycodeAgent _da = agents.getDummycodeAgent();
+		
+		if(agents.getValid() == 0) 
+			throw new DMLRuntimeException(ERROR_MSG_ZERO_ROWS);
+		
+		Path tmp = new Path(tfMtdPath);
+		if (!isApply) {
+			_mia.outputTransformationMetadata(tfMtdPath, fs, agents);
+			_ba.outputTransformationMetadata(tfMtdPath, fs, agents);
+			_ra.outputTransformationMetadata(tfMtdPath, fs, agents);
+			
+			// NO need to loadTxMtd for _ra, since the maps are already present in the memory
+			_mia.loadTxMtd(job, fs, tmp, agents);
+			_ba.loadTxMtd(job, fs, tmp, agents);
+		}
+		else {
+			_mia.loadTxMtd(job, fs, tmp, agents);
+			_ra.loadTxMtd(job, fs, tmp, agents);
+			_ba.loadTxMtd(job, fs, tmp, agents);
+		}
+		
+		_da.setRecodeMaps( _ra.getRecodeMaps() );
+		_da.setNumBins(_ba.getBinList(), _ba.getNumBins());
+		_da.loadTxMtd(job, fs, tmp, agents);
+	}
+	
+	/**
+	 * 
+	 * @param agents
+	 * @param ncols
+	 * @param numColumnsTf
+	 * @return
+	 */
+	private static MatrixBlock allocateOutputBlock(TfUtils agents, int ncols, int numColumnsTf)
+	{
+		int estNNZ = (int)agents.getValid() * ncols;
+		MatrixBlock mb = new MatrixBlock((int)agents.getValid(), numColumnsTf, estNNZ );
+		
+		if ( mb.isInSparseFormat() )
+			mb.allocateSparseRowsBlock();
+		else
+			mb.allocateDenseBlock();
+		
+		return mb;
+	}
+	
+	/**
+	 * Exports the transformed output block (if any) and returns the output characteristics.
+	 * 
+	 * @param result
+	 * @param mb
+	 * @param agents
+	 * @param numColumnsTf
+	 * @return
+	 * @throws DMLRuntimeException
+	 */
+	private static JobReturn finalizeOutput(MatrixObject result, MatrixBlock mb, TfUtils agents, int numColumnsTf) 
+		throws DMLRuntimeException
+	{
 		if(mb != null)
 		{
 			mb.recomputeNonZeros();
@@ -1378,9 +1560,166 @@ public class DataTransform {
 		}
 		
 		MatrixCharacteristics mc = new MatrixCharacteristics(agents.getValid(), numColumnsTf, (int) result.getNumRowsPerBlock(), (int) result.getNumColumnsPerBlock());
-		JobReturn ret = new JobReturn(new MatrixCharacteristics[]{mc}, true);
-
-		return ret;
+		return new JobReturn(new MatrixCharacteristics[]{mc}, true);
+	}
+	
+	/**
+	 * 
+	 * @param informat
+	 * @param job
+	 * @param k
+	 * @return
+	 * @throws IOException
+	 */
+	private static InputSplit[] getSortedSplits(TextInputFormat informat, JobConf job, int k) 
+		throws IOException
+	{
+		InputSplit[] splits = informat.getSplits(job, k);
+		
+		// The splits do not always arrive in order by file name.
+		// Sort the splits lexicographically by path and offset so that 
+		// the header will be in the first split.
+		if (splits.length > 0 && splits[0] instanceof FileSplit) {
+			Arrays.sort(splits, new Comparator<InputSplit>() {
+				@Override
+				public int compare(InputSplit o1, InputSplit o2) {
+					FileSplit s1 = (FileSplit) o1;
+					FileSplit s2 = (FileSplit) o2;
+					int cmp = s1.getPath().toString().compareTo(s2.getPath().toString());
+					if( cmp != 0 )
+						return cmp;
+					return (s1.getStart() < s2.getStart()) ? -1 : 
+						(s1.getStart() == s2.getStart()) ? 0 : 1;
+				}
+			});
+		}
+		
+		return splits;
+	}
+	
+	/**
+	 * Task for constructing partial transformation metadata over a single split
+	 * (via the given split-local agents), or for counting the valid rows of a split 
+	 * if the transformation metadata is applied.
+	 */
+	private static class TransformBuildTask implements Callable<TfUtils> 
+	{
+		private TextInputFormat _informat = null;
+		private JobConf _job = null;
+		private InputSplit _split = null;
+		private TfUtils _agents = null;
+		private boolean _hasHeader = false;
+		private boolean _countOnly = false;
+		
+		private long _total = 0;
+		private long _valid = 0;
+		
+		public TransformBuildTask(TextInputFormat informat, JobConf job, InputSplit split, TfUtils agents, boolean hasHeader, boolean countOnly) {
+			_informat = informat;
+			_job = job;
+			_split = split;
+			_agents = agents;
+			_hasHeader = hasHeader;
+			_countOnly = countOnly;
+		}
+		
+		public long getTotal() {
+			return _total;
+		}
+		
+		public long getValid() {
+			return _valid;
+		}
+		
+		@Override
+		public TfUtils call() throws Exception 
+		{
+			LongWritable key = new LongWritable();
+			Text value = new Text();
+			RecordReader<LongWritable, Text> reader = _informat.getRecordReader(_split, _job, Reporter.NULL);
+			
+			try
+			{
+				if( _hasHeader )
+					reader.next(key, value); //ignore header
+				
+				while( reader.next(key, value) ) {
+					String line = value.toString();
+					if( _countOnly ) {
+						if( !_agents.omit(_agents.getWords(line)) )
+							_valid++;
+						_total++;
+					}
+					else
+						_agents.prepareTfMtd(line);
+				}
+			}
+			finally {
+				if( reader != null )
+					reader.close();
+			}
+			
+			if( !_countOnly ) {
+				_total = _agents.getTotal();
+				_valid = _agents.getValid();
+			}
+			
+			return _agents;
+		}
+	}
+	
+	/**
+	 * Task for applying the transformation metadata to all rows of a single split (fused
+	 * apply), where valid rows are appended to the output block starting at the given row offset.
+	 */
+	private static class TransformApplyTask implements Callable<Object> 
+	{
+		private TextInputFormat _informat = null;
+		private JobConf _job = null;
+		private InputSplit _split = null;
+		private TfUtils _agents = null;
+		private boolean _hasHeader = false;
+		private MatrixBlock _out = null;
+		private int _rl = -1;
+		
+		public TransformApplyTask(TextInputFormat informat, JobConf job, InputSplit split, TfUtils agents, boolean hasHeader, MatrixBlock out, int rl) {
+			_informat = informat;
+			_job = job;
+			_split = split;
+			_agents = agents;
+			_hasHeader = hasHeader;
+			_out = out;
+			_rl = rl;
+		}
+		
+		@Override
+		public Object call() throws Exception 
+		{
+			LongWritable key = new LongWritable();
+			Text value = new Text();
+			RecordReader<LongWritable, Text> reader = _informat.getRecordReader(_split, _job, Reporter.NULL);
+			
+			try
+			{
+				if( _hasHeader )
+					reader.next(key, value); //ignore header
+				
+				int rowID = _rl;
+				while( reader.next(key, value) ) {
+					String[] words = _agents.getWords(value.toString());
+					if( !_agents.omit(words) ) {
+						_agents.apply(words, _out, rowID, true, 0);
+						rowID++;
+					}
+				}
+			}
+			finally {
+				if( reader != null )
+					reader.close();
+			}
+			
+			return null;
+		}
 	}
 	
 	public static void generateHeaderFiles(FileSystem fs, String txMtdDir, String origHeader, String newHeader) throws IOException {
@@ -25,7 +25,6 @@ import java.io.OutputStreamWriter;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.regex.Pattern;
 
 import org.apache.hadoop.fs.FileSystem;
@@ -37,8 +36,6 @@ import org.apache.wink.json4j.JSONArray;
 import org.apache.wink.json4j.JSONException;
 import org.apache.wink.json4j.JSONObject;
 
-import com.google.common.base.Functions;
-import com.google.common.collect.Ordering;
 import org.apache.sysml.runtime.util.UtilFunctions;
 
 public class DummycodeAgent extends TransformationAgent {	
@@ -48,8 +45,7 @@ public class DummycodeAgent extends TransformationAgent {
 	private int[] _dcdList = null;
 	private long numCols = 0;
 	
-	private HashMap<Integer, HashMap<String,String>> _finalMaps = null;
-	private HashMap<Integer, HashMap<String,Long>> _finalMapsCP = null;
+	private HashMap<Integer, RecodeDictionary> _finalMaps = null;
 	private int[] _binList = null;
 	private int[] _numBins = null;
 	
@@ -79,6 +75,14 @@ public class DummycodeAgent extends TransformationAgent {
 		return _dcdList;
 	}
 	
+	public int[] getDomainSizes() {
+		return _domainSizes;
+	}
+	
+	public long getDummycodedLength() {
+		return _dummycodedLength;
+	}
+	
 	/**
 	 * Method to output transformation metadata from the mappers. 
 	 * This information is collected and merged by the reducers.
@@ -100,14 +104,10 @@ public class DummycodeAgent extends TransformationAgent {
 		// Nothing to do here
 	}
 
-	public void setRecodeMaps(HashMap<Integer, HashMap<String,String>> maps) {
+	public void setRecodeMaps(HashMap<Integer, RecodeDictionary> maps) {
 		_finalMaps = maps;
 	}
 	
-	public void setRecodeMapsCP(HashMap<Integer, HashMap<String,Long>> maps) {
-		_finalMapsCP = maps;
-	}
-	
 	public void setNumBins(int[] binList, int[] numbins) {
 		_binList = binList;
 		_numBins = numbins;
@@ -214,65 +214,34 @@ public class DummycodeAgent extends TransformationAgent {
 			return header;
 		
 		String[] names = delim.split(header, -1);
-		List<String> newNames = null;
-		
 		StringBuilder sb = new StringBuilder();
 		
 		// Dummycoding can be performed on either on a recoded column or on a binned column
 		
 		// process recoded columns
-		if(_finalMapsCP != null && _dcdList != null) 
+		if(_finalMaps != null && _dcdList != null) 
 		{
 			for(int i=0; i <_dcdList.length; i++) 
 			{
 				int colID = _dcdList[i];
-				HashMap<String,Long> map = _finalMapsCP.get(colID);
+				RecodeDictionary map = _finalMaps.get(colID);
 				String colName = UtilFunctions.unquote(names[colID-1]);
 				
 				if ( map != null  ) 
 				{
-					// order map entries by their recodeID
-					Ordering<String> valueComparator = Ordering.natural().onResultOf(Functions.forMap(map));
-					newNames = valueComparator.sortedCopy(map.keySet());
-					
-					// construct concatenated string of map entries
-					sb.setLength(0);
-					for(int idx=0; idx < newNames.size(); idx++) 
-					{
-						if(idx==0) 
-							sb.append( colName + DCD_NAME_SEP + newNames.get(idx));
-						else
-							sb.append( delim + colName + DCD_NAME_SEP + newNames.get(idx));
-					}
-					names[colID-1] = sb.toString();			// replace original column name with dcd name
-				}
-			}
-		}
-		else if(_finalMaps != null && _dcdList != null) {
-			for(int i=0; i <_dcdList.length; i++) {
-				int colID = _dcdList[i];
-				HashMap<String,String> map = _finalMaps.get(colID);
-				String colName = UtilFunctions.unquote(names[colID-1]);
-				
-				if ( map != null ) 
-				{
-					// order map entries by their recodeID (represented as Strings .. "1", "2", etc.)
-					Ordering<String> orderByID = new Ordering<String>() 
-					{
-			    		public int compare(String s1, String s2) {
-			        		return (Integer.parseInt(s1) - Integer.parseInt(s2));
-			    		}
-					};
+					// order map entries by their recodeID (dense in 1..#entries)
+					String[] newNames = new String[map.size()];
+					for(int j=0; j < map.size(); j++)
+						newNames[(int)map.getValue(j)-1] = map.getKey(j);
 					
-					newNames = orderByID.onResultOf(Functions.forMap(map)).sortedCopy(map.keySet());
 					// construct concatenated string of map entries
 					sb.setLength(0);
-					for(int idx=0; idx < newNames.size(); idx++) 
+					for(int idx=0; idx < newNames.length; idx++) 
 					{
 						if(idx==0) 
-							sb.append( colName + DCD_NAME_SEP + newNames.get(idx));
+							sb.append( colName + DCD_NAME_SEP + newNames[idx]);
 						else
-							sb.append( delim + colName + DCD_NAME_SEP + newNames.get(idx));
+							sb.append( delim + colName + DCD_NAME_SEP + newNames[idx]);
 					}
 					names[colID-1] = sb.toString();			// replace original column name with dcd name
 				}
@@ -333,16 +302,10 @@ public class DummycodeAgent extends TransformationAgent {
 		for(int i=0; i<_dcdList.length; i++) {
 			int colID = _dcdList[i];
 			
-			// Find the domain size for colID using _finalMaps or _finalMapsCP
+			// Find the domain size for colID using _finalMaps
 			int domainSize = 0;
-			if(_finalMaps != null) {
-				if(_finalMaps.get(colID) != null)
-					domainSize = _finalMaps.get(colID).size();
-			}
-			else {
-				if(_finalMapsCP.get(colID) != null)
-					domainSize = _finalMapsCP.get(colID).size();
-			}
+			if(_finalMaps != null && _finalMaps.get(colID) != null)
+				domainSize = _finalMaps.get(colID).size();
 			
 			if ( domainSize != 0 ) {
 				// dummycoded column
@@ -266,6 +266,43 @@ public class MVImputeAgent extends TransformationAgent {
 		}
 	}
 	
+	/**
+	 * Merges the partial means, counts, and variances of the given agent, 
+	 * constructed over a disjoint set of rows, into this agent.
+	 * 
+	 * @param that
+	 * @throws IOException
+	 */
+	void mergeTfMtd(MVImputeAgent that) throws IOException {
+		try {
+			if(_mvList != null)
+			for(int i=0; i <_mvList.length; i++) {
+				mergeMean(_meanList[i], _countList[i], that._meanList[i], that._countList[i]);
+				_countList[i] += that._countList[i];
+				if( _varList[i] != null )
+					_varList[i] = (CM_COV_Object) _varFn.execute(_varList[i], that._varList[i]);
+			}
+			
+			if(_scnomvList != null)
+			for(int i=0; i < _scnomvList.length; i++) {
+				mergeMean(_scnomvMeanList[i], _scnomvCountList[i], that._scnomvMeanList[i], that._scnomvCountList[i]);
+				_scnomvCountList[i] += that._scnomvCountList[i];
+				if( _scnomvVarList[i] != null )
+					_scnomvVarList[i] = (CM_COV_Object) _varFn.execute(_scnomvVarList[i], that._scnomvVarList[i]);
+			}
+		} catch(DMLRuntimeException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	private static void mergeMean(KahanObject mean1, long count1, KahanObject mean2, long count2) {
+		long count = count1 + count2;
+		if( count2 > 0 ) {
+			double delta = mean2._sum - mean1._sum;
+			KahanPlus.getKahanPlusFnObject().execute2(mean1, delta*count2/count);
+		}
+	}
+	
 	// ----------------------------------------------------------------------------------------------------------
 	
 	private String encodeCMObj(CM_COV_Object obj)
@@ -530,14 +567,6 @@ public class MVImputeAgent extends TransformationAgent {
 		br.close();
 	}
 	
-	private void writeTfMtd(int colID, String min, String max, String binwidth, String nbins, String tfMtdDir, FileSystem fs, TfUtils agents) throws IOException 
-	{
-		Path pt = new Path(tfMtdDir+"/Bin/"+ agents.getName(colID) + BIN_FILE_SUFFIX);
-		BufferedWriter br=new BufferedWriter(new OutputStreamWriter(fs.create(pt,true)));
-		br.write(colID + TXMTD_SEP + min + TXMTD_SEP + max + TXMTD_SEP + binwidth + TXMTD_SEP + nbins + "\n");
-		br.close();
-	}
-	
 	public void outputTransformationMetadata(String outputDir, FileSystem fs, TfUtils agents) throws IOException {
 		
 		try{
@@ -613,6 +642,7 @@ public class MVImputeAgent extends TransformationAgent {
 		double min = Double.MAX_VALUE;
 		double max = -Double.MAX_VALUE;
 		int nbins = 0;
+		QuantileSketch sketch = null;
 		double d;
 		long totalRecordCount = 0, totalValidCount=0;
 		String mvConstReplacement = null;
@@ -713,6 +743,14 @@ public class MVImputeAgent extends TransformationAgent {
 				isBinned = true;
 				nbins = (int) UtilFunctions.parseToLong( w.substring(BinAgent.NBINS_PREFIX.length() ) );
 			}
+			else if (w.startsWith(BinAgent.QUANTILES_PREFIX)) {
+				isBinned = true;
+				QuantileSketch tmp = QuantileSketch.decode( w.substring(BinAgent.QUANTILES_PREFIX.length()) );
+				if( sketch == null )
+					sketch = tmp;
+				else
+					sketch.merge(tmp);
+			}
 			else
 				throw new RuntimeException("MVImputeAgent: Invalid prefix while merging map output: " + w);
 		}
@@ -763,7 +801,7 @@ public class MVImputeAgent extends TransformationAgent {
 		
 		if ( isBinned ) {
 			double binwidth = (max-min)/nbins;
-			writeTfMtd(colID, Double.toString(min), Double.toString(max), Double.toString(binwidth), Integer.toString(nbins), outputDir, fs, agents);
+			BinAgent.writeTfMtd(colID, Double.toString(min), Double.toString(max), Double.toString(binwidth), Integer.toString(nbins), sketch, outputDir, fs, agents);
 		}
 		
 		if ( isScaled ) 
@@ -952,6 +990,33 @@ public class MVImputeAgent extends TransformationAgent {
 			return _countList[idx];
 	}
 	
+	/**
+	 * Returns the scaling parameters (shift, divisor) of the given column, where 
+	 * scaled values are computed as (v - shift) / divisor, or null if the column is 
+	 * not scaled. This requires that the transformation metadata has been loaded.
+	 * 
+	 * @param colID
+	 * @return
+	 */
+	public double[] getScaleParams(int colID)
+	{
+		int idx = isImputed(colID);
+		if( idx != -1 ) {
+			if( !_isMVScaled.get(idx) )
+				return null;
+			return new double[]{ _meanList[idx]._sum, 
+				(_mvscMethodList[idx] == 1) ? 1 : _varList[idx].mean._sum };
+		}
+		
+		if( _scnomvList != null )
+			for(int i=0; i < _scnomvList.length; i++)
+				if( _scnomvList[i] == colID )
+					return new double[]{ _scnomvMeanList[i]._sum, 
+						(_scnomvMethodList[i] == 1) ? 1 : _scnomvVarList[i].mean._sum };
+		
+		return null;
+	}
+	
 	public String getReplacement(int colID) 
 	{
 		int idx = isImputed(colID);
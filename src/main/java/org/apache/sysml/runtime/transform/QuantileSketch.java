@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.runtime.transform;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.sysml.runtime.util.UtilFunctions;
+
+/**
+ * Mergeable streaming quantile sketch (KLL-style) of a single numeric column,
+ * used for equi-height binning in the same single pass as all other transform
+ * metadata, without sorting the entire column.
+ *
+ * The sketch consists of a hierarchy of compactors, where items at level h
+ * have a weight of 2^h. Whenever the total number of items exceeds the overall
+ * capacity, the lowest full compactor is sorted and every other item is promoted
+ * to the next level. Capacities decrease geometrically for lower levels, which
+ * bounds the size to O(k) items, with a rank error of roughly 1.7/k. Partial
+ * sketches (e.g., of different splits, map tasks, or partitions) are merged by
+ * concatenating their levels and compacting again. Up to k items, the sketch is
+ * exact.
+ *
+ * NOTE: In order to obtain reproducible bin boundaries, we use alternating
+ * instead of random offsets for the compaction.
+ *
+ */
+public class QuantileSketch implements Serializable
+{
+	private static final long serialVersionUID = 3562178940234153092L;
+
+	public static final int DEFAULT_K = 256;
+
+	private static final double CAPACITY_RATIO = 2.0/3.0;
+	private static final String LEVEL_SEP = ";";
+	private static final String VALUE_SEP = " ";
+
+	private int _k = -1;
+	private long _n = 0;               //number of inserted values
+	private double[][] _levels = null; //compactors of items with weight 2^h
+	private int[] _sizes = null;       //number of items per level
+	private int _numLevels = 0;
+	private int _numItems = 0;         //number of items over all levels
+	private int _maxItems = 0;         //total capacity over all levels
+	private boolean _coin = false;     //alternating compaction offset
+
+	public QuantileSketch() {
+		this(DEFAULT_K);
+	}
+
+	public QuantileSketch(int k) {
+		_k = k;
+		_levels = new double[4][];
+		_sizes = new int[4];
+		addLevel();
+	}
+
+	/**
+	 * Returns the number of inserted values.
+	 *
+	 * @return
+	 */
+	public long getCount() {
+		return _n;
+	}
+
+	/**
+	 * Inserts the given value into the sketch.
+	 *
+	 * @param val
+	 */
+	public void add(double val) {
+		append(0, val);
+		_n++;
+		if( _numItems >= _maxItems )
+			compress();
+	}
+
+	/**
+	 * Merges the given sketch, constructed over a disjoint set of
+	 * values, into this sketch.
+	 *
+	 * @param that
+	 */
+	public void merge(QuantileSketch that) {
+		if( that == null || that._n == 0 )
+			return;
+
+		for( int h=0; h<that._numLevels; h++ ) {
+			while( h >= _numLevels )
+				addLevel();
+			for( int i=0; i<that._sizes[h]; i++ )
+				append(h, that._levels[h][i]);
+		}
+		_n += that._n;
+		compress();
+	}
+
+	/**
+	 * Returns the approximate quantile values for the given sorted
+	 * quantiles in (0,1). The returned values are non-decreasing.
+	 *
+	 * @param qs
+	 * @return
+	 */
+	public double[] getQuantiles(double[] qs) {
+		double[] ret = new double[qs.length];
+		if( _n == 0 )
+			return ret;
+
+		//collect all items and their weights
+		int len = 0;
+		for( int h=0; h<_numLevels; h++ )
+			len += _sizes[h];
+		final double[] vals = new double[len];
+		long[] weights = new long[len];
+		for( int h=0, pos=0; h<_numLevels; h++ )
+			for( int i=0; i<_sizes[h]; i++, pos++ ) {
+				vals[pos] = _levels[h][i];
+				weights[pos] = 1L << h;
+			}
+
+		//sort items by value
+		Integer[] ix = new Integer[len];
+		for( int i=0; i<len; i++ )
+			ix[i] = i;
+		Arrays.sort(ix, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(vals[o1], vals[o2]);
+			}
+		});
+
+		//scan cumulative weights (total weight equals n)
+		long cum = 0;
+		for( int i=0, j=0; i<len && j<qs.length; i++ ) {
+			cum += weights[ix[i]];
+			for( ; j<qs.length && cum >= Math.ceil(qs[j]*_n); j++ )
+				ret[j] = vals[ix[i]];
+		}
+		return ret;
+	}
+
+	/**
+	 * Serializes the sketch into a string, used for passing partial
+	 * sketches from mappers to reducers as distinct values.
+	 *
+	 * @return
+	 */
+	public String encode() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(_k);
+		sb.append(LEVEL_SEP);
+		sb.append(_n);
+		for( int h=0; h<_numLevels; h++ ) {
+			sb.append(LEVEL_SEP);
+			for( int i=0; i<_sizes[h]; i++ ) {
+				if( i > 0 )
+					sb.append(VALUE_SEP);
+				sb.append(_levels[h][i]);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Deserializes a sketch from a string, created via encode.
+	 *
+	 * @param str
+	 * @return
+	 */
+	public static QuantileSketch decode(String str) {
+		String[] parts = str.split(LEVEL_SEP, -1);
+		QuantileSketch ret = new QuantileSketch(UtilFunctions.parseToInt(parts[0]));
+		ret._n = UtilFunctions.parseToLong(parts[1]);
+		for( int h=0; h<parts.length-2; h++ ) {
+			while( h >= ret._numLevels )
+				ret.addLevel();
+			if( parts[h+2].isEmpty() )
+				continue;
+			for( String val : parts[h+2].split(VALUE_SEP) )
+				ret.append(h, Double.parseDouble(val));
+		}
+		ret.compress();
+		return ret;
+	}
+
+	////////////////////////////////
+	// internal compactor handling
+	////////////////////////////////
+
+	private int getCapacity(int h) {
+		//geometrically decreasing capacities towards lower levels
+		int depth = _numLevels - h - 1;
+		return Math.max(2, (int)Math.ceil(_k * Math.pow(CAPACITY_RATIO, depth)));
+	}
+
+	private void compress() {
+		//compact the lowest full level until all items fit
+		//(if the total capacity is exceeded, at least one level is full)
+		while( _numItems >= _maxItems ) {
+			int h = 0;
+			while( _sizes[h] < getCapacity(h) )
+				h++;
+			if( h+1 == _numLevels )
+				addLevel();
+			compact(h);
+		}
+	}
+
+	private void compact(int h) {
+		double[] level = _levels[h];
+		int size = _sizes[h];
+		Arrays.sort(level, 0, size);
+
+		//promote every other item of an even number of items,
+		//and keep the largest item of odd sizes at this level
+		int m = size - (size % 2);
+		int off = _coin ? 1 : 0;
+		_coin = !_coin;
+		for( int i=off; i<m; i+=2 )
+			append(h+1, level[i]);
+		if( m < size )
+			level[0] = level[m];
+		_sizes[h] = size - m;
+		_numItems -= m;
+	}
+
+	private void append(int h, double val) {
+		if( _levels[h].length == _sizes[h] )
+			_levels[h] = Arrays.copyOf(_levels[h], _levels[h].length * 2);
+		_levels[h][_sizes[h]++] = val;
+		_numItems++;
+	}
+
+	private void addLevel() {
+		if( _numLevels == _levels.length ) {
+			_levels = Arrays.copyOf(_levels, _levels.length * 2);
+			_sizes = Arrays.copyOf(_sizes, _sizes.length * 2);
+		}
+		_levels[_numLevels] = new double[16];
+		_sizes[_numLevels] = 0;
+		_numLevels++;
+
+		//update total capacity (capacities of lower levels shrink)
+		_maxItems = 0;
+		for( int h=0; h<_numLevels; h++ )
+			_maxItems += getCapacity(h);
+	}
+}
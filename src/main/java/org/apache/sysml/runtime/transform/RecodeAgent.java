@@ -28,7 +28,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -41,7 +40,6 @@ import org.apache.wink.json4j.JSONObject;
 
 import scala.Tuple2;
 
-import com.google.common.collect.Ordering;
 import org.apache.sysml.runtime.transform.MVImputeAgent.MVMethod;
 import org.apache.sysml.runtime.util.UtilFunctions;
 
@@ -53,8 +51,8 @@ public class RecodeAgent extends TransformationAgent {
 	private int[] _mvrcdList = null;
 	private int[] _fullrcdList = null;
 
-	// HashMap< columnID, HashMap<distinctValue, count> >
-	private HashMap<Integer, HashMap<String, Long>> _rcdMaps  = new HashMap<Integer, HashMap<String, Long>>();
+	// HashMap< columnID, RecodeDictionary<distinctValue, count or recode id> >
+	private HashMap<Integer, RecodeDictionary> _rcdMaps  = new HashMap<Integer, RecodeDictionary>();
 	
 	RecodeAgent(JSONObject parsedSpec) throws JSONException {
 		
@@ -104,18 +102,32 @@ public class RecodeAgent extends TransformationAgent {
 		for (int colID : _fullrcdList) {
 			w = UtilFunctions.unquote(words[colID-1].trim());
 			if(_rcdMaps.get(colID) == null ) 
-				_rcdMaps.put(colID, new HashMap<String, Long>());
+				_rcdMaps.put(colID, new RecodeDictionary());
 			
-			HashMap<String, Long> map = _rcdMaps.get(colID);
-			Long count = map.get(w);
-			if(count == null)
-				map.put(w, new Long(1));
+			_rcdMaps.get(colID).add(w, 1);
+		}
+	}
+	
+	/**
+	 * Merges the partial recode maps (distinct values and their counts) of 
+	 * the given agent, constructed over a disjoint set of rows, into this agent.
+	 * 
+	 * @param that
+	 */
+	void mergeTfMtd(RecodeAgent that) {
+		if ( _rcdList == null && _mvrcdList == null )
+			return;
+		
+		for( Integer colID : that._rcdMaps.keySet() ) {
+			RecodeDictionary map = _rcdMaps.get(colID);
+			if( map == null )
+				_rcdMaps.put(colID, that._rcdMaps.get(colID));
 			else
-				map.put(w, count+1);
+				map.merge(that._rcdMaps.get(colID));
 		}
 	}
 	
-	private HashMap<String, Long> handleMVConstant(int colID, TfUtils agents, HashMap<String, Long> map)
+	private RecodeDictionary handleMVConstant(int colID, TfUtils agents, RecodeDictionary map)
 	{
 		MVImputeAgent mvagent = agents.getMVImputeAgent();
 		if ( mvagent.getMethod(colID) == MVMethod.CONSTANT ) 
@@ -126,12 +138,8 @@ public class RecodeAgent extends TransformationAgent {
 				throw new RuntimeException("Expecting a constant replacement value for column ID " + colID);
 			
 			repValue = UtilFunctions.unquote(repValue);
-			Long count = map.get(repValue);
 			long mvCount = agents.getValid() - mvagent.getNonMVCount(colID);
-			if(count == null)
-				map.put(repValue, mvCount);
-			else
-				map.put(repValue, count + mvCount);
+			map.add(repValue, mvCount);
 		}
 		return map;
 	}
@@ -162,7 +170,7 @@ public class RecodeAgent extends TransformationAgent {
 			for(int i=0; i < _fullrcdList.length; i++) 
 			{
 				int colID = _fullrcdList[i];
-				HashMap<String, Long> map = _rcdMaps.get(colID);
+				RecodeDictionary map = _rcdMaps.get(colID);
 				
 				if(map != null) 
 				{
@@ -170,12 +178,12 @@ public class RecodeAgent extends TransformationAgent {
 					
 					if ( out != null ) {
 						IntWritable iw = new IntWritable(colID);
-						for(String s : map.keySet()) 
-							out.collect(iw, new DistinctValue(s, map.get(s)));
+						for(int j=0; j < map.size(); j++) 
+							out.collect(iw, new DistinctValue(map.getKey(j), map.getValue(j)));
 					}
 					else if ( list != null ) {
-						for(String s : map.keySet()) 
-							list.add(new Tuple2<Integer,DistinctValue>(colID, new DistinctValue(s, map.get(s))) );
+						for(int j=0; j < map.size(); j++) 
+							list.add(new Tuple2<Integer,DistinctValue>(colID, new DistinctValue(map.getKey(j), map.getValue(j))) );
 					}
 				}
 			}
@@ -203,12 +211,12 @@ public class RecodeAgent extends TransformationAgent {
 	 * @param mvagent
 	 * @throws IOException
 	 */
-	private void writeMetadata(HashMap<String,Long> map, String outputDir, int colID, FileSystem fs, TfUtils agents, boolean fromCP) throws IOException {
+	private void writeMetadata(RecodeDictionary map, String outputDir, int colID, FileSystem fs, TfUtils agents, boolean fromCP) throws IOException {
 		// output recode maps and mode
 		
 		MVImputeAgent mvagent = agents.getMVImputeAgent();
 		String mode = null;
-		Long count = null;
+		long count = 0;
 		int rcdIndex = 0, modeIndex = 0;
 		long maxCount = Long.MIN_VALUE;
 		
@@ -232,25 +240,22 @@ public class RecodeAgent extends TransformationAgent {
 			throw new RuntimeException("Can not proceed since \"" + agents.getName(colID) + "\" (id=" + colID + ") contains only the missing values, and not a single valid value -- set imputation method to \"constant\".");
 		
 		// Order entries by category (string) value
-		Ordering<String> valueComparator = Ordering.natural();
-		List<String> newNames = valueComparator.sortedCopy(map.keySet());
-
-		for(String w : newNames) { //map.keySet()) {
-				count = map.get(w);
+		for(int id : map.getSortedIds()) {
+				count = map.getValue(id);
 				++rcdIndex;
 				
 				// output (w, count, rcdIndex)
 				if(br != null)		
-					br.write(UtilFunctions.quote(w) + TXMTD_SEP + rcdIndex + TXMTD_SEP + count  + "\n");
+					br.write(UtilFunctions.quote(map.getKey(id)) + TXMTD_SEP + rcdIndex + TXMTD_SEP + count  + "\n");
 				
 				if(maxCount < count) {
 					maxCount = count;
-					mode = w;
+					mode = map.getKey(id);
 					modeIndex = rcdIndex;
 				}
 				
 				// Replace count with recode index (useful when invoked from CP)
-				map.put(w, (long)rcdIndex);
+				map.setValue(id, rcdIndex);
 		}
 		
 		if(br != null)		
@@ -305,23 +310,13 @@ public class RecodeAgent extends TransformationAgent {
 	 */
 	@Override
 	public void mergeAndOutputTransformationMetadata(Iterator<DistinctValue> values, String outputDir, int colID, FileSystem fs, TfUtils agents) throws IOException {
-		HashMap<String, Long> map = new HashMap<String,Long>();
+		RecodeDictionary map = new RecodeDictionary();
 		
 		DistinctValue d = new DistinctValue();
-		String word = null;
-		Long count = null, val = null;
 		while(values.hasNext()) {
 			d.reset();
 			d = values.next();
-			
-			word = d.getWord();
-			count = d.getCount();
-			
-			val = map.get(word);
-			if(val == null) 
-				map.put(word, count);
-			else 
-				map.put(word, val+count);
+			map.add(d.getWord(), d.getCount());
 		}
 		
 		writeMetadata(map, outputDir, colID, fs, agents, false);
@@ -329,11 +324,14 @@ public class RecodeAgent extends TransformationAgent {
 	
 	// ------------------------------------------------------------------------------------------------
 	
-	public HashMap<Integer, HashMap<String,Long>> getCPRecodeMaps() { return _rcdMaps; }
-	
-	HashMap<Integer, HashMap<String,String>> _finalMaps = null;
-	public HashMap<Integer, HashMap<String,String>> getRecodeMaps() {
-		return _finalMaps;
+	/**
+	 * Returns the recode maps of all columns, which map distinct values to recode ids
+	 * after the transformation metadata has been written (CP) or loaded.
+	 * 
+	 * @return
+	 */
+	public HashMap<Integer, RecodeDictionary> getRecodeMaps() { 
+		return _rcdMaps; 
 	}
 	
 	/**
@@ -347,7 +345,7 @@ public class RecodeAgent extends TransformationAgent {
 		if ( _rcdList == null )
 			return;
 		
-		_finalMaps = new HashMap<Integer, HashMap<String, String>>();
+		_rcdMaps = new HashMap<Integer, RecodeDictionary>();
 	
 		if(fs.isDirectory(txMtdDir)) {
 			for(int i=0; i<_rcdList.length;i++) {
@@ -356,7 +354,7 @@ public class RecodeAgent extends TransformationAgent {
 				Path path = new Path( txMtdDir + "/Recode/" + agents.getName(colID) + RCD_MAP_FILE_SUFFIX);
 				TfUtils.checkValidInputFile(fs, path, true); 
 				
-				HashMap<String,String> map = new HashMap<String,String>();
+				RecodeDictionary map = new RecodeDictionary();
 				
 				BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(path)));
 				String line = null, word=null;
@@ -374,10 +372,10 @@ public class RecodeAgent extends TransformationAgent {
 						idx++;
 					rcdIndex = line.substring(idxQuote+2,idx); 
 					
-					map.put(word, rcdIndex);
+					map.put(word, Long.parseLong(rcdIndex));
 				}
 				br.close();
-				_finalMaps.put(colID, map);
+				_rcdMaps.put(colID, map);
 			}
 		}
 		else {
@@ -400,9 +398,10 @@ public class RecodeAgent extends TransformationAgent {
 		for(int i=0; i < _rcdList.length; i++) {
 			int colID = _rcdList[i];
 			try {
-				words[colID-1] = _finalMaps.get(colID).get(UtilFunctions.unquote(words[colID-1].trim()));
+				long rcdIndex = _rcdMaps.get(colID).get(UtilFunctions.unquote(words[colID-1].trim()));
+				words[colID-1] = (rcdIndex > 0) ? Long.toString(rcdIndex) : null;
 			} catch(NullPointerException e) {
-				System.err.println("Maps for colID="+colID + " may be null (map = " + _finalMaps.get(colID) + ")");
+				System.err.println("Maps for colID="+colID + " may be null (map = " + _rcdMaps.get(colID) + ")");
 				throw new RuntimeException(e);
 			}
 		}
@@ -430,14 +429,14 @@ public class RecodeAgent extends TransformationAgent {
 		String w = null;
 		for(int i=0; i < _rcdList.length; i++) {
 			int colID = _rcdList[i];
-			try {
-				w = UtilFunctions.unquote(words[colID-1].trim());
-				words[colID-1] = Long.toString(_rcdMaps.get(colID).get(w));
-			} catch(NullPointerException e) {
+			w = UtilFunctions.unquote(words[colID-1].trim());
+			long rcdIndex = _rcdMaps.get(colID).get(w);
+			if( rcdIndex <= 0 ) {
 				if(w.isEmpty() && agents.isNA("") )
 					throw new RuntimeException("Empty string (a missing value) in column ID " + colID + " is not handled. Consider adding an imputation method on this column.");		
-				throw new RuntimeException("ColID="+colID + ", word=" + words[colID-1] + ", maps entry not found (map = " + _rcdMaps.get(colID) + ")");
+				throw new RuntimeException("ColID="+colID + ", word=" + words[colID-1] + ", maps entry not found (#entries = " + _rcdMaps.get(colID).size() + ")");
 			}
+			words[colID-1] = Long.toString(rcdIndex);
 		}
 			
 		return words;
@@ -447,9 +446,9 @@ public class RecodeAgent extends TransformationAgent {
 	public void printMaps() {
 		for(Integer k : _rcdMaps.keySet()) {
 			System.out.println("Column " + k);
-			HashMap<String,Long> map = _rcdMaps.get(k);
-			for(String w : map.keySet()) {
-				System.out.println("    " + w + " : " + map.get(w));
+			RecodeDictionary map = _rcdMaps.get(k);
+			for(int j=0; j < map.size(); j++) {
+				System.out.println("    " + map.getKey(j) + " : " + map.getValue(j));
 			}
 		}
 	}
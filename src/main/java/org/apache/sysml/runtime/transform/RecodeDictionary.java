@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.runtime.transform;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Compact dictionary of distinct values of a single recoded column, used for both
+ * constructing (distinct values and their counts) and applying (distinct values and
+ * their recode ids) recode maps.
+ *
+ * All distinct values are stored as char sequences in a single shared char pool,
+ * and looked up via an open-addressing hash table (linear probing) over entry ids.
+ * Compared to a HashMap&lt;String,Long&gt;, this avoids per-entry objects (hash map
+ * entries, strings and their char arrays, boxed longs), which reduces the memory
+ * footprint for high-cardinality columns by more than 3x and does not allocate any
+ * objects on lookup of existing values.
+ *
+ */
+public class RecodeDictionary implements Serializable
+{
+	private static final long serialVersionUID = -4530231457640217329L;
+
+	private static final int INIT_CAPACITY = 16;
+	
+	//max array length (some vms reserve header words in arrays)
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	private int[] _slots = null;   //hash table of entry ids+1, 0 if empty
+	private int[] _hashes = null;  //hash codes per entry
+	private int[] _offsets = null; //start offsets per entry in char pool (size+1)
+	private long[] _values = null; //counts or recode ids per entry
+	private char[] _chars = null;  //char pool of all distinct values
+	private int _size = 0;
+
+	public RecodeDictionary() {
+		this(INIT_CAPACITY);
+	}
+
+	public RecodeDictionary(int capacity) {
+		int cap = Math.max(capacity, INIT_CAPACITY);
+		_slots = new int[tableSize(cap)];
+		_hashes = new int[cap];
+		_offsets = new int[cap+1];
+		_values = new long[cap];
+		_chars = new char[newArraySize(0, (long)cap*8)];
+	}
+
+	/**
+	 * Returns the number of distinct values.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Adds the given delta to the value of the given key, where
+	 * non-existing keys are inserted with an initial value of 0.
+	 *
+	 * @param key
+	 * @param delta
+	 * @return the new value
+	 */
+	public long add(String key, long delta) {
+		int id = lookupOrInsert(key);
+		_values[id] += delta;
+		return _values[id];
+	}
+
+	/**
+	 * Sets the value of the given key, where non-existing keys are inserted.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void put(String key, long value) {
+		_values[lookupOrInsert(key)] = value;
+	}
+
+	/**
+	 * Returns the value of the given key, or -1 if the key does not exist.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public long get(String key) {
+		int id = lookup(key, hash(key));
+		return (id >= 0) ? _values[id] : -1;
+	}
+
+	/**
+	 * Removes the given key, if existing. Since removals are rare (e.g., NA strings),
+	 * this rebuilds the dictionary, which keeps the entry ids dense.
+	 *
+	 * @param key
+	 */
+	public void remove(String key) {
+		int id = lookup(key, hash(key));
+		if( id < 0 )
+			return;
+
+		RecodeDictionary tmp = new RecodeDictionary(_size);
+		for( int i=0; i<_size; i++ )
+			if( i != id )
+				tmp.put(getKey(i), _values[i]);
+
+		_slots = tmp._slots;
+		_hashes = tmp._hashes;
+		_offsets = tmp._offsets;
+		_values = tmp._values;
+		_chars = tmp._chars;
+		_size = tmp._size;
+	}
+
+	/**
+	 * Adds the values of all entries of the given dictionary
+	 * (e.g., partial counts) to the entries of this dictionary.
+	 *
+	 * @param that
+	 */
+	public void merge(RecodeDictionary that) {
+		for( int i=0; i<that._size; i++ )
+			add(that.getKey(i), that._values[i]);
+	}
+
+	/**
+	 * Returns the key of the given entry id in [0, size).
+	 *
+	 * @param id
+	 * @return
+	 */
+	public String getKey(int id) {
+		return new String(_chars, _offsets[id], _offsets[id+1]-_offsets[id]);
+	}
+
+	/**
+	 * Returns the value of the given entry id in [0, size).
+	 *
+	 * @param id
+	 * @return
+	 */
+	public long getValue(int id) {
+		return _values[id];
+	}
+
+	/**
+	 * Sets the value of the given entry id in [0, size).
+	 *
+	 * @param id
+	 * @param value
+	 */
+	public void setValue(int id, long value) {
+		_values[id] = value;
+	}
+
+	/**
+	 * Returns all entry ids, ordered by the natural (lexicographical)
+	 * order of their keys, without materializing the keys as strings.
+	 *
+	 * @return
+	 */
+	public Integer[] getSortedIds() {
+		Integer[] ids = new Integer[_size];
+		for( int i=0; i<_size; i++ )
+			ids[i] = i;
+		Arrays.sort(ids, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return compareKeys(o1, o2);
+			}
+		});
+		return ids;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for( int i=0; i<_size; i++ ) {
+			if( i > 0 )
+				sb.append(", ");
+			sb.append(getKey(i));
+			sb.append("=");
+			sb.append(_values[i]);
+		}
+		sb.append("}");
+		return sb.toString();
+	}
+
+	////////////////////////////////
+	// internal hash table handling
+	////////////////////////////////
+
+	private int lookupOrInsert(String key) {
+		int h = hash(key);
+		int id = lookup(key, h);
+		return (id >= 0) ? id : insert(key, h);
+	}
+
+	private int lookup(String key, int h) {
+		int mask = _slots.length - 1;
+		for( int pos = h & mask; _slots[pos] != 0; pos = (pos+1) & mask ) {
+			int id = _slots[pos] - 1;
+			if( _hashes[id] == h && equalsKey(id, key) )
+				return id;
+		}
+		return -1;
+	}
+
+	private int insert(String key, int h) {
+		//grow entry arrays and char pool if required
+		int id = _size;
+		if( id == _hashes.length ) {
+			if( id >= MAX_ARRAY_SIZE - 1 )
+				throw new RuntimeException("Recode dictionary exceeds the maximum number of distinct values: "+id);
+			int cap = newArraySize(id+1, (long)id*2);
+			_hashes = Arrays.copyOf(_hashes, cap);
+			_offsets = Arrays.copyOf(_offsets, cap+1);
+			_values = Arrays.copyOf(_values, cap);
+		}
+		int len = key.length();
+		int off = _offsets[id];
+		long minLen = (long)off + len;
+		if( minLen > _chars.length ) {
+			if( minLen > MAX_ARRAY_SIZE )
+				throw new RuntimeException("Recode dictionary exceeds the maximum size of "
+					+ "its char pool: "+minLen+" > "+MAX_ARRAY_SIZE+" chars.");
+			_chars = Arrays.copyOf(_chars, newArraySize((int)minLen, (long)_chars.length*2));
+		}
+
+		//append entry
+		key.getChars(0, len, _chars, off);
+		_offsets[id+1] = off + len;
+		_hashes[id] = h;
+		_values[id] = 0;
+		_size++;
+
+		//grow and rehash table (load factor 0.75), or add to table
+		if( (long)_size * 4 > (long)_slots.length * 3 )
+			rehash(tableSize(_size)); //doubling
+		else
+			insertSlot(id);
+
+		return id;
+	}
+
+	private void rehash(int tableSize) {
+		_slots = new int[tableSize];
+		for( int i=0; i<_size; i++ )
+			insertSlot(i);
+	}
+
+	private void insertSlot(int id) {
+		int mask = _slots.length - 1;
+		int pos = _hashes[id] & mask;
+		while( _slots[pos] != 0 )
+			pos = (pos+1) & mask;
+		_slots[pos] = id + 1;
+	}
+
+	private boolean equalsKey(int id, String key) {
+		int off = _offsets[id];
+		int len = _offsets[id+1] - off;
+		if( len != key.length() )
+			return false;
+		for( int i=0; i<len; i++ )
+			if( _chars[off+i] != key.charAt(i) )
+				return false;
+		return true;
+	}
+
+	private int compareKeys(int id1, int id2) {
+		int off1 = _offsets[id1], len1 = _offsets[id1+1] - off1;
+		int off2 = _offsets[id2], len2 = _offsets[id2+1] - off2;
+		int lim = Math.min(len1, len2);
+		for( int i=0; i<lim; i++ ) {
+			char c1 = _chars[off1+i];
+			char c2 = _chars[off2+i];
+			if( c1 != c2 )
+				return c1 - c2;
+		}
+		return len1 - len2;
+	}
+
+	private static int hash(String key) {
+		//spread higher bits (string hash codes are cached)
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private static int tableSize(int capacity) {
+		//power of two, with load factor <= 0.75
+		int size = INIT_CAPACITY;
+		while( (long)size * 3 < (long)capacity * 4 ) {
+			if( size >= (1<<30) )
+				throw new RuntimeException("Recode dictionary exceeds the maximum hash table size: "+capacity);
+			size *= 2;
+		}
+		return size;
+	}
+	
+	private static int newArraySize(int minSize, long preferredSize) {
+		//preferred size (e.g., doubling) capped at max array size, but at least min size
+		return (int)Math.max(minSize, Math.min(preferredSize, MAX_ARRAY_SIZE));
+	}
+}
@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import org.apache.hadoop.filecache.DistributedCache;
@@ -43,9 +44,11 @@ import org.apache.sysml.conf.ConfigurationManager;
 import org.apache.sysml.parser.DataExpression;
 import org.apache.sysml.runtime.DMLRuntimeException;
 import org.apache.sysml.runtime.controlprogram.parfor.stat.InfrastructureAnalyzer;
+import org.apache.sysml.runtime.io.IOUtilFunctions;
 import org.apache.sysml.runtime.io.MatrixReader;
 import org.apache.sysml.runtime.matrix.CSVReblockMR;
 import org.apache.sysml.runtime.matrix.CSVReblockMR.OffsetCount;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
 import org.apache.sysml.runtime.matrix.mapred.MRJobConfiguration;
 import org.apache.sysml.runtime.util.MapReduceTool;
 import org.apache.sysml.runtime.util.UtilFunctions;
@@ -65,7 +68,7 @@ public class TfUtils implements Serializable{
 	
 	private long _numRecordsInPartFile;		// Total number of records in the data file
 	private long _numValidRecords;			// (_numRecordsInPartFile - #of omitted records)
-	private long _numTransformedRows; 		// Number of rows after applying transformations
+	private AtomicLong _numTransformedRows; // Number of rows after applying transformations (shared by parallel apply tasks)
 	private long _numTransformedColumns; 	// Number of columns after applying transformations
 
 	private String _headerLine = null;
@@ -76,6 +79,8 @@ public class TfUtils implements Serializable{
 	private String[] _outputColumnNames = null;
 	private long _numInputCols = -1;
 	
+	private transient volatile FusedApplyPlan _faPlan = null; //plan for fused apply
+	
 	private String _tfMtdDir = null;
 	private String _specFile = null;
 	private String _offsetFile = null;
@@ -119,6 +124,39 @@ public class TfUtils implements Serializable{
 			return false;
 	}
 	
+	/**
+	 * Creates agents for in-memory apply of existing transformation metadata, 
+	 * where the specification (spec.json), the original header, and the metadata 
+	 * of all agents are read once from the given transformation metadata directory.
+	 * 
+	 * @param tfMtdDir
+	 * @param delim delimiter of the original header
+	 * @param naStrings na strings, separated by DataExpression.DELIM_NA_STRING_SEP
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public static TfUtils readTfMetadata(String tfMtdDir, String delim, String naStrings) 
+		throws IOException, JSONException 
+	{
+		JobConf job = new JobConf(ConfigurationManager.getCachedJobConf());
+		FileSystem fs = FileSystem.get(job);
+		
+		// read spec and original header
+		JSONObject spec = readSpec(fs, tfMtdDir + "/spec.json");
+		Path pt = new Path(tfMtdDir + "/" + TransformationAgent.OUT_HEADER);
+		BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(pt)));
+		String headerLine = br.readLine();
+		br.close();
+		
+		// create agents and load transformation metadata
+		int ncol = Pattern.compile(Pattern.quote(delim)).split(headerLine, -1).length;
+		TfUtils agents = new TfUtils(headerLine, false, delim, parseNAStrings(naStrings), spec, ncol, tfMtdDir, null, null);
+		agents.loadTfMetadata(job, false);
+		
+		return agents;
+	}
+	
 	public static JSONObject readSpec(FileSystem fs, String specFile) throws IOException {
 		BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(new Path(specFile))));
 		JSONObject obj = JSONHelper.parse(br);
@@ -176,7 +214,7 @@ public class TfUtils implements Serializable{
 	{
 		_numRecordsInPartFile = 0;
 		_numValidRecords = 0;
-		_numTransformedRows = 0;
+		_numTransformedRows = new AtomicLong(0);
 		_numTransformedColumns = 0;
 		
 		_headerLine = headerLine;
@@ -249,7 +287,7 @@ public class TfUtils implements Serializable{
 	public void incrValid() { _numValidRecords++; }
 	public long getValid()  { return _numValidRecords; }
 	public long getTotal()  { return _numRecordsInPartFile; }
-	public long getNumTransformedRows() 	{ return _numTransformedRows; }
+	public long getNumTransformedRows() 	{ return _numTransformedRows.get(); }
 	public long getNumTransformedColumns() 	{ return _numTransformedColumns; }
 	
 	public String getHeader() 		{ return _headerLine; }
@@ -326,6 +364,22 @@ public class TfUtils implements Serializable{
 		return words;
 	}
 	
+	/**
+	 * Merges the partial transformation metadata of the given agents, which
+	 * were constructed via prepareTfMtd over a disjoint set of rows (e.g., a 
+	 * split of the input), into this instance.
+	 * 
+	 * @param that
+	 * @throws IOException
+	 */
+	public void mergeTfMtd(TfUtils that) throws IOException {
+		getMVImputeAgent().mergeTfMtd(that.getMVImputeAgent());
+		getRecodeAgent().mergeTfMtd(that.getRecodeAgent());
+		getBinAgent().mergeTfMtd(that.getBinAgent());
+		_numValidRecords += that.getValid();
+		_numRecordsInPartFile += that.getTotal();
+	}
+	
 	public void loadTfMetadata() throws IOException 
 	{
 		JobConf job = ConfigurationManager.getCachedJobConf();
@@ -336,6 +390,7 @@ public class TfUtils implements Serializable{
 	{
 		Path tfMtdDir = null; 
 		FileSystem fs = null;
+		_faPlan = null; //reset fused apply plan
 		
 		if(fromLocalFS) {
 			// metadata must be read from local file system (e.g., distributed cache in the case of Hadoop)
@@ -426,11 +481,106 @@ public class TfUtils implements Serializable{
 		words = getBinAgent().apply(words, this);
 		words = getDummycodeAgent().apply(words, this);
 		
-		_numTransformedRows++;
+		_numTransformedRows.incrementAndGet();
 		
 		return words;
 	}
 	
+	/**
+	 * Function to apply transformation metadata on a given row, where the numeric
+	 * output values (incl. recode ids, bin ids, and dummycoded one-hot encodings) are 
+	 * directly appended to row r of the given output block (fused single-pass apply), 
+	 * without constructing intermediate strings. Empty cells that are not transformed 
+	 * are handled according to the given fill semantics, similar to csv reblock.
+	 * 
+	 * @param words
+	 * @param out
+	 * @param r
+	 * @param fill
+	 * @param fillValue
+	 * @throws DMLRuntimeException
+	 * @throws IOException
+	 */
+	public void apply( String[] words, MatrixBlock out, int r, boolean fill, double fillValue ) 
+		throws DMLRuntimeException, IOException
+	{
+		FusedApplyPlan plan = getFusedApplyPlan();
+		
+		for( int j=0; j < words.length; j++ ) 
+		{
+			String w = words[j];
+			
+			// impute missing values
+			if( plan.replace[j] != null && isNA(UtilFunctions.unquote(w)) )
+				w = plan.replace[j];
+			
+			double val = 0;
+			if( plan.rcdMaps[j] != null ) {
+				// recode
+				String rw = UtilFunctions.unquote(w.trim());
+				val = plan.rcdMaps[j].get(rw);
+				if( val <= 0 ) {
+					if( isNA(rw) )
+						throw new DMLRuntimeException("Missing value \"" + rw + "\" in column ID " + (j+1) + " is not handled. Consider adding an imputation method on this column.");
+					if( plan.dcd[j] )
+						throw new DMLRuntimeException("Error in dummycoding: colID=" + (j+1) + ", word=" + rw + " not found in recode map.");
+					continue; //unknown category, not recoded
+				}
+			}
+			else if( w.isEmpty() && plan.scale[j] == null && plan.binIx[j] < 0 ) {
+				// empty cell without transformation
+				if( getNAStrings() != null )
+					throw new DMLRuntimeException("When na.strings are provided, empty string \"\" is considered as a missing value, and it must be imputed appropriately. Encountered an unhandled empty string in column ID: " + (j+1));
+				IOUtilFunctions.checkAndRaiseErrorCSVEmptyField(null, fill, true);
+				val = fillValue;
+			}
+			else {
+				// scale and bin
+				try {
+					val = UtilFunctions.parseToDouble(w);
+				}
+				catch(NumberFormatException e) {
+					throw new DMLRuntimeException("Encountered \"" + w + "\" in column ID \"" + (j+1) + "\", when expecting a numeric value. Consider adding \"" + w + "\" to na.strings, along with an appropriate imputation method.");
+				}
+				if( plan.scale[j] != null )
+					val = (val - plan.scale[j][0]) / plan.scale[j][1];
+				if( plan.binIx[j] >= 0 )
+					val = getBinAgent().getBinID(plan.binIx[j], val);
+			}
+			
+			// dummycode or output value
+			if( plan.dcd[j] )
+				out.appendValue(r, plan.outCol[j] + (int)val - 1, 1);
+			else if( val != 0 )
+				out.appendValue(r, plan.outCol[j], val);
+		}
+		
+		_numTransformedRows.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of output columns of the fused apply, which
+	 * requires that the transformation metadata has been loaded.
+	 * 
+	 * @return
+	 */
+	public int getNumFusedApplyColumns() {
+		return getFusedApplyPlan().numColsTf;
+	}
+	
+	private FusedApplyPlan getFusedApplyPlan() {
+		//lazy construction after metadata load, thread-safe for parallel apply
+		FusedApplyPlan plan = _faPlan;
+		if( plan == null ) {
+			synchronized( this ) {
+				if( _faPlan == null )
+					_faPlan = new FusedApplyPlan(this);
+				plan = _faPlan;
+			}
+		}
+		return plan;
+	}
+	
 	public void check(String []words) throws DMLRuntimeException 
 	{
 		boolean checkEmptyString = ( getNAStrings() != null );
@@ -546,4 +696,49 @@ public class TfUtils implements Serializable{
 		
 		return ret;
 	}
+	
+	/**
+	 * Per-column plan of transformations for fused apply, constructed once from
+	 * the loaded transformation metadata and shared read-only across rows.
+	 */
+	private static class FusedApplyPlan
+	{
+		private String[] replace = null;              //mv replacements, null if not imputed
+		private double[][] scale = null;              //scaling parameters, null if not scaled
+		private RecodeDictionary[] rcdMaps = null;    //recode maps, null if not recoded
+		private int[] binIx = null;                   //positions in bin list, -1 if not binned
+		private boolean[] dcd = null;                 //dummycoded flags
+		private int[] outCol = null;                  //first output column (0-based)
+		private int numColsTf = -1;                   //number of output columns
+		
+		public FusedApplyPlan(TfUtils agents) {
+			int ncol = (int) agents.getNumCols();
+			MVImputeAgent mia = agents.getMVImputeAgent();
+			RecodeAgent ra = agents.getRecodeAgent();
+			BinAgent ba = agents.getBinAgent();
+			DummycodeAgent da = agents.getDummycodeAgent();
+			
+			replace = new String[ncol];
+			scale = new double[ncol][];
+			rcdMaps = new RecodeDictionary[ncol];
+			binIx = new int[ncol];
+			dcd = new boolean[ncol];
+			outCol = new int[ncol];
+			
+			int pos = 0;
+			for( int j=0; j<ncol; j++ ) {
+				int colID = j+1;
+				replace[j] = mia.getReplacement(colID);
+				scale[j] = mia.getScaleParams(colID);
+				rcdMaps[j] = (ra.isRecoded(colID) != -1) ? ra.getRecodeMaps().get(colID) : null;
+				binIx[j] = ba.isBinned(colID);
+				
+				int dcdIx = da.isDummyCoded(colID);
+				dcd[j] = (dcdIx != -1);
+				outCol[j] = pos;
+				pos += dcd[j] ? da.getDomainSizes()[dcdIx] : 1;
+			}
+			numColsTf = pos;
+		}
+	}
 }
@@ -287,6 +287,26 @@ public class MapReduceTool
 		return ret;
 	}
 	
+	/**
+	 * Returns the latest modification time of a file or directory (incl. the
+	 * files of the directory) on hdfs.
+	 * 
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static long getModificationTimeOnHDFS( Path path ) 
+		throws IOException
+	{
+		FileSystem fs = FileSystem.get(_rJob);
+		long ret = fs.getFileStatus(path).getModificationTime();
+		if( fs.isDirectory(path) )
+			for( FileStatus stat : fs.listStatus(path) )
+				ret = Math.max(ret, stat.getModificationTime());
+		
+		return ret;
+	}
+	
 	private static BufferedReader setupInputFile ( String filename ) throws IOException {
         Path pt=new Path(filename);
         FileSystem fs = FileSystem.get(_rJob);
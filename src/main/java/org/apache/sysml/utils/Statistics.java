@@ -70,6 +70,10 @@ public class Statistics
 	private static AtomicLong hopRecompileTime = new AtomicLong(0); //in nano sec
 	private static AtomicLong hopRecompilePred = new AtomicLong(0); //count
 	private static AtomicLong hopRecompileSB = new AtomicLong(0);   //count
+	private static AtomicLong hopRecompileCacheHits = new AtomicLong(0); //count
+	
+	//Lineage-based reuse stats
+	private static AtomicLong lineageCacheHits = new AtomicLong(0); //count
 
 	//Function recompile stats 
 	private static AtomicLong funRecompileTime = new AtomicLong(0); //in nano sec
@@ -216,6 +220,16 @@ public class Statistics
 		//note: not synchronized due to use of atomics
 		hopRecompileSB.addAndGet(delta);
 	}
+	
+	public static void incrementHOPRecompilePlanCacheHits() {
+		//note: not synchronized due to use of atomics
+		hopRecompileCacheHits.incrementAndGet();
+	}
+	
+	public static void incrementLineageCacheHits() {
+		//note: not synchronized due to use of atomics
+		lineageCacheHits.incrementAndGet();
+	}
 
 	public static void incrementFunRecompileTime( long delta ) {
 		//note: not synchronized due to use of atomics
@@ -287,6 +301,8 @@ public class Statistics
 		hopRecompileTime.set(0);
 		hopRecompilePred.set(0);
 		hopRecompileSB.set(0);
+		hopRecompileCacheHits.set(0);
+		lineageCacheHits.set(0);
 		
 		parforOptCount = 0;
 		parforOptTime = 0;
@@ -467,6 +483,14 @@ public class Statistics
 		return hopRecompileSB.get();
 	}
 	
+	public static long getHopRecompilePlanCacheHits(){
+		return hopRecompileCacheHits.get();
+	}
+	
+	public static long getLineageCacheHits(){
+		return lineageCacheHits.get();
+	}
+	
 	public static long getFunRecompileTime(){
 		return funRecompileTime.get();
 	}
@@ -525,6 +549,10 @@ public class Statistics
 			sb.append("Cache times (ACQr/m, RLS, EXP):\t" + CacheStatistics.displayTime() + " sec.\n");
 			sb.append("HOP DAGs recompiled (PRED, SB):\t" + getHopRecompiledPredDAGs() + "/" + getHopRecompiledSBDAGs() + ".\n");
 			sb.append("HOP DAGs recompile time:\t" + String.format("%.3f", ((double)getHopRecompileTime())/1000000000) + " sec.\n");
+			if( getHopRecompilePlanCacheHits()>0 )
+				sb.append("HOP DAGs recompile cache hits:\t" + getHopRecompilePlanCacheHits() + ".\n");
+			if( getLineageCacheHits()>0 )
+				sb.append("Lineage cache hits:\t\t" + getLineageCacheHits() + ".\n");
 			if( getFunRecompiles()>0 ) {
 				sb.append("Functions recompiled:\t\t" + getFunRecompiles() + ".\n");
 				sb.append("Functions recompile time:\t" + String.format("%.3f", ((double)getFunRecompileTime())/1000000000) + " sec.\n");	
@@ -0,0 +1,310 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.aggregate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.function.PairFlatMapFunction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import scala.Tuple2;
+
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.runtime.controlprogram.caching.CacheableData;
+import org.apache.sysml.runtime.controlprogram.context.ExecutionContextFactory;
+import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
+import org.apache.sysml.runtime.instructions.spark.utils.RDDAggregateUtils;
+import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.matrix.data.MatrixIndexes;
+import org.apache.sysml.runtime.util.DataConverter;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * Tests the selection of tree aggregation depths for single-block aggregates
+ * as well as the partition-local pre-aggregation of sum by key, both compared 
+ * against the simple reduce and combine by key without pre-aggregation.
+ */
+public class RDDAggregateUtilsTest extends AutomatedTestBase 
+{
+	private final static String TEST_NAME = "RDDAggregateUtils";
+	private final static String TEST_DIR = "functions/aggregate/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + RDDAggregateUtilsTest.class.getSimpleName() + "/";
+	
+	private final static int rows = 250;
+	private final static int cols = 170;
+	private final static int blocksize = 100;
+	private final static int partials = 7;  //blocks per output block
+	private final static int numParts = 16; //input partitions
+	
+	private final static double eps = 1e-10;
+	
+	@Override
+	public void setUp() 
+	{
+		TestUtils.clearAssertionInformation();
+		addTestConfiguration(TEST_NAME, 
+			new TestConfiguration(TEST_CLASS_DIR, TEST_NAME, new String[] { "R" }) ); 
+	}
+	
+	@Test
+	public void testTreeAggregationDepth() 
+	{
+		int depthOld = RDDAggregateUtils.TREE_AGGREGATION_DEPTH;
+		
+		try
+		{
+			//automatic depth selection
+			RDDAggregateUtils.TREE_AGGREGATION_DEPTH = -1;
+			MatrixCharacteristics mcSmall = new MatrixCharacteristics(1000, 1000, 1000, 1000); //8MB
+			MatrixCharacteristics mcLarge = new MatrixCharacteristics(10000, 10000, 1000, 1000); //800MB
+			
+			//simple reduce for moderate number of partitions and partial aggregates
+			Assert.assertTrue(RDDAggregateUtils.getTreeAggregationDepth(null, 100) < 2);
+			Assert.assertTrue(RDDAggregateUtils.getTreeAggregationDepth(mcSmall, 100) < 2);
+			
+			//tree aggregation for large numbers of partitions (unknown size)
+			Assert.assertEquals(2, RDDAggregateUtils.getTreeAggregationDepth(null, 4096));
+			Assert.assertEquals(3, RDDAggregateUtils.getTreeAggregationDepth(null, 8*1024*1024));
+			
+			//tree aggregation for large total size of partial aggregates
+			Assert.assertEquals(2, RDDAggregateUtils.getTreeAggregationDepth(mcSmall, 1000));
+			Assert.assertEquals(4, RDDAggregateUtils.getTreeAggregationDepth(mcLarge, 100));
+			
+			//forced configuration
+			RDDAggregateUtils.TREE_AGGREGATION_DEPTH = 0;
+			Assert.assertEquals(0, RDDAggregateUtils.getTreeAggregationDepth(null, 4096));
+			RDDAggregateUtils.TREE_AGGREGATION_DEPTH = 3;
+			Assert.assertEquals(3, RDDAggregateUtils.getTreeAggregationDepth(mcSmall, 100));
+		}
+		finally {
+			RDDAggregateUtils.TREE_AGGREGATION_DEPTH = depthOld;
+		}
+	}
+	
+	@Test
+	public void testSumStableTreeAggregationDepth2() {
+		runSumStableTest( 2 );
+	}
+	
+	@Test
+	public void testSumStableTreeAggregationDepth3() {
+		runSumStableTest( 3 );
+	}
+	
+	@Test
+	public void testSumByKeyStablePreAggregation() {
+		runSumByKeyStableTest( false );
+	}
+	
+	@Test
+	public void testSumByKeyStablePreAggregationReusedKeys() {
+		runSumByKeyStableTest( true );
+	}
+	
+	/**
+	 * 
+	 * @param depth forced tree aggregation depth
+	 */
+	private void runSumStableTest( int depth )
+	{
+		RUNTIME_PLATFORM platformOld = DMLScript.rtplatform;
+		boolean sparkConfigOld = DMLScript.USE_LOCAL_SPARK_CONFIG;
+		boolean cachingOld = CacheableData.isCachingActive();
+		int depthOld = RDDAggregateUtils.TREE_AGGREGATION_DEPTH;
+		
+		try
+		{
+			getAndLoadTestConfiguration(TEST_NAME);
+			DMLScript.rtplatform = RUNTIME_PLATFORM.SPARK;
+			DMLScript.USE_LOCAL_SPARK_CONFIG = true;
+			CacheableData.disableCaching();
+			
+			SparkExecutionContext sec = (SparkExecutionContext) ExecutionContextFactory.createContext();
+			
+			//create partial aggregates of a single output block
+			double[][] expected = new double[blocksize][blocksize];
+			ArrayList<Tuple2<MatrixIndexes,MatrixBlock>> blocks = createPartialBlocks(1, 1, expected);
+			MatrixCharacteristics mcOut = new MatrixCharacteristics(blocksize, blocksize, blocksize, blocksize);
+			
+			//existing aggregate (simple reduce)
+			RDDAggregateUtils.TREE_AGGREGATION_DEPTH = 0;
+			MatrixBlock ret1 = RDDAggregateUtils.sumStable(mcOut, 
+				sec.getSparkContext().parallelizePairs(blocks, numParts));
+			
+			//tree aggregation with given depth
+			RDDAggregateUtils.TREE_AGGREGATION_DEPTH = depth;
+			MatrixBlock ret2 = RDDAggregateUtils.sumStable(mcOut, 
+				sec.getSparkContext().parallelizePairs(blocks, numParts));
+			
+			//compare results
+			TestUtils.compareMatrices(expected, DataConverter.convertToDoubleMatrix(ret1), blocksize, blocksize, eps);
+			TestUtils.compareMatrices(DataConverter.convertToDoubleMatrix(ret1), 
+				DataConverter.convertToDoubleMatrix(ret2), blocksize, blocksize, eps);
+		}
+		catch(Exception ex) {
+			throw new RuntimeException(ex);
+		}
+		finally {
+			DMLScript.rtplatform = platformOld;
+			DMLScript.USE_LOCAL_SPARK_CONFIG = sparkConfigOld;
+			if( cachingOld )
+				CacheableData.enableCaching();
+			RDDAggregateUtils.TREE_AGGREGATION_DEPTH = depthOld;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param reuseKeys input iterators reuse key objects (as for hadoop sequence files) 
+	 */
+	private void runSumByKeyStableTest( boolean reuseKeys )
+	{
+		RUNTIME_PLATFORM platformOld = DMLScript.rtplatform;
+		boolean sparkConfigOld = DMLScript.USE_LOCAL_SPARK_CONFIG;
+		boolean cachingOld = CacheableData.isCachingActive();
+		boolean preaggOld = RDDAggregateUtils.PARTITION_PREAGGREGATION;
+		
+		try
+		{
+			getAndLoadTestConfiguration(TEST_NAME);
+			DMLScript.rtplatform = RUNTIME_PLATFORM.SPARK;
+			DMLScript.USE_LOCAL_SPARK_CONFIG = true;
+			CacheableData.disableCaching();
+			
+			SparkExecutionContext sec = (SparkExecutionContext) ExecutionContextFactory.createContext();
+			
+			//create partial aggregates of all output blocks, shuffled over partitions
+			double[][] expected = new double[rows][cols];
+			ArrayList<Tuple2<MatrixIndexes,MatrixBlock>> blocks = new ArrayList<Tuple2<MatrixIndexes,MatrixBlock>>();
+			for( int bi=1; bi<=(rows-1)/blocksize+1; bi++ )
+				for( int bj=1; bj<=(cols-1)/blocksize+1; bj++ )
+					blocks.addAll(createPartialBlocks(bi, bj, expected));
+			Collections.shuffle(blocks, new Random(7));
+			MatrixCharacteristics mcOut = new MatrixCharacteristics(rows, cols, blocksize, blocksize);
+			
+			//existing aggregate (combine by key w/o pre-aggregation)
+			RDDAggregateUtils.PARTITION_PREAGGREGATION = false;
+			JavaPairRDD<MatrixIndexes,MatrixBlock> out1 = RDDAggregateUtils.sumByKeyStable(mcOut, 
+				sec.getSparkContext().parallelizePairs(blocks, numParts));
+			MatrixBlock ret1 = SparkExecutionContext.toMatrixBlock(out1, rows, cols, blocksize, blocksize, -1);
+			
+			//partition-local pre-aggregation
+			RDDAggregateUtils.PARTITION_PREAGGREGATION = true;
+			JavaPairRDD<MatrixIndexes,MatrixBlock> in2 = sec.getSparkContext().parallelizePairs(blocks, numParts);
+			if( reuseKeys )
+				in2 = in2.mapPartitionsToPair(new ReuseKeyFunction(), true);
+			JavaPairRDD<MatrixIndexes,MatrixBlock> out2 = RDDAggregateUtils.sumByKeyStable(mcOut, in2);
+			Assert.assertEquals(out1.count(), out2.count());
+			MatrixBlock ret2 = SparkExecutionContext.toMatrixBlock(out2, rows, cols, blocksize, blocksize, -1);
+			
+			//compare results
+			TestUtils.compareMatrices(expected, DataConverter.convertToDoubleMatrix(ret1), rows, cols, eps);
+			TestUtils.compareMatrices(DataConverter.convertToDoubleMatrix(ret1), 
+				DataConverter.convertToDoubleMatrix(ret2), rows, cols, eps);
+		}
+		catch(Exception ex) {
+			throw new RuntimeException(ex);
+		}
+		finally {
+			DMLScript.rtplatform = platformOld;
+			DMLScript.USE_LOCAL_SPARK_CONFIG = sparkConfigOld;
+			if( cachingOld )
+				CacheableData.enableCaching();
+			RDDAggregateUtils.PARTITION_PREAGGREGATION = preaggOld;
+		}
+	}
+	
+	/**
+	 * Creates random partial blocks for the given output block and adds them 
+	 * to the expected output.
+	 * 
+	 * @param bi
+	 * @param bj
+	 * @param expected
+	 * @return
+	 */
+	private ArrayList<Tuple2<MatrixIndexes,MatrixBlock>> createPartialBlocks( int bi, int bj, double[][] expected )
+	{
+		int rl = (bi-1) * blocksize;
+		int cl = (bj-1) * blocksize;
+		int brlen = Math.min(blocksize, expected.length-rl);
+		int bclen = Math.min(blocksize, expected[0].length-cl);
+		
+		ArrayList<Tuple2<MatrixIndexes,MatrixBlock>> ret = new ArrayList<Tuple2<MatrixIndexes,MatrixBlock>>();
+		for( int k=0; k<partials; k++ ) {
+			double[][] tmp = getRandomMatrix(brlen, bclen, -1, 1, 0.7, bi*1000+bj*100+k);
+			for( int i=0; i<brlen; i++ )
+				for( int j=0; j<bclen; j++ )
+					expected[rl+i][cl+j] += tmp[i][j];
+			ret.add(new Tuple2<MatrixIndexes,MatrixBlock>(
+				new MatrixIndexes(bi, bj), DataConverter.convertToMatrixBlock(tmp)));
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Passes the blocks of a partition through with a single reused key object,
+	 * similar to record readers of hadoop sequence files.
+	 */
+	private static class ReuseKeyFunction implements PairFlatMapFunction<Iterator<Tuple2<MatrixIndexes,MatrixBlock>>, MatrixIndexes, MatrixBlock> 
+	{
+		private static final long serialVersionUID = -2384536520281471413L;
+
+		@Override
+		public Iterable<Tuple2<MatrixIndexes, MatrixBlock>> call(final Iterator<Tuple2<MatrixIndexes, MatrixBlock>> arg0)
+			throws Exception 
+		{
+			return new Iterable<Tuple2<MatrixIndexes, MatrixBlock>>() {
+				@Override
+				public Iterator<Tuple2<MatrixIndexes, MatrixBlock>> iterator() {
+					return new Iterator<Tuple2<MatrixIndexes, MatrixBlock>>() {
+						private MatrixIndexes _ix = new MatrixIndexes();
+						
+						@Override
+						public boolean hasNext() {
+							return arg0.hasNext();
+						}
+
+						@Override
+						public Tuple2<MatrixIndexes, MatrixBlock> next() {
+							Tuple2<MatrixIndexes, MatrixBlock> tmp = arg0.next();
+							_ix.setIndexes(tmp._1());
+							return new Tuple2<MatrixIndexes, MatrixBlock>(_ix, tmp._2());
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.caching;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.parser.DMLTranslator;
+import org.apache.sysml.parser.Expression.ValueType;
+import org.apache.sysml.runtime.controlprogram.caching.CacheableData;
+import org.apache.sysml.runtime.controlprogram.caching.MatrixObject;
+import org.apache.sysml.runtime.controlprogram.context.ExecutionContextFactory;
+import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
+import org.apache.sysml.runtime.controlprogram.parfor.ProgramConverter;
+import org.apache.sysml.runtime.instructions.spark.data.PartitionedBroadcastMatrix;
+import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
+import org.apache.sysml.runtime.matrix.MatrixFormatMetaData;
+import org.apache.sysml.runtime.matrix.data.InputInfo;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.matrix.data.OutputInfo;
+import org.apache.sysml.runtime.util.DataConverter;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * Tests the shared broadcast cache of the spark execution context, i.e., that
+ * matrix objects of the same data (re-created matrix objects of the same file,
+ * and copies of in-memory intermediates) share their partitioned broadcasts, 
+ * and that modified data (modified matrix objects and overwritten files) never 
+ * reuses broadcasts of the old data.
+ */
+public class BroadcastCacheTest extends AutomatedTestBase 
+{
+	private final static String TEST_NAME = "BroadcastCache";
+	private final static String TEST_DIR = "functions/caching/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + BroadcastCacheTest.class.getSimpleName() + "/";
+	
+	private final static int rows = 170;
+	private final static int cols = 70;
+	private final static double sparsity1 = 0.7;
+	private final static double sparsity2 = 0.1;
+	
+	@Override
+	public void setUp() 
+	{
+		TestUtils.clearAssertionInformation();
+		addTestConfiguration(TEST_NAME, 
+			new TestConfiguration(TEST_CLASS_DIR, TEST_NAME, new String[] { "A" }) ); 
+	}
+	
+	@Test
+	public void testBroadcastCacheFile() {
+		runBroadcastCacheTest(true);
+	}
+	
+	@Test
+	public void testBroadcastCacheInMemory() {
+		runBroadcastCacheTest(false);
+	}
+	
+	/**
+	 * 
+	 * @param file matrix objects backed by files or in-memory intermediates
+	 */
+	private void runBroadcastCacheTest( boolean file )
+	{
+		RUNTIME_PLATFORM platformOld = DMLScript.rtplatform;
+		boolean sparkConfigOld = DMLScript.USE_LOCAL_SPARK_CONFIG;
+		boolean cachingOld = CacheableData.isCachingActive();
+		
+		try
+		{
+			getAndLoadTestConfiguration(TEST_NAME);
+			DMLScript.rtplatform = RUNTIME_PLATFORM.SPARK;
+			DMLScript.USE_LOCAL_SPARK_CONFIG = true;
+			CacheableData.disableCaching();
+			
+			SparkExecutionContext sec = (SparkExecutionContext) ExecutionContextFactory.createContext();
+			
+			if( file ) 
+			{
+				//two matrix objects of the same file share the broadcast
+				writeInputMatrixWithMTD("A", getRandomMatrix(rows, cols, 0, 1, sparsity1, 7), false);
+				sec.setVariable("A1", createMatrixObject(input("A")));
+				sec.setVariable("A2", createMatrixObject(input("A")));
+				PartitionedBroadcastMatrix bc1 = sec.getBroadcastForVariable("A1");
+				Assert.assertSame(bc1, sec.getBroadcastForVariable("A2"));
+				
+				//modified matrix object does not reuse the shared broadcast 
+				modifyMatrixObject(sec.getMatrixObject("A2"));
+				Assert.assertNotSame(bc1, sec.getBroadcastForVariable("A2"));
+				Assert.assertTrue(sec.getMatrixObject("A1").getBroadcastHandle().isValid());
+				Assert.assertSame(bc1, sec.getBroadcastForVariable("A1"));
+				
+				//overwritten file (equal dims) does not reuse the shared broadcast
+				writeInputMatrixWithMTD("A", getRandomMatrix(rows, cols, 0, 1, sparsity2, 3), false);
+				sec.setVariable("A3", createMatrixObject(input("A")));
+				Assert.assertNotSame(bc1, sec.getBroadcastForVariable("A3"));
+			}
+			else 
+			{
+				//copy of in-memory intermediate (parfor worker) shares the broadcast 
+				MatrixObject mo = createMatrixObject(input("A"));
+				mo.setFileExists(false);
+				mo.acquireModify(DataConverter.convertToMatrixBlock(getRandomMatrix(rows, cols, 0, 1, sparsity1, 7)));
+				mo.enableUpdateInPlace(true);
+				mo.release();
+				Assert.assertTrue(mo.isDirty());
+				sec.setVariable("A", mo);
+				PartitionedBroadcastMatrix bc1 = sec.getBroadcastForVariable("A");
+				SparkExecutionContext sec2 = (SparkExecutionContext) 
+					ProgramConverter.createDeepCopyExecutionContext(sec);
+				Assert.assertNotSame(mo, sec2.getMatrixObject("A"));
+				Assert.assertSame(bc1, sec2.getBroadcastForVariable("A"));
+				
+				//modified copy does not reuse the shared broadcast
+				modifyMatrixObject(sec2.getMatrixObject("A"));
+				Assert.assertNotSame(bc1, sec2.getBroadcastForVariable("A"));
+				Assert.assertTrue(mo.getBroadcastHandle().isValid());
+				Assert.assertSame(bc1, sec.getBroadcastForVariable("A"));
+				
+				//modified original does not reuse its old broadcast
+				modifyMatrixObject(mo);
+				Assert.assertNotSame(bc1, sec.getBroadcastForVariable("A"));
+			}
+		}
+		catch(Exception ex) {
+			throw new RuntimeException(ex);
+		}
+		finally
+		{
+			DMLScript.rtplatform = platformOld;
+			DMLScript.USE_LOCAL_SPARK_CONFIG = sparkConfigOld;
+			if( cachingOld )
+				CacheableData.enableCaching();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param fname
+	 * @return
+	 */
+	private MatrixObject createMatrixObject( String fname )
+	{
+		MatrixCharacteristics mc = new MatrixCharacteristics(rows, cols, 
+			DMLTranslator.DMLBlockSize, DMLTranslator.DMLBlockSize, -1);
+		MatrixObject mo = new MatrixObject(ValueType.DOUBLE, fname, 
+			new MatrixFormatMetaData(mc, OutputInfo.TextCellOutputInfo, InputInfo.TextCellInputInfo));
+		mo.setFileExists(true);
+		return mo;
+	}
+	
+	/**
+	 * 
+	 * @param mo
+	 * @throws Exception
+	 */
+	private void modifyMatrixObject( MatrixObject mo ) 
+		throws Exception
+	{
+		MatrixBlock mb = new MatrixBlock(mo.acquireRead());
+		mo.release();
+		mb.quickSetValue(0, 0, mb.quickGetValue(0, 0) + 7);
+		mo.acquireModify(mb);
+		mo.release();
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.test.integration.functions.codegen;
+
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.lops.LopProperties.ExecType;
+import org.apache.sysml.runtime.instructions.Instruction;
+import org.apache.sysml.runtime.matrix.data.MatrixValue.CellIndex;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+import org.apache.sysml.utils.Statistics;
+
+/**
+ * Fused cell-wise operators (without, with row, and with full aggregation)
+ * generated at runtime, compared against R.
+ */
+public class CellwiseTmplTest extends AutomatedTestBase 
+{
+	private final static String TEST_NAME1 = "cellwisetmpl1"; //X*Y+3*X^2
+	private final static String TEST_NAME2 = "cellwisetmpl2"; //rowSums(X*Y-2*X)
+	private final static String TEST_NAME3 = "cellwisetmpl3"; //sum(X*sigmoid(Y)+1)
+	private final static String TEST_DIR = "functions/codegen/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + CellwiseTmplTest.class.getSimpleName() + "/";
+	private final static String TEST_CONF = "SystemML-config-codegen.xml";
+	
+	private final static int rows = 1271;
+	private final static int cols = 1103;
+	
+	private final static double sparsity1 = 0.7; //dense
+	private final static double sparsity2 = 0.1; //sparse
+	
+	private final static double eps = 1e-8;
+	
+	@Override
+	public void setUp() 
+	{
+		TestUtils.clearAssertionInformation();
+		addTestConfiguration(TEST_NAME1, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME1, new String[] { "R" })); 
+		addTestConfiguration(TEST_NAME2, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME2, new String[] { "R" })); 
+		addTestConfiguration(TEST_NAME3, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME3, new String[] { "R" })); 
+	}
+	
+	@Test
+	public void testCodegenCellwiseNoAggDenseCP() {
+		runCodegenTest(TEST_NAME1, false, ExecType.CP);
+	}
+	
+	@Test
+	public void testCodegenCellwiseNoAggSparseCP() {
+		runCodegenTest(TEST_NAME1, true, ExecType.CP);
+	}
+	
+	@Test
+	public void testCodegenCellwiseRowAggDenseCP() {
+		runCodegenTest(TEST_NAME2, false, ExecType.CP);
+	}
+	
+	@Test
+	public void testCodegenCellwiseRowAggSparseCP() {
+		runCodegenTest(TEST_NAME2, true, ExecType.CP);
+	}
+	
+	@Test
+	public void testCodegenCellwiseFullAggDenseCP() {
+		runCodegenTest(TEST_NAME3, false, ExecType.CP);
+	}
+	
+	@Test
+	public void testCodegenCellwiseFullAggSparseCP() {
+		runCodegenTest(TEST_NAME3, true, ExecType.CP);
+	}
+	
+	@Test
+	public void testCodegenCellwiseNoAggDenseSP() {
+		runCodegenTest(TEST_NAME1, false, ExecType.SPARK);
+	}
+	
+	@Test
+	public void testCodegenCellwiseRowAggSparseSP() {
+		runCodegenTest(TEST_NAME2, true, ExecType.SPARK);
+	}
+	
+	@Test
+	public void testCodegenCellwiseFullAggDenseSP() {
+		runCodegenTest(TEST_NAME3, false, ExecType.SPARK);
+	}
+	
+	/**
+	 * 
+	 * @param testname
+	 * @param sparse
+	 * @param instType
+	 */
+	private void runCodegenTest( String testname, boolean sparse, ExecType instType )
+	{
+		RUNTIME_PLATFORM platformOld = rtplatform;
+		rtplatform = (instType==ExecType.SPARK) ? RUNTIME_PLATFORM.SPARK : RUNTIME_PLATFORM.SINGLE_NODE;
+		
+		boolean sparkConfigOld = DMLScript.USE_LOCAL_SPARK_CONFIG;
+		if( rtplatform == RUNTIME_PLATFORM.SPARK )
+			DMLScript.USE_LOCAL_SPARK_CONFIG = true;
+		
+		try
+		{
+			TestConfiguration config = getTestConfiguration(testname);
+			loadTestConfiguration(config);
+			
+			String HOME = SCRIPT_DIR + TEST_DIR;
+			fullDMLScriptName = HOME + testname + ".dml";
+			programArgs = new String[]{ "-explain", "-stats", 
+				"-config=" + HOME + TEST_CONF, "-args", input("X"), input("Y"), output("R")};
+			rCmd = getRCmd(inputDir(), expectedDir());
+			
+			//generate actual datasets
+			double[][] X = getRandomMatrix(rows, cols, -1, 1, sparse?sparsity2:sparsity1, 7);
+			writeInputMatrixWithMTD("X", X, true);
+			double[][] Y = getRandomMatrix(rows, cols, -1, 1, sparse?sparsity2:sparsity1, 3);
+			writeInputMatrixWithMTD("Y", Y, true);
+			
+			runTest(true, false, null, -1); 
+			runRScript(true); 
+			
+			//compare matrices 
+			HashMap<CellIndex, Double> dmlfile = readDMLMatrixFromHDFS("R");
+			HashMap<CellIndex, Double> rfile  = readRMatrixFromFS("R");
+			TestUtils.compareMatrices(dmlfile, rfile, eps, "Stat-DML", "Stat-R");
+			
+			//check for applied operator fusion
+			String opcode = ((instType==ExecType.SPARK) ? Instruction.SP_INST_PREFIX : "") + "spoof";
+			Assert.assertTrue("Operator fusion not applied.", 
+				Statistics.getCPHeavyHitterOpCodes().contains(opcode));
+		}
+		finally
+		{
+			rtplatform = platformOld;
+			DMLScript.USE_LOCAL_SPARK_CONFIG = sparkConfigOld;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.io.binary;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import org.apache.sysml.runtime.instructions.spark.data.SparkKryoRegistrator;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.matrix.data.MatrixIndexes;
+import org.apache.sysml.runtime.util.DataConverter;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * Round-trip tests of the custom kryo serializers for matrix indexes and
+ * dense, sparse, and empty matrix blocks. Multiple objects are written to 
+ * and read from a single kryo output/input in order to check that the 
+ * serializers (and their reused streams) consume exactly their own bytes.
+ */
+public class SerializeKryoTest extends AutomatedTestBase 
+{
+	public static int rows1 = 746;
+	public static int cols1 = 586;
+	public static int cols2 = 4;
+	
+	private final static double eps = 1e-14;
+
+	@Override
+	public void setUp() 
+	{
+		TestUtils.clearAssertionInformation();
+	}
+	
+	@Test
+	public void testEmptyBlock() 
+	{ 
+		runSerializeKryoTest( rows1, cols1, 0.0 ); 
+	}
+	
+	@Test
+	public void testDenseBlock() 
+	{ 
+		runSerializeKryoTest( rows1, cols1, 1.0 ); 
+	}
+	
+	@Test
+	public void testDenseSparseBlock() 
+	{ 
+		runSerializeKryoTest( rows1, cols2, 0.3 ); 
+	}
+	
+	@Test
+	public void testSparseBlock() 
+	{ 
+		runSerializeKryoTest( rows1, cols1, 0.1 ); 
+	}
+	
+	@Test
+	public void testSparseUltraSparseBlock() 
+	{ 
+		runSerializeKryoTest( rows1, cols1, 0.0001 ); 
+	}
+
+	private void runSerializeKryoTest( int rows, int cols, double sparsity ) 
+	{
+		try
+		{	
+			Kryo kryo = new Kryo();
+			new SparkKryoRegistrator().registerClasses(kryo);
+			
+			//generate input blocks (incl. a second block for stream reuse)
+			double[][] X = getRandomMatrix(rows, cols, -1.0, 1.0, sparsity, 7); 
+			double[][] Y = getRandomMatrix(rows, cols, -1.0, 1.0, sparsity, 3); 
+			MatrixBlock mbX = DataConverter.convertToMatrixBlock(X);
+			MatrixBlock mbY = DataConverter.convertToMatrixBlock(Y);
+			mbX.examSparsity();
+			mbY.examSparsity();
+			
+			//serialize index-block pairs into a single growing output
+			Output out = new Output(4096, -1);
+			kryo.writeObject(out, new MatrixIndexes(1, 7));
+			kryo.writeObject(out, mbX);
+			kryo.writeObject(out, new MatrixIndexes(123456, 2));
+			kryo.writeObject(out, mbY);
+			out.close();
+			
+			//deserialize and compare
+			Input in = new Input(out.toBytes());
+			MatrixIndexes ix1 = kryo.readObject(in, MatrixIndexes.class);
+			MatrixBlock mbX2 = kryo.readObject(in, MatrixBlock.class);
+			MatrixIndexes ix2 = kryo.readObject(in, MatrixIndexes.class);
+			MatrixBlock mbY2 = kryo.readObject(in, MatrixBlock.class);
+			in.close();
+			
+			Assert.assertEquals(new MatrixIndexes(1, 7), ix1);
+			Assert.assertEquals(new MatrixIndexes(123456, 2), ix2);
+			checkMatrixBlock(mbX, mbX2);
+			checkMatrixBlock(mbY, mbY2);
+		}
+		catch(Exception ex)
+		{
+			ex.printStackTrace();
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	private void checkMatrixBlock( MatrixBlock expected, MatrixBlock actual ) 
+	{
+		Assert.assertEquals(expected.getNumRows(), actual.getNumRows());
+		Assert.assertEquals(expected.getNumColumns(), actual.getNumColumns());
+		Assert.assertEquals(expected.getNonZeros(), actual.getNonZeros());
+		if( expected.getNonZeros() > 0 ) //empty blocks w/o format
+			Assert.assertEquals(expected.isInSparseFormat(), actual.isInSparseFormat());
+		for( int i=0; i<expected.getNumRows(); i++ )
+			for( int j=0; j<expected.getNumColumns(); j++ )
+				Assert.assertEquals(expected.quickGetValue(i, j), actual.quickGetValue(i, j), eps);
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.test.integration.functions.jmlc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.apache.sysml.api.jmlc.BatchedScript;
+import org.apache.sysml.api.jmlc.Connection;
+import org.apache.sysml.api.jmlc.PreparedScript;
+import org.apache.sysml.api.jmlc.ResultVariables;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * Concurrent execution of clones of a single prepared script, as well as
+ * micro-batched execution of concurrent requests, compared against the
+ * sequential execution of the same inputs.
+ */
+public class ConcurrentScoringTest extends AutomatedTestBase
+{
+	private final static String TEST_NAME1 = "reuse-glm-predict";
+	private final static String TEST_NAME2 = "reuse-msvm-predict";
+	private final static String TEST_DIR = "functions/jmlc/";
+	private final static String MODEL_FILE = "sentiment_model.mtx";
+	private final static String TEST_CLASS_DIR = TEST_DIR + ConcurrentScoringTest.class.getSimpleName() + "/";
+
+	private final static int rows = 107;
+	private final static int cols = 46; //fixed
+
+	private final static int nRuns = 32;
+	private final static int nThreads = 8;
+
+	private final static double sparsity1 = 0.7;
+	private final static double sparsity2 = 0.1;
+
+	private final static double eps = 1e-10;
+
+	@Override
+	public void setUp() {
+		addTestConfiguration(TEST_NAME1, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME1, new String[] { "predicted_y" }) );
+		addTestConfiguration(TEST_NAME2, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME2, new String[] { "predicted_y" }) );
+	}
+
+	@Test
+	public void testJMLCConcurrentScoreGLMDense() throws IOException {
+		runJMLCConcurrentTest(TEST_NAME1, false);
+	}
+
+	@Test
+	public void testJMLCConcurrentScoreGLMSparse() throws IOException {
+		runJMLCConcurrentTest(TEST_NAME1, true);
+	}
+
+	@Test
+	public void testJMLCConcurrentScoreMSVMDense() throws IOException {
+		runJMLCConcurrentTest(TEST_NAME2, false);
+	}
+
+	@Test
+	public void testJMLCConcurrentScoreMSVMSparse() throws IOException {
+		runJMLCConcurrentTest(TEST_NAME2, true);
+	}
+
+	@Test
+	public void testJMLCBatchedScoreGLMDense() throws IOException {
+		runJMLCConcurrentTest(TEST_NAME1, false, true);
+	}
+
+	@Test
+	public void testJMLCBatchedScoreMSVMSparse() throws IOException {
+		runJMLCConcurrentTest(TEST_NAME2, true, true);
+	}
+
+	/**
+	 *
+	 * @param testname
+	 * @param sparse
+	 * @throws IOException
+	 */
+	private void runJMLCConcurrentTest( String testname, boolean sparse )
+		throws IOException
+	{
+		runJMLCConcurrentTest(testname, sparse, false);
+	}
+
+	/**
+	 *
+	 * @param testname
+	 * @param sparse
+	 * @param batched
+	 * @throws IOException
+	 */
+	private void runJMLCConcurrentTest( String testname, boolean sparse, final boolean batched )
+		throws IOException
+	{
+		TestConfiguration config = getTestConfiguration(testname);
+		loadTestConfiguration(config);
+
+		//generate inputs
+		ArrayList<double[][]> Xset = new ArrayList<double[][]>();
+		for( int i=0; i<nRuns; i++ )
+			Xset.add(getRandomMatrix(rows, cols, -1, 1, sparse?sparsity2:sparsity1, 7+i));
+
+		//establish connection to SystemML
+		Connection conn = new Connection();
+
+		try
+		{
+			//read and precompile script
+			String script = conn.readScript(SCRIPT_DIR + TEST_DIR + testname + ".dml");
+			final PreparedScript pstmt = conn.prepareScript(script, new String[]{"X","W"}, new String[]{"predicted_y"}, false);
+
+			//read and bind reused model
+			String modelData = conn.readScript(SCRIPT_DIR + TEST_DIR + MODEL_FILE );
+			double[][] W = conn.convertToDoubleMatrix(modelData, rows, cols);
+			pstmt.setMatrix("W", W, true);
+
+			//sequential execution
+			ArrayList<double[][]> Yset = new ArrayList<double[][]>();
+			for( double[][] X : Xset ) {
+				pstmt.setMatrix("X", X);
+				Yset.add(pstmt.executeScript().getMatrix("predicted_y"));
+			}
+
+			//concurrent execution of clones or batched requests
+			final BatchedScript bstmt = batched ?
+				pstmt.createBatchedScript("X", "predicted_y", rows*nThreads, 5, 2) : null;
+			ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+			ArrayList<Callable<double[][]>> tasks = new ArrayList<Callable<double[][]>>();
+			for( final double[][] X : Xset )
+				tasks.add(new Callable<double[][]>() {
+					@Override
+					public double[][] call() throws Exception {
+						if( batched )
+							return bstmt.score(X);
+						PreparedScript lpstmt = pstmt.clone();
+						lpstmt.setMatrix("X", X);
+						ResultVariables rs = lpstmt.executeScript();
+						return rs.getMatrix("predicted_y");
+					}
+				});
+			List<Future<double[][]>> rt = pool.invokeAll(tasks);
+			pool.shutdown();
+			if( bstmt != null )
+				bstmt.close();
+
+			//compare results
+			for( int i=0; i<nRuns; i++ )
+				TestUtils.compareMatrices(Yset.get(i), rt.get(i).get(),
+						Yset.get(i).length, Yset.get(i)[0].length, eps);
+			Assert.assertEquals(nRuns, rt.size());
+		}
+		catch(Exception ex)
+		{
+			ex.printStackTrace();
+			throw new IOException(ex);
+		}
+		finally
+		{
+			if( conn != null )
+				conn.close();
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.jmlc;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.apache.sysml.api.DMLException;
+import org.apache.sysml.api.jmlc.Connection;
+import org.apache.sysml.api.jmlc.PreparedScript;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * Tests the binding of dense (row-major arrays) and sparse (CSR) inputs 
+ * of JMLC prepared scripts, including CSR inputs with explicit zeros and the
+ * validation of invalid CSR inputs.
+ */
+public class InputBindingTest extends AutomatedTestBase
+{
+	private final static String TEST_NAME = "InputBindingTest";
+	private final static String TEST_DIR = "functions/jmlc/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + InputBindingTest.class.getSimpleName() + "/";
+	
+	private final static String SCRIPT = "X = read($X); Y = X * 2 + sum(X); write(Y, $Y);";
+	
+	private final static int rows = 23;
+	private final static int cols = 7;
+	
+	private final static double sparsity1 = 0.7;
+	private final static double sparsity2 = 0.1;
+	
+	private final static double eps = 1e-10;
+	
+	private enum InputType {
+		DENSE_ARRAY,
+		CSR,
+		CSR_EXPLICIT_ZEROS,
+		CSR_INVALID_ROWPTR_LENGTH,
+		CSR_INVALID_ROWPTR_ORDER,
+		CSR_INVALID_COLIDX_BOUNDS,
+		CSR_INVALID_COLIDX_ORDER,
+		CSR_INVALID_VALUES_LENGTH
+	}
+	
+	@Override
+	public void setUp() {
+		addTestConfiguration(TEST_NAME, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME, new String[] { "Y" }) );
+	}
+	
+	@Test
+	public void testDenseArrayDense() throws IOException {
+		runInputBindingTest(InputType.DENSE_ARRAY, sparsity1);
+	}
+	
+	@Test
+	public void testDenseArraySparse() throws IOException {
+		runInputBindingTest(InputType.DENSE_ARRAY, sparsity2);
+	}
+	
+	@Test
+	public void testCSRDense() throws IOException {
+		runInputBindingTest(InputType.CSR, sparsity1);
+	}
+	
+	@Test
+	public void testCSRSparse() throws IOException {
+		runInputBindingTest(InputType.CSR, sparsity2);
+	}
+	
+	@Test
+	public void testCSRExplicitZerosDense() throws IOException {
+		runInputBindingTest(InputType.CSR_EXPLICIT_ZEROS, sparsity1);
+	}
+	
+	@Test
+	public void testCSRExplicitZerosSparse() throws IOException {
+		runInputBindingTest(InputType.CSR_EXPLICIT_ZEROS, sparsity2);
+	}
+	
+	@Test
+	public void testCSRInvalidRowPtrLength() throws IOException {
+		runInputBindingTest(InputType.CSR_INVALID_ROWPTR_LENGTH, sparsity2);
+	}
+	
+	@Test
+	public void testCSRInvalidRowPtrOrder() throws IOException {
+		runInputBindingTest(InputType.CSR_INVALID_ROWPTR_ORDER, sparsity2);
+	}
+	
+	@Test
+	public void testCSRInvalidColIdxBounds() throws IOException {
+		runInputBindingTest(InputType.CSR_INVALID_COLIDX_BOUNDS, sparsity2);
+	}
+	
+	@Test
+	public void testCSRInvalidColIdxOrder() throws IOException {
+		runInputBindingTest(InputType.CSR_INVALID_COLIDX_ORDER, sparsity1);
+	}
+	
+	@Test
+	public void testCSRInvalidValuesLength() throws IOException {
+		runInputBindingTest(InputType.CSR_INVALID_VALUES_LENGTH, sparsity2);
+	}
+	
+	/**
+	 * 
+	 * @param type
+	 * @param sparsity
+	 * @throws IOException
+	 */
+	private void runInputBindingTest( InputType type, double sparsity ) 
+		throws IOException
+	{
+		TestConfiguration config = getTestConfiguration(TEST_NAME);
+		loadTestConfiguration(config);
+		
+		double[][] X = getRandomMatrix(rows, cols, -1, 1, sparsity, 7);
+		Connection conn = new Connection();
+		
+		try
+		{
+			PreparedScript pstmt = conn.prepareScript(SCRIPT, new String[]{"X"}, new String[]{"Y"}, false);
+			
+			if( type == InputType.DENSE_ARRAY ) {
+				double[] data = new double[rows*cols];
+				for( int i=0; i<rows; i++ )
+					System.arraycopy(X[i], 0, data, i*cols, cols);
+				pstmt.setMatrix("X", data, rows, cols, false);
+				TestUtils.compareMatrices(getExpected(X), pstmt.executeScript().getMatrix("Y"), rows, cols, eps);
+			}
+			else {
+				//convert to csr (w/ sorted column indexes, all cells for explicit zeros)
+				boolean zeros = (type == InputType.CSR_EXPLICIT_ZEROS);
+				long nnz = 0;
+				int[] rowPtr = new int[rows+1];
+				for( int i=0; i<rows; i++ )
+					for( int j=0; j<cols; j++ ) {
+						rowPtr[i+1] += (X[i][j] != 0 || zeros) ? 1 : 0;
+						nnz += (X[i][j] != 0) ? 1 : 0;
+					}
+				for( int i=0; i<rows; i++ )
+					rowPtr[i+1] += rowPtr[i];
+				int[] colIdx = new int[rowPtr[rows]];
+				double[] vals = new double[rowPtr[rows]];
+				for( int i=0, pos=0; i<rows; i++ )
+					for( int j=0; j<cols; j++ )
+						if( X[i][j] != 0 || zeros ) {
+							colIdx[pos] = j;
+							vals[pos++] = X[i][j];
+						}
+				
+				if( type == InputType.CSR || zeros ) {
+					//check non-zeros (w/o explicit zeros) and format of copied block
+					MatrixBlock mb = new MatrixBlock(rows, cols, rowPtr, colIdx, vals);
+					Assert.assertEquals(nnz, mb.getNonZeros());
+					Assert.assertEquals(mb.evalSparseFormatInMemory(), mb.isInSparseFormat());
+					
+					pstmt.setMatrix("X", rows, cols, rowPtr, colIdx, vals, false);
+					TestUtils.compareMatrices(getExpected(X), pstmt.executeScript().getMatrix("Y"), rows, cols, eps);
+					return;
+				}
+				
+				//corrupt the csr input 
+				int r = getFirstRowWithNonZeros(rowPtr, 
+					(type==InputType.CSR_INVALID_COLIDX_ORDER) ? 2 : 1);
+				switch( type ) {
+					case CSR_INVALID_ROWPTR_LENGTH: rowPtr = new int[0]; break;
+					case CSR_INVALID_ROWPTR_ORDER:  rowPtr[r] = rowPtr[r+1] + 1; break;
+					case CSR_INVALID_COLIDX_BOUNDS: colIdx[rowPtr[r]] = cols; break;
+					case CSR_INVALID_COLIDX_ORDER:  colIdx[rowPtr[r]+1] = colIdx[rowPtr[r]]; break;
+					case CSR_INVALID_VALUES_LENGTH: vals = new double[vals.length-1]; break;
+					default: //do nothing
+				}
+				
+				try {
+					pstmt.setMatrix("X", rows, cols, rowPtr, colIdx, vals, false);
+					Assert.fail("Expected exception for invalid CSR input ("+type+").");
+				}
+				catch(DMLException ex) {
+					//expected
+				}
+			}
+		}
+		catch(Exception ex)
+		{
+			ex.printStackTrace();
+			throw new IOException(ex);
+		}
+		finally
+		{
+			if( conn != null )
+				conn.close();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param rowPtr
+	 * @param minNnz
+	 * @return
+	 */
+	private static int getFirstRowWithNonZeros( int[] rowPtr, int minNnz )
+	{
+		for( int i=0; i<rowPtr.length-1; i++ )
+			if( rowPtr[i+1] - rowPtr[i] >= minNnz )
+				return i;
+		throw new RuntimeException("No row with at least "+minNnz+" non-zeros.");
+	}
+	
+	/**
+	 * 
+	 * @param X
+	 * @return
+	 */
+	private static double[][] getExpected( double[][] X )
+	{
+		double sum = 0;
+		for( int i=0; i<X.length; i++ )
+			for( int j=0; j<X[i].length; j++ )
+				sum += X[i][j];
+		double[][] Y = new double[X.length][X[0].length];
+		for( int i=0; i<X.length; i++ )
+			for( int j=0; j<X[i].length; j++ )
+				Y[i][j] = X[i][j] * 2 + sum;
+		return Y;
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.jmlc;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.apache.sysml.api.DMLException;
+import org.apache.sysml.api.jmlc.Connection;
+import org.apache.sysml.api.jmlc.PreparedScript;
+import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * Tests the cache of compiled scripts of a JMLC connection, including scripts 
+ * specialized to input dimensions and non-zeros.
+ */
+public class PreparedScriptCacheTest extends AutomatedTestBase
+{
+	private final static String TEST_NAME = "PreparedScriptCacheTest";
+	private final static String TEST_DIR = "functions/jmlc/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + PreparedScriptCacheTest.class.getSimpleName() + "/";
+	
+	private final static String SCRIPT = "X = read($X); Y = X * 2 + sum(X); write(Y, $Y);";
+	
+	private final static int rows = 23;
+	private final static int cols = 7;
+	
+	private final static double eps = 1e-10;
+	
+	@Override
+	public void setUp() {
+		addTestConfiguration(TEST_NAME, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME, new String[] { "Y" }) );
+	}
+	
+	@Test
+	public void testScriptCacheReuse() throws IOException {
+		runScriptCacheTest(false, false);
+	}
+	
+	@Test
+	public void testScriptCacheEviction() throws IOException {
+		runScriptCacheTest(false, true);
+	}
+	
+	@Test
+	public void testScriptCacheSpecializedEmpty() throws IOException {
+		runScriptCacheTest(true, false);
+	}
+	
+	/**
+	 * 
+	 * @param emptySpecialized
+	 * @param evict
+	 * @throws IOException
+	 */
+	private void runScriptCacheTest( boolean emptySpecialized, boolean evict ) 
+		throws IOException
+	{
+		TestConfiguration config = getTestConfiguration(TEST_NAME);
+		loadTestConfiguration(config);
+		
+		double[][] X = getRandomMatrix(rows, cols, -1, 1, 0.7, 7);
+		double[][] X0 = new double[rows][cols];
+		Connection conn = new Connection();
+		
+		try
+		{
+			HashMap<String, MatrixCharacteristics> meta = null;
+			if( emptySpecialized ) {
+				meta = new HashMap<String, MatrixCharacteristics>();
+				meta.put("X", new MatrixCharacteristics(rows, cols, -1, -1, 0));
+			}
+			
+			PreparedScript pstmt1 = conn.prepareScript(SCRIPT, new HashMap<String,String>(), 
+				new String[]{"X"}, new String[]{"Y"}, false, meta);
+			
+			//fill and overflow the script cache w/ different scripts
+			if( evict )
+				for( int i=0; i<=Connection.MAX_SCRIPT_CACHE_SIZE; i++ )
+					conn.prepareScript(SCRIPT.replace("2", String.valueOf(i+3)), 
+						new String[]{"X"}, new String[]{"Y"}, false);
+			
+			PreparedScript pstmt2 = conn.prepareScript(SCRIPT, new HashMap<String,String>(), 
+				new String[]{"X"}, new String[]{"Y"}, false, meta);
+			
+			if( emptySpecialized ) {
+				//matching input w/ zero non-zeros
+				pstmt1.setMatrix("X", X0);
+				TestUtils.compareMatrices(X0, pstmt1.executeScript().getMatrix("Y"), rows, cols, eps);
+				
+				//non-matching input w/ non-zeros
+				try {
+					pstmt2.setMatrix("X", X);
+					Assert.fail("Expected exception for non-matching non-zeros.");
+				}
+				catch(DMLException ex) {
+					//expected
+				}
+			}
+			else {
+				pstmt1.setMatrix("X", X);
+				double[][] Y1 = pstmt1.executeScript().getMatrix("Y");
+				pstmt2.setMatrix("X", X);
+				double[][] Y2 = pstmt2.executeScript().getMatrix("Y");
+				TestUtils.compareMatrices(getExpected(X), Y1, rows, cols, eps);
+				TestUtils.compareMatrices(Y1, Y2, rows, cols, eps);
+			}
+		}
+		catch(Exception ex)
+		{
+			ex.printStackTrace();
+			throw new IOException(ex);
+		}
+		finally
+		{
+			if( conn != null )
+				conn.close();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param X
+	 * @return
+	 */
+	private static double[][] getExpected( double[][] X )
+	{
+		double sum = 0;
+		for( int i=0; i<X.length; i++ )
+			for( int j=0; j<X[i].length; j++ )
+				sum += X[i][j];
+		double[][] Y = new double[X.length][X[0].length];
+		for( int i=0; i<X.length; i++ )
+			for( int j=0; j<X[i].length; j++ )
+				Y[i][j] = X[i][j] * 2 + sum;
+		return Y;
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.jmlc;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.jmlc.Connection;
+import org.apache.sysml.api.jmlc.PreparedScript;
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+import org.apache.sysml.utils.Statistics;
+
+/**
+ * Tests the small-data fast path for JMLC prepared scripts, whose inputs have
+ * unknown dimensions during compilation. Scoring tiny inputs should not trigger
+ * dynamic recompilation, while large inputs or intermediates still do.
+ */
+public class SmallDataFastPathTest extends AutomatedTestBase
+{
+	private final static String TEST_NAME = "SmallDataFastPathTest";
+	private final static String TEST_DIR = "functions/jmlc/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + SmallDataFastPathTest.class.getSimpleName() + "/";
+	
+	private final static String SCRIPT1 = "X = read($X); W = read($W); Y = X %*% W + 1; write(Y, $Y);";
+	private final static String SCRIPT2 = "X = read($X); W = read($W); Y = X %*% t(X) %*% X %*% W; write(Y, $Y);";
+	
+	private final static int rowsSmall = 10;
+	private final static int rowsLarge = 2000; //X %*% t(X): 32MB
+	private final static int cols = 5;
+	private final static int ncls = 3;
+	
+	private final static double eps = 1e-8;
+	
+	@Override
+	public void setUp() {
+		TestUtils.clearAssertionInformation();
+		addTestConfiguration(TEST_NAME, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME, new String[] { "Y" }) );
+	}
+	
+	@Test
+	public void testSmallInputsFastPath() throws IOException {
+		runSmallDataFastPathTest(SCRIPT1, rowsSmall, true, false);
+	}
+	
+	@Test
+	public void testSmallInputsNoFastPath() throws IOException {
+		runSmallDataFastPathTest(SCRIPT1, rowsSmall, false, true);
+	}
+	
+	@Test
+	public void testLargeIntermediateFastPath() throws IOException {
+		runSmallDataFastPathTest(SCRIPT2, rowsLarge, true, true);
+	}
+	
+	@Test
+	public void testSmallIntermediateFastPath() throws IOException {
+		runSmallDataFastPathTest(SCRIPT2, rowsSmall, true, false);
+	}
+	
+	/**
+	 * 
+	 * @param script
+	 * @param rows
+	 * @param fastPath
+	 * @param recompile expected recompilation
+	 * @throws IOException
+	 */
+	private void runSmallDataFastPathTest( String script, int rows, boolean fastPath, boolean recompile ) 
+		throws IOException
+	{
+		TestConfiguration config = getTestConfiguration(TEST_NAME);
+		loadTestConfiguration(config);
+		
+		boolean oldFlagFastPath = OptimizerUtils.ALLOW_SMALL_DATA_FAST_PATH;
+		boolean oldFlagStats = DMLScript.STATISTICS;
+		double[][] X = getRandomMatrix(rows, cols, -1, 1, 1.0, 7);
+		double[][] W = getRandomMatrix(cols, ncls, -1, 1, 1.0, 3);
+		Connection conn = new Connection();
+		
+		try
+		{
+			OptimizerUtils.ALLOW_SMALL_DATA_FAST_PATH = fastPath;
+			DMLScript.STATISTICS = true;
+			
+			PreparedScript pstmt = conn.prepareScript(script, new String[]{"X","W"}, new String[]{"Y"}, false);
+			pstmt.setMatrix("X", X);
+			pstmt.setMatrix("W", W);
+			
+			Statistics.reset();
+			double[][] Y = pstmt.executeScript().getMatrix("Y");
+			
+			//check recompilation and results
+			Assert.assertEquals("Unexpected recompilation.", recompile, 
+				Statistics.getHopRecompiledSBDAGs() > 0);
+			double[][] XW = mmult(X, W);
+			double[][] expected = SCRIPT1.equals(script) ? XW : mmult(X, mmult(transpose(X), XW));
+			if( SCRIPT1.equals(script) )
+				for( int i=0; i<rows; i++ )
+					for( int j=0; j<ncls; j++ )
+						expected[i][j] += 1;
+			TestUtils.compareMatrices(expected, Y, rows, ncls, eps);
+		}
+		catch(Exception ex)
+		{
+			ex.printStackTrace();
+			throw new IOException(ex);
+		}
+		finally
+		{
+			OptimizerUtils.ALLOW_SMALL_DATA_FAST_PATH = oldFlagFastPath;
+			DMLScript.STATISTICS = oldFlagStats;
+			conn.close();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param A
+	 * @param B
+	 * @return
+	 */
+	private static double[][] mmult( double[][] A, double[][] B )
+	{
+		double[][] C = new double[A.length][B[0].length];
+		for( int i=0; i<A.length; i++ )
+			for( int k=0; k<B.length; k++ )
+				for( int j=0; j<B[0].length; j++ )
+					C[i][j] += A[i][k] * B[k][j];
+		return C;
+	}
+	
+	/**
+	 * 
+	 * @param A
+	 * @return
+	 */
+	private static double[][] transpose( double[][] A )
+	{
+		double[][] B = new double[A[0].length][A.length];
+		for( int i=0; i<A.length; i++ )
+			for( int j=0; j<A[0].length; j++ )
+				B[j][i] = A[i][j];
+		return B;
+	}
+}
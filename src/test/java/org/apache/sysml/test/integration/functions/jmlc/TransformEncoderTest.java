@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.jmlc;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.apache.sysml.api.DMLException;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.api.jmlc.Connection;
+import org.apache.sysml.api.jmlc.TransformEncoder;
+import org.apache.sysml.parser.DataExpression;
+import org.apache.sysml.runtime.io.ReaderTextCSV;
+import org.apache.sysml.runtime.matrix.data.CSVFileFormatProperties;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.integration.functions.transform.TransformTest;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * Tests the in-memory transform encoder of JMLC against the output of transform()
+ * over the same data, for a specification with recode, bin, dummycode, and impute 
+ * (global mean/mode and constants), as well as a specification with omit.
+ */
+public class TransformEncoderTest extends AutomatedTestBase
+{
+	private final static String TEST_NAME = "Transform";
+	private final static String TEST_DIR = "functions/transform/";
+	private final static String TEST_CLASS_DIR = "functions/jmlc/" + TransformEncoderTest.class.getSimpleName() + "/";
+	
+	private final static String HOMES_DATASET = "homes/homes.csv";
+	private final static String HOMES_SPEC    = "homes/homes.tfspec.json";
+	private final static String HOMES_OMIT_SPEC = "homes/homesOmit.tfspec.json";
+	
+	private final static String NA_STRINGS = "NA" + DataExpression.DELIM_NA_STRING_SEP; //NA and empty
+	
+	private final static double eps = 1e-10;
+	
+	@Override
+	public void setUp() {
+		TestUtils.clearAssertionInformation();
+		addTestConfiguration(TEST_NAME, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME, new String[] { "tfout" }) );
+	}
+	
+	@Test
+	public void testEncodeLinesRecodeBinDummycodeImpute() throws IOException, DMLException {
+		runTransformEncoderTest(HOMES_SPEC, false);
+	}
+	
+	@Test
+	public void testEncodeRecordsRecodeBinDummycodeImpute() throws IOException, DMLException {
+		runTransformEncoderTest(HOMES_SPEC, true);
+	}
+	
+	@Test
+	public void testEncodeLinesOmit() throws IOException, DMLException {
+		runTransformEncoderTest(HOMES_OMIT_SPEC, false);
+	}
+	
+	@Test
+	public void testEncodeRecordsOmit() throws IOException, DMLException {
+		runTransformEncoderTest(HOMES_OMIT_SPEC, true);
+	}
+	
+	/**
+	 * 
+	 * @param spec
+	 * @param records
+	 * @throws IOException
+	 * @throws DMLException
+	 */
+	private void runTransformEncoderTest( String spec, boolean records ) 
+		throws IOException, DMLException
+	{
+		RUNTIME_PLATFORM rtold = rtplatform;
+		rtplatform = RUNTIME_PLATFORM.SINGLE_NODE;
+		
+		try
+		{
+			getAndLoadTestConfiguration(TEST_NAME);
+			
+			//run transform to create the metadata and reference output
+			String HOME = SCRIPT_DIR + TEST_DIR;
+			fullDMLScriptName = HOME + TEST_NAME + ".dml";
+			programArgs = new String[]{"-nvargs", 
+				"DATA=" + HOME + "input/" + HOMES_DATASET,
+				"TFSPEC=" + HOME + "input/" + spec,
+				"TFMTD=" + output("tfmtd"),
+				"TFDATA=" + output("tfout"),
+				"OFMT=csv" };
+			runTest(true, false, null, -1); 
+			
+			ReaderTextCSV reader = new ReaderTextCSV(new CSVFileFormatProperties(false, ",", true, 0, null));
+			MatrixBlock expected = reader.readMatrixFromHDFS(output("tfout"), -1, -1, -1, -1, -1);
+			
+			//encode the same raw records in-memory
+			String[] lines = readLines(HOME + "input/" + HOMES_DATASET);
+			MatrixBlock actual = null;
+			Connection conn = new Connection();
+			try {
+				TransformEncoder encoder = conn.prepareTransformEncoder(output("tfmtd"), ",", NA_STRINGS);
+				Assert.assertEquals(9, encoder.getNumInputColumns());
+				Assert.assertEquals(expected.getNumColumns(), encoder.getNumOutputColumns());
+				if( records ) {
+					String[][] tmp = new String[lines.length][];
+					for( int i=0; i<lines.length; i++ )
+						tmp[i] = lines[i].split(",", -1);
+					actual = encoder.encode(tmp);
+				}
+				else
+					actual = encoder.encode(lines);
+			}
+			finally {
+				conn.close();
+			}
+			
+			//compare encoded records with transform output
+			Assert.assertEquals(expected.getNumRows(), actual.getNumRows());
+			Assert.assertEquals(expected.getNumColumns(), actual.getNumColumns());
+			Assert.assertTrue("Encoder output differs from transform output.", 
+				TransformTest.equals(actual, expected, eps));
+		}
+		finally
+		{
+			rtplatform = rtold;
+		}
+	}
+	
+	/**
+	 * Reads all data lines of the given csv file (excluding the header).
+	 * 
+	 * @param fname
+	 * @return
+	 * @throws IOException
+	 */
+	private static String[] readLines( String fname ) 
+		throws IOException
+	{
+		ArrayList<String> ret = new ArrayList<String>();
+		BufferedReader br = new BufferedReader(new FileReader(fname));
+		try {
+			br.readLine(); //skip header
+			String line = null;
+			while( (line = br.readLine()) != null )
+				if( !line.isEmpty() )
+					ret.add(line);
+		}
+		finally {
+			br.close();
+		}
+		return ret.toArray(new String[0]);
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.misc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.sysml.hops.cost.CostModelProfile;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * This is a component test for the cost model profile, which checks the
+ * read/write round trip of calibrated profiles, defaults for missing and
+ * uncalibrated values, and the separate matrix multiplication and scan flops.
+ */
+public class CostModelProfileTest extends AutomatedTestBase 
+{
+	private final static double eps = 1e-10;
+	
+	@Override
+	public void setUp() {
+		TestUtils.clearAssertionInformation();
+	}
+	
+	@Test
+	public void testDefaultProfile() {
+		CostModelProfile profile = new CostModelProfile();
+		Assert.assertFalse(profile.isCalibrated());
+		Assert.assertEquals(CostModelProfile.DEFAULT_FLOPS, profile.getFlops(false), eps);
+		Assert.assertEquals(CostModelProfile.DEFAULT_FLOPS, profile.getScanFlops(false), eps);
+		Assert.assertEquals(CostModelProfile.DEFAULT_FLOPS, profile.getScanFlops(true), eps);
+		Assert.assertEquals(CostModelProfile.DEFAULT_MBS_SCAN, profile.getScanThroughput(), eps);
+	}
+	
+	@Test
+	public void testReadWriteRoundTrip() throws IOException {
+		File f1 = File.createTempFile("profile", ".properties");
+		File f2 = File.createTempFile("profile", ".properties");
+		try {
+			Properties props = new Properties();
+			props.setProperty("flops.dense", "3.0E9");
+			props.setProperty("flops.sparse", "5.0E8");
+			props.setProperty("mbs.scan", "4096");
+			props.setProperty("mbs.fsread.dense", "300");
+			props.setProperty("mbs.fsread.sparse", "150");
+			props.setProperty("mbs.fswrite.dense", "250");
+			props.setProperty("mbs.fswrite.sparse", "125");
+			props.setProperty("sp.job.latency", "0.5");
+			props.setProperty("mbs.sp.shuffle", "80");
+			writeProperties(props, f1);
+			
+			CostModelProfile profile1 = new CostModelProfile();
+			profile1.readProfile(f1.getAbsolutePath());
+			profile1.writeProfile(f2.getAbsolutePath());
+			CostModelProfile profile2 = new CostModelProfile();
+			profile2.readProfile(f2.getAbsolutePath());
+			
+			for( CostModelProfile profile : new CostModelProfile[]{profile1, profile2} ) {
+				Assert.assertTrue(profile.isCalibrated());
+				Assert.assertEquals(3.0E9, profile.getFlops(false), eps);
+				Assert.assertEquals(5.0E8, profile.getFlops(true), eps);
+				Assert.assertEquals(4096, profile.getScanThroughput(), eps);
+				Assert.assertEquals(300, profile.getFSReadThroughput(false), eps);
+				Assert.assertEquals(150, profile.getFSReadThroughput(true), eps);
+				Assert.assertEquals(250, profile.getFSWriteThroughput(false), eps);
+				Assert.assertEquals(125, profile.getFSWriteThroughput(true), eps);
+				Assert.assertEquals(0.5, profile.getSparkJobLatency(), eps);
+				Assert.assertEquals(80, profile.getSparkShuffleThroughput(), eps);
+				
+				//scan flops derived from scan throughput (not matrix mult flops)
+				Assert.assertEquals(4096d*1024*1024/8, profile.getScanFlops(false), eps);
+				Assert.assertEquals(4096d*1024*1024/12, profile.getScanFlops(true), eps);
+			}
+			Assert.assertEquals(profile1.toString(), profile2.toString());
+		}
+		finally {
+			f1.delete();
+			f2.delete();
+		}
+	}
+	
+	@Test
+	public void testReadMissingValues() throws IOException {
+		File f1 = File.createTempFile("profile", ".properties");
+		try {
+			Properties props = new Properties();
+			props.setProperty("flops.dense", "3.0E9");
+			writeProperties(props, f1);
+			
+			CostModelProfile profile = new CostModelProfile();
+			profile.readProfile(f1.getAbsolutePath());
+			Assert.assertTrue(profile.isCalibrated());
+			Assert.assertEquals(3.0E9, profile.getFlops(false), eps);
+			Assert.assertEquals(CostModelProfile.DEFAULT_FLOPS, profile.getFlops(true), eps);
+			Assert.assertEquals(CostModelProfile.DEFAULT_MBS_SCAN, profile.getScanThroughput(), eps);
+			Assert.assertEquals(CostModelProfile.DEFAULT_SP_JOB_LATENCY, profile.getSparkJobLatency(), eps);
+		}
+		finally {
+			f1.delete();
+		}
+	}
+	
+	@Test
+	public void testReadInvalidValues() throws IOException {
+		File f1 = File.createTempFile("profile", ".properties");
+		try {
+			Properties props = new Properties();
+			props.setProperty("mbs.scan", "fast");
+			writeProperties(props, f1);
+			
+			try {
+				new CostModelProfile().readProfile(f1.getAbsolutePath());
+				Assert.fail("Expected exception for invalid profile.");
+			}
+			catch(IOException ex) {
+				//expected
+			}
+		}
+		finally {
+			f1.delete();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param props
+	 * @param f
+	 * @throws IOException
+	 */
+	private static void writeProperties( Properties props, File f ) 
+		throws IOException
+	{
+		FileOutputStream out = new FileOutputStream(f);
+		try {
+			props.store(out, null);
+		}
+		finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.misc;
+
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.runtime.matrix.data.MatrixValue.CellIndex;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+import org.apache.sysml.utils.Statistics;
+
+/**
+ * Tests the elimination of common subexpressions across statement blocks, including
+ * the hoisting of expressions out of both branches of if statements, expressions in
+ * and around parfor bodies, as well as single-consumer operators like tsmm.
+ */
+public class CrossBlockCSETest extends AutomatedTestBase 
+{
+	private final static String TEST_NAME1 = "CrossBlockCSE1"; //sequence, if/else
+	private final static String TEST_NAME2 = "CrossBlockCSE2"; //parfor, tsmm
+	private final static String TEST_DIR = "functions/misc/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + CrossBlockCSETest.class.getSimpleName() + "/";
+	
+	private final static int rows = 100;
+	private final static int cols = 30;
+	
+	@Override
+	public void setUp() 
+	{
+		addTestConfiguration( TEST_NAME1, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME1, new String[] { "R" }) );
+		addTestConfiguration( TEST_NAME2, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME2, new String[] { "R" }) );
+	}
+
+	@Test
+	public void testCSEIfBranch() {
+		runCrossBlockCSETest( TEST_NAME1, true, true );
+	}
+	
+	@Test
+	public void testCSEElseBranch() {
+		runCrossBlockCSETest( TEST_NAME1, false, true );
+	}
+	
+	@Test
+	public void testNoCSEIfBranch() {
+		runCrossBlockCSETest( TEST_NAME1, true, false );
+	}
+	
+	@Test
+	public void testNoCSEElseBranch() {
+		runCrossBlockCSETest( TEST_NAME1, false, false );
+	}
+	
+	@Test
+	public void testCSEParFor() {
+		runCrossBlockCSETest( TEST_NAME2, true, true );
+	}
+	
+	@Test
+	public void testNoCSEParFor() {
+		runCrossBlockCSETest( TEST_NAME2, true, false );
+	}
+	
+	/**
+	 * 
+	 * @param testname
+	 * @param ifBranch
+	 * @param cse
+	 */
+	private void runCrossBlockCSETest( String testname, boolean ifBranch, boolean cse )
+	{	
+		boolean oldFlagCSE = OptimizerUtils.ALLOW_COMMON_SUBEXPRESSION_ELIMINATION;
+		
+		try
+		{
+			TestConfiguration config = getTestConfiguration(testname);
+			loadTestConfiguration(config);
+			
+			String HOME = SCRIPT_DIR + TEST_DIR;
+			fullDMLScriptName = HOME + testname + ".dml";
+			fullRScriptName = HOME + testname + ".R";
+			String threshold = ifBranch ? "0" : "1e9";
+			if( testname.equals(TEST_NAME1) ) {
+				programArgs = new String[]{"-stats", "-args", input("X"), threshold, output("R") };
+				rCmd = getRCmd(inputDir(), threshold, expectedDir());
+			}
+			else {
+				programArgs = new String[]{"-stats", "-args", input("X"), output("R") };
+				rCmd = getRCmd(inputDir(), expectedDir());
+			}
+			
+			OptimizerUtils.ALLOW_COMMON_SUBEXPRESSION_ELIMINATION = cse;
+			
+			double[][] X = getRandomMatrix(rows, cols, 0, 1, 1.0, 7);
+			writeInputMatrixWithMTD("X", X, true);
+			
+			runTest(true, false, null, -1); 
+			runRScript(true); 
+			
+			//compare matrices 
+			HashMap<CellIndex, Double> dmlfile = readDMLMatrixFromHDFS("R");
+			HashMap<CellIndex, Double> rfile  = readRMatrixFromFS("R");
+			TestUtils.compareMatrices(dmlfile, rfile, 1e-10, "Stat-DML", "Stat-R");
+			
+			//check that shared transposes do not prevent tsmm
+			if( testname.equals(TEST_NAME2) )
+				Assert.assertTrue("Missing tsmm operator.", 
+					Statistics.getCPHeavyHitterOpCodes().contains("tsmm"));
+		}
+		finally
+		{
+			OptimizerUtils.ALLOW_COMMON_SUBEXPRESSION_ELIMINATION = oldFlagCSE;
+		}
+	}	
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.misc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.sysml.runtime.lineage.LineageItem;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * This is a component test for lineage items as keys of the lineage-based
+ * reuse cache, i.e., equality and hash codes of independently constructed 
+ * traces, including deep traces with shared sub-traces.
+ */
+public class LineageItemTest extends AutomatedTestBase 
+{
+	private final static String FNAME = "hdfs:/tmp/X";
+	
+	@Override
+	public void setUp() {
+		TestUtils.clearAssertionInformation();
+	}
+	
+	@Test
+	public void testEqualTraces() {
+		LineageItem a = createTrace(FNAME+":1:100", "7");
+		LineageItem b = createTrace(FNAME+":1:100", "7");
+		Assert.assertEquals(a, b);
+		Assert.assertEquals(a.hashCode(), b.hashCode());
+	}
+	
+	@Test
+	public void testDifferentLiterals() {
+		LineageItem a = createTrace(FNAME+":1:100", "7");
+		LineageItem b = createTrace(FNAME+":1:100", "8");
+		Assert.assertFalse(a.equals(b));
+	}
+	
+	@Test
+	public void testDifferentFileVersions() {
+		LineageItem a = createTrace(FNAME+":1:100", "7");
+		LineageItem b = createTrace(FNAME+":2:100", "7");
+		LineageItem c = createTrace(FNAME+":1:101", "7");
+		Assert.assertFalse(a.equals(b));
+		Assert.assertFalse(a.equals(c));
+	}
+	
+	@Test
+	public void testDifferentOperandOrder() {
+		LineageItem x = new LineageItem(LineageItem.READ_OPCODE, FNAME+":1:100");
+		LineageItem y = new LineageItem(LineageItem.READ_OPCODE, FNAME+":1:200");
+		LineageItem a = new LineageItem("ba+*", null, new LineageItem[]{x, y});
+		LineageItem b = new LineageItem("ba+*", null, new LineageItem[]{y, x});
+		Assert.assertFalse(a.equals(b));
+	}
+	
+	@Test(timeout=10000)
+	public void testDeepSharedTraces() {
+		//traces w/ shared sub-traces (2^height paths w/o memoization)
+		LineageItem a = createDeepTrace(500, "7");
+		LineageItem b = createDeepTrace(500, "7");
+		LineageItem c = createDeepTrace(500, "8");
+		Assert.assertEquals(a, b);
+		Assert.assertEquals(a.hashCode(), b.hashCode());
+		Assert.assertFalse(a.equals(c));
+	}
+	
+	private static LineageItem createTrace(String fdata, String lit) {
+		LineageItem x = new LineageItem(LineageItem.READ_OPCODE, fdata);
+		LineageItem l = new LineageItem(LineageItem.LITERAL_OPCODE, "DOUBLE:"+lit);
+		LineageItem tx = new LineageItem("r'", null, new LineageItem[]{x});
+		LineageItem mm = new LineageItem("ba+*", null, new LineageItem[]{tx, x});
+		return new LineageItem("*", null, new LineageItem[]{mm, l});
+	}
+	
+	private static LineageItem createDeepTrace(int height, String lit) {
+		LineageItem ret = new LineageItem(LineageItem.READ_OPCODE, FNAME+":1:100");
+		LineageItem l = new LineageItem(LineageItem.LITERAL_OPCODE, "DOUBLE:"+lit);
+		for( int i=0; i<height; i++ )
+			ret = new LineageItem("+", null, new LineageItem[]{ret, ret});
+		return new LineageItem("*", null, new LineageItem[]{ret, l});
+	}
+}
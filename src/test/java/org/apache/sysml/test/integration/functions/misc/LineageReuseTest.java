@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.misc;
+
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.runtime.lineage.LineageCache;
+import org.apache.sysml.runtime.matrix.data.MatrixValue.CellIndex;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+import org.apache.sysml.utils.Statistics;
+
+/**
+ * Tests the lineage-based reuse of expensive instruction results across loop 
+ * iterations, including in-place modifications of reused results.
+ */
+public class LineageReuseTest extends AutomatedTestBase 
+{
+	
+	private final static String TEST_NAME = "LineageReuse";
+	private final static String TEST_DIR = "functions/misc/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + LineageReuseTest.class.getSimpleName() + "/";
+	
+	//large enough to exceed the min compute time of cached results
+	private final static int rows = 2000;
+	private final static int cols = 300;
+	
+	@Override
+	public void setUp() 
+	{
+		addTestConfiguration( TEST_NAME, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME, new String[] { "R" }) );
+	}
+
+	@Test
+	public void testLineageReuse() 
+	{
+		runLineageReuseTest( true );
+	}
+	
+	@Test
+	public void testNoLineageReuse() 
+	{
+		runLineageReuseTest( false );
+	}
+	
+	/**
+	 * 
+	 * @param reuse
+	 */
+	private void runLineageReuseTest( boolean reuse )
+	{	
+		boolean oldFlagReuse = OptimizerUtils.ALLOW_LINEAGE_REUSE;
+		boolean oldFlagLICM = OptimizerUtils.ALLOW_LOOP_INVARIANT_CODE_MOTION;
+		
+		try
+		{
+			TestConfiguration config = getTestConfiguration(TEST_NAME);
+			loadTestConfiguration(config);
+			
+			String HOME = SCRIPT_DIR + TEST_DIR;
+			fullDMLScriptName = HOME + TEST_NAME + ".dml";
+			programArgs = new String[]{"-args", input("X"), output("R") };
+			
+			fullRScriptName = HOME + TEST_NAME + ".R";
+			rCmd = getRCmd(inputDir(), expectedDir());
+
+			//disable hoisting of the invariant matrix multiplication
+			OptimizerUtils.ALLOW_LINEAGE_REUSE = reuse;
+			OptimizerUtils.ALLOW_LOOP_INVARIANT_CODE_MOTION = false;
+			LineageCache.clear();
+			Statistics.reset();
+
+			double[][] X = getRandomMatrix(rows, cols, 0, 1, 1.0, 7);
+			writeInputMatrixWithMTD("X", X, true);
+			
+			runTest(true, false, null, -1); 
+			runRScript(true); 
+			
+			//compare matrices 
+			HashMap<CellIndex, Double> dmlfile = readDMLMatrixFromHDFS("R");
+			HashMap<CellIndex, Double> rfile  = readRMatrixFromFS("R");
+			TestUtils.compareMatrices(dmlfile, rfile, 1e-8, "Stat-DML", "Stat-R");
+			
+			//check reuse across loop iterations
+			if( reuse )
+				Assert.assertTrue("No lineage cache hits.", Statistics.getLineageCacheHits() > 0);
+			else
+				Assert.assertEquals(0, Statistics.getLineageCacheHits());
+		}
+		finally
+		{
+			OptimizerUtils.ALLOW_LINEAGE_REUSE = oldFlagReuse;
+			OptimizerUtils.ALLOW_LOOP_INVARIANT_CODE_MOTION = oldFlagLICM;
+			LineageCache.clear();
+		}
+	}	
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.misc;
+
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.runtime.matrix.data.MatrixValue.CellIndex;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * Tests the hoisting of loop-invariant operations, including loops with zero 
+ * iterations whose invariant operations would fail if executed, and nested loops.
+ */
+public class LoopInvariantCodeMotionTest extends AutomatedTestBase 
+{
+	
+	private final static String TEST_NAME1 = "LoopInvariant1";
+	private final static String TEST_NAME2 = "LoopInvariant2";
+	private final static String TEST_NAME3 = "LoopInvariant3";
+	private final static String TEST_DIR = "functions/misc/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + LoopInvariantCodeMotionTest.class.getSimpleName() + "/";
+	
+	private final static int rows = 23;
+	private final static int cols = 7;
+	
+	@Override
+	public void setUp() 
+	{
+		addTestConfiguration( TEST_NAME1, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME1, new String[] { "R" }) );
+		addTestConfiguration( TEST_NAME2, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME2, new String[] { "R" }) );
+		addTestConfiguration( TEST_NAME3, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME3, new String[] { "R" }) );
+	}
+
+	@Test
+	public void testLoopInvariantForLICM() 
+	{
+		runLoopInvariantTest( TEST_NAME1, true, 0, 0 );
+	}
+	
+	@Test
+	public void testLoopInvariantForNoLICM() 
+	{
+		runLoopInvariantTest( TEST_NAME1, false, 0, 0 );
+	}
+	
+	@Test
+	public void testLoopInvariantWhileZeroIterationsLICM() 
+	{
+		runLoopInvariantTest( TEST_NAME2, true, 0, rows+3 );
+	}
+	
+	@Test
+	public void testLoopInvariantWhileZeroIterationsNoLICM() 
+	{
+		runLoopInvariantTest( TEST_NAME2, false, 0, rows+3 );
+	}
+	
+	@Test
+	public void testLoopInvariantWhileIterationsLICM() 
+	{
+		runLoopInvariantTest( TEST_NAME2, true, 3, rows-2 );
+	}
+	
+	@Test
+	public void testLoopInvariantNestedLICM() 
+	{
+		runLoopInvariantTest( TEST_NAME3, true, 0, 0 );
+	}
+	
+	@Test
+	public void testLoopInvariantNestedNoLICM() 
+	{
+		runLoopInvariantTest( TEST_NAME3, false, 0, 0 );
+	}
+	
+	/**
+	 * 
+	 * @param testName
+	 * @param licm
+	 * @param n
+	 * @param k
+	 */
+	private void runLoopInvariantTest( String testName, boolean licm, int n, int k )
+	{	
+		boolean oldFlag = OptimizerUtils.ALLOW_LOOP_INVARIANT_CODE_MOTION;
+		
+		try
+		{
+			TestConfiguration config = getTestConfiguration(testName);
+			loadTestConfiguration(config);
+			
+			String HOME = SCRIPT_DIR + TEST_DIR;
+			fullDMLScriptName = HOME + testName + ".dml";
+			fullRScriptName = HOME + testName + ".R";
+			if( testName.equals(TEST_NAME2) ) {
+				programArgs = new String[]{"-args", input("A"), output("R"), String.valueOf(n), String.valueOf(k) };
+				rCmd = getRCmd(inputDir(), String.valueOf(n), String.valueOf(k), expectedDir());
+			}
+			else {
+				programArgs = new String[]{"-args", input("A"), output("R") };
+				rCmd = getRCmd(inputDir(), expectedDir());
+			}
+
+			OptimizerUtils.ALLOW_LOOP_INVARIANT_CODE_MOTION = licm;
+
+			double[][] A = getRandomMatrix(rows, cols, -1, 1, 0.9, 7);
+			writeInputMatrixWithMTD("A", A, true);
+			
+			runTest(true, false, null, -1); 
+			runRScript(true); 
+			
+			//compare matrices 
+			HashMap<CellIndex, Double> dmlfile = readDMLMatrixFromHDFS("R");
+			HashMap<CellIndex, Double> rfile  = readRMatrixFromFS("R");
+			TestUtils.compareMatrices(dmlfile, rfile, 1e-10, "Stat-DML", "Stat-R");
+		}
+		finally
+		{
+			OptimizerUtils.ALLOW_LOOP_INVARIANT_CODE_MOTION = oldFlag;
+		}
+	}	
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.misc;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.sysml.hops.AggBinaryOp;
+import org.apache.sysml.hops.DataOp;
+import org.apache.sysml.hops.Hop.DataOpTypes;
+import org.apache.sysml.hops.MemoTable;
+import org.apache.sysml.hops.rewrite.HopRewriteUtils;
+import org.apache.sysml.parser.Expression.DataType;
+import org.apache.sysml.parser.Expression.ValueType;
+import org.apache.sysml.runtime.matrix.MatrixSketch;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * This is a component test for structural sparsity sketches, which checks
+ * the sketch construction, the exact estimates for permutation-like inputs,
+ * the bounds of the general estimate, and that sketches of matrix multiply
+ * hops do not affect the (worst-case) memory estimates.
+ */
+public class MatrixSketchTest extends AutomatedTestBase 
+{
+	private final static int m = 100;
+	private final static int cd = 80;
+	private final static int n = 60;
+	private final static double sparsity1 = 0.05;
+	private final static double sparsity2 = 0.2;
+	
+	@Override
+	public void setUp() {
+		TestUtils.clearAssertionInformation();
+	}
+	
+	@Test
+	public void testCreateSketch() {
+		MatrixBlock mb = new MatrixBlock(m, n, true);
+		mb.setValue(3, 7, 1);
+		mb.setValue(3, 9, 2);
+		mb.setValue(5, 7, 3);
+		MatrixSketch sk = MatrixSketch.createSketch(mb);
+		Assert.assertNotNull(sk);
+		Assert.assertEquals(m, sk.getRows());
+		Assert.assertEquals(n, sk.getCols());
+		Assert.assertEquals(3, sk.getNonZeros());
+		Assert.assertEquals(2, sk.getNonEmptyRows());
+		Assert.assertEquals(2, sk.getNonEmptyCols());
+		Assert.assertEquals(2, sk.getMaxRowNnz());
+		Assert.assertEquals(2, sk.getMaxColNnz());
+		
+		//transpose swaps rows and columns
+		MatrixSketch skt = MatrixSketch.createTransposeSketch(sk);
+		Assert.assertEquals(n, skt.getRows());
+		Assert.assertEquals(m, skt.getCols());
+		Assert.assertEquals(3, skt.getNonZeros());
+		Assert.assertEquals(sk.getNonEmptyRows(), skt.getNonEmptyCols());
+		Assert.assertEquals(sk.getNonEmptyCols(), skt.getNonEmptyRows());
+	}
+	
+	@Test
+	public void testNoSketchDenseOrEmpty() {
+		MatrixBlock dense = MatrixBlock.randOperations(m, n, 1.0, 1, 2, "uniform", 7);
+		Assert.assertNull(MatrixSketch.createSketch(dense));
+		Assert.assertNull(MatrixSketch.createSketch(new MatrixBlock(m, n, true)));
+		Assert.assertNull(MatrixSketch.createSketch(null));
+	}
+	
+	@Test
+	public void testSignature() {
+		MatrixBlock mb1 = MatrixBlock.randOperations(m, n, sparsity1, 1, 2, "uniform", 7);
+		MatrixBlock mb2 = MatrixBlock.randOperations(m, n, sparsity1, 1, 2, "uniform", 7);
+		MatrixBlock mb3 = MatrixBlock.randOperations(m, n, sparsity1, 1, 2, "uniform", 3);
+		Assert.assertEquals(MatrixSketch.createSketch(mb1).getSignature(), 
+			MatrixSketch.createSketch(mb2).getSignature());
+		Assert.assertFalse(MatrixSketch.createSketch(mb1).getSignature().equals( 
+			MatrixSketch.createSketch(mb3).getSignature()));
+	}
+	
+	@Test
+	public void testPermutationLeftExact() {
+		MatrixBlock p = createPermutation(m, 7);
+		MatrixBlock x = MatrixBlock.randOperations(m, n, sparsity2, 1, 2, "uniform", 3);
+		checkEstimate(p, x, true);
+	}
+	
+	@Test
+	public void testSelectionRightExact() {
+		MatrixBlock x = MatrixBlock.randOperations(n, m, sparsity2, 1, 2, "uniform", 3);
+		MatrixBlock p = createPermutation(m, 7);
+		p.setValue(5, getNonZeroColumn(p, 5), 0); //selection w/ empty column
+		checkEstimate(x, p, true);
+	}
+	
+	@Test
+	public void testRandomSparseBounds() {
+		MatrixBlock a = MatrixBlock.randOperations(m, cd, sparsity1, 1, 2, "uniform", 3);
+		MatrixBlock b = MatrixBlock.randOperations(cd, n, sparsity2, 1, 2, "uniform", 7);
+		checkEstimate(a, b, false);
+	}
+	
+	@Test
+	public void testSkewedSparseBounds() {
+		//single dense column of A, single dense row of B (outer product)
+		MatrixBlock a = new MatrixBlock(m, cd, true);
+		MatrixBlock b = new MatrixBlock(cd, n, true);
+		for( int i=0; i<m; i++ )
+			a.setValue(i, 0, 1);
+		for( int j=0; j<n; j++ )
+			b.setValue(0, j, 1);
+		a.setValue(0, 1, 1);
+		b.setValue(1, 0, 1);
+		checkEstimate(a, b, false);
+	}
+	
+	@Test
+	public void testMemEstimateIndependentOfSketch() {
+		MatrixBlock a = MatrixBlock.randOperations(m, cd, sparsity1, 1, 2, "uniform", 3);
+		MatrixBlock b = MatrixBlock.randOperations(cd, n, sparsity1, 1, 2, "uniform", 7);
+		AggBinaryOp mm1 = createMatMult(a, b, false);
+		AggBinaryOp mm2 = createMatMult(a, b, true);
+		
+		//sketch propagated for costing, with estimate below worst case
+		Assert.assertNull(mm1.getSketch());
+		Assert.assertNotNull(mm2.getSketch());
+		Assert.assertTrue(mm2.getSketch().getNonZeros() < (long)m*n);
+		
+		//memory estimates remain worst-case
+		Assert.assertEquals(mm1.getOutputMemEstimate(), mm2.getOutputMemEstimate(), 0);
+		Assert.assertEquals(mm1.getIntermediateMemEstimate(), mm2.getIntermediateMemEstimate(), 0);
+		Assert.assertEquals(mm1.getMemEstimate(), mm2.getMemEstimate(), 0);
+	}
+	
+	/**
+	 * 
+	 * @param a
+	 * @param b
+	 * @param exact
+	 */
+	private void checkEstimate( MatrixBlock a, MatrixBlock b, boolean exact )
+	{
+		MatrixSketch s1 = MatrixSketch.createSketch(a);
+		MatrixSketch s2 = MatrixSketch.createSketch(b);
+		long est = MatrixSketch.estimateMatMultNnz(s1, s2);
+		long nnz = computeMatMultNnz(a, b);
+		double prods = MatrixSketch.getMatMultProducts(s1, s2);
+		
+		if( exact )
+			Assert.assertEquals(nnz, est);
+		Assert.assertTrue("Estimate above #products: "+est, est <= prods);
+		Assert.assertTrue("Estimate above output size: "+est, 
+			est <= (long)a.getNumRows()*b.getNumColumns());
+		Assert.assertTrue("Estimate below zero: "+est, est >= 0);
+		
+		//derived sketch consistent w/ estimate
+		MatrixSketch s3 = MatrixSketch.createMatMultSketch(s1, s2);
+		Assert.assertEquals(a.getNumRows(), s3.getRows());
+		Assert.assertEquals(b.getNumColumns(), s3.getCols());
+		Assert.assertEquals(est, s3.getNonZeros());
+	}
+	
+	/**
+	 * 
+	 * @param a
+	 * @param b
+	 * @param sketches
+	 * @return
+	 */
+	private static AggBinaryOp createMatMult( MatrixBlock a, MatrixBlock b, boolean sketches )
+	{
+		DataOp in1 = new DataOp("A", DataType.MATRIX, ValueType.DOUBLE, DataOpTypes.TRANSIENTREAD, 
+			"A", a.getNumRows(), a.getNumColumns(), a.getNonZeros(), 1000, 1000);
+		DataOp in2 = new DataOp("B", DataType.MATRIX, ValueType.DOUBLE, DataOpTypes.TRANSIENTREAD, 
+			"B", b.getNumRows(), b.getNumColumns(), b.getNonZeros(), 1000, 1000);
+		if( sketches ) {
+			in1.setSketch(MatrixSketch.createSketch(a));
+			in2.setSketch(MatrixSketch.createSketch(b));
+		}
+		AggBinaryOp mm = HopRewriteUtils.createMatrixMultiply(in1, in2);
+		MemoTable memo = new MemoTable();
+		in1.computeMemEstimate(memo);
+		in2.computeMemEstimate(memo);
+		mm.computeMemEstimate(memo);
+		return mm;
+	}
+	
+	/**
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private static long computeMatMultNnz( MatrixBlock a, MatrixBlock b )
+	{
+		long nnz = 0;
+		for( int i=0; i<a.getNumRows(); i++ )
+			for( int j=0; j<b.getNumColumns(); j++ ) {
+				boolean nz = false;
+				for( int k=0; k<a.getNumColumns() && !nz; k++ )
+					nz = (a.getValue(i, k) != 0 && b.getValue(k, j) != 0);
+				nnz += nz ? 1 : 0;
+			}
+		return nnz;
+	}
+	
+	/**
+	 * 
+	 * @param rows
+	 * @param seed
+	 * @return
+	 */
+	private static MatrixBlock createPermutation( int rows, long seed )
+	{
+		int[] perm = new int[rows];
+		for( int i=0; i<rows; i++ )
+			perm[i] = i;
+		Random rand = new Random(seed);
+		for( int i=rows-1; i>0; i-- ) {
+			int j = rand.nextInt(i+1);
+			int tmp = perm[i]; perm[i] = perm[j]; perm[j] = tmp;
+		}
+		MatrixBlock ret = new MatrixBlock(rows, rows, true);
+		for( int i=0; i<rows; i++ )
+			ret.setValue(i, perm[i], 1);
+		return ret;
+	}
+	
+	/**
+	 * 
+	 * @param mb
+	 * @param row
+	 * @return
+	 */
+	private static int getNonZeroColumn( MatrixBlock mb, int row )
+	{
+		for( int j=0; j<mb.getNumColumns(); j++ )
+			if( mb.getValue(row, j) != 0 )
+				return j;
+		return -1;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.misc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.hops.AggBinaryOp;
+import org.apache.sysml.hops.DataOp;
+import org.apache.sysml.hops.Hop;
+import org.apache.sysml.hops.Hop.DataOpTypes;
+import org.apache.sysml.hops.HopsException;
+import org.apache.sysml.hops.rewrite.HopRewriteUtils;
+import org.apache.sysml.hops.rewrite.ProgramRewriteStatus;
+import org.apache.sysml.hops.rewrite.RewriteMatrixMultChainOptimization;
+import org.apache.sysml.parser.Expression.DataType;
+import org.apache.sysml.parser.Expression.ValueType;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * This is a component test for the sparsity-aware matrix multiplication chain
+ * optimization, which checks the chosen order of A %*% B %*% C for square A, B 
+ * and a slightly smaller C. With dense (or unknown) inputs, A %*% (B %*% C) 
+ * requires fewer scalar products, while for ultra-sparse A and B, the product
+ * (A %*% B) is cheap and remains ultra-sparse, i.e., (A %*% B) %*% C is preferred.
+ * Chains with unknown sparsity and large intermediates are marked for recompilation.
+ */
+public class RewriteMatrixMultChainOptTest extends AutomatedTestBase 
+{
+	private final static long m = 100000;
+	private final static long n = 90000;
+	
+	@Override
+	public void setUp() {
+		TestUtils.clearAssertionInformation();
+	}
+	
+	@Test
+	public void testChainDense() throws HopsException {
+		runMatrixMultChainTest(m*m, m*m, false, false);
+	}
+	
+	@Test
+	public void testChainDenseLeftDeepInput() throws HopsException {
+		runMatrixMultChainTest(m*m, m*m, false, true);
+	}
+	
+	@Test
+	public void testChainSparse() throws HopsException {
+		runMatrixMultChainTest(m, m, true, false);
+	}
+	
+	@Test
+	public void testChainSparseLeftDeepInput() throws HopsException {
+		runMatrixMultChainTest(m, m, true, true);
+	}
+	
+	@Test
+	public void testChainUnknownNnz() throws HopsException {
+		runMatrixMultChainTest(-1, -1, false, false);
+	}
+	
+	@Test
+	public void testChainUnknownNnzLeftDeepInput() throws HopsException {
+		runMatrixMultChainTest(-1, -1, false, true);
+	}
+	
+	/**
+	 * 
+	 * @param nnzA
+	 * @param nnzB
+	 * @param leftDeep expected left-deep order (A %*% B) %*% C 
+	 * @param leftDeepInput left-deep order of the input chain
+	 * @throws HopsException
+	 */
+	private void runMatrixMultChainTest( long nnzA, long nnzB, boolean leftDeep, boolean leftDeepInput ) 
+		throws HopsException
+	{
+		RUNTIME_PLATFORM platformOld = DMLScript.rtplatform;
+		
+		try
+		{
+			//local costs only (no distributed operations)
+			DMLScript.rtplatform = RUNTIME_PLATFORM.SINGLE_NODE;
+			
+			Hop A = createRead("A", m, m, nnzA);
+			Hop B = createRead("B", m, m, nnzB);
+			Hop C = createRead("C", m, n, (nnzA < 0) ? -1 : m*n);
+			AggBinaryOp root = leftDeepInput ?
+				HopRewriteUtils.createMatrixMultiply(HopRewriteUtils.createMatrixMultiply(A, B), C) :
+				HopRewriteUtils.createMatrixMultiply(A, HopRewriteUtils.createMatrixMultiply(B, C));
+			
+			new RewriteMatrixMultChainOptimization().rewriteHopDAG(root, new ProgramRewriteStatus());
+			
+			//check chosen order of the chain
+			Hop left = root.getInput().get(0);
+			Hop right = root.getInput().get(1);
+			if( leftDeep ) {
+				Assert.assertTrue("Expected (A %*% B) %*% C.", left instanceof AggBinaryOp 
+					&& left.getInput().get(0) == A && left.getInput().get(1) == B && right == C);
+			}
+			else {
+				Assert.assertTrue("Expected A %*% (B %*% C).", right instanceof AggBinaryOp 
+					&& right.getInput().get(0) == B && right.getInput().get(1) == C && left == A);
+			}
+			Assert.assertEquals(m, root.getDim1());
+			Assert.assertEquals(n, root.getDim2());
+			
+			//check recompilation only for unknown sparsity
+			Assert.assertEquals(nnzA < 0, root.requiresRecompile());
+		}
+		finally
+		{
+			DMLScript.rtplatform = platformOld;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param name
+	 * @param rows
+	 * @param cols
+	 * @param nnz
+	 * @return
+	 */
+	private static Hop createRead( String name, long rows, long cols, long nnz ) {
+		return new DataOp(name, DataType.MATRIX, ValueType.DOUBLE, DataOpTypes.TRANSIENTREAD, 
+			name, rows, cols, nnz, 1000, 1000);
+	}
+}
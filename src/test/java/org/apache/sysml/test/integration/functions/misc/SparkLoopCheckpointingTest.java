@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.misc;
+
+import java.io.File;
+import java.util.HashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.spark.Dependency;
+import org.apache.spark.ShuffleDependency;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.rdd.CoGroupedRDD;
+import org.apache.spark.rdd.RDD;
+import org.junit.Assert;
+import org.junit.Test;
+
+import scala.collection.JavaConversions;
+
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.conf.ConfigurationManager;
+import org.apache.sysml.conf.DMLConfig;
+import org.apache.sysml.lops.Checkpoint;
+import org.apache.sysml.lops.Lop;
+import org.apache.sysml.parser.AParserWrapper;
+import org.apache.sysml.parser.DMLProgram;
+import org.apache.sysml.parser.DMLTranslator;
+import org.apache.sysml.parser.Expression.DataType;
+import org.apache.sysml.parser.Expression.ValueType;
+import org.apache.sysml.runtime.controlprogram.Program;
+import org.apache.sysml.runtime.controlprogram.ProgramBlock;
+import org.apache.sysml.runtime.controlprogram.caching.CacheableData;
+import org.apache.sysml.runtime.controlprogram.caching.MatrixObject;
+import org.apache.sysml.runtime.controlprogram.context.ExecutionContextFactory;
+import org.apache.sysml.runtime.controlprogram.context.SparkExecutionContext;
+import org.apache.sysml.runtime.instructions.Instruction;
+import org.apache.sysml.runtime.instructions.SPInstructionParser;
+import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
+import org.apache.sysml.runtime.matrix.MatrixFormatMetaData;
+import org.apache.sysml.runtime.matrix.data.InputInfo;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.matrix.data.MatrixIndexes;
+import org.apache.sysml.runtime.matrix.data.OutputInfo;
+import org.apache.sysml.runtime.util.DataConverter;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * Tests the compile-time decision on partitioning checkpoints of read-only
+ * variables in loops (only for join consumers in the loop body), as well as
+ * that joins with partitioned checkpoints do not shuffle the checkpointed 
+ * rdd again in every iteration.
+ */
+public class SparkLoopCheckpointingTest extends AutomatedTestBase 
+{
+	private final static String TEST_NAME1 = "SparkLoopCheckpoint1"; //join consumer
+	private final static String TEST_NAME2 = "SparkLoopCheckpoint2"; //map-side consumers
+	private final static String TEST_DIR = "functions/misc/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + SparkLoopCheckpointingTest.class.getSimpleName() + "/";
+	
+	private final static int rows = 300;
+	private final static int cols = 300;
+	private final static int blocksize = 100;
+	private final static int iters = 3;
+	
+	@Override
+	public void setUp() 
+	{
+		TestUtils.clearAssertionInformation();
+		addTestConfiguration( TEST_NAME1, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME1, new String[] { "R" }) );
+		addTestConfiguration( TEST_NAME2, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME2, new String[] { "R" }) );
+	}
+	
+	@Test
+	public void testCheckpointPartitioningJoin() {
+		runCheckpointCompileTest( TEST_NAME1, true );
+	}
+	
+	@Test
+	public void testCheckpointNoPartitioningMapSide() {
+		runCheckpointCompileTest( TEST_NAME2, false );
+	}
+	
+	@Test
+	public void testPartitionedCheckpointNoReshuffle() {
+		runCheckpointJoinTest( true );
+	}
+	
+	@Test
+	public void testCheckpointReshuffle() {
+		runCheckpointJoinTest( false );
+	}
+	
+	/**
+	 * 
+	 * @param testName
+	 * @param partition expected partitioning of checkpoint
+	 */
+	private void runCheckpointCompileTest( String testName, boolean partition )
+	{
+		RUNTIME_PLATFORM platformOld = DMLScript.rtplatform;
+		
+		try
+		{
+			getAndLoadTestConfiguration(testName);
+			DMLScript.rtplatform = RUNTIME_PLATFORM.SPARK;
+			
+			DMLConfig conf = new DMLConfig(getCurConfigFile().getPath());
+			ConfigurationManager.setConfig(conf);
+			
+			String fname = SCRIPT_DIR + TEST_DIR + testName + ".dml";
+			HashMap<String, String> argVals = new HashMap<String,String>();
+			argVals.put("$1", String.valueOf(rows));
+			argVals.put("$2", String.valueOf(cols));
+			argVals.put("$3", String.valueOf(iters));
+			argVals.put("$4", output("R"));
+			
+			//compile runtime program (incl checkpoint injection)
+			AParserWrapper parser = AParserWrapper.createParser(false);
+			DMLProgram prog = parser.parse(fname, FileUtils.readFileToString(new File(fname)), argVals);
+			DMLTranslator dmlt = new DMLTranslator(prog);
+			dmlt.liveVariableAnalysis(prog);
+			dmlt.validateParseTree(prog);
+			dmlt.constructHops(prog);
+			dmlt.rewriteHopsDAG(prog);
+			dmlt.constructLops(prog);
+			Program rtprog = prog.getRuntimeProgram(conf);
+			
+			//check checkpoint of read-only variable X before the loop
+			String chkpoint = null;
+			for( ProgramBlock pb : rtprog.getProgramBlocks() )
+				for( Instruction inst : pb.getInstructions() )
+					if( Checkpoint.OPCODE.equals(inst.getOpcode()) 
+						&& inst.toString().contains(Lop.OPERAND_DELIMITOR+"X"+Lop.DATATYPE_PREFIX) )
+						chkpoint = inst.toString();
+			Assert.assertNotNull("Missing checkpoint of X.", chkpoint);
+			String flag = chkpoint.substring(chkpoint.lastIndexOf(Lop.OPERAND_DELIMITOR)+1);
+			Assert.assertEquals(partition, Boolean.parseBoolean(flag));
+		}
+		catch(Exception ex) {
+			throw new RuntimeException(ex);
+		}
+		finally {
+			DMLScript.rtplatform = platformOld;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param partition partitioning of checkpoint
+	 */
+	@SuppressWarnings("unchecked")
+	private void runCheckpointJoinTest( boolean partition )
+	{
+		RUNTIME_PLATFORM platformOld = DMLScript.rtplatform;
+		boolean sparkConfigOld = DMLScript.USE_LOCAL_SPARK_CONFIG;
+		boolean cachingOld = CacheableData.isCachingActive();
+		
+		try
+		{
+			getAndLoadTestConfiguration(TEST_NAME1);
+			DMLScript.rtplatform = RUNTIME_PLATFORM.SPARK;
+			DMLScript.USE_LOCAL_SPARK_CONFIG = true;
+			CacheableData.disableCaching();
+			
+			SparkExecutionContext sec = (SparkExecutionContext) ExecutionContextFactory.createContext();
+			
+			//create unpartitioned input rdds
+			double[][] X = getRandomMatrix(rows, cols, 0, 1, 1.0, 7);
+			double[][] Y = getRandomMatrix(rows, cols, 0, 1, 1.0, 3);
+			setRDDVariable(sec, "X", X);
+			setRDDVariable(sec, "Y", Y);
+			
+			//checkpoint read-only variable X (as injected before loops)
+			String chkpoint = "SPARK" + Lop.OPERAND_DELIMITOR + Checkpoint.OPCODE + Lop.OPERAND_DELIMITOR 
+				+ createOperand("X") + Lop.OPERAND_DELIMITOR + createOperand("X") + Lop.OPERAND_DELIMITOR 
+				+ Checkpoint.getDefaultStorageLevelString() + Lop.OPERAND_DELIMITOR + partition;
+			SPInstructionParser.parseSingleInstruction(chkpoint).processInstruction(sec);
+			RDD<?> xrdd = sec.getBinaryBlockRDDHandleForVariable("X").rdd();
+			
+			//join with checkpoint in multiple iterations
+			String join = "SPARK" + Lop.OPERAND_DELIMITOR + "+" + Lop.OPERAND_DELIMITOR + createOperand("X") 
+				+ Lop.OPERAND_DELIMITOR + createOperand("Y") + Lop.OPERAND_DELIMITOR + createOperand("R");
+			for( int i=0; i<iters; i++ ) 
+			{
+				sec.setVariable("R", createMatrixObject(output("R")));
+				SPInstructionParser.parseSingleInstruction(join).processInstruction(sec);
+				
+				//check for (no) shuffle of checkpointed rdd
+				JavaPairRDD<MatrixIndexes,MatrixBlock> out = (JavaPairRDD<MatrixIndexes,MatrixBlock>) 
+					sec.getMatrixObject("R").getRDDHandle().getRDD();
+				Boolean shuffled = rIsShuffledJoinInput(out.rdd(), xrdd);
+				Assert.assertNotNull("Missing join input.", shuffled);
+				Assert.assertEquals(!partition, shuffled);
+				
+				//check correct results
+				double[][] R = DataConverter.convertToDoubleMatrix(sec.getMatrixInput("R"));
+				sec.releaseMatrixInput("R");
+				for( int j=0; j<rows; j++ )
+					for( int k=0; k<cols; k++ )
+						Assert.assertEquals(X[j][k]+Y[j][k], R[j][k], 1e-14);
+			}
+		}
+		catch(Exception ex) {
+			throw new RuntimeException(ex);
+		}
+		finally {
+			DMLScript.rtplatform = platformOld;
+			DMLScript.USE_LOCAL_SPARK_CONFIG = sparkConfigOld;
+			if( cachingOld )
+				CacheableData.enableCaching();
+		}
+	}
+	
+	/**
+	 * Probes the dependency of the join (cogroup) in the lineage of the given rdd on
+	 * the given input rdd.
+	 * 
+	 * @param rdd
+	 * @param in
+	 * @return true if the input is shuffled, false if not, null if not a join input
+	 */
+	private static Boolean rIsShuffledJoinInput( RDD<?> rdd, RDD<?> in )
+	{
+		for( Dependency<?> dep : JavaConversions.seqAsJavaList(rdd.dependencies()) ) {
+			if( rdd instanceof CoGroupedRDD && dep.rdd() == in )
+				return dep instanceof ShuffleDependency;
+			Boolean ret = rIsShuffledJoinInput(dep.rdd(), in);
+			if( ret != null )
+				return ret;
+		}
+		return null;
+	}
+	
+	/**
+	 * 
+	 * @param sec
+	 * @param varname
+	 * @param data
+	 * @throws Exception
+	 */
+	private void setRDDVariable( SparkExecutionContext sec, String varname, double[][] data ) 
+		throws Exception
+	{
+		MatrixBlock mb = DataConverter.convertToMatrixBlock(data);
+		MatrixObject mo = createMatrixObject(input(varname));
+		mo.getMatrixCharacteristics().setNonZeros(mb.getNonZeros());
+		sec.setVariable(varname, mo);
+		sec.setRDDHandleForVariable(varname, 
+			SparkExecutionContext.toJavaPairRDD(sec.getSparkContext(), mb, blocksize, blocksize));
+	}
+	
+	/**
+	 * 
+	 * @param fname
+	 * @return
+	 */
+	private static MatrixObject createMatrixObject( String fname )
+	{
+		MatrixCharacteristics mc = new MatrixCharacteristics(rows, cols, blocksize, blocksize, -1);
+		return new MatrixObject(ValueType.DOUBLE, fname, new MatrixFormatMetaData(mc, 
+			OutputInfo.BinaryBlockOutputInfo, InputInfo.BinaryBlockInputInfo));
+	}
+	
+	/**
+	 * 
+	 * @param varname
+	 * @return
+	 */
+	private static String createOperand( String varname )
+	{
+		return varname + Lop.DATATYPE_PREFIX + DataType.MATRIX + Lop.VALUETYPE_PREFIX + ValueType.DOUBLE;
+	}
+}
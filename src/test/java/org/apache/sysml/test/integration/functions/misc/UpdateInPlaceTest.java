@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.misc;
+
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.runtime.matrix.data.MatrixValue.CellIndex;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * Tests update in-place of left indexing on loop variables, including aliases 
+ * created before the loop and aliases introduced by dynamic rewrites, as well as
+ * nested loops (re-entered inner loops, zero-iteration loops, multiple variables).
+ */
+public class UpdateInPlaceTest extends AutomatedTestBase 
+{
+	
+	private final static String TEST_NAME1 = "UpdateInPlace1";
+	private final static String TEST_NAME2 = "UpdateInPlace2";
+	private final static String TEST_NAME3 = "UpdateInPlace3";
+	private final static String TEST_DIR = "functions/misc/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + UpdateInPlaceTest.class.getSimpleName() + "/";
+	
+	private final static int rows = 17;
+	private final static int cols = 5;
+	
+	@Override
+	public void setUp() 
+	{
+		addTestConfiguration( TEST_NAME1, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME1, new String[] { "R" }) );
+		addTestConfiguration( TEST_NAME2, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME2, new String[] { "R" }) );
+		addTestConfiguration( TEST_NAME3, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME3, new String[] { "R" }) );
+	}
+
+	@Test
+	public void testUpdateInPlacePreLoopAlias() 
+	{
+		runUpdateInPlaceTest( TEST_NAME1, true );
+	}
+	
+	@Test
+	public void testNoUpdateInPlacePreLoopAlias() 
+	{
+		runUpdateInPlaceTest( TEST_NAME1, false );
+	}
+	
+	@Test
+	public void testUpdateInPlaceDynamicRewriteAlias() 
+	{
+		runUpdateInPlaceTest( TEST_NAME2, true );
+	}
+	
+	@Test
+	public void testNoUpdateInPlaceDynamicRewriteAlias() 
+	{
+		runUpdateInPlaceTest( TEST_NAME2, false );
+	}
+	
+	@Test
+	public void testUpdateInPlaceNestedLoops() 
+	{
+		runUpdateInPlaceTest( TEST_NAME3, true );
+	}
+	
+	@Test
+	public void testNoUpdateInPlaceNestedLoops() 
+	{
+		runUpdateInPlaceTest( TEST_NAME3, false );
+	}
+	
+	/**
+	 * 
+	 * @param testName
+	 * @param inplace
+	 */
+	private void runUpdateInPlaceTest( String testName, boolean inplace )
+	{	
+		boolean oldFlag = OptimizerUtils.ALLOW_LOOP_UPDATE_IN_PLACE;
+		
+		try
+		{
+			TestConfiguration config = getTestConfiguration(testName);
+			loadTestConfiguration(config);
+			
+			String HOME = SCRIPT_DIR + TEST_DIR;
+			fullDMLScriptName = HOME + testName + ".dml";
+			programArgs = new String[]{"-args", input("A"), output("R") };
+			
+			fullRScriptName = HOME + testName + ".R";
+			rCmd = getRCmd(inputDir(), expectedDir());
+
+			OptimizerUtils.ALLOW_LOOP_UPDATE_IN_PLACE = inplace;
+
+			//generate input (w/o empty rows)
+			double[][] A = getRandomMatrix(rows, cols, 1, 2, 1.0, 7);
+			writeInputMatrixWithMTD("A", A, true);
+			
+			runTest(true, false, null, -1); 
+			runRScript(true); 
+			
+			//compare matrices 
+			HashMap<CellIndex, Double> dmlfile = readDMLMatrixFromHDFS("R");
+			HashMap<CellIndex, Double> rfile  = readRMatrixFromFS("R");
+			TestUtils.compareMatrices(dmlfile, rfile, 1e-14, "Stat-DML", "Stat-R");
+		}
+		finally
+		{
+			OptimizerUtils.ALLOW_LOOP_UPDATE_IN_PLACE = oldFlag;
+		}
+	}	
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.recompile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.hops.DataOp;
+import org.apache.sysml.hops.Hop;
+import org.apache.sysml.hops.Hop.DataOpTypes;
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.hops.recompile.RecompilePlanCache;
+import org.apache.sysml.parser.Expression.DataType;
+import org.apache.sysml.parser.Expression.ValueType;
+import org.apache.sysml.runtime.controlprogram.LocalVariableMap;
+import org.apache.sysml.runtime.controlprogram.caching.MatrixObject;
+import org.apache.sysml.runtime.matrix.MatrixCharacteristics;
+import org.apache.sysml.runtime.matrix.MatrixFormatMetaData;
+import org.apache.sysml.runtime.matrix.data.InputInfo;
+import org.apache.sysml.runtime.matrix.data.MatrixValue.CellIndex;
+import org.apache.sysml.runtime.matrix.data.OutputInfo;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+import org.apache.sysml.utils.Statistics;
+
+/**
+ * Tests the recompile plan cache with a loop body that is recompiled in every
+ * iteration for alternating input sizes, i.e., after the first iterations all
+ * plans are obtained from the cache. For sparse inputs, the cache keys include
+ * the signatures of the sparsity sketches of matrix multiplication inputs, which
+ * are equal for equal inputs and hence must not prevent cache hits either.
+ * Furthermore, the cache keys of inputs with equal dimensions but very different
+ * sparsity (and thus memory requirements) must differ.
+ */
+public class RecompilePlanCacheTest extends AutomatedTestBase 
+{
+	private final static String TEST_DIR = "functions/recompile/";
+	private final static String TEST_NAME = "recompile_plan_cache";
+	private final static String TEST_CLASS_DIR = TEST_DIR + RecompilePlanCacheTest.class.getSimpleName() + "/";
+	
+	private final static int rows = 1000;
+	private final static int cols = 10;
+	private final static int iters = 6;
+	private final static double sparsity1 = 0.7;
+	private final static double sparsity2 = 0.05;
+	
+	private final static long rowsKey = 100000; //1e5 x 1e5 inputs for cache keys
+	
+	@Override
+	public void setUp() 
+	{
+		TestUtils.clearAssertionInformation();
+		addTestConfiguration(TEST_NAME, 
+			new TestConfiguration(TEST_CLASS_DIR, TEST_NAME, new String[] { "R" }) );
+	}
+
+	@Test
+	public void testPlanCacheDense() {
+		runRecompilePlanCacheTest(false, true, true);
+	}
+	
+	@Test
+	public void testPlanCacheSparse() {
+		runRecompilePlanCacheTest(true, true, true);
+	}
+	
+	@Test
+	public void testPlanCacheSparseNoSketches() {
+		runRecompilePlanCacheTest(true, true, false);
+	}
+	
+	@Test
+	public void testNoPlanCacheDense() {
+		runRecompilePlanCacheTest(false, false, true);
+	}
+	
+	@Test
+	public void testNoPlanCacheSparse() {
+		runRecompilePlanCacheTest(true, false, true);
+	}
+	
+	@Test
+	public void testKeyDifferentSparsity() {
+		//1e-6 (tens of MB) vs 0.015 (about 1.9GB) must not share a plan
+		Assert.assertFalse(createKey(10000).equals(createKey(150000000)));
+	}
+	
+	@Test
+	public void testKeyDifferentSparsityLow() {
+		Assert.assertFalse(createKey(10000).equals(createKey(20000)));
+	}
+	
+	@Test
+	public void testKeySimilarSparsity() {
+		//less than 1% difference (same class, unless at class boundary)
+		String key1 = createKey(150000000);
+		String key2 = createKey(150100000);
+		String key3 = createKey(150200000);
+		Assert.assertTrue(key1.equals(key2) || key2.equals(key3));
+	}
+	
+	@Test
+	public void testKeyEmptyAndUnknown() {
+		Assert.assertFalse(createKey(0).equals(createKey(1)));
+		Assert.assertFalse(createKey(-1).equals(createKey(rowsKey*rowsKey)));
+	}
+	
+	@Test
+	public void testKeyDifferentSparsityHybrid() {
+		RUNTIME_PLATFORM platformOld = DMLScript.rtplatform;
+		try {
+			DMLScript.rtplatform = RUNTIME_PLATFORM.HYBRID;
+			Assert.assertFalse(createKey(10000).equals(createKey(150000000)));
+		}
+		finally {
+			DMLScript.rtplatform = platformOld;
+		}
+	}
+	
+	/**
+	 * Creates the plan cache key of a simple dag (transient read and write) 
+	 * over a 1e5 x 1e5 input with the given number of non-zeros.
+	 * 
+	 * @param nnz
+	 * @return
+	 */
+	private static String createKey( long nnz )
+	{
+		Hop read = new DataOp("X", DataType.MATRIX, ValueType.DOUBLE, DataOpTypes.TRANSIENTREAD, 
+			"X", rowsKey, rowsKey, nnz, 1000, 1000);
+		Hop write = new DataOp("X", DataType.MATRIX, ValueType.DOUBLE, read, DataOpTypes.TRANSIENTWRITE, "X");
+		ArrayList<Hop> hops = new ArrayList<Hop>();
+		hops.add(write);
+		
+		MatrixCharacteristics mc = new MatrixCharacteristics(rowsKey, rowsKey, 1000, 1000, nnz);
+		LocalVariableMap vars = new LocalVariableMap();
+		vars.put("X", new MatrixObject(ValueType.DOUBLE, "X", 
+			new MatrixFormatMetaData(mc, OutputInfo.BinaryBlockOutputInfo, InputInfo.BinaryBlockInputInfo)));
+		
+		String key = RecompilePlanCache.createKey(hops, vars);
+		Assert.assertNotNull(key);
+		return key;
+	}
+	
+	/**
+	 * 
+	 * @param sparse
+	 * @param planCache
+	 * @param sketches
+	 */
+	private void runRecompilePlanCacheTest( boolean sparse, boolean planCache, boolean sketches )
+	{	
+		RUNTIME_PLATFORM platformOld = rtplatform;
+		boolean oldFlagPlanCache = OptimizerUtils.ALLOW_RECOMPILE_PLAN_CACHE;
+		boolean oldFlagSketches = OptimizerUtils.ALLOW_SPARSITY_SKETCHES;
+		
+		try
+		{
+			TestConfiguration config = getTestConfiguration(TEST_NAME);
+			loadTestConfiguration(config);
+			
+			String HOME = SCRIPT_DIR + TEST_DIR;
+			fullDMLScriptName = HOME + TEST_NAME + ".dml";
+			programArgs = new String[]{"-stats", "-args", input("X"), String.valueOf(iters), output("R") };
+			fullRScriptName = HOME + TEST_NAME + ".R";
+			rCmd = getRCmd(inputDir(), String.valueOf(iters), expectedDir());
+
+			rtplatform = RUNTIME_PLATFORM.SINGLE_NODE;
+			OptimizerUtils.ALLOW_RECOMPILE_PLAN_CACHE = planCache;
+			OptimizerUtils.ALLOW_SPARSITY_SKETCHES = sketches;
+			
+			double sparsity = sparse ? sparsity2 : sparsity1;
+			double[][] X = getRandomMatrix(rows, cols, 0, 1, sparsity, 7);
+			writeInputMatrixWithMTD("X", X, true);
+			
+			runTest(true, false, null, -1); 
+			runRScript(true); 
+			
+			//compare matrices 
+			HashMap<CellIndex, Double> dmlfile = readDMLMatrixFromHDFS("R");
+			HashMap<CellIndex, Double> rfile  = readRMatrixFromFS("R");
+			TestUtils.compareMatrices(dmlfile, rfile, 1e-10, "Stat-DML", "Stat-R");
+			
+			//check plan cache hits (the first three iterations see new inputs, 
+			//i.e., empty and non-empty R with both sizes of Y)
+			if( planCache )
+				Assert.assertTrue("Missing plan cache hits.", 
+					Statistics.getHopRecompilePlanCacheHits() >= iters-3);
+			else
+				Assert.assertEquals("Unexpected plan cache hits.", 
+					0, Statistics.getHopRecompilePlanCacheHits());
+		}
+		finally
+		{
+			rtplatform = platformOld;
+			OptimizerUtils.ALLOW_RECOMPILE_PLAN_CACHE = oldFlagPlanCache;
+			OptimizerUtils.ALLOW_SPARSITY_SKETCHES = oldFlagSketches;
+		}
+	}
+}
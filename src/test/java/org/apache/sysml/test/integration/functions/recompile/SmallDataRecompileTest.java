@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.recompile;
+
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.runtime.matrix.data.MatrixValue.CellIndex;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+import org.apache.sysml.utils.Statistics;
+
+/**
+ * Tests the small-data fast path, which skips dynamic recompilation in single-node
+ * execution only if the inputs and (worst-case) operator memory estimates of a block
+ * are small, i.e., blocks with small inputs but large intermediates are recompiled.
+ */
+public class SmallDataRecompileTest extends AutomatedTestBase 
+{
+	private final static String TEST_DIR = "functions/recompile/";
+	private final static String TEST_NAME1 = "small_data_recompile1"; //t(Y)%*%Y (small)
+	private final static String TEST_NAME2 = "small_data_recompile2"; //Y%*%t(Y) (large)
+	private final static String TEST_CLASS_DIR = TEST_DIR + SmallDataRecompileTest.class.getSimpleName() + "/";
+	
+	private final static int rows = 1000; //8KB input, 8MB outer product
+	private final static double eps = 1e-10;
+	
+	@Override
+	public void setUp() 
+	{
+		TestUtils.clearAssertionInformation();
+		addTestConfiguration(TEST_NAME1, 
+			new TestConfiguration(TEST_CLASS_DIR, TEST_NAME1, new String[] { "Z" }) );
+		addTestConfiguration(TEST_NAME2, 
+			new TestConfiguration(TEST_CLASS_DIR, TEST_NAME2, new String[] { "Z" }) );
+	}
+
+	@Test
+	public void testSmallIntermediatesFastPath() {
+		runSmallDataRecompileTest(TEST_NAME1, true);
+	}
+	
+	@Test
+	public void testSmallIntermediatesNoFastPath() {
+		runSmallDataRecompileTest(TEST_NAME1, false);
+	}
+	
+	@Test
+	public void testLargeIntermediatesFastPath() {
+		runSmallDataRecompileTest(TEST_NAME2, true);
+	}
+	
+	@Test
+	public void testLargeIntermediatesNoFastPath() {
+		runSmallDataRecompileTest(TEST_NAME2, false);
+	}
+	
+	/**
+	 * 
+	 * @param testname
+	 * @param fastPath
+	 */
+	private void runSmallDataRecompileTest( String testname, boolean fastPath )
+	{	
+		RUNTIME_PLATFORM platformOld = rtplatform;
+		boolean oldFlagFastPath = OptimizerUtils.ALLOW_SMALL_DATA_FAST_PATH;
+		
+		try
+		{
+			getAndLoadTestConfiguration(testname);
+			
+			String HOME = SCRIPT_DIR + TEST_DIR;
+			fullDMLScriptName = HOME + testname + ".dml";
+			programArgs = new String[]{"-stats", "-args", input("X"), output("Z") };
+
+			rtplatform = RUNTIME_PLATFORM.SINGLE_NODE;
+			OptimizerUtils.ALLOW_SMALL_DATA_FAST_PATH = fastPath;
+			
+			double[][] X = getRandomMatrix(rows, 1, 0, 1, 1.0, 7);
+			writeInputMatrixWithMTD("X", X, false);
+			
+			runTest(true, false, null, -1); 
+			
+			//check recompilation (skipped only w/ fast path and small intermediates)
+			boolean recompile = !fastPath || testname.equals(TEST_NAME2);
+			Assert.assertEquals("Unexpected recompilation.", recompile, 
+				Statistics.getHopRecompiledSBDAGs() > 0);
+			
+			//compare results with the expected outer/inner product
+			HashMap<CellIndex, Double> dmlfile = readDMLMatrixFromHDFS("Z");
+			if( testname.equals(TEST_NAME1) ) {
+				double sum = 0;
+				for( int i=0; i<rows; i++ )
+					sum += X[i][0] * X[i][0];
+				Assert.assertEquals(sum, dmlfile.get(new CellIndex(1,1)), eps);
+			}
+			else {
+				for( int i=0; i<rows; i+=37 )
+					for( int j=0; j<rows; j+=41 )
+						Assert.assertEquals(X[i][0]*X[j][0], dmlfile.get(new CellIndex(i+1,j+1)), eps);
+			}
+		}
+		finally
+		{
+			rtplatform = platformOld;
+			OptimizerUtils.ALLOW_SMALL_DATA_FAST_PATH = oldFlagFastPath;
+		}
+	}
+}
@@ -0,0 +1,356 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.test.integration.functions.transform;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.wink.json4j.JSONArray;
+import org.apache.wink.json4j.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.DMLScript.RUNTIME_PLATFORM;
+import org.apache.sysml.conf.ConfigurationManager;
+import org.apache.sysml.conf.DMLConfig;
+import org.apache.sysml.runtime.io.ReaderBinaryBlock;
+import org.apache.sysml.runtime.io.ReaderTextCSV;
+import org.apache.sysml.runtime.matrix.data.CSVFileFormatProperties;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.transform.TransformationAgent.TX_METHOD;
+import org.apache.sysml.runtime.util.DataConverter;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * End-to-end test of equi-height binning via transform, which checks that the 
+ * bin boundaries in the transform metadata and the transformed output match the 
+ * exact quantiles within the error of the quantile sketches. The input is split 
+ * into multiple files, which ensures that partial sketches are merged across 
+ * input splits (CP, MR) and partitions (Spark).
+ */
+public class BinningTest extends AutomatedTestBase 
+{
+	private final static String TEST_NAME = "Binning";
+	private final static String TEST_DIR = "functions/transform/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + BinningTest.class.getSimpleName() + "/";
+	
+	//input: permutation of 1..rows (V1), skewed values (V2), row ids (V3, not binned)
+	private final static int rows = 20000;
+	private final static int cols = 3;
+	private final static int numFiles = 4;
+	private final static int nbins = 5;
+	
+	private final static double eps = 0.02; //max rank error of sketches (~1.7/k)
+	
+	@Override
+	public void setUp() 
+	{
+		TestUtils.clearAssertionInformation();
+		addTestConfiguration(TEST_NAME,
+			new TestConfiguration(TEST_CLASS_DIR, TEST_NAME, new String[]{"R"}));
+	}
+	
+	@Test
+	public void testEquiHeightBinningHybridCSV() throws Exception {
+		runBinningTest(RUNTIME_PLATFORM.HYBRID, "csv");
+	}
+	
+	@Test
+	public void testEquiHeightBinningHybridBinary() throws Exception {
+		runBinningTest(RUNTIME_PLATFORM.HYBRID, "binary");
+	}
+	
+	@Test
+	public void testEquiHeightBinningHadoopCSV() throws Exception {
+		runBinningTest(RUNTIME_PLATFORM.HADOOP, "csv");
+	}
+	
+	@Test
+	public void testEquiHeightBinningHadoopBinary() throws Exception {
+		runBinningTest(RUNTIME_PLATFORM.HADOOP, "binary");
+	}
+	
+	@Test
+	public void testEquiHeightBinningSparkCSV() throws Exception {
+		runBinningTest(RUNTIME_PLATFORM.SPARK, "csv");
+	}
+	
+	@Test
+	public void testEquiHeightBinningSparkBinary() throws Exception {
+		runBinningTest(RUNTIME_PLATFORM.SPARK, "binary");
+	}
+	
+	/**
+	 * 
+	 * @param rt
+	 * @param ofmt
+	 * @throws Exception
+	 */
+	private void runBinningTest( RUNTIME_PLATFORM rt, String ofmt ) throws Exception
+	{
+		RUNTIME_PLATFORM platformOld = rtplatform;
+		rtplatform = rt;
+	
+		boolean sparkConfigOld = DMLScript.USE_LOCAL_SPARK_CONFIG;
+		if( rtplatform == RUNTIME_PLATFORM.SPARK || rtplatform == RUNTIME_PLATFORM.HYBRID_SPARK)
+			DMLScript.USE_LOCAL_SPARK_CONFIG = true;
+
+		try
+		{
+			TestConfiguration config = getTestConfiguration(TEST_NAME);
+			loadTestConfiguration(config);
+			
+			String HOME = SCRIPT_DIR + TEST_DIR;
+			String specFile = input("spec.json");
+			String inputFile = input("X");
+			String outputFile = output(config.getOutputFiles()[0]);
+			
+			generateSpecFile(specFile);
+			
+			fullDMLScriptName = HOME + TEST_NAME + ".dml";
+			programArgs = new String[]{"-nvargs", 
+					"DATA=" + inputFile,
+					"TFSPEC=" + specFile,
+					"TFMTD=" + output("tfmtd"),
+					"TFDATA=" + outputFile,
+					"OFMT=" + ofmt };
+			
+			//generate input split into multiple files
+			double[][] X = generateInput();
+			FileSystem fs = FileSystem.get(TestUtils.conf);
+			fs.delete(new Path(inputFile), true);
+			for( int i=0; i<numFiles; i++ ) {
+				int rl = i * rows/numFiles;
+				int ru = (i+1) * rows/numFiles;
+				TestUtils.writeCSVTestMatrix(inputFile + "/part-0000" + i, Arrays.copyOfRange(X, rl, ru));
+			}
+			generateFrameMTD(inputFile);
+			
+			runTest(true, false, null, -1); 
+			
+			MatrixBlock out = null;
+			if ( ofmt.equals("csv") ) {
+				ReaderTextCSV outReader=  new ReaderTextCSV(new CSVFileFormatProperties(false, ",", true, 0, null));
+				out = outReader.readMatrixFromHDFS(outputFile, -1, -1, -1, -1, -1);
+			}
+			else {
+				ReaderBinaryBlock bbReader = new ReaderBinaryBlock(false);
+				out = bbReader.readMatrixFromHDFS(outputFile, rows, cols, 
+						ConfigurationManager.getConfig().getIntValue( DMLConfig.DEFAULT_BLOCK_SIZE ), 
+						ConfigurationManager.getConfig().getIntValue( DMLConfig.DEFAULT_BLOCK_SIZE ),
+						-1);
+			}
+			double[][] R = DataConverter.convertToDoubleMatrix(out);
+			Assert.assertEquals(rows, R.length);
+			Assert.assertEquals(cols, R[0].length);
+			
+			//check bin boundaries and transformed output per binned column
+			for( int c=0; c<2; c++ ) {
+				double[] vals = new double[rows];
+				for( int i=0; i<rows; i++ )
+					vals[i] = X[i][c];
+				Arrays.sort(vals);
+				
+				double[] bounds = readBinBounds(fs, output("tfmtd") + "/Bin/V" + (c+1) + ".bin");
+				checkBinBounds(vals, bounds);
+				checkBinnedOutput(X, R, c, vals, bounds);
+			}
+		}
+		finally
+		{
+			rtplatform = platformOld;
+			DMLScript.USE_LOCAL_SPARK_CONFIG = sparkConfigOld;
+		}
+	}
+	
+	/**
+	 * Checks that the bin boundaries are ordered, and that their ranks match 
+	 * the exact quantiles j/nbins within the sketch error.
+	 * 
+	 * @param vals sorted column values
+	 * @param bounds upper boundaries of the first nbins-1 bins
+	 */
+	private static void checkBinBounds( double[] vals, double[] bounds )
+	{
+		Assert.assertEquals(nbins-1, bounds.length);
+		for( int j=0; j<bounds.length; j++ ) {
+			double q = (double)(j+1)/nbins;
+			double rank = (double)getRank(vals, bounds[j]) / rows;
+			Assert.assertEquals("Wrong bin boundary for quantile "+q+".", q, rank, eps);
+			if( j > 0 )
+				Assert.assertTrue(bounds[j] >= bounds[j-1]);
+		}
+	}
+	
+	/**
+	 * Checks that all rows are assigned to the bin given by the boundaries, that
+	 * these bins differ by at most one from the exact equi-height bins, and that
+	 * the number of rows per bin is balanced within the sketch error.
+	 * 
+	 * @param X input
+	 * @param R transformed output
+	 * @param c column index
+	 * @param vals sorted column values
+	 * @param bounds upper boundaries of the first nbins-1 bins
+	 */
+	private static void checkBinnedOutput( double[][] X, double[][] R, int c, double[] vals, double[] bounds )
+	{
+		//exact quantiles as upper boundaries
+		double[] exact = new double[nbins-1];
+		for( int j=0; j<nbins-1; j++ )
+			exact[j] = vals[(int)Math.ceil((double)(j+1)/nbins*rows)-1];
+		
+		int[] counts = new int[nbins];
+		for( int i=0; i<rows; i++ ) {
+			//match rows by id (independent of output row order)
+			double val = X[(int)R[i][2]-1][c];
+			int bin = (int)R[i][c];
+			Assert.assertTrue("Invalid bin id "+bin+".", bin >= 1 && bin <= nbins);
+			Assert.assertEquals(getBinID(bounds, val), bin);
+			Assert.assertTrue(Math.abs(getBinID(exact, val) - bin) <= 1);
+			counts[bin-1]++;
+		}
+		for( int j=0; j<nbins; j++ )
+			Assert.assertEquals("Unbalanced bin "+(j+1)+".", 1.0/nbins, (double)counts[j]/rows, 2*eps);
+	}
+	
+	/**
+	 * 
+	 * @param vals sorted values
+	 * @param val
+	 * @return number of values less than or equal to the given value
+	 */
+	private static int getRank( double[] vals, double val )
+	{
+		int rank = 0;
+		while( rank < vals.length && vals[rank] <= val )
+			rank++;
+		return rank;
+	}
+	
+	/**
+	 * 
+	 * @param bounds upper bin boundaries
+	 * @param val
+	 * @return bin id (starting at 1) of the first bin whose upper boundary is >= val
+	 */
+	private static int getBinID( double[] bounds, double val )
+	{
+		int bin = 1;
+		while( bin <= bounds.length && bounds[bin-1] < val )
+			bin++;
+		return bin;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 */
+	private static double[][] generateInput()
+	{
+		Random rand = new Random(7);
+		double[][] X = new double[rows][cols];
+		for( int i=0; i<rows; i++ ) {
+			X[i][0] = i+1;
+			X[i][1] = 1 + Math.pow(rand.nextDouble(), 3) * 1000;
+			X[i][2] = i+1;
+		}
+		//random permutation of V1
+		for( int i=rows-1; i>0; i-- ) {
+			int j = rand.nextInt(i+1);
+			double tmp = X[i][0]; X[i][0] = X[j][0]; X[j][0] = tmp;
+		}
+		return X;
+	}
+	
+	/**
+	 * 
+	 * @param fs
+	 * @param fname
+	 * @return
+	 * @throws IOException
+	 */
+	private static double[] readBinBounds( FileSystem fs, String fname ) 
+		throws IOException
+	{
+		// format: colID,min,max,binwidth,nbins,bound_1,...,bound_nbins-1
+		BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(new Path(fname))));
+		String[] fields = br.readLine().split(",");
+		br.close();
+		
+		Assert.assertEquals(nbins, Integer.parseInt(fields[4]));
+		double[] ret = new double[fields.length-5];
+		for( int j=5; j<fields.length; j++ )
+			ret[j-5] = Double.parseDouble(fields[j]);
+		return ret;
+	}
+	
+	/**
+	 * 
+	 * @param specFile
+	 * @throws Exception
+	 */
+	private static void generateSpecFile( String specFile ) throws Exception
+	{
+		JSONObject outputSpec = new JSONObject();
+		JSONArray binSpec = new JSONArray();
+		for( int colID=1; colID <= 2; colID++ ) {
+			JSONObject obj = new JSONObject();
+			obj.put("name", "V"+colID);
+			obj.put("method", "equi-height");
+			obj.put("numbins", nbins);
+			binSpec.add(obj);
+		}
+		outputSpec.put(TX_METHOD.BIN.toString(), binSpec);
+		
+		FileSystem fs = FileSystem.get(TestUtils.conf);
+		BufferedWriter out = new BufferedWriter(new OutputStreamWriter(fs.create(new Path(specFile),true)));
+		out.write(outputSpec.toString());
+		out.close();
+	}
+	
+	/**
+	 * 
+	 * @param datafile
+	 * @throws Exception
+	 */
+	private static void generateFrameMTD( String datafile ) throws Exception
+	{
+		JSONObject mtd = new JSONObject();
+		mtd.put("data_type", "frame");
+		mtd.put("format", "csv");
+		mtd.put("header", false);
+		
+		FileSystem fs = FileSystem.get(TestUtils.conf);
+		BufferedWriter out = new BufferedWriter(new OutputStreamWriter(fs.create(new Path(datafile+".mtd"),true)));
+		out.write(mtd.toString());
+		out.close();
+	}
+}
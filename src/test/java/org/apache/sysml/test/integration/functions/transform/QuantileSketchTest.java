@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.transform;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.sysml.runtime.transform.QuantileSketch;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * This is a component test for the quantile sketch used for equi-height binning,
+ * which checks exactness for small inputs, the rank error of approximate quantiles
+ * for single and merged partial sketches, as well as the string encoding.
+ */
+public class QuantileSketchTest extends AutomatedTestBase 
+{
+	private final static int rows1 = 200;    //exact (<= k)
+	private final static int rows2 = 100000; //approximate
+	private final static int numParts = 7;
+	private final static double eps = 0.02;  //max rank error (~1.7/k)
+	
+	private final static double[] qs = new double[]{0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99};
+	
+	@Override
+	public void setUp() {
+		TestUtils.clearAssertionInformation();
+	}
+	
+	@Test
+	public void testQuantilesExact() {
+		runQuantileSketchTest(rows1, 1, false, 0);
+	}
+	
+	@Test
+	public void testQuantilesApprox() {
+		runQuantileSketchTest(rows2, 1, false, eps);
+	}
+	
+	@Test
+	public void testQuantilesMergeExact() {
+		runQuantileSketchTest(rows1, numParts, false, 0);
+	}
+	
+	@Test
+	public void testQuantilesMergeApprox() {
+		runQuantileSketchTest(rows2, numParts, false, eps);
+	}
+	
+	@Test
+	public void testQuantilesMergeEncodeApprox() {
+		runQuantileSketchTest(rows2, numParts, true, eps);
+	}
+	
+	@Test
+	public void testQuantilesEmpty() {
+		QuantileSketch sketch = new QuantileSketch();
+		sketch.merge(new QuantileSketch());
+		Assert.assertEquals(0, sketch.getCount());
+		Assert.assertEquals(0, sketch.getQuantiles(qs)[0], 0);
+	}
+	
+	/**
+	 * 
+	 * @param rows
+	 * @param parts
+	 * @param encode
+	 * @param tol
+	 */
+	private void runQuantileSketchTest(int rows, int parts, boolean encode, double tol)
+	{
+		//random permutation of values 1..rows (value equals rank)
+		double[] vals = new double[rows];
+		for( int i=0; i<rows; i++ )
+			vals[i] = i+1;
+		Random rand = new Random(7);
+		for( int i=rows-1; i>0; i-- ) {
+			int j = rand.nextInt(i+1);
+			double tmp = vals[i]; vals[i] = vals[j]; vals[j] = tmp;
+		}
+		
+		//construct partial sketches over disjoint, unequally-sized ranges and merge
+		QuantileSketch sketch = new QuantileSketch();
+		for( int p=0, rl=0; p<parts; p++ ) {
+			int ru = (p==parts-1) ? rows : rl + (rows/parts) * (p%2+1)/2;
+			QuantileSketch partial = new QuantileSketch();
+			for( int i=rl; i<ru; i++ )
+				partial.add(vals[i]);
+			if( encode )
+				partial = QuantileSketch.decode(partial.encode());
+			sketch.merge(partial);
+			rl = ru;
+		}
+		if( encode )
+			sketch = QuantileSketch.decode(sketch.encode());
+		
+		//check count and rank error of quantiles
+		Assert.assertEquals(rows, sketch.getCount());
+		double[] ret = sketch.getQuantiles(qs);
+		for( int j=0; j<qs.length; j++ ) {
+			double exact = Math.ceil(qs[j]*rows);
+			Assert.assertEquals("Wrong quantile "+qs[j]+".", exact/rows, ret[j]/rows, tol);
+			if( j > 0 )
+				Assert.assertTrue(ret[j] >= ret[j-1]);
+		}
+	}
+}
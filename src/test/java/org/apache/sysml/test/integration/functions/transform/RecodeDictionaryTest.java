@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.sysml.runtime.transform.RecodeDictionary;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * This is a component test for the recode dictionary, which checks insert, lookup,
+ * growth of the hash table, entry arrays and char pool, and serialization against
+ * a reference hash map.
+ */
+public class RecodeDictionaryTest extends AutomatedTestBase 
+{
+	private final static int rows1 = 10;
+	private final static int rows2 = 10000;
+	
+	@Override
+	public void setUp() {
+		TestUtils.clearAssertionInformation();
+	}
+	
+	@Test
+	public void testInsertLookupSmall() {
+		runRecodeDictionaryTest(rows1, 1, false);
+	}
+	
+	@Test
+	public void testInsertLookupGrowth() {
+		runRecodeDictionaryTest(rows2, 1, false);
+	}
+	
+	@Test
+	public void testInsertLookupLongKeys() {
+		runRecodeDictionaryTest(rows1, 300, false);
+	}
+	
+	@Test
+	public void testSerializationSmall() {
+		runRecodeDictionaryTest(rows1, 1, true);
+	}
+	
+	@Test
+	public void testSerializationGrowth() {
+		runRecodeDictionaryTest(rows2, 7, true);
+	}
+	
+	@Test
+	public void testRemoveAndMerge() {
+		RecodeDictionary dict1 = new RecodeDictionary();
+		RecodeDictionary dict2 = new RecodeDictionary();
+		for( int i=0; i<100; i++ ) {
+			dict1.add("k"+i, 1);
+			dict2.add("k"+(i+50), 2);
+		}
+		dict1.remove("k7");
+		dict1.remove("NA"); //non-existing
+		dict1.merge(dict2);
+		
+		Assert.assertEquals(149, dict1.size());
+		Assert.assertEquals(-1, dict1.get("k7"));
+		Assert.assertEquals(1, dict1.get("k8"));
+		Assert.assertEquals(3, dict1.get("k50"));
+		Assert.assertEquals(2, dict1.get("k149"));
+	}
+	
+	@Test
+	public void testSortedIds() {
+		RecodeDictionary dict = new RecodeDictionary();
+		String[] keys = new String[]{"b", "ab", "a", "", "ba", "aa"};
+		for( String key : keys )
+			dict.add(key, 1);
+		
+		Integer[] ids = dict.getSortedIds();
+		String[] expected = new String[]{"", "a", "aa", "ab", "b", "ba"};
+		for( int i=0; i<ids.length; i++ )
+			Assert.assertEquals(expected[i], dict.getKey(ids[i]));
+	}
+	
+	/**
+	 * 
+	 * @param rows
+	 * @param keyLen
+	 * @param serialize
+	 */
+	private void runRecodeDictionaryTest(int rows, int keyLen, boolean serialize)
+	{
+		try
+		{
+			//insert distinct and duplicate values (counts)
+			RecodeDictionary dict = new RecodeDictionary();
+			HashMap<String, Long> ref = new HashMap<String, Long>();
+			for( int i=0; i<rows; i++ ) {
+				String key = createKey(i % (rows/2+1), keyLen);
+				long val = dict.add(key, 1);
+				ref.put(key, ref.containsKey(key) ? ref.get(key)+1 : 1);
+				Assert.assertEquals((long)ref.get(key), val);
+			}
+			
+			//overwrite values (recode ids)
+			dict.put(createKey(0, keyLen), 7);
+			ref.put(createKey(0, keyLen), 7L);
+			
+			if( serialize )
+				dict = serializeAndDeserialize(dict);
+			
+			//check lookups by key and entry id
+			Assert.assertEquals(ref.size(), dict.size());
+			for( Entry<String, Long> e : ref.entrySet() )
+				Assert.assertEquals((long)e.getValue(), dict.get(e.getKey()));
+			for( int i=0; i<dict.size(); i++ )
+				Assert.assertEquals((long)ref.get(dict.getKey(i)), dict.getValue(i));
+			Assert.assertEquals(-1, dict.get(createKey(rows, keyLen)));
+			
+			//check inserts after deserialization
+			dict.add(createKey(rows, keyLen), 3);
+			Assert.assertEquals(3, dict.get(createKey(rows, keyLen)));
+			Assert.assertEquals(ref.size()+1, dict.size());
+		}
+		catch(Exception ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param i
+	 * @param len
+	 * @return
+	 */
+	private static String createKey(int i, int len) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(i);
+		for( int j=1; j<len; j++ )
+			sb.append((char)('a' + (i+j) % 26));
+		return sb.toString();
+	}
+	
+	/**
+	 * 
+	 * @param dict
+	 * @return
+	 * @throws Exception
+	 */
+	private static RecodeDictionary serializeAndDeserialize(RecodeDictionary dict) 
+		throws Exception
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(dict);
+		oos.close();
+		
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		RecodeDictionary ret = (RecodeDictionary) ois.readObject();
+		ois.close();
+		return ret;
+	}
+}
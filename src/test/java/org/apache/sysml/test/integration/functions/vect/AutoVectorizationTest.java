@@ -61,6 +61,14 @@ public class AutoVectorizationTest extends AutomatedTestBase
 	private final static String TEST_NAME22 = "VectorizeForLoopBinaryRowNeg";
 	private final static String TEST_NAME23 = "VectorizeForLoopBinaryColPos";
 	private final static String TEST_NAME24 = "VectorizeForLoopBinaryColNeg";
+	private final static String TEST_NAME25 = "VectorizeForLoopAffineRowPos";
+	private final static String TEST_NAME26 = "VectorizeForLoopNestedPos";
+	private final static String TEST_NAME27 = "VectorizeForLoopAggMinPos";
+	private final static String TEST_NAME28 = "VectorizeForLoopAggMaxSlicePos";
+	private final static String TEST_NAME29 = "VectorizeForLoopAggProdPos";
+	private final static String TEST_NAME30 = "VectorizeForLoopDependencyRowNeg";
+	private final static String TEST_NAME31 = "VectorizeForLoopDependencyColNeg";
+	private final static String TEST_NAME32 = "VectorizeForLoopLogicalNeg";
 	
 	private final static int rows = 20;
 	private final static int cols = 15;
@@ -92,6 +100,14 @@ public class AutoVectorizationTest extends AutomatedTestBase
 		addTestConfiguration(TEST_NAME22, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME22, new String[] {"R"}));
 		addTestConfiguration(TEST_NAME23, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME23, new String[] {"R"}));
 		addTestConfiguration(TEST_NAME24, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME24, new String[] {"R"}));
+		addTestConfiguration(TEST_NAME25, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME25, new String[] {"R"}));
+		addTestConfiguration(TEST_NAME26, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME26, new String[] {"R"}));
+		addTestConfiguration(TEST_NAME27, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME27, new String[] {"R"}));
+		addTestConfiguration(TEST_NAME28, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME28, new String[] {"R"}));
+		addTestConfiguration(TEST_NAME29, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME29, new String[] {"R"}));
+		addTestConfiguration(TEST_NAME30, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME30, new String[] {"R"}));
+		addTestConfiguration(TEST_NAME31, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME31, new String[] {"R"}));
+		addTestConfiguration(TEST_NAME32, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME32, new String[] {"R"}));
 	}
 	
 	@Test
@@ -214,6 +230,46 @@ public class AutoVectorizationTest extends AutomatedTestBase
 		runVectorizationTest( TEST_NAME24 ); 
 	}
 	
+	@Test
+	public void testVectorizeForLoopAffineRowPos() { 
+		runVectorizationTest( TEST_NAME25 ); 
+	}
+	
+	@Test
+	public void testVectorizeForLoopNestedPos() { 
+		runVectorizationTest( TEST_NAME26 ); 
+	}
+	
+	@Test
+	public void testVectorizeForLoopAggMinPos() { 
+		runVectorizationTest( TEST_NAME27 ); 
+	}
+	
+	@Test
+	public void testVectorizeForLoopAggMaxSlicePos() { 
+		runVectorizationTest( TEST_NAME28 ); 
+	}
+	
+	@Test
+	public void testVectorizeForLoopAggProdPos() { 
+		runVectorizationTest( TEST_NAME29 ); 
+	}
+	
+	@Test
+	public void testVectorizeForLoopDependencyRowNeg() { 
+		runVectorizationTest( TEST_NAME30 ); 
+	}
+	
+	@Test
+	public void testVectorizeForLoopDependencyColNeg() { 
+		runVectorizationTest( TEST_NAME31 ); 
+	}
+	
+	@Test
+	public void testVectorizeForLoopLogicalNeg() { 
+		runVectorizationTest( TEST_NAME32 ); 
+	}
+	
 	/**
 	 * 
 	 * @param cfc
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sysml.test.integration.functions.vect;
+
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import org.apache.sysml.hops.OptimizerUtils;
+import org.apache.sysml.runtime.matrix.data.MatrixValue.CellIndex;
+import org.apache.sysml.test.integration.AutomatedTestBase;
+import org.apache.sysml.test.integration.TestConfiguration;
+import org.apache.sysml.test.utils.TestUtils;
+
+/**
+ * Tests partial unrolling of for loops (unroll factor 4) for different
+ * numbers of iterations, i.e., w/o unrolled iterations, w/o remaining 
+ * iterations, and w/ both.
+ */
+public class ForLoopUnrollingTest extends AutomatedTestBase
+{
+	
+	private final static String TEST_NAME1 = "ForLoopUnroll";
+	private final static String TEST_NAME2 = "ForLoopUnrollUpdatedBound";
+	private final static String TEST_DIR = "functions/vect/";
+	private final static String TEST_CLASS_DIR = TEST_DIR + ForLoopUnrollingTest.class.getSimpleName() + "/";
+	
+	private final static int rows = 20;
+	private final static int cols = 3;
+	
+	
+	@Override
+	public void setUp() {
+		addTestConfiguration(TEST_NAME1, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME1, new String[] {"R"}));
+		addTestConfiguration(TEST_NAME2, new TestConfiguration(TEST_CLASS_DIR, TEST_NAME2, new String[] {"R"}));
+	}
+	
+	@Test
+	public void testForLoopUnroll0() { 
+		runLoopUnrollingTest( TEST_NAME1, 0 ); 
+	}
+	
+	@Test
+	public void testForLoopUnroll1() { 
+		runLoopUnrollingTest( TEST_NAME1, 1 ); 
+	}
+	
+	@Test
+	public void testForLoopUnroll3() { 
+		runLoopUnrollingTest( TEST_NAME1, 3 ); 
+	}
+	
+	@Test
+	public void testForLoopUnroll4() { 
+		runLoopUnrollingTest( TEST_NAME1, 4 ); 
+	}
+	
+	@Test
+	public void testForLoopUnroll16() { 
+		runLoopUnrollingTest( TEST_NAME1, 16 ); 
+	}
+	
+	@Test
+	public void testForLoopUnroll13() { 
+		runLoopUnrollingTest( TEST_NAME1, 13 ); 
+	}
+	
+	@Test
+	public void testForLoopUnroll19() { 
+		runLoopUnrollingTest( TEST_NAME1, 19 ); 
+	}
+	
+	@Test
+	public void testForLoopUnrollUpdatedBound0() { 
+		runLoopUnrollingTest( TEST_NAME2, 0 ); 
+	}
+	
+	@Test
+	public void testForLoopUnrollUpdatedBound13() { 
+		runLoopUnrollingTest( TEST_NAME2, 13 ); 
+	}
+	
+	/**
+	 * 
+	 * @param testName
+	 * @param iterations
+	 */
+	private void runLoopUnrollingTest( String testName, int iterations ) 
+	{
+		String TEST_NAME = testName;
+		boolean oldFlag = OptimizerUtils.ALLOW_LOOP_UNROLLING;
+		
+		try
+		{		
+			TestConfiguration config = getTestConfiguration(TEST_NAME);
+			loadTestConfiguration(config);
+
+			String HOME = SCRIPT_DIR + TEST_DIR;
+			fullDMLScriptName = HOME + TEST_NAME + ".dml";
+			programArgs = new String[]{"-explain","-args", input("A"), 
+				String.valueOf(iterations), output("R") };
+			
+			fullRScriptName = HOME + TEST_NAME + ".R";
+			rCmd = getRCmd(inputDir(), String.valueOf(iterations), expectedDir());
+			
+			OptimizerUtils.ALLOW_LOOP_UNROLLING = true;
+			
+			//generate input
+			double[][] A = getRandomMatrix(rows, cols, 0, 1, 1.0, 7);
+			writeInputMatrixWithMTD("A", A, true);	
+			
+			//run tests
+			runTest(true, false, null, -1);
+			runRScript(true);
+			
+			//compare results
+			HashMap<CellIndex, Double> dmlfile = readDMLMatrixFromHDFS("R");
+			HashMap<CellIndex, Double> rfile  = readRMatrixFromFS("R");
+			TestUtils.compareMatrices(dmlfile, rfile, 1e-10, "DML", "R");
+		}
+		catch(Exception ex)
+		{
+			throw new RuntimeException(ex);
+		}
+		finally
+		{
+			OptimizerUtils.ALLOW_LOOP_UNROLLING = oldFlag;
+		}
+	}
+}